@@ -0,0 +1,130 @@
+package com.amigoscode.benchmark;
+
+import com.amigoscode.Main;
+import com.amigoscode.customer.Customer;
+import com.amigoscode.customer.CustomerDao;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the {@link CustomerDao} backends on the same operations and table sizes.
+ * Each trial boots the application without a web server against a fresh H2 database
+ * in PostgreSQL mode, with the cache and metrics decorators off so only the backend
+ * is measured.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CustomerDaoBenchmark {
+
+    private static final int CHUNK_SIZE = 1000;
+
+    @Param({"jdbc", "jpa", "list", "columnar"})
+    public String backend;
+
+    @Param({"1000", "10000", "100000"})
+    public int size;
+
+    private ConfigurableApplicationContext context;
+    private CustomerDao customerDao;
+    private int[] ids;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        // passed as arguments so they win over application.yml
+        context = new SpringApplicationBuilder(Main.class)
+                .run(
+                        "--spring.main.web-application-type=none",
+                        "--spring.datasource.url=jdbc:h2:mem:" + UUID.randomUUID()
+                                + ";MODE=PostgreSQL;DATABASE_TO_LOWER=TRUE;DEFAULT_NULL_ORDERING=HIGH",
+                        "--spring.datasource.username=sa",
+                        "--spring.datasource.password=",
+                        "--spring.flyway.enabled=false",
+                        "--spring.sql.init.mode=always",
+                        "--spring.sql.init.schema-locations=classpath:benchmark-schema.sql",
+                        "--spring.jpa.hibernate.ddl-auto=none",
+                        "--spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect",
+                        "--spring.jpa.show-sql=false",
+                        "--customer.dao.backend=" + backend,
+                        "--customer.dao.cache.enabled=false",
+                        "--customer.dao.metrics.enabled=false",
+                        "--customer.dao.email-filter.enabled=false"
+                );
+        customerDao = context.getBean(CustomerDao.class);
+
+        for (int from = 0; from < size; from += CHUNK_SIZE) {
+            List<Customer> chunk = new ArrayList<>(CHUNK_SIZE);
+            for (int i = from; i < Math.min(from + CHUNK_SIZE, size); i++) {
+                chunk.add(new Customer("Customer " + i, "customer." + i + "@amigoscode.com", 18 + i % 60));
+            }
+            customerDao.insertCustomers(chunk);
+        }
+
+        ids = customerDao.selectAllCustomer().stream()
+                .mapToInt(Customer::getId)
+                .toArray();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public Object selectCustomerById() {
+        return customerDao.selectCustomerById(randomId());
+    }
+
+    @Benchmark
+    public boolean existsPersonWithEmail() {
+        int i = ThreadLocalRandom.current().nextInt(size);
+        return customerDao.existsPersonWithEmail("customer." + i + "@amigoscode.com");
+    }
+
+    @Benchmark
+    public Customer insertCustomer() {
+        Customer customer = new Customer("Inserted", UUID.randomUUID() + "@amigoscode.com", 30);
+        customerDao.insertCustomer(customer);
+        return customer;
+    }
+
+    @Benchmark
+    public Customer updateCustomer() {
+        Customer update = new Customer();
+        update.setId(randomId());
+        update.setAge(ThreadLocalRandom.current().nextInt(18, 99));
+        customerDao.updateCustomer(update);
+        return update;
+    }
+
+    @Benchmark
+    public List<Customer> selectAllCustomer() {
+        return customerDao.selectAllCustomer();
+    }
+
+    private int randomId() {
+        return ids[ThreadLocalRandom.current().nextInt(ids.length)];
+    }
+}
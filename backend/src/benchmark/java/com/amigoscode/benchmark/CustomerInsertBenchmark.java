@@ -0,0 +1,141 @@
+package com.amigoscode.benchmark;
+
+import com.amigoscode.Main;
+import com.amigoscode.customer.Customer;
+import com.amigoscode.customer.CustomerDao;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.core.env.Environment;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Inserts per second through the JPA backend, one at a time, as one batch and from many
+ * concurrent callers. allocation-size-1 is the configuration before ids were pooled: a
+ * sequence increment of 1, a nextval per row and no JDBC batching. Each trial migrates its
+ * own schema in the database configured in application.yml and drops it afterwards.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CustomerInsertBenchmark {
+
+    private static final int BATCH_SIZE = 1000;
+
+    @Param({"allocation-size-1", "pooled-lo", "pooled-lo-write-behind"})
+    public String configuration;
+
+    private final String schema = "insert_benchmark_" + UUID.randomUUID().toString().replace("-", "");
+
+    private ConfigurableApplicationContext context;
+    private CustomerDao customerDao;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        List<String> args = new ArrayList<>(List.of(
+                "--spring.main.web-application-type=none",
+                "--spring.datasource.hikari.schema=" + schema,
+                "--spring.flyway.default-schema=" + schema,
+                // sequences are looked up by name, the one in public must not be picked
+                "--spring.jpa.properties.hibernate.default_schema=" + schema,
+                "--spring.jpa.show-sql=false",
+                // generate_statistics would log the metrics of every session
+                "--logging.level.org.hibernate.engine.internal.StatisticalLoggingSessionEventListener=warn",
+                "--customer.dao.backend=jpa",
+                "--customer.dao.cache.enabled=false",
+                "--customer.dao.metrics.enabled=false",
+                "--customer.dao.email-filter.enabled=false"
+        ));
+        switch (configuration) {
+            case "allocation-size-1" -> args.addAll(List.of(
+                    // afterMigrate puts the sequence back to an increment of 1, which
+                    // hibernate then takes over as the allocation size
+                    "--spring.flyway.locations=classpath:db/migration,classpath:db/allocation-size-1",
+                    "--spring.jpa.properties.hibernate.id.sequence.increment_size_mismatch_strategy=fix",
+                    "--spring.jpa.properties.hibernate.jdbc.batch_size=1",
+                    "--spring.jpa.properties.hibernate.order_inserts=false"
+            ));
+            case "pooled-lo-write-behind" -> args.add("--customer.dao.write-behind.enabled=true");
+            case "pooled-lo" -> {
+            }
+            default -> throw new IllegalArgumentException("unknown configuration " + configuration);
+        }
+        context = new SpringApplicationBuilder(Main.class).run(args.toArray(String[]::new));
+        customerDao = context.getBean(CustomerDao.class);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws SQLException {
+        Environment environment = context.getEnvironment();
+        context.close();
+        try (Connection connection = DriverManager.getConnection(
+                environment.getRequiredProperty("spring.datasource.url"),
+                environment.getProperty("spring.datasource.username"),
+                environment.getProperty("spring.datasource.password")
+        )) {
+            connection.createStatement().execute("DROP SCHEMA " + schema + " CASCADE");
+        }
+    }
+
+    @Benchmark
+    public Customer insertCustomer() {
+        Customer customer = customer();
+        customerDao.insertCustomer(customer);
+        return customer;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH_SIZE)
+    public List<Customer> insertCustomers() {
+        List<Customer> customers = customers();
+        customerDao.insertCustomers(customers);
+        return customers;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH_SIZE)
+    public List<Customer> insertCustomerConcurrently() {
+        List<Customer> customers = customers();
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            customers.forEach(customer -> executor.submit(() -> customerDao.insertCustomer(customer)));
+        }
+        return customers;
+    }
+
+    private static List<Customer> customers() {
+        List<Customer> customers = new ArrayList<>(BATCH_SIZE);
+        for (int i = 0; i < BATCH_SIZE; i++) {
+            customers.add(customer());
+        }
+        return customers;
+    }
+
+    private static Customer customer() {
+        return new Customer("Inserted", UUID.randomUUID() + "@amigoscode.com", 30);
+    }
+}
@@ -0,0 +1,76 @@
+package com.amigoscode.benchmark;
+
+import com.amigoscode.customer.Customer;
+import com.amigoscode.customer.CustomerPage;
+import com.amigoscode.customer.CustomerRegistrationRequest;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+
+/**
+ * Jackson cost of the customer api payloads: a single customer, a page of customers
+ * and an incoming registration request.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CustomerJsonBenchmark {
+
+    private ObjectWriter customerWriter;
+    private ObjectWriter pageWriter;
+    private ObjectReader registrationReader;
+
+    private Customer customer;
+    private CustomerPage page;
+    private byte[] registrationJson;
+
+    @Setup
+    public void setUp() throws IOException {
+        ObjectMapper objectMapper = new ObjectMapper();
+        customerWriter = objectMapper.writerFor(Customer.class);
+        pageWriter = objectMapper.writerFor(CustomerPage.class);
+        registrationReader = objectMapper.readerFor(CustomerRegistrationRequest.class);
+
+        customer = new Customer(1, "Alex", "alex@amigoscode.com", 21, 0);
+        List<Customer> customers = IntStream.rangeClosed(1, 50)
+                .mapToObj(i -> new Customer(i, "Customer " + i, "customer." + i + "@amigoscode.com", 18 + i % 60, 0))
+                .toList();
+        page = new CustomerPage(customers, "NTA");
+        registrationJson = objectMapper.writeValueAsBytes(
+                new CustomerRegistrationRequest("Alex", "alex@amigoscode.com", 21)
+        );
+    }
+
+    @Benchmark
+    public byte[] serializeCustomer() throws IOException {
+        return customerWriter.writeValueAsBytes(customer);
+    }
+
+    @Benchmark
+    public byte[] serializePage() throws IOException {
+        return pageWriter.writeValueAsBytes(page);
+    }
+
+    @Benchmark
+    public CustomerRegistrationRequest deserializeRegistration() throws IOException {
+        return registrationReader.readValue(registrationJson);
+    }
+}
@@ -0,0 +1,62 @@
+package com.amigoscode.benchmark;
+
+import com.amigoscode.customer.Customer;
+import com.amigoscode.customer.CustomerRowMapper;
+import org.h2.tools.SimpleResultSet;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.sql.SQLException;
+import java.sql.Types;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of turning result set rows into {@link Customer}s, without any database round trip.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CustomerRowMapperBenchmark {
+
+    @Param({"1", "50", "1000"})
+    public int rows;
+
+    private final CustomerRowMapper customerRowMapper = new CustomerRowMapper();
+    private SimpleResultSet resultSet;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        resultSet = new SimpleResultSet();
+        resultSet.addColumn("id", Types.INTEGER, 10, 0);
+        resultSet.addColumn("name", Types.VARCHAR, 255, 0);
+        resultSet.addColumn("email", Types.VARCHAR, 255, 0);
+        resultSet.addColumn("age", Types.INTEGER, 10, 0);
+        resultSet.addColumn("version", Types.INTEGER, 10, 0);
+        for (int i = 1; i <= rows; i++) {
+            resultSet.addRow(i, "Customer " + i, "customer." + i + "@amigoscode.com", 18 + i % 60, 0);
+        }
+    }
+
+    @Benchmark
+    public void mapRows(Blackhole blackhole) throws SQLException {
+        resultSet.beforeFirst();
+        int rowNum = 0;
+        while (resultSet.next()) {
+            blackhole.consume(customerRowMapper.mapRow(resultSet, rowNum++));
+        }
+    }
+}
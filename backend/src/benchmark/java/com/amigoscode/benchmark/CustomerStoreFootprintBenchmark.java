@@ -0,0 +1,80 @@
+package com.amigoscode.benchmark;
+
+import com.amigoscode.customer.Customer;
+import com.amigoscode.customer.CustomerColumnarDataAccessService;
+import com.amigoscode.customer.CustomerDao;
+import com.amigoscode.customer.CustomerListDataAcessService;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jol.info.GraphLayout;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+
+/**
+ * Loading customers into each in-memory store, with the heap the loaded store holds per
+ * customer, walked with JOL after the load, as a secondary result.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 0)
+@Measurement(iterations = 1)
+@Fork(1)
+public class CustomerStoreFootprintBenchmark {
+
+    @Param({"20000", "1000000"})
+    public int customers;
+
+    @Param({"list", "columnar"})
+    public String store;
+
+    private List<Customer> batch;
+
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class Footprint {
+        public long bytesPerCustomer;
+
+        private CustomerDao loaded;
+        private int customers;
+
+        @TearDown(Level.Iteration)
+        public void measure() {
+            bytesPerCustomer = GraphLayout.parseInstance(loaded).totalSize() / customers;
+        }
+    }
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        batch = IntStream.range(0, customers)
+                .mapToObj(i -> new Customer("Customer Name " + i, "customer." + i + "@amigoscode.com", 18 + i % 60))
+                .toList();
+    }
+
+    @Benchmark
+    public CustomerDao load(Footprint footprint) {
+        CustomerDao customerDao = switch (store) {
+            case "list" -> new CustomerListDataAcessService();
+            case "columnar" -> new CustomerColumnarDataAccessService();
+            default -> throw new IllegalArgumentException("unknown store " + store);
+        };
+        customerDao.insertCustomers(batch);
+        footprint.loaded = customerDao;
+        footprint.customers = customers;
+        return customerDao;
+    }
+}
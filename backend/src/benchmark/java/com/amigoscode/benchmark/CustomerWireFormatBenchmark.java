@@ -0,0 +1,123 @@
+package com.amigoscode.benchmark;
+
+import com.amigoscode.customer.Customer;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import com.github.luben.zstd.Zstd;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Serialization cost and payload size of a customer list per wire format and compression.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgs = "-Xmx4g")
+public class CustomerWireFormatBenchmark {
+
+    @Param({"1000", "100000", "1000000"})
+    public int customers;
+
+    @Param({"json", "smile", "cbor"})
+    public String format;
+
+    private ObjectWriter writer;
+    private ObjectReader reader;
+
+    private Customer[] batch;
+    private byte[] encoded;
+
+    @Setup
+    public void setUp() throws IOException {
+        ObjectMapper objectMapper = new ObjectMapper(factory(format));
+        writer = objectMapper.writerFor(Customer[].class);
+        reader = objectMapper.readerFor(Customer[].class);
+
+        batch = IntStream.rangeClosed(1, customers)
+                .mapToObj(i -> new Customer(i, "Customer " + i, "customer." + i + "@amigoscode.com", 18 + i % 60, 0))
+                .toArray(Customer[]::new);
+        encoded = serialize();
+    }
+
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class PayloadSize {
+        public long bytes;
+        public long gzipBytes;
+        public long zstdBytes;
+    }
+
+    // sizes of the payload and its compressed forms as secondary results, from a single
+    // shot since jmh sums the counters of every iteration
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @Warmup(iterations = 0)
+    @Measurement(iterations = 1)
+    public byte[] payloadSize(PayloadSize size) throws IOException {
+        byte[] payload = serialize();
+        size.bytes = payload.length;
+        size.gzipBytes = gzip(payload).length;
+        size.zstdBytes = Zstd.compress(payload, 3).length;
+        return payload;
+    }
+
+    @Benchmark
+    public byte[] serialize() throws IOException {
+        return writer.writeValueAsBytes(batch);
+    }
+
+    @Benchmark
+    public byte[] serializeGzip() throws IOException {
+        return gzip(serialize());
+    }
+
+    @Benchmark
+    public byte[] serializeZstd() throws IOException {
+        return Zstd.compress(serialize(), 3);
+    }
+
+    @Benchmark
+    public Customer[] deserialize() throws IOException {
+        return reader.readValue(encoded);
+    }
+
+    private static JsonFactory factory(String format) {
+        return switch (format) {
+            case "json" -> new JsonFactory();
+            case "smile" -> new SmileFactory();
+            case "cbor" -> new CBORFactory();
+            default -> throw new IllegalArgumentException("unknown format " + format);
+        };
+    }
+
+    private static byte[] gzip(byte[] bytes) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(bytes.length / 4);
+        try (GZIPOutputStream gzip = new GZIPOutputStream(out, 8192)) {
+            gzip.write(bytes);
+        }
+        return out.toByteArray();
+    }
+}
@@ -0,0 +1,147 @@
+package com.amigoscode.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Time from launching the application built by the fast-startup profile to its first served
+ * request, with and without the AOT-prepared context and a class-data sharing archive.
+ * Every start runs against the database configured in application.yml.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 1)
+@Measurement(iterations = 5)
+@Fork(1)
+public class StartupBenchmark {
+
+    private static final Path TARGET = Path.of("target");
+    private static final int PORT = 18090;
+    private static final Duration START_TIMEOUT = Duration.ofMinutes(2);
+
+    @Param({"jit", "aot", "cds", "aot-cds"})
+    public String mode;
+
+    private final HttpClient httpClient = HttpClient.newBuilder()
+            .connectTimeout(Duration.ofMillis(100))
+            .build();
+    private final HttpRequest firstRequest = HttpRequest.newBuilder(
+                    URI.create("http://localhost:" + PORT + "/api/v1/customers?limit=1"))
+            .build();
+
+    private List<String> command;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        String classpath = applicationJar() + File.pathSeparator
+                + Files.readString(TARGET.resolve("startup/classpath.txt")).trim();
+        List<String> jvmFlags = new ArrayList<>();
+        if (mode.startsWith("aot")) {
+            jvmFlags.add("-Dspring.aot.enabled=true");
+        }
+        if (mode.endsWith("cds")) {
+            Path archive = TARGET.resolve("startup/" + mode + ".jsa").toAbsolutePath();
+            Files.deleteIfExists(archive);
+            // a training run loads what a start loads and exits once the context is refreshed
+            List<String> training = new ArrayList<>(jvmFlags);
+            training.add("-XX:ArchiveClassesAtExit=" + archive);
+            training.add("-Dspring.context.exit=onRefresh");
+            Process process = start(java(classpath, training));
+            if (!process.waitFor(START_TIMEOUT.toSeconds(), TimeUnit.SECONDS) || !Files.exists(archive)) {
+                process.destroyForcibly();
+                throw new IllegalStateException("the training run did not write " + archive);
+            }
+            jvmFlags.add("-XX:SharedArchiveFile=" + archive);
+        }
+        command = java(classpath, jvmFlags);
+    }
+
+    @Benchmark
+    public int timeToFirstRequest() throws Exception {
+        Process application = start(command);
+        try {
+            return awaitFirstResponse(application);
+        } finally {
+            application.destroy();
+            application.waitFor();
+        }
+    }
+
+    private int awaitFirstResponse(Process application) throws InterruptedException {
+        long deadline = System.nanoTime() + START_TIMEOUT.toNanos();
+        while (System.nanoTime() < deadline) {
+            if (!application.isAlive()) {
+                throw new IllegalStateException("the application exited with " + application.exitValue());
+            }
+            try {
+                HttpResponse<Void> response = httpClient.send(firstRequest, HttpResponse.BodyHandlers.discarding());
+                if (response.statusCode() == 200) {
+                    return response.statusCode();
+                }
+            } catch (IOException notListeningYet) {
+                // retried below
+            }
+            Thread.sleep(10);
+        }
+        throw new IllegalStateException("no response within " + START_TIMEOUT);
+    }
+
+    private static List<String> java(String classpath, List<String> jvmFlags) {
+        List<String> command = new ArrayList<>();
+        command.add(ProcessHandle.current().info().command().orElse("java"));
+        command.addAll(jvmFlags);
+        command.addAll(List.of(
+                "-cp", classpath,
+                "com.amigoscode.Main",
+                "--server.port=" + PORT,
+                "--spring.profiles.active=fast-startup"
+        ));
+        return command;
+    }
+
+    private static Process start(List<String> command) throws IOException {
+        return new ProcessBuilder(command)
+                .redirectErrorStream(true)
+                .redirectOutput(ProcessBuilder.Redirect.DISCARD)
+                .start();
+    }
+
+    /**
+     * The plain jar the fast-startup profile leaves as the artifact, next to the executable one.
+     */
+    private static Path applicationJar() throws IOException {
+        try (DirectoryStream<Path> jars = Files.newDirectoryStream(TARGET, "*.jar")) {
+            for (Path jar : jars) {
+                if (!jar.getFileName().toString().endsWith("-exec.jar")) {
+                    return jar.toAbsolutePath();
+                }
+            }
+        }
+        throw new IllegalStateException("no application jar in target, run mvn -Pfast-startup -Dcds.skip=true package first");
+    }
+}
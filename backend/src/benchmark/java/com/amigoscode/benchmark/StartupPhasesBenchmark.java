@@ -0,0 +1,60 @@
+package com.amigoscode.benchmark;
+
+import com.amigoscode.Main;
+import com.amigoscode.startup.StartupReport;
+import com.amigoscode.startup.StartupReportEndpoint;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.context.metrics.buffering.BufferingApplicationStartup;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A cold start of the application in its own JVM, up to ready, with the time of each phase
+ * as a secondary result, summed over the forks. The budgets a start is held to are checked by StartupBudgetTest.
+ * Runs against the database configured in application.yml.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 0)
+@Measurement(iterations = 1)
+@Fork(5)
+public class StartupPhasesBenchmark {
+
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class Phases {
+        public long beansMillis;
+        public long datasourcePoolMillis;
+        public long flywayMillis;
+        public long entityManagerFactoryMillis;
+        public long runnersMillis;
+    }
+
+    @Benchmark
+    public StartupReport start(Phases phases) {
+        StartupReport report;
+        try (ConfigurableApplicationContext context = new SpringApplicationBuilder(Main.class)
+                .applicationStartup(new BufferingApplicationStartup(8192))
+                .run("--server.port=0", "--spring.jpa.show-sql=false")) {
+            report = context.getBean(StartupReportEndpoint.class).report();
+        }
+        phases.beansMillis += report.phaseMillis().get("beans");
+        phases.datasourcePoolMillis += report.phaseMillis().get("datasource-pool");
+        phases.flywayMillis += report.phaseMillis().get("flyway");
+        phases.entityManagerFactoryMillis += report.phaseMillis().get("entity-manager-factory");
+        phases.runnersMillis += report.phaseMillis().get("runners");
+        return report;
+    }
+}
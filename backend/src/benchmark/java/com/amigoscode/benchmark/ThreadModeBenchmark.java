@@ -0,0 +1,109 @@
+package com.amigoscode.benchmark;
+
+import com.amigoscode.Main;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Time to serve a burst of concurrent clients reading a page of customers, per threading
+ * mode of the servlet stack and on the reactive stack. Responses turned away with 503 after
+ * waiting out the pool's connection timeout are counted next to the served ones. Runs against the database configured
+ * in application.yml.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ThreadModeBenchmark {
+
+    private static final int CLIENTS = 1_000;
+
+    @Param({"platform-threads", "virtual-threads", "reactive"})
+    public String mode;
+
+    private final HttpClient httpClient = HttpClient.newBuilder()
+            .executor(Executors.newVirtualThreadPerTaskExecutor())
+            .build();
+
+    private ConfigurableApplicationContext context;
+    private HttpRequest page;
+
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class Responses {
+        public long served;
+        public long rejected;
+    }
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        SpringApplicationBuilder application = new SpringApplicationBuilder(Main.class);
+        if (!mode.equals("platform-threads")) {
+            application.profiles(mode);
+        }
+        context = application.run("--server.port=0", "--spring.jpa.show-sql=false");
+        URI customers = URI.create("http://localhost:%s/api/v1/customers".formatted(
+                context.getEnvironment().getProperty("local.server.port")
+        ));
+        httpClient.send(HttpRequest.newBuilder(customers)
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(
+                        """
+                        {"name": "Benchmark", "email": "benchmark-%s@gmail.com", "age": 30}
+                        """.formatted(UUID.randomUUID())))
+                .build(), HttpResponse.BodyHandlers.discarding());
+        page = HttpRequest.newBuilder(URI.create(customers + "?limit=50")).GET().build();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public void concurrentClients(Responses responses) throws Exception {
+        List<Future<Integer>> requests = new ArrayList<>(CLIENTS);
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int i = 0; i < CLIENTS; i++) {
+                requests.add(executor.submit(
+                        () -> httpClient.send(page, HttpResponse.BodyHandlers.discarding()).statusCode()
+                ));
+            }
+        }
+        for (Future<Integer> request : requests) {
+            switch (request.get()) {
+                case 200 -> responses.served++;
+                case 503 -> responses.rejected++;
+                default -> throw new IllegalStateException("unexpected status " + request.get());
+            }
+        }
+    }
+}
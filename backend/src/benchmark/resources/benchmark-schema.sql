@@ -0,0 +1,10 @@
+CREATE SEQUENCE customer_id_seq START WITH 1 INCREMENT BY 50;
+
+CREATE TABLE customer (
+    id INT DEFAULT NEXT VALUE FOR customer_id_seq PRIMARY KEY,
+    name TEXT NOT NULL,
+    email TEXT NOT NULL,
+    age INT NOT NULL,
+    version INT NOT NULL DEFAULT 0,
+    CONSTRAINT customer_email_unique UNIQUE (email)
+);
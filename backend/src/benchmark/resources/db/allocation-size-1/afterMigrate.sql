@@ -0,0 +1,2 @@
+-- the increment customer_id_seq had before V4
+ALTER SEQUENCE customer_id_seq INCREMENT BY 1;
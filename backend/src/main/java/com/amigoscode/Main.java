@@ -6,7 +6,10 @@ import com.github.javafaker.Faker;
 import org.springframework.boot.CommandLineRunner;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.metrics.buffering.BufferingApplicationStartup;
 import org.springframework.context.annotation.Bean;
+import org.springframework.scheduling.annotation.EnableScheduling;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.RequestParam;
@@ -18,13 +21,22 @@ import java.util.Objects;
 import java.util.Random;
 
 @SpringBootApplication
+@EnableScheduling
 public class Main {
 
+    // every step of a start, with room to spare for the 700 or so beans
+    private static final int STARTUP_STEPS = 8192;
+
     public static void main(String[] args) {
-        SpringApplication.run(Main.class, args);
+        SpringApplication application = new SpringApplication(Main.class);
+        // kept for /actuator/startup and /actuator/startupphases
+        application.setApplicationStartup(new BufferingApplicationStartup(STARTUP_STEPS));
+        application.run(args);
     }
 
+    // a random customer per start, for local development only
     @Bean
+    @ConditionalOnProperty(prefix = "customer.seed", name = "enabled", havingValue = "true")
     CommandLineRunner runner(CustomerRepository customerRepository){
         return args -> {
             var faker = new Faker();
@@ -0,0 +1,165 @@
+package com.amigoscode.customer;
+
+import com.amigoscode.datasource.ReadYourWrites;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.amigoscode.datasource.ReadYourWrites;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Read-through cache in front of another {@link CustomerDao}. Customers are cached by id
+ * and indexed by email; only positive answers are cached, so inserts never leave a stale
+ * entry behind and need no invalidation. Updates and deletes evict the affected id, again
+ * after commit when a transaction is active.
+ * <p>
+ * A read-only transaction may be routed to a lagging replica, so misses inside one are
+ * pinned to the primary. The pin only takes when the miss is the transaction's first read,
+ * a customer loaded from a replica is returned but not cached.
+ */
+class CachingCustomerDao extends ForwardingCustomerDao {
+
+    private final Cache<Integer, Customer> customersById;
+    private final Cache<String, Integer> idsByEmail;
+    // bumped on every eviction, a load that raced an eviction is not cached
+    private final AtomicLong evictions = new AtomicLong();
+
+    CachingCustomerDao(CustomerDao delegate, long maximumSize, Duration expireAfterWrite) {
+        super(delegate);
+        this.customersById = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfterWrite(expireAfterWrite)
+                .recordStats()
+                .build();
+        this.idsByEmail = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfterWrite(expireAfterWrite)
+                .recordStats()
+                .build();
+    }
+
+    void bindTo(MeterRegistry meterRegistry) {
+        CaffeineCacheMetrics.monitor(meterRegistry, customersById, "customers.by-id");
+        CaffeineCacheMetrics.monitor(meterRegistry, idsByEmail, "customers.by-email");
+    }
+
+    @Override
+    public Optional<Customer> selectCustomerById(Integer id) {
+        Customer cached = customersById.getIfPresent(id);
+        if (cached != null) {
+            return Optional.of(copyOf(cached));
+        }
+
+        long stamp = evictions.get();
+        Optional<Customer> customer = TransactionSynchronizationManager.isCurrentTransactionReadOnly()
+                ? ReadYourWrites.onPrimary(() -> super.selectCustomerById(id))
+                : super.selectCustomerById(id);
+        if (!ReadYourWrites.isReadingFromReplica()) {
+            customer.ifPresent(c -> cache(c, stamp));
+        }
+        return customer;
+    }
+
+    @Override
+    public Optional<Customer> selectCustomerById(Integer id, Set<CustomerField> fields) {
+        Customer cached = customersById.getIfPresent(id);
+        if (cached != null) {
+            return Optional.of(CustomerField.project(cached, fields));
+        }
+        // partial rows are not cached, the cache only holds whole customers
+        return super.selectCustomerById(id, fields);
+    }
+
+    @Override
+    public Optional<Integer> selectCustomerVersionById(Integer id) {
+        Customer cached = customersById.getIfPresent(id);
+        if (cached != null) {
+            return Optional.of(cached.getVersion());
+        }
+        return super.selectCustomerVersionById(id);
+    }
+
+    @Override
+    public boolean existsPersonWithId(Integer id) {
+        return customersById.getIfPresent(id) != null || super.existsPersonWithId(id);
+    }
+
+    @Override
+    public boolean existsPersonWithEmail(String email) {
+        Integer id = idsByEmail.getIfPresent(email);
+        if (id != null) {
+            Customer cached = customersById.getIfPresent(id);
+            if (cached != null && cached.getEmail().equals(email)) {
+                return true;
+            }
+        }
+        return super.existsPersonWithEmail(email);
+    }
+
+    @Override
+    public boolean deleteCustomerById(Integer id) {
+        boolean deleted = super.deleteCustomerById(id);
+        evictNowAndAfterCommit(id);
+        return deleted;
+    }
+
+    @Override
+    public void deleteCustomerById(Integer id, Integer version) {
+        super.deleteCustomerById(id, version);
+        evictNowAndAfterCommit(id);
+    }
+
+    @Override
+    public void updateCustomer(Customer update) {
+        super.updateCustomer(update);
+        evictNowAndAfterCommit(update.getId());
+    }
+
+    private void cache(Customer customer, long stamp) {
+        Customer copy = copyOf(customer);
+        // computing under the id's lock orders this put against a concurrent evict
+        customersById.asMap().compute(customer.getId(), (id, current) ->
+                evictions.get() == stamp ? copy : current
+        );
+        idsByEmail.put(copy.getEmail(), copy.getId());
+    }
+
+    private void evictNowAndAfterCommit(Integer id) {
+        evict(id);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    evict(id);
+                }
+            });
+        }
+    }
+
+    private void evict(Integer id) {
+        customersById.asMap().compute(id, (key, current) -> {
+            evictions.incrementAndGet();
+            if (current != null) {
+                idsByEmail.asMap().remove(current.getEmail(), key);
+            }
+            return null;
+        });
+    }
+
+    private static Customer copyOf(Customer customer) {
+        return new Customer(
+                customer.getId(),
+                customer.getName(),
+                customer.getEmail(),
+                customer.getAge(),
+                customer.getVersion()
+        );
+    }
+}
@@ -0,0 +1,160 @@
+package com.amigoscode.customer;
+
+import com.amigoscode.datasource.ReadYourWrites;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Lets concurrent lookups of the same id share one call to the wrapped dao: the first
+ * caller loads, the others wait for its result or exception. Nothing is kept once the load
+ * is done, this only collapses a stampede, the cache above does the caching.
+ * <p>
+ * Updates and deletes forget the load in flight for their id, so a lookup arriving after
+ * the write never joins a read that may predate it. Lookups in a read-write transaction
+ * load on their own, they may need to see the transaction's own writes, and so do lookups
+ * in a transaction reading from a replica, whose rows may be older than the primary's.
+ */
+class CoalescingCustomerDao extends ForwardingCustomerDao {
+
+    private final ConcurrentMap<Integer, CompletableFuture<Optional<Customer>>> customersInFlight =
+            new ConcurrentHashMap<>();
+    private final ConcurrentMap<Integer, CompletableFuture<Optional<Integer>>> versionsInFlight =
+            new ConcurrentHashMap<>();
+    private final LongAdder loaded = new LongAdder();
+    private final LongAdder joined = new LongAdder();
+
+    CoalescingCustomerDao(CustomerDao delegate) {
+        super(delegate);
+    }
+
+    void bindTo(MeterRegistry meterRegistry) {
+        lookups("loaded", loaded, meterRegistry);
+        lookups("joined", joined, meterRegistry);
+        Gauge.builder("customer.coalescing.ratio", this, CoalescingCustomerDao::coalescingRatio)
+                .description("Share of lookups that joined a load already in flight")
+                .register(meterRegistry);
+        Gauge.builder("customer.coalescing.in-flight", this,
+                        dao -> dao.customersInFlight.size() + dao.versionsInFlight.size())
+                .description("Loads other lookups can currently join")
+                .register(meterRegistry);
+    }
+
+    @Override
+    public Optional<Customer> selectCustomerById(Integer id) {
+        // every caller gets its own copy, the customer is mutable
+        return coalesce(customersInFlight, id, () -> super.selectCustomerById(id).map(CoalescingCustomerDao::copyOf))
+                .map(CoalescingCustomerDao::copyOf);
+    }
+
+    @Override
+    public Optional<Integer> selectCustomerVersionById(Integer id) {
+        return coalesce(versionsInFlight, id, () -> super.selectCustomerVersionById(id));
+    }
+
+    @Override
+    public void updateCustomer(Customer update) {
+        super.updateCustomer(update);
+        forgetNowAndAfterCommit(update.getId());
+    }
+
+    @Override
+    public boolean deleteCustomerById(Integer id) {
+        boolean deleted = super.deleteCustomerById(id);
+        forgetNowAndAfterCommit(id);
+        return deleted;
+    }
+
+    @Override
+    public void deleteCustomerById(Integer id, Integer version) {
+        super.deleteCustomerById(id, version);
+        forgetNowAndAfterCommit(id);
+    }
+
+    double coalescingRatio() {
+        long joins = joined.sum();
+        long total = loaded.sum() + joins;
+        return total == 0 ? 0 : (double) joins / total;
+    }
+
+    private <T> T coalesce(ConcurrentMap<Integer, CompletableFuture<T>> inFlight, Integer id, Supplier<T> load) {
+        if (TransactionSynchronizationManager.isActualTransactionActive()
+                && !TransactionSynchronizationManager.isCurrentTransactionReadOnly()
+                || ReadYourWrites.isReadingFromReplica()) {
+            return load.get();
+        }
+        CompletableFuture<T> mine = new CompletableFuture<>();
+        CompletableFuture<T> shared = inFlight.putIfAbsent(id, mine);
+        if (shared != null) {
+            joined.increment();
+            return await(shared);
+        }
+        loaded.increment();
+        try {
+            T result = load.get();
+            mine.complete(result);
+            return result;
+        } catch (RuntimeException e) {
+            mine.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(id, mine);
+        }
+    }
+
+    private void forgetNowAndAfterCommit(Integer id) {
+        forget(id);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    forget(id);
+                }
+            });
+        }
+    }
+
+    private void forget(Integer id) {
+        // callers already waiting keep their future, later ones start a fresh load
+        customersInFlight.remove(id);
+        versionsInFlight.remove(id);
+    }
+
+    private static <T> T await(CompletableFuture<T> shared) {
+        try {
+            return shared.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+
+    private static Customer copyOf(Customer customer) {
+        return new Customer(
+                customer.getId(),
+                customer.getName(),
+                customer.getEmail(),
+                customer.getAge(),
+                customer.getVersion()
+        );
+    }
+
+    private static void lookups(String result, LongAdder count, MeterRegistry meterRegistry) {
+        FunctionCounter.builder("customer.coalescing.lookups", count, LongAdder::sum)
+                .description("Lookups by id, by whether they loaded or joined a load in flight")
+                .tag("result", result)
+                .register(meterRegistry);
+    }
+}
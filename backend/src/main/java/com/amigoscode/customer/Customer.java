@@ -1,10 +1,21 @@
 package com.amigoscode.customer;
 
+import com.fasterxml.jackson.annotation.JsonInclude;
 import jakarta.persistence.*;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+import org.hibernate.annotations.DynamicUpdate;
+import org.hibernate.annotations.NaturalId;
+import org.hibernate.annotations.NaturalIdCache;
 
 import java.util.Objects;
 
 @Entity
+@DynamicUpdate
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = "customer")
+@NaturalIdCache(region = "customer-natural-id")
+// fields left out of a projection are null and not serialized
+@JsonInclude(JsonInclude.Include.NON_NULL)
 @Table(
         name = "customer",
         uniqueConstraints = {
@@ -17,10 +28,11 @@ import java.util.Objects;
 public class Customer{
 
     @Id
+    // one nextval reserves a block of 50 ids (pooled-lo), must match the sequence increment
     @SequenceGenerator(
             name = "customer_id_seq",
             sequenceName = "customer_id_seq",
-            allocationSize = 1
+            allocationSize = 50
     )
     @GeneratedValue(
             strategy = GenerationType.SEQUENCE,
@@ -31,6 +43,8 @@ public class Customer{
             nullable = false
     )
     private String name;
+    // customers can change their email
+    @NaturalId(mutable = true)
     @Column(
             nullable = false
     )
@@ -39,7 +53,11 @@ public class Customer{
             nullable = false
     )
     private Integer age;
-
+    @Version
+    @Column(
+            nullable = false
+    )
+    private Integer version;
 
     public Customer() {
     }
@@ -51,6 +69,11 @@ public class Customer{
         this.age = age;
     }
 
+    public Customer(Integer id, String name, String email, Integer age, Integer version) {
+        this(id, name, email, age);
+        this.version = version;
+    }
+
     public Customer( String name, String email, Integer age) {
         this.name = name;
         this.email = email;
@@ -89,6 +112,14 @@ public class Customer{
         this.age = age;
     }
 
+    public Integer getVersion() {
+        return version;
+    }
+
+    public void setVersion(Integer version) {
+        this.version = version;
+    }
+
     @Override
     public String toString() {
         return "Customer{" +
@@ -96,9 +127,11 @@ public class Customer{
                 ", name='" + name + '\'' +
                 ", email='" + email + '\'' +
                 ", age=" + age +
+                ", version=" + version +
                 '}';
     }
 
+    // version is concurrency metadata, not part of the customer's value
     @Override
     public boolean equals(Object o) {
         if (this == o) return true;
@@ -0,0 +1,13 @@
+package com.amigoscode.customer;
+
+public record CustomerBulkRegistrationResult(
+        int index,
+        String email,
+        Status status) {
+
+    public enum Status {
+        CREATED,
+        DUPLICATE,
+        INVALID
+    }
+}
@@ -0,0 +1,114 @@
+package com.amigoscode.customer;
+
+import com.amigoscode.customer.CustomerBulkRegistrationResult.Status;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionOperations;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+@Service
+public class CustomerBulkRegistrationService {
+
+    private final CustomerDao customerDao;
+    private final CustomerStatistics customerStatistics;
+    private final TransactionOperations transactionOperations;
+    private final int chunkSize;
+
+    public CustomerBulkRegistrationService(
+            CustomerDao customerDao,
+            CustomerStatistics customerStatistics,
+            TransactionOperations transactionOperations,
+            @Value("${customer.bulk-registration.chunk-size:1000}") int chunkSize) {
+        if (chunkSize < 1) {
+            throw new IllegalArgumentException("chunk size must be positive but was " + chunkSize);
+        }
+        this.customerDao = customerDao;
+        this.customerStatistics = customerStatistics;
+        this.transactionOperations = transactionOperations;
+        this.chunkSize = chunkSize;
+    }
+
+    /**
+     * Registers the requests chunk by chunk so only one chunk is held in memory,
+     * costing one duplicate lookup and one batched insert per chunk.
+     */
+    public List<CustomerBulkRegistrationResult> addCustomers(Iterator<CustomerRegistrationRequest> requests) {
+        List<CustomerBulkRegistrationResult> results = new ArrayList<>();
+        List<CustomerRegistrationRequest> chunk = new ArrayList<>(chunkSize);
+        while (requests.hasNext()) {
+            chunk.add(requests.next());
+            if (chunk.size() == chunkSize) {
+                results.addAll(addChunk(chunk, results.size()));
+                chunk.clear();
+            }
+        }
+        if (!chunk.isEmpty()) {
+            results.addAll(addChunk(chunk, results.size()));
+        }
+        return results;
+    }
+
+    private List<CustomerBulkRegistrationResult> addChunk(List<CustomerRegistrationRequest> chunk, int offset) {
+        Set<String> emails = chunk.stream()
+                .map(CustomerRegistrationRequest::email)
+                .filter(Objects::nonNull)
+                .collect(Collectors.toSet());
+        Set<String> taken = new HashSet<>(customerDao.selectExistingEmails(emails));
+
+        List<CustomerBulkRegistrationResult> results = new ArrayList<>(chunk.size());
+        List<Customer> customers = new ArrayList<>(chunk.size());
+        for (int i = 0; i < chunk.size(); i++) {
+            CustomerRegistrationRequest request = chunk.get(i);
+            Status status;
+            if (request.name() == null || request.email() == null || request.age() == null) {
+                status = Status.INVALID;
+            } else if (!taken.add(request.email())) {
+                status = Status.DUPLICATE;
+            } else {
+                customers.add(new Customer(request.name(), request.email(), request.age()));
+                status = Status.CREATED;
+            }
+            results.add(new CustomerBulkRegistrationResult(offset + i, request.email(), status));
+        }
+
+        if (customers.isEmpty()) {
+            return results;
+        }
+        try {
+            transactionOperations.executeWithoutResult(tx -> customerDao.insertCustomers(customers));
+        } catch (DataIntegrityViolationException e) {
+            // an email was registered concurrently after the lookup, settle the chunk row by row
+            return addRowByRow(results, customers);
+        }
+        customers.forEach(customer -> customerStatistics.customerAdded(customer.getAge()));
+        return results;
+    }
+
+    private List<CustomerBulkRegistrationResult> addRowByRow(
+            List<CustomerBulkRegistrationResult> results, List<Customer> customers) {
+        Iterator<Customer> pending = customers.iterator();
+        List<CustomerBulkRegistrationResult> settled = new ArrayList<>(results.size());
+        for (CustomerBulkRegistrationResult result : results) {
+            if (result.status() != Status.CREATED) {
+                settled.add(result);
+                continue;
+            }
+            Customer customer = pending.next();
+            if (customerDao.insertCustomerIfAbsent(customer)) {
+                customerStatistics.customerAdded(customer.getAge());
+                settled.add(result);
+            } else {
+                settled.add(new CustomerBulkRegistrationResult(result.index(), result.email(), Status.DUPLICATE));
+            }
+        }
+        return settled;
+    }
+}
@@ -0,0 +1,494 @@
+package com.amigoscode.customer;
+
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.stereotype.Repository;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+
+/**
+ * Memory-efficient in-memory customer store. Every column lives in its own primitive
+ * array indexed by slot, names and emails are packed as UTF-8 into byte arenas, and
+ * ids and emails are looked up through primitive open-addressing indexes, so a row
+ * costs a few ints plus its string bytes instead of a graph of objects.
+ * {@link Customer} objects are only created when rows leave the store.
+ * <p>
+ * Slots are appended in id order, which keeps keyset scans a binary search away.
+ * Deleted slots keep their id negated so the order holds, and are reclaimed together
+ * with replaced arena bytes when more than half of the store is garbage.
+ */
+@Repository("columnar")
+public class CustomerColumnarDataAccessService implements CustomerDao {
+
+    private static final int INITIAL_CAPACITY = 1024;
+    private static final int STREAM_CHUNK_SIZE = 1000;
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    // negative ids mark deleted slots
+    private int[] ids;
+    private int[] ages;
+    private int[] versions;
+    private int[] nameOffsets;
+    private int[] emailOffsets;
+    private Utf8Arena names;
+    private Utf8Arena emails;
+    private IntSlotIndex slotsById;
+    private Utf8SlotIndex slotsByEmail;
+
+    private int slots;
+    private int live;
+    private int lastId;
+
+    public CustomerColumnarDataAccessService() {
+        allocate(INITIAL_CAPACITY);
+    }
+
+    @Override
+    public List<Customer> selectAllCustomer() {
+        return streamAllCustomers().toList();
+    }
+
+    @Override
+    public List<Customer> selectCustomersAfterId(Integer id, int limit) {
+        return selectCustomersAfterId(id, limit, CustomerField.ALL);
+    }
+
+    @Override
+    public List<Customer> selectCustomersAfterId(Integer id, int limit, Set<CustomerField> fields) {
+        return read(() -> {
+            List<Customer> customers = new ArrayList<>(Math.min(limit, live));
+            for (int slot = firstSlotAfter(id); slot < slots && customers.size() < limit; slot++) {
+                if (ids[slot] > 0) {
+                    customers.add(materialize(slot, fields));
+                }
+            }
+            return customers;
+        });
+    }
+
+    @Override
+    public List<Customer> selectCustomers(CustomerQuery query) {
+        boolean idOrder = query.sortBy() == CustomerQuery.SortField.ID && !query.descending();
+        return read(() -> {
+            List<Customer> customers = new ArrayList<>();
+            for (int slot = 0; slot < slots; slot++) {
+                // slots are in id order, so an id-ordered search can stop at the limit
+                if (idOrder && customers.size() == query.limit()) {
+                    break;
+                }
+                // the age bounds are checked on the column before anything is decoded
+                if (ids[slot] <= 0
+                        || (query.minAge() != null && ages[slot] < query.minAge())
+                        || (query.maxAge() != null && ages[slot] > query.maxAge())) {
+                    continue;
+                }
+                Customer customer = materialize(slot);
+                if (query.matches(customer)) {
+                    customers.add(customer);
+                }
+            }
+            if (idOrder) {
+                return customers;
+            }
+            customers.sort(query.comparator());
+            return List.copyOf(customers.subList(0, Math.min(query.limit(), customers.size())));
+        });
+    }
+
+    @Override
+    public Stream<Customer> streamAllCustomers() {
+        // pages by id so the lock is never held while the caller consumes the stream
+        return Stream.iterate(
+                        selectCustomersAfterId(0, STREAM_CHUNK_SIZE),
+                        chunk -> !chunk.isEmpty(),
+                        chunk -> chunk.size() < STREAM_CHUNK_SIZE
+                                ? List.of()
+                                : selectCustomersAfterId(chunk.get(chunk.size() - 1).getId(), STREAM_CHUNK_SIZE)
+                )
+                .flatMap(List::stream);
+    }
+
+    @Override
+    public Stream<String> streamAllEmails() {
+        return streamAllCustomers().map(Customer::getEmail);
+    }
+
+    @Override
+    public Optional<Customer> selectCustomerById(Integer id) {
+        return read(() -> {
+            int slot = slotsById.get(id);
+            return slot == IntSlotIndex.ABSENT ? Optional.empty() : Optional.of(materialize(slot));
+        });
+    }
+
+    @Override
+    public Optional<Customer> selectCustomerById(Integer id, Set<CustomerField> fields) {
+        return read(() -> {
+            int slot = slotsById.get(id);
+            return slot == IntSlotIndex.ABSENT ? Optional.empty() : Optional.of(materialize(slot, fields));
+        });
+    }
+
+    @Override
+    public Optional<Integer> selectCustomerVersionById(Integer id) {
+        return read(() -> {
+            int slot = slotsById.get(id);
+            return slot == IntSlotIndex.ABSENT ? Optional.empty() : Optional.of(versions[slot]);
+        });
+    }
+
+    @Override
+    public void insertCustomer(Customer customer) {
+        insertCustomers(List.of(customer));
+    }
+
+    @Override
+    public boolean insertCustomerIfAbsent(Customer customer) {
+        byte[] name = Utf8Arena.encode(customer.getName());
+        byte[] email = Utf8Arena.encode(customer.getEmail());
+
+        lock.writeLock().lock();
+        try {
+            if (slotOfEmail(email) != IntSlotIndex.ABSENT) {
+                return false;
+            }
+            ensureCapacity(slots + 1);
+            append(customer, name, email);
+            return true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public Set<String> insertCustomersIfAbsent(List<Customer> batch) {
+        Set<String> inserted = new HashSet<>();
+        for (Customer customer : batch) {
+            if (insertCustomerIfAbsent(customer)) {
+                inserted.add(customer.getEmail());
+            }
+        }
+        return inserted;
+    }
+
+    @Override
+    public void insertCustomers(List<Customer> batch) {
+        List<byte[]> encodedNames = new ArrayList<>(batch.size());
+        List<byte[]> encodedEmails = new ArrayList<>(batch.size());
+        for (Customer customer : batch) {
+            encodedNames.add(Utf8Arena.encode(customer.getName()));
+            encodedEmails.add(Utf8Arena.encode(customer.getEmail()));
+        }
+
+        lock.writeLock().lock();
+        try {
+            // check the whole batch first so it is inserted all or nothing
+            Set<String> batchEmails = new HashSet<>();
+            for (int i = 0; i < batch.size(); i++) {
+                String email = batch.get(i).getEmail();
+                if (!batchEmails.add(email) || slotOfEmail(encodedEmails.get(i)) != IntSlotIndex.ABSENT) {
+                    throw new DuplicateKeyException("email [%s] already exists".formatted(email));
+                }
+            }
+
+            ensureCapacity(slots + batch.size());
+            for (int i = 0; i < batch.size(); i++) {
+                append(batch.get(i), encodedNames.get(i), encodedEmails.get(i));
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public boolean existsPersonWithEmail(String email) {
+        byte[] encoded = email.getBytes(StandardCharsets.UTF_8);
+        return read(() -> slotOfEmail(encoded) != IntSlotIndex.ABSENT);
+    }
+
+    @Override
+    public Set<String> selectExistingEmails(Collection<String> emails) {
+        return read(() -> {
+            Set<String> existing = new HashSet<>();
+            for (String email : emails) {
+                if (slotOfEmail(email.getBytes(StandardCharsets.UTF_8)) != IntSlotIndex.ABSENT) {
+                    existing.add(email);
+                }
+            }
+            return existing;
+        });
+    }
+
+    @Override
+    public boolean deleteCustomerById(Integer id) {
+        lock.writeLock().lock();
+        try {
+            int slot = slotsById.get(id);
+            if (slot == IntSlotIndex.ABSENT) {
+                return false;
+            }
+            delete(id, slot);
+            return true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void deleteCustomerById(Integer id, Integer version) {
+        lock.writeLock().lock();
+        try {
+            int slot = slotsById.get(id);
+            if (slot == IntSlotIndex.ABSENT || version == null || versions[slot] != version) {
+                throw staleVersion(id, version);
+            }
+            delete(id, slot);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // under the write lock
+    private void delete(int id, int slot) {
+        slotsById.remove(id);
+        slotsByEmail.remove(emails.hashAt(emailOffsets[slot]), slot);
+        names.release(nameOffsets[slot]);
+        emails.release(emailOffsets[slot]);
+        ids[slot] = -id;
+        live--;
+        compactIfWasteful();
+    }
+
+    @Override
+    public boolean existsPersonWithId(Integer id) {
+        return read(() -> slotsById.get(id) != IntSlotIndex.ABSENT);
+    }
+
+    @Override
+    public void updateCustomer(Customer update) {
+        if (update.getName() == null && update.getEmail() == null && update.getAge() == null) {
+            return;
+        }
+        byte[] newName = update.getName() != null ? Utf8Arena.encode(update.getName()) : null;
+        byte[] newEmail = update.getEmail() != null ? Utf8Arena.encode(update.getEmail()) : null;
+
+        lock.writeLock().lock();
+        try {
+            int slot = slotsById.get(update.getId());
+            if (slot == IntSlotIndex.ABSENT) {
+                if (update.getVersion() != null) {
+                    throw staleVersion(update);
+                }
+                return;
+            }
+            if (update.getVersion() != null && update.getVersion() != versions[slot]) {
+                throw staleVersion(update);
+            }
+
+            if (newEmail != null && !emails.equalsAt(emailOffsets[slot], newEmail)) {
+                if (slotOfEmail(newEmail) != IntSlotIndex.ABSENT) {
+                    throw new DuplicateKeyException(
+                            "email [%s] already exists".formatted(update.getEmail())
+                    );
+                }
+                slotsByEmail.remove(emails.hashAt(emailOffsets[slot]), slot);
+                emails.release(emailOffsets[slot]);
+                emailOffsets[slot] = emails.append(newEmail);
+                slotsByEmail.add(Utf8SlotIndex.hash(newEmail), slot);
+            }
+            if (newName != null) {
+                names.release(nameOffsets[slot]);
+                nameOffsets[slot] = names.append(newName);
+            }
+            if (update.getAge() != null) {
+                ages[slot] = update.getAge();
+            }
+            versions[slot]++;
+
+            if (update.getVersion() != null) {
+                update.setVersion(versions[slot]);
+            }
+            compactIfWasteful();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public Map<Integer, Long> selectAgeCounts() {
+        return read(() -> {
+            Map<Integer, Long> counts = new HashMap<>();
+            for (int slot = 0; slot < slots; slot++) {
+                if (ids[slot] > 0) {
+                    counts.merge(ages[slot], 1L, Long::sum);
+                }
+            }
+            return counts;
+        });
+    }
+
+    /**
+     * Bytes held by the columns, arenas and indexes, excluding the fixed size of
+     * the store object itself.
+     */
+    public long footprintBytes() {
+        return read(() -> 4L * (ids.length + ages.length + versions.length + nameOffsets.length + emailOffsets.length)
+                + names.footprintBytes()
+                + emails.footprintBytes()
+                + slotsById.footprintBytes()
+                + slotsByEmail.footprintBytes());
+    }
+
+    public int size() {
+        return read(() -> live);
+    }
+
+    // callers hold the write lock, checked the email and ensured capacity
+    private void append(Customer customer, byte[] name, byte[] email) {
+        int slot = slots++;
+        int id = ++lastId;
+
+        ids[slot] = id;
+        ages[slot] = customer.getAge();
+        versions[slot] = 0;
+        nameOffsets[slot] = names.append(name);
+        emailOffsets[slot] = emails.append(email);
+        slotsById.put(id, slot);
+        slotsByEmail.add(Utf8SlotIndex.hash(email), slot);
+        live++;
+
+        customer.setId(id);
+        customer.setVersion(0);
+    }
+
+    private Customer materialize(int slot) {
+        return new Customer(
+                ids[slot],
+                names.read(nameOffsets[slot]),
+                emails.read(emailOffsets[slot]),
+                ages[slot],
+                versions[slot]
+        );
+    }
+
+    // columns left out are not decoded at all
+    private Customer materialize(int slot, Set<CustomerField> fields) {
+        return new Customer(
+                ids[slot],
+                fields.contains(CustomerField.NAME) ? names.read(nameOffsets[slot]) : null,
+                fields.contains(CustomerField.EMAIL) ? emails.read(emailOffsets[slot]) : null,
+                fields.contains(CustomerField.AGE) ? ages[slot] : null,
+                versions[slot]
+        );
+    }
+
+    private int slotOfEmail(byte[] email) {
+        return slotsByEmail.get(email, Utf8SlotIndex.hash(email), emails, emailOffsets);
+    }
+
+    private int firstSlotAfter(int id) {
+        int low = 0;
+        int high = slots;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (Math.abs(ids[mid]) <= id) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    private void ensureCapacity(int required) {
+        if (required <= ids.length) {
+            return;
+        }
+        int capacity = Math.max(required, ids.length + (ids.length >> 1));
+        ids = Arrays.copyOf(ids, capacity);
+        ages = Arrays.copyOf(ages, capacity);
+        versions = Arrays.copyOf(versions, capacity);
+        nameOffsets = Arrays.copyOf(nameOffsets, capacity);
+        emailOffsets = Arrays.copyOf(emailOffsets, capacity);
+    }
+
+    private void compactIfWasteful() {
+        boolean slotsWasted = slots - live > live;
+        boolean bytesWasted = names.garbage() + emails.garbage() > (names.used() + emails.used()) / 2;
+        if (slots >= INITIAL_CAPACITY && (slotsWasted || bytesWasted)) {
+            compact();
+        }
+    }
+
+    private void compact() {
+        int[] oldIds = ids;
+        int[] oldAges = ages;
+        int[] oldVersions = versions;
+        int[] oldNameOffsets = nameOffsets;
+        int[] oldEmailOffsets = emailOffsets;
+        Utf8Arena oldNames = names;
+        Utf8Arena oldEmails = emails;
+        int oldSlots = slots;
+
+        allocate(Math.max(live + (live >> 1), INITIAL_CAPACITY));
+        for (int oldSlot = 0; oldSlot < oldSlots; oldSlot++) {
+            if (oldIds[oldSlot] <= 0) {
+                continue;
+            }
+            int slot = slots++;
+            ids[slot] = oldIds[oldSlot];
+            ages[slot] = oldAges[oldSlot];
+            versions[slot] = oldVersions[oldSlot];
+            nameOffsets[slot] = names.copy(oldNames, oldNameOffsets[oldSlot]);
+            emailOffsets[slot] = emails.copy(oldEmails, oldEmailOffsets[oldSlot]);
+            slotsById.put(ids[slot], slot);
+            slotsByEmail.add(emails.hashAt(emailOffsets[slot]), slot);
+        }
+    }
+
+    private void allocate(int capacity) {
+        ids = new int[capacity];
+        ages = new int[capacity];
+        versions = new int[capacity];
+        nameOffsets = new int[capacity];
+        emailOffsets = new int[capacity];
+        names = new Utf8Arena(capacity * 8);
+        emails = new Utf8Arena(capacity * 16);
+        slotsById = new IntSlotIndex(capacity);
+        slotsByEmail = new Utf8SlotIndex(capacity);
+        slots = 0;
+    }
+
+    private <T> T read(Supplier<T> reader) {
+        lock.readLock().lock();
+        try {
+            return reader.get();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private static OptimisticLockingFailureException staleVersion(Customer update) {
+        return staleVersion(update.getId(), update.getVersion());
+    }
+
+    private static OptimisticLockingFailureException staleVersion(Integer id, Integer version) {
+        return new OptimisticLockingFailureException(
+                "customer with id [%s] and version [%s] not found".formatted(id, version)
+        );
+    }
+}
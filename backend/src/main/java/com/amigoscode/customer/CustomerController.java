@@ -1,28 +1,123 @@
 package com.amigoscode.customer;
 
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import jakarta.servlet.ServletOutputStream;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
 import java.util.List;
+import java.util.Set;
 
 @RestController
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
 @RequestMapping("api/v1/customers")
 public class CustomerController {
 
+    private static final String SMILE_VALUE = "application/x-jackson-smile";
+
     private final CustomerService customerService;
+    private final CustomerBulkRegistrationService customerBulkRegistrationService;
+    private final ObjectWriter customerWriter;
+    private final ObjectReader registrationRequestReader;
+    private final ObjectReader cborRegistrationRequestReader;
+    private final ObjectReader smileRegistrationRequestReader;
 
-    public CustomerController(CustomerService customerService) {
+    public CustomerController(CustomerService customerService,
+                              CustomerBulkRegistrationService customerBulkRegistrationService,
+                              ObjectMapper objectMapper) {
         this.customerService = customerService;
+        this.customerBulkRegistrationService = customerBulkRegistrationService;
+        this.customerWriter = objectMapper.writerFor(Customer.class);
+        this.registrationRequestReader = objectMapper.readerFor(CustomerRegistrationRequest.class);
+        this.cborRegistrationRequestReader = objectMapper.copyWith(new CBORFactory())
+                .readerFor(CustomerRegistrationRequest.class);
+        this.smileRegistrationRequestReader = objectMapper.copyWith(new SmileFactory())
+                .readerFor(CustomerRegistrationRequest.class);
     }
 
     @GetMapping
-    public List<Customer> getCustomers() {
-        return customerService.getAllCustomers();
+    public CustomerPage getCustomers(
+            @RequestParam(value = "cursor", required = false) String cursor,
+            @RequestParam(value = "limit", defaultValue = "50") int limit,
+            @RequestParam(value = "fields", required = false) String fields,
+            WebRequest request) {
+        Set<CustomerField> selected = CustomerField.parse(fields);
+        CustomerPage page = customerService.getCustomers(cursor, limit, selected);
+        if (request.checkNotModified(CustomerETag.of(page.customers(), page.next(), selected))) {
+            return null;
+        }
+        return page;
+    }
+
+    @GetMapping(params = "all=true")
+    public List<Customer> getAllCustomers(WebRequest request) {
+        List<Customer> customers = customerService.getAllCustomers();
+        if (request.checkNotModified(CustomerETag.of(customers, null))) {
+            return null;
+        }
+        return customers;
+    }
+
+    @GetMapping("stats")
+    public CustomerStats getCustomerStats(){
+        return customerService.getCustomerStats();
+    }
+
+    @GetMapping("search")
+    public List<Customer> searchCustomers(CustomerSearchRequest searchRequest){
+        return customerService.searchCustomers(searchRequest);
+    }
+
+    @GetMapping(value = "export", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public void exportCustomers(HttpServletResponse response) throws IOException {
+        response.setContentType(MediaType.APPLICATION_NDJSON_VALUE);
+        ServletOutputStream out = response.getOutputStream();
+        try {
+            customerService.exportCustomers(customer -> {
+                try {
+                    out.write(customerWriter.writeValueAsBytes(customer));
+                    out.write('\n');
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
     }
 
     @GetMapping("{customerId}")
-    public Customer getCustomer(
-            @PathVariable("customerId") Integer customerId){
-        return customerService.getCustomerById(customerId);
+    public ResponseEntity<Customer> getCustomer(
+            @PathVariable("customerId") Integer customerId,
+            @RequestParam(value = "fields", required = false) String fields,
+            WebRequest request){
+        Set<CustomerField> selected = CustomerField.parse(fields);
+        // revalidation only needs the version, not the row
+        String ifNoneMatch = request.getHeader(HttpHeaders.IF_NONE_MATCH);
+        if (ifNoneMatch != null) {
+            String eTag = CustomerETag.of(customerService.getCustomerVersion(customerId), selected);
+            if (CustomerETag.matchesAny(ifNoneMatch, eTag)) {
+                return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(eTag).build();
+            }
+        }
+        Customer customer = customerService.getCustomerById(customerId, selected);
+        return ResponseEntity.ok()
+                .eTag(CustomerETag.of(customer.getVersion(), selected))
+                .body(customer);
     }
 
     @RequestMapping
@@ -31,16 +126,43 @@ public class CustomerController {
         customerService.addCustomer(request);
     }
 
+    @PostMapping(value = "bulk", consumes = {
+            MediaType.APPLICATION_JSON_VALUE,
+            MediaType.APPLICATION_CBOR_VALUE,
+            SMILE_VALUE
+    })
+    public List<CustomerBulkRegistrationResult> registerCustomers(
+            @RequestHeader(HttpHeaders.CONTENT_TYPE) MediaType contentType,
+            InputStream body) throws IOException {
+        // reads the array element by element instead of binding it as a whole
+        try (MappingIterator<CustomerRegistrationRequest> requests =
+                     registrationRequestReader(contentType).readValues(body)) {
+            return customerBulkRegistrationService.addCustomers(requests);
+        }
+    }
+
     @DeleteMapping("{customerId}")
     public void deleteCustomer(
-            @PathVariable("customerId") Integer customerId){
-        customerService.deleteCustomerById(customerId);
+            @PathVariable("customerId") Integer customerId,
+            @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch){
+        customerService.deleteCustomerById(customerId, CustomerETag.parseIfMatch(ifMatch));
     }
 
     @PutMapping("{customerId}")
     public void updateCustomer(
             @PathVariable("customerId") Integer customerId,
+            @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch,
             @RequestBody CustomerUpdateRequest updateRequest){
-        customerService.updateCustomer(customerId, updateRequest);
+        customerService.updateCustomer(customerId, updateRequest, CustomerETag.parseIfMatch(ifMatch));
+    }
+
+    private ObjectReader registrationRequestReader(MediaType contentType) {
+        if (MediaType.APPLICATION_CBOR.equalsTypeAndSubtype(contentType)) {
+            return cborRegistrationRequestReader;
+        }
+        if (MediaType.valueOf(SMILE_VALUE).equalsTypeAndSubtype(contentType)) {
+            return smileRegistrationRequestReader;
+        }
+        return registrationRequestReader;
     }
 }
@@ -0,0 +1,38 @@
+package com.amigoscode.customer;
+
+import com.amigoscode.exception.RequestValidationException;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+/**
+ * Opaque keyset cursor handed out as {@link CustomerPage#next()}.
+ * It only wraps the last id of a page, clients must not rely on its format.
+ */
+final class CustomerCursor {
+
+    private static final String PREFIX = "id:";
+
+    private CustomerCursor() {
+    }
+
+    static String encode(int lastId) {
+        return Base64.getUrlEncoder()
+                .withoutPadding()
+                .encodeToString((PREFIX + lastId).getBytes(StandardCharsets.UTF_8));
+    }
+
+    static int decode(String cursor) {
+        try {
+            String value = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            if (!value.startsWith(PREFIX)) {
+                throw new IllegalArgumentException(value);
+            }
+            return Integer.parseInt(value.substring(PREFIX.length()));
+        } catch (IllegalArgumentException e) {
+            throw new RequestValidationException(
+                    "invalid cursor [%s]".formatted(cursor)
+            );
+        }
+    }
+}
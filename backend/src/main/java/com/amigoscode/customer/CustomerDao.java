@@ -2,17 +2,36 @@ package com.amigoscode.customer;
 
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.stream.Stream;
 
 
 public interface CustomerDao {
     List<Customer> selectAllCustomer();
+    List<Customer> selectCustomersAfterId(Integer id, int limit);
+    List<Customer> selectCustomersAfterId(Integer id, int limit, Set<CustomerField> fields);
+    List<Customer> selectCustomers(CustomerQuery query);
+    Stream<Customer> streamAllCustomers();
+    Stream<String> streamAllEmails();
     Optional<Customer> selectCustomerById(Integer id);
+    Optional<Customer> selectCustomerById(Integer id, Set<CustomerField> fields);
+    Optional<Integer> selectCustomerVersionById(Integer id);
     void insertCustomer(Customer customer);
+    void insertCustomers(List<Customer> customers);
+    boolean insertCustomerIfAbsent(Customer customer);
+    Set<String> insertCustomersIfAbsent(List<Customer> customers);
     boolean existsPersonWithEmail(String email);
-    void deleteCustomerById(Integer id);
+    Set<String> selectExistingEmails(Collection<String> emails);
+    // whether there was a customer with that id to delete
+    boolean deleteCustomerById(Integer id);
+    // fails with an OptimisticLockingFailureException unless the customer is at that version
+    void deleteCustomerById(Integer id, Integer version);
     boolean existsPersonWithId(Integer id);
     void updateCustomer(Customer update);
+    Map<Integer, Long> selectAgeCounts();
 
 }
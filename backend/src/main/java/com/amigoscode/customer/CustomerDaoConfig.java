@@ -0,0 +1,87 @@
+package com.amigoscode.customer;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.BeanFactory;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.transaction.support.TransactionOperations;
+
+import java.time.Clock;
+
+@Configuration
+@EnableConfigurationProperties(CustomerDaoProperties.class)
+public class CustomerDaoConfig {
+
+    /**
+     * The dao the services use: the backend named by {@code customer.dao.backend}
+     * ({@code jdbc}, {@code jpa}, {@code list} or {@code columnar}) wrapped in the enabled decorators.
+     */
+    @Bean
+    @Primary
+    public CustomerDao customerDao(BeanFactory beanFactory,
+                                   CustomerDaoProperties properties,
+                                   TransactionOperations transactionOperations,
+                                   MeterRegistry meterRegistry) {
+        CustomerDao customerDao = beanFactory.getBean(properties.backend(), CustomerDao.class);
+
+        if (properties.metrics().enabled()) {
+            customerDao = new InstrumentedCustomerDao(customerDao, properties.backend(), meterRegistry);
+        }
+
+        // beneath the cache, so only misses are coalesced
+        if (properties.coalescing().enabled()) {
+            CoalescingCustomerDao coalescingCustomerDao = new CoalescingCustomerDao(customerDao);
+            coalescingCustomerDao.bindTo(meterRegistry);
+            customerDao = coalescingCustomerDao;
+        }
+
+        CustomerDaoProperties.Cache cache = properties.cache();
+        if (cache.enabled()) {
+            CachingCustomerDao cachingCustomerDao = new CachingCustomerDao(
+                    customerDao, cache.maximumSize(), cache.expireAfterWrite()
+            );
+            cachingCustomerDao.bindTo(meterRegistry);
+            customerDao = cachingCustomerDao;
+        }
+
+        // above the cache and the timers, which then see one call per batch
+        CustomerDaoProperties.WriteBehind writeBehind = properties.writeBehind();
+        if (writeBehind.enabled()) {
+            WriteBehindCustomerDao writeBehindCustomerDao = new WriteBehindCustomerDao(
+                    customerDao,
+                    writeBehind.maxBatchSize(),
+                    writeBehind.maxDelay(),
+                    writeBehind.queueCapacity()
+            );
+            writeBehindCustomerDao.bindTo(meterRegistry);
+            customerDao = writeBehindCustomerDao;
+        }
+
+        // outermost, so lookups it rules out never reach the cache, the timers or the backend
+        CustomerDaoProperties.EmailFilter emailFilter = properties.emailFilter();
+        if (emailFilter.enabled()) {
+            EmailFilteringCustomerDao emailFilteringCustomerDao = new EmailFilteringCustomerDao(
+                    customerDao,
+                    transactionOperations,
+                    emailFilter.initialCapacity(),
+                    emailFilter.falsePositiveRate(),
+                    Clock.systemUTC()
+            );
+            emailFilteringCustomerDao.bindTo(meterRegistry);
+            customerDao = emailFilteringCustomerDao;
+        }
+
+        return customerDao;
+    }
+
+    @Bean
+    @ConditionalOnProperty(prefix = "customer.dao.email-filter", name = "enabled", havingValue = "true")
+    public EmailFilterEndpoint emailFilterEndpoint(CustomerDao customerDao, CustomerDaoProperties properties) {
+        return new EmailFilterEndpoint(
+                (EmailFilteringCustomerDao) customerDao, properties.emailFilter().rebuildStaleRatio()
+        );
+    }
+}
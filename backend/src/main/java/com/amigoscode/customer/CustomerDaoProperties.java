@@ -0,0 +1,52 @@
+package com.amigoscode.customer;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+import java.time.Duration;
+
+@ConfigurationProperties(prefix = "customer.dao")
+public record CustomerDaoProperties(
+        @DefaultValue("jpa") String backend,
+        @DefaultValue Cache cache,
+        @DefaultValue Metrics metrics,
+        @DefaultValue Coalescing coalescing,
+        @DefaultValue EmailFilter emailFilter,
+        @DefaultValue WriteBehind writeBehind) {
+
+    public record Cache(
+            @DefaultValue("false") boolean enabled,
+            @DefaultValue("10000") long maximumSize,
+            @DefaultValue("5m") Duration expireAfterWrite) {
+    }
+
+    public record Metrics(
+            @DefaultValue("true") boolean enabled) {
+    }
+
+    public record Coalescing(
+            @DefaultValue("false") boolean enabled) {
+    }
+
+    /**
+     * @param initialCapacity   emails the first slice holds before the filter grows
+     * @param rebuildStaleRatio stale entries, as a share of all entries, that trigger a rebuild
+     */
+    public record EmailFilter(
+            @DefaultValue("false") boolean enabled,
+            @DefaultValue("100000") long initialCapacity,
+            @DefaultValue("0.01") double falsePositiveRate,
+            @DefaultValue("0.25") double rebuildStaleRatio) {
+    }
+
+    /**
+     * @param maxDelay      how long the first insert of a batch waits for others to join it
+     * @param queueCapacity inserts waiting at most, beyond it callers insert on their own
+     */
+    public record WriteBehind(
+            @DefaultValue("false") boolean enabled,
+            @DefaultValue("500") int maxBatchSize,
+            @DefaultValue("2ms") Duration maxDelay,
+            @DefaultValue("10000") int queueCapacity) {
+    }
+}
@@ -0,0 +1,102 @@
+package com.amigoscode.customer;
+
+import com.amigoscode.exception.PreconditionFailedException;
+import org.springframework.util.DigestUtils;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Strong entity tags for customer representations. A single customer is tagged with
+ * its row version so the tag can be checked without reading or serializing the row,
+ * lists are tagged with a hash over the ids and versions they contain. A {@code fields=}
+ * projection is a different representation and gets a tag of its own, with the fields
+ * folded in.
+ */
+final class CustomerETag {
+
+    private CustomerETag() {
+    }
+
+    static String of(int version) {
+        return of(version, CustomerField.ALL);
+    }
+
+    /**
+     * {@code "<version>"} for the whole customer, {@code "<version>-<fields hash>"} for a projection.
+     */
+    static String of(int version, Set<CustomerField> fields) {
+        if (fields.equals(CustomerField.ALL)) {
+            return "\"" + version + "\"";
+        }
+        return "\"" + version + "-" + md5(fieldList(fields)).substring(0, 8) + "\"";
+    }
+
+    static String of(List<Customer> customers, String next) {
+        return of(customers, next, CustomerField.ALL);
+    }
+
+    static String of(List<Customer> customers, String next, Set<CustomerField> fields) {
+        StringBuilder content = new StringBuilder();
+        for (Customer customer : customers) {
+            content.append(customer.getId()).append(':').append(customer.getVersion()).append(';');
+        }
+        content.append(next);
+        if (!fields.equals(CustomerField.ALL)) {
+            content.append('|').append(fieldList(fields));
+        }
+        return "\"" + md5(content.toString()) + "\"";
+    }
+
+    private static String fieldList(Set<CustomerField> fields) {
+        // in declaration order, the same projection always hashes the same
+        return CustomerField.selected(fields).stream()
+                .map(CustomerField::column)
+                .collect(Collectors.joining(","));
+    }
+
+    private static String md5(String content) {
+        return DigestUtils.md5DigestAsHex(content.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Weak comparison as required for {@code If-None-Match}.
+     */
+    static boolean matchesAny(String ifNoneMatch, String eTag) {
+        for (String candidate : ifNoneMatch.split(",")) {
+            String tag = candidate.trim();
+            if (tag.startsWith("W/")) {
+                tag = tag.substring(2);
+            }
+            if (tag.equals("*") || tag.equals(eTag)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return the version an {@code If-Match} header requires, or {@code null} when any version will do
+     */
+    static Integer parseIfMatch(String ifMatch) {
+        if (ifMatch == null || ifMatch.trim().equals("*")) {
+            return null;
+        }
+        String tag = ifMatch.trim();
+        // weak tags never match under the strong comparison If-Match requires
+        if (tag.length() < 3 || !tag.startsWith("\"") || !tag.endsWith("\"")) {
+            throw new PreconditionFailedException(
+                    "If-Match [%s] does not match any version".formatted(ifMatch)
+            );
+        }
+        try {
+            return Integer.parseInt(tag.substring(1, tag.length() - 1));
+        } catch (NumberFormatException e) {
+            throw new PreconditionFailedException(
+                    "If-Match [%s] does not match any version".formatted(ifMatch)
+            );
+        }
+    }
+}
@@ -0,0 +1,82 @@
+package com.amigoscode.customer;
+
+import com.amigoscode.exception.RequestValidationException;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.Locale;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * The customer fields a read can be limited to with {@code fields=name,age}. The property
+ * and the column share the name. Id and version are always read, cursors and entity tags
+ * are built from them, every other field left out stays {@code null} and is not serialized.
+ */
+public enum CustomerField {
+    ID,
+    NAME,
+    EMAIL,
+    AGE,
+    VERSION;
+
+    static final Set<CustomerField> ALL = Collections.unmodifiableSet(EnumSet.allOf(CustomerField.class));
+
+    public String column() {
+        return name().toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * @param fields comma separated field names, all fields when {@code null} or blank
+     */
+    static Set<CustomerField> parse(String fields) {
+        if (fields == null || fields.isBlank()) {
+            return ALL;
+        }
+        Set<CustomerField> parsed = EnumSet.of(ID, VERSION);
+        for (String field : fields.split(",")) {
+            try {
+                parsed.add(valueOf(field.trim().toUpperCase(Locale.ROOT)));
+            } catch (IllegalArgumentException e) {
+                throw new RequestValidationException(
+                        "fields must be a comma separated list of %s".formatted(
+                                Arrays.stream(values()).map(CustomerField::column).collect(Collectors.joining(", "))
+                        )
+                );
+            }
+        }
+        return parsed.equals(ALL) ? ALL : Collections.unmodifiableSet(parsed);
+    }
+
+    /**
+     * The fields to read for a projection: the requested ones plus id and version.
+     */
+    static Set<CustomerField> selected(Set<CustomerField> fields) {
+        Set<CustomerField> selected = EnumSet.of(ID, VERSION);
+        selected.addAll(fields);
+        return selected;
+    }
+
+    /**
+     * The selected columns for a SQL select list. Names come from the enum, never from the request.
+     */
+    static String selectList(Set<CustomerField> fields) {
+        return selected(fields).stream()
+                .map(CustomerField::column)
+                .collect(Collectors.joining(", "));
+    }
+
+    /**
+     * A copy of the customer with only the given fields, for stores that hold whole rows.
+     */
+    static Customer project(Customer customer, Set<CustomerField> fields) {
+        return new Customer(
+                customer.getId(),
+                fields.contains(NAME) ? customer.getName() : null,
+                fields.contains(EMAIL) ? customer.getEmail() : null,
+                fields.contains(AGE) ? customer.getAge() : null,
+                customer.getVersion()
+        );
+    }
+}
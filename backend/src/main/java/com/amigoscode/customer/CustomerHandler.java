@@ -0,0 +1,173 @@
+package com.amigoscode.customer;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.util.MimeTypeUtils;
+import org.springframework.web.reactive.function.server.ServerRequest;
+import org.springframework.web.reactive.function.server.ServerResponse;
+import org.springframework.web.server.ServerWebInputException;
+import reactor.core.publisher.Mono;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Handler functions behind {@link CustomerReactiveConfig#customerRoutes}, one per
+ * {@link CustomerController} route.
+ */
+class CustomerHandler {
+
+    // functional responses take the first writer that can write the body, whatever the client
+    // accepts, so the binary formats have to be picked here
+    private static final List<MediaType> NEGOTIABLE = List.of(
+            MediaType.APPLICATION_JSON,
+            MediaType.APPLICATION_CBOR,
+            MediaType.valueOf("application/x-jackson-smile")
+    );
+
+    private final ReactiveCustomerService customerService;
+
+    CustomerHandler(ReactiveCustomerService customerService) {
+        this.customerService = customerService;
+    }
+
+    Mono<ServerResponse> getCustomers(ServerRequest request) {
+        String cursor = request.queryParam("cursor").orElse(null);
+        int limit = request.queryParam("limit").map(value -> parseInt("limit", value)).orElse(50);
+        return Mono.fromCallable(() -> fields(request))
+                .flatMap(fields -> customerService.getCustomers(cursor, limit, fields)
+                        .flatMap(page -> {
+                            String eTag = CustomerETag.of(page.customers(), page.next(), fields);
+                            if (notModified(request, eTag)) {
+                                return ServerResponse.status(HttpStatus.NOT_MODIFIED).eTag(eTag).build();
+                            }
+                            return ServerResponse.ok().contentType(negotiate(request)).eTag(eTag).bodyValue(page);
+                        }));
+    }
+
+    Mono<ServerResponse> getAllCustomers(ServerRequest request) {
+        // written as a JSON array element by element, at the pace the client reads
+        return ServerResponse.ok()
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(customerService.getAllCustomers(), Customer.class);
+    }
+
+    Mono<ServerResponse> exportCustomers(ServerRequest request) {
+        return ServerResponse.ok()
+                .contentType(MediaType.APPLICATION_NDJSON)
+                .body(customerService.getAllCustomers(), Customer.class);
+    }
+
+    Mono<ServerResponse> searchCustomers(ServerRequest request) {
+        CustomerSearchRequest searchRequest = new CustomerSearchRequest(
+                request.queryParam("namePrefix").orElse(null),
+                request.queryParam("emailDomain").orElse(null),
+                request.queryParam("minAge").map(value -> parseInt("minAge", value)).orElse(null),
+                request.queryParam("maxAge").map(value -> parseInt("maxAge", value)).orElse(null),
+                request.queryParam("sort").orElse(null),
+                request.queryParam("limit").map(value -> parseInt("limit", value)).orElse(null)
+        );
+        return customerService.searchCustomers(searchRequest)
+                .collectList()
+                .flatMap(customers -> ServerResponse.ok().contentType(negotiate(request)).bodyValue(customers));
+    }
+
+    Mono<ServerResponse> getCustomerStats(ServerRequest request) {
+        return customerService.getCustomerStats()
+                .flatMap(stats -> ServerResponse.ok().contentType(negotiate(request)).bodyValue(stats));
+    }
+
+    Mono<ServerResponse> getCustomer(ServerRequest request) {
+        int customerId = customerId(request);
+        // revalidation only needs the version, not the row
+        if (request.headers().firstHeader(HttpHeaders.IF_NONE_MATCH) != null) {
+            return Mono.fromCallable(() -> fields(request))
+                    .flatMap(fields -> customerService.getCustomerVersion(customerId)
+                            .map(version -> CustomerETag.of(version, fields)))
+                    .flatMap(eTag -> notModified(request, eTag)
+                            ? ServerResponse.status(HttpStatus.NOT_MODIFIED).eTag(eTag).build()
+                            : customerResponse(customerId, request));
+        }
+        return customerResponse(customerId, request);
+    }
+
+    Mono<ServerResponse> registerCustomer(ServerRequest request) {
+        return request.bodyToMono(CustomerRegistrationRequest.class)
+                .flatMap(customerService::addCustomer)
+                .then(ServerResponse.ok().build());
+    }
+
+    Mono<ServerResponse> registerCustomers(ServerRequest request) {
+        // the JSON array is decoded element by element and registered chunk by chunk
+        return ServerResponse.ok()
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(
+                        customerService.addCustomers(request.bodyToFlux(CustomerRegistrationRequest.class)),
+                        CustomerBulkRegistrationResult.class
+                );
+    }
+
+    Mono<ServerResponse> deleteCustomer(ServerRequest request) {
+        // deferred so a malformed If-Match becomes an error signal rather than a thrown exception
+        return Mono.defer(() -> customerService.deleteCustomerById(customerId(request), ifMatch(request)))
+                .then(ServerResponse.ok().build());
+    }
+
+    Mono<ServerResponse> updateCustomer(ServerRequest request) {
+        return request.bodyToMono(CustomerUpdateRequest.class)
+                .flatMap(updateRequest -> customerService.updateCustomer(
+                        customerId(request), updateRequest, ifMatch(request)
+                ))
+                .then(ServerResponse.ok().build());
+    }
+
+    private Mono<ServerResponse> customerResponse(int customerId, ServerRequest request) {
+        return Mono.fromCallable(() -> fields(request))
+                .flatMap(fields -> customerService.getCustomerById(customerId, fields)
+                        .flatMap(customer -> ServerResponse.ok()
+                                .contentType(negotiate(request))
+                                .eTag(CustomerETag.of(customer.getVersion(), fields))
+                                .bodyValue(customer)));
+    }
+
+    private static boolean notModified(ServerRequest request, String eTag) {
+        String ifNoneMatch = request.headers().firstHeader(HttpHeaders.IF_NONE_MATCH);
+        return ifNoneMatch != null && CustomerETag.matchesAny(ifNoneMatch, eTag);
+    }
+
+    private static MediaType negotiate(ServerRequest request) {
+        List<MediaType> accepted = new ArrayList<>(request.headers().accept());
+        MimeTypeUtils.sortBySpecificity(accepted);
+        for (MediaType acceptable : accepted) {
+            for (MediaType candidate : NEGOTIABLE) {
+                if (acceptable.isCompatibleWith(candidate)) {
+                    return candidate;
+                }
+            }
+        }
+        return MediaType.APPLICATION_JSON;
+    }
+
+    private static Set<CustomerField> fields(ServerRequest request) {
+        return CustomerField.parse(request.queryParam("fields").orElse(null));
+    }
+
+    private static Integer ifMatch(ServerRequest request) {
+        return CustomerETag.parseIfMatch(request.headers().firstHeader(HttpHeaders.IF_MATCH));
+    }
+
+    private static int customerId(ServerRequest request) {
+        return parseInt("customerId", request.pathVariable("customerId"));
+    }
+
+    // a malformed number is the client's mistake, 400 rather than the 500 of a NumberFormatException
+    private static int parseInt(String name, String value) {
+        try {
+            return Integer.parseInt(value);
+        } catch (NumberFormatException e) {
+            throw new ServerWebInputException("%s [%s] is not a whole number".formatted(name, value));
+        }
+    }
+}
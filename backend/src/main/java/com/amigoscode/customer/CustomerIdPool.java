@@ -0,0 +1,81 @@
+package com.amigoscode.customer;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.List;
+import java.util.function.IntFunction;
+
+/**
+ * Ids for the inserts that name the id themselves, handed out the way Hibernate's pooled-lo
+ * optimizer does for the entity: one {@code nextval} of {@code customer_id_seq} reserves the
+ * block from its value up to the next increment, the ids in it are then given out from
+ * memory. Left to the column default an insert would use up a whole block for its one row.
+ * An insert that loses its email to a conflict uses up a single id.
+ */
+final class CustomerIdPool {
+
+    // must match the sequence increment and the entity's allocationSize
+    static final int BLOCK_SIZE = 50;
+
+    // {next, end} of the reserved blocks not handed out yet
+    private final Deque<long[]> blocks = new ArrayDeque<>();
+
+    /**
+     * @param reserveBlocks reserves the given number of blocks, returns the first id of each
+     */
+    int[] nextIds(int count, IntFunction<List<Long>> reserveBlocks) {
+        int[] ids = take(count);
+        if (ids.length == count) {
+            return ids;
+        }
+        return takeWith(ids, reserveBlocks.apply(blocksFor(count - ids.length)), count);
+    }
+
+    /**
+     * Up to {@code count} of the ids already reserved.
+     */
+    synchronized int[] take(int count) {
+        int[] ids = new int[count];
+        int taken = 0;
+        while (taken < count && !blocks.isEmpty()) {
+            taken = takeFrom(blocks.peekFirst(), ids, taken);
+            if (blocks.peekFirst()[0] == blocks.peekFirst()[1]) {
+                blocks.removeFirst();
+            }
+        }
+        return taken == count ? ids : Arrays.copyOf(ids, taken);
+    }
+
+    /**
+     * Tops {@code taken} up to {@code count} ids from newly reserved blocks, the rest of
+     * them is kept for later.
+     */
+    synchronized int[] takeWith(int[] taken, List<Long> blockStarts, int count) {
+        int[] ids = Arrays.copyOf(taken, count);
+        int filled = taken.length;
+        for (Long start : blockStarts) {
+            long[] block = {start, start + BLOCK_SIZE};
+            filled = takeFrom(block, ids, filled);
+            if (block[0] < block[1]) {
+                blocks.addLast(block);
+            }
+        }
+        if (filled < count) {
+            throw new IllegalStateException("%d blocks do not hold %d ids".formatted(blockStarts.size(), count));
+        }
+        return ids;
+    }
+
+    static int blocksFor(int count) {
+        return (count + BLOCK_SIZE - 1) / BLOCK_SIZE;
+    }
+
+    private static int takeFrom(long[] block, int[] ids, int filled) {
+        while (filled < ids.length && block[0] < block[1]) {
+            // the ids are ints all the way up, a sequence past them fails here rather than wrapping
+            ids[filled++] = Math.toIntExact(block[0]++);
+        }
+        return filled;
+    }
+}
@@ -1,17 +1,30 @@
 package com.amigoscode.customer;
 
+import org.springframework.dao.OptimisticLockingFailureException;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.jdbc.core.RowMapper;
 import org.springframework.stereotype.Repository;
 
+import java.sql.PreparedStatement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.stream.Stream;
 
 @Repository("jdbc")
 public class CustomerJDBCDataAccessService implements CustomerDao{
 
+    static final int STREAM_FETCH_SIZE = 1000;
+
     private final JdbcTemplate jdbcTemplate;
     private final CustomerRowMapper customerRowMapper;
+    private final CustomerIdPool idPool = new CustomerIdPool();
 
     public CustomerJDBCDataAccessService(JdbcTemplate jdbcTemplate, CustomerRowMapper customerRowMapper) {
         this.jdbcTemplate = jdbcTemplate;
@@ -21,7 +34,7 @@ public class CustomerJDBCDataAccessService implements CustomerDao{
     @Override
     public List<Customer> selectAllCustomer() {
         var sql = """
-                SELECT id, name, email, age
+                SELECT id, name, email, age, version
                 FROM customer
                 """;
 
@@ -30,10 +43,113 @@ public class CustomerJDBCDataAccessService implements CustomerDao{
         return customers;
     }
 
+    @Override
+    public List<Customer> selectCustomersAfterId(Integer id, int limit) {
+        var sql = """
+                SELECT id, name, email, age, version
+                FROM customer
+                WHERE id > ?
+                ORDER BY id
+                LIMIT ?
+                """;
+
+        return jdbcTemplate.query(sql, customerRowMapper, id, limit);
+    }
+
+    @Override
+    public List<Customer> selectCustomersAfterId(Integer id, int limit, Set<CustomerField> fields) {
+        var sql = """
+                SELECT %s
+                FROM customer
+                WHERE id > ?
+                ORDER BY id
+                LIMIT ?
+                """.formatted(CustomerField.selectList(fields));
+
+        return jdbcTemplate.query(sql, projectionMapper(fields), id, limit);
+    }
+
+    @Override
+    public List<Customer> selectCustomers(CustomerQuery query) {
+        List<String> conditions = new ArrayList<>();
+        List<Object> args = new ArrayList<>();
+
+        // each condition is written exactly like the index expression it should use (V5 migration)
+        if(query.namePrefix() != null){
+            conditions.add("lower(name) LIKE ?");
+            args.add(query.namePattern());
+        }
+
+        if(query.emailDomain() != null){
+            conditions.add("lower(split_part(email, '@', 2)) = ?");
+            args.add(query.lowerEmailDomain());
+        }
+
+        if(query.minAge() != null){
+            conditions.add("age >= ?");
+            args.add(query.minAge());
+        }
+
+        if(query.maxAge() != null){
+            conditions.add("age <= ?");
+            args.add(query.maxAge());
+        }
+
+        var sql = new StringBuilder("""
+                SELECT id, name, email, age, version
+                FROM customer
+                """);
+        if(!conditions.isEmpty()){
+            sql.append("WHERE ").append(String.join(" AND ", conditions)).append('\n');
+        }
+
+        String direction = query.descending() ? "DESC" : "ASC";
+        sql.append("ORDER BY ").append(query.sortBy().column()).append(' ').append(direction);
+        if(query.sortBy() != CustomerQuery.SortField.ID){
+            sql.append(", id ").append(direction);
+        }
+        sql.append("\nLIMIT ?");
+        args.add(query.limit());
+
+        return jdbcTemplate.query(sql.toString(), customerRowMapper, args.toArray());
+    }
+
+    @Override
+    public Stream<Customer> streamAllCustomers() {
+        var sql = """
+                SELECT id, name, email, age, version
+                FROM customer
+                ORDER BY id
+                """;
+
+        // postgres only honours the fetch size (server-side cursor) when
+        // autocommit is off, so callers must consume this inside a transaction
+        return jdbcTemplate.queryForStream(connection -> {
+            PreparedStatement statement = connection.prepareStatement(sql);
+            statement.setFetchSize(STREAM_FETCH_SIZE);
+            return statement;
+        }, customerRowMapper);
+    }
+
+    @Override
+    public Stream<String> streamAllEmails() {
+        var sql = """
+                SELECT email
+                FROM customer
+                """;
+
+        // same as streamAllCustomers, the cursor needs a surrounding transaction
+        return jdbcTemplate.queryForStream(connection -> {
+            PreparedStatement statement = connection.prepareStatement(sql);
+            statement.setFetchSize(STREAM_FETCH_SIZE);
+            return statement;
+        }, (rs, rowNum) -> rs.getString("email"));
+    }
+
     @Override
     public Optional<Customer> selectCustomerById(Integer id) {
         var sql = """
-                SELECT id, name, email, age
+                SELECT id, name, email, age, version
                 FROM customer
                 WHERE id = ?
                 """;
@@ -43,13 +159,137 @@ public class CustomerJDBCDataAccessService implements CustomerDao{
                 .findFirst();
     }
 
+    @Override
+    public Optional<Customer> selectCustomerById(Integer id, Set<CustomerField> fields) {
+        var sql = """
+                SELECT %s
+                FROM customer
+                WHERE id = ?
+                """.formatted(CustomerField.selectList(fields));
+
+        return jdbcTemplate.query(sql, projectionMapper(fields), id)
+                .stream()
+                .findFirst();
+    }
+
+    @Override
+    public Optional<Integer> selectCustomerVersionById(Integer id) {
+        var sql = """
+                SELECT version
+                FROM customer
+                WHERE id = ?
+                """;
+
+        return jdbcTemplate.queryForList(sql, Integer.class, id)
+                .stream()
+                .findFirst();
+    }
+
     @Override
     public void insertCustomer(Customer customer) {
         var sql = """
-                INSERT INTO customer (name, email, age)
-                VALUES (?, ?, ?)
+                INSERT INTO customer (id, name, email, age)
+                VALUES (?, ?, ?, ?)
+                """;
+        jdbcTemplate.update(sql, nextIds(1)[0], customer.getName(), customer.getEmail(), customer.getAge());
+    }
+
+    @Override
+    public void insertCustomers(List<Customer> customers) {
+        var sql = """
+                INSERT INTO customer (id, name, email, age)
+                VALUES (?, ?, ?, ?)
+                """;
+        int[] ids = nextIds(customers.size());
+        List<Object[]> rows = new ArrayList<>(customers.size());
+        for (int i = 0; i < customers.size(); i++) {
+            Customer customer = customers.get(i);
+            rows.add(new Object[]{ids[i], customer.getName(), customer.getEmail(), customer.getAge()});
+        }
+        jdbcTemplate.batchUpdate(sql, rows);
+    }
+
+    @Override
+    public boolean insertCustomerIfAbsent(Customer customer) {
+        var sql = """
+                INSERT INTO customer (id, name, email, age)
+                VALUES (?, ?, ?, ?)
+                ON CONFLICT (email) DO NOTHING
+                RETURNING id
                 """;
-        jdbcTemplate.update(sql, customer.getName(), customer.getEmail(), customer.getAge());
+        List<Integer> ids = jdbcTemplate.queryForList(
+                sql, Integer.class, nextIds(1)[0], customer.getName(), customer.getEmail(), customer.getAge()
+        );
+        if (ids.isEmpty()) {
+            return false;
+        }
+        customer.setId(ids.get(0));
+        customer.setVersion(0);
+        return true;
+    }
+
+    @Override
+    public Set<String> insertCustomersIfAbsent(List<Customer> customers) {
+        if (customers.isEmpty()) {
+            return Set.of();
+        }
+        // one statement and one commit for the lot, unnest keeps it a single prepared
+        // statement whatever the number of rows
+        var sql = """
+                INSERT INTO customer (id, name, email, age)
+                SELECT * FROM unnest(?::int[], ?::text[], ?::text[], ?::int[])
+                ON CONFLICT (email) DO NOTHING
+                RETURNING id, email
+                """;
+        Integer[] newIds = Arrays.stream(nextIds(customers.size())).boxed().toArray(Integer[]::new);
+        Map<String, Integer> ids = new HashMap<>();
+        jdbcTemplate.query(connection -> {
+            PreparedStatement statement = connection.prepareStatement(sql);
+            statement.setArray(1, connection.createArrayOf("int4", newIds));
+            statement.setArray(2, connection.createArrayOf("text",
+                    customers.stream().map(Customer::getName).toArray()));
+            statement.setArray(3, connection.createArrayOf("text",
+                    customers.stream().map(Customer::getEmail).toArray()));
+            statement.setArray(4, connection.createArrayOf("int4",
+                    customers.stream().map(Customer::getAge).toArray()));
+            return statement;
+        }, rs -> {
+            ids.put(rs.getString("email"), rs.getInt("id"));
+        });
+        return assignIds(customers, ids);
+    }
+
+    private int[] nextIds(int count) {
+        return idPool.nextIds(count, blocks -> jdbcTemplate.queryForList(
+                "SELECT nextval('customer_id_seq') FROM generate_series(1, ?)", Long.class, blocks
+        ));
+    }
+
+    private static RowMapper<Customer> projectionMapper(Set<CustomerField> fields) {
+        return (rs, rowNum) -> new Customer(
+                rs.getInt("id"),
+                fields.contains(CustomerField.NAME) ? rs.getString("name") : null,
+                fields.contains(CustomerField.EMAIL) ? rs.getString("email") : null,
+                fields.contains(CustomerField.AGE) ? rs.getInt("age") : null,
+                rs.getInt("version")
+        );
+    }
+
+    /**
+     * Hands each returned id to the first customer with that email, a later one in the
+     * same batch was a duplicate.
+     */
+    static Set<String> assignIds(List<Customer> customers, Map<String, Integer> ids) {
+        Set<String> inserted = new HashSet<>();
+        for (Customer customer : customers) {
+            Integer id = ids.remove(customer.getEmail());
+            if (id != null) {
+                customer.setId(id);
+                customer.setVersion(0);
+                inserted.add(customer.getEmail());
+            }
+        }
+        return inserted;
     }
 
     @Override
@@ -65,13 +305,45 @@ public class CustomerJDBCDataAccessService implements CustomerDao{
     }
 
     @Override
-    public void deleteCustomerById(Integer id) {
+    public Set<String> selectExistingEmails(Collection<String> emails) {
+        if (emails.isEmpty()) {
+            return Set.of();
+        }
+        var sql = """
+                SELECT email
+                FROM customer
+                WHERE email = ANY (?)
+                """;
+
+        return new HashSet<>(jdbcTemplate.query(connection -> {
+            PreparedStatement statement = connection.prepareStatement(sql);
+            statement.setArray(1, connection.createArrayOf("text", emails.toArray()));
+            return statement;
+        }, (rs, rowNum) -> rs.getString("email")));
+    }
+
+    @Override
+    public boolean deleteCustomerById(Integer id) {
         var sql = """
                 DELETE FROM customer 
                 WHERE id = ?
                 """;
 
-        jdbcTemplate.update(sql, id);
+        return jdbcTemplate.update(sql, id) > 0;
+    }
+
+    @Override
+    public void deleteCustomerById(Integer id, Integer version) {
+        var sql = """
+                DELETE FROM customer
+                WHERE id = ? AND version = ?
+                """;
+
+        if (jdbcTemplate.update(sql, id, version) == 0) {
+            throw new OptimisticLockingFailureException(
+                    "customer with id [%s] and version [%s] not found".formatted(id, version)
+            );
+        }
     }
 
     @Override
@@ -88,22 +360,62 @@ public class CustomerJDBCDataAccessService implements CustomerDao{
 
     @Override
     public void updateCustomer(Customer update) {
+        List<String> assignments = new ArrayList<>();
+        List<Object> args = new ArrayList<>();
+
         if(update.getName() != null){
-            String sql = "UPDATE customer SET name = ? WHERE id = ?";
-            int result = jdbcTemplate.update(sql, update.getName(),update.getId());
-            System.out.println("update customer name result = " + result);
+            assignments.add("name = ?");
+            args.add(update.getName());
         }
 
         if(update.getEmail() != null){
-            String sql = "UPDATE customer SET email = ? WHERE id = ?";
-            int result = jdbcTemplate.update(sql, update.getEmail(),update.getId());
-            System.out.println("update customer email result = " + result);
+            assignments.add("email = ?");
+            args.add(update.getEmail());
         }
 
         if(update.getAge() != null){
-            String sql = "UPDATE customer SET age = ? WHERE id = ?";
-            int result = jdbcTemplate.update(sql, update.getAge(),update.getId());
-            System.out.println("update customer age result = " + result);
+            assignments.add("age = ?");
+            args.add(update.getAge());
         }
+
+        if(assignments.isEmpty()){
+            return;
+        }
+
+        var sql = new StringBuilder("UPDATE customer SET ")
+                .append(String.join(", ", assignments))
+                .append(", version = version + 1 WHERE id = ?");
+        args.add(update.getId());
+
+        if(update.getVersion() != null){
+            sql.append(" AND version = ?");
+            args.add(update.getVersion());
+        }
+
+        int result = jdbcTemplate.update(sql.toString(), args.toArray());
+
+        if(update.getVersion() != null){
+            if(result == 0){
+                throw new OptimisticLockingFailureException(
+                        "customer with id [%s] and version [%s] not found".formatted(update.getId(), update.getVersion())
+                );
+            }
+            update.setVersion(update.getVersion() + 1);
+        }
+    }
+
+    @Override
+    public Map<Integer, Long> selectAgeCounts() {
+        var sql = """
+                SELECT age, COUNT(*) AS customers
+                FROM customer
+                GROUP BY age
+                """;
+
+        Map<Integer, Long> counts = new HashMap<>();
+        jdbcTemplate.query(sql, rs -> {
+            counts.put(rs.getInt("age"), rs.getLong("customers"));
+        });
+        return counts;
     }
 }
@@ -1,14 +1,28 @@
 package com.amigoscode.customer;
 
+import org.springframework.dao.OptimisticLockingFailureException;
+import jakarta.persistence.criteria.Expression;
+import jakarta.persistence.criteria.Predicate;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
 import org.springframework.stereotype.Repository;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.stream.Stream;
 
 @Repository("jpa")
 public class CustomerJPADataAccessService implements CustomerDao{
 
     private final CustomerRepository customerRepository;
+    private final CustomerIdPool idPool = new CustomerIdPool();
 
     public CustomerJPADataAccessService(CustomerRepository customerRepository) {
         this.customerRepository = customerRepository;
@@ -19,33 +33,190 @@ public class CustomerJPADataAccessService implements CustomerDao{
         return customerRepository.findAll();
     }
 
+    @Override
+    public List<Customer> selectCustomersAfterId(Integer id, int limit) {
+        return customerRepository.findByIdGreaterThanOrderByIdAsc(id, Limit.of(limit));
+    }
+
+    @Override
+    public List<Customer> selectCustomersAfterId(Integer id, int limit, Set<CustomerField> fields) {
+        return customerRepository.findFieldsAfterId(id, limit, CustomerField.selected(fields));
+    }
+
+    @Override
+    public List<Customer> selectCustomers(CustomerQuery query) {
+        Sort.Direction direction = query.descending() ? Sort.Direction.DESC : Sort.Direction.ASC;
+        Sort sort = Sort.by(direction, query.sortBy().column());
+        if(query.sortBy() != CustomerQuery.SortField.ID){
+            sort = sort.and(Sort.by(direction, "id"));
+        }
+        Sort order = sort;
+        return customerRepository.findBy(
+                matching(query),
+                q -> q.sortBy(order).limit(query.limit()).all()
+        );
+    }
+
+    // same expressions as the JDBC dao, so both hit the V5 indexes
+    private static Specification<Customer> matching(CustomerQuery query) {
+        return (root, criteriaQuery, cb) -> {
+            List<Predicate> predicates = new ArrayList<>();
+            if(query.namePrefix() != null){
+                predicates.add(cb.like(cb.lower(root.get("name")), query.namePattern(), '\\'));
+            }
+            if(query.emailDomain() != null){
+                Expression<String> domain = cb.function(
+                        "split_part", String.class, root.get("email"), cb.literal("@"), cb.literal(2)
+                );
+                predicates.add(cb.equal(cb.lower(domain), query.lowerEmailDomain()));
+            }
+            if(query.minAge() != null){
+                predicates.add(cb.greaterThanOrEqualTo(root.get("age"), query.minAge()));
+            }
+            if(query.maxAge() != null){
+                predicates.add(cb.lessThanOrEqualTo(root.get("age"), query.maxAge()));
+            }
+            return cb.and(predicates.toArray(Predicate[]::new));
+        };
+    }
+
+    @Override
+    public Stream<Customer> streamAllCustomers() {
+        return customerRepository.streamAll();
+    }
+
+    @Override
+    public Stream<String> streamAllEmails() {
+        return customerRepository.streamAllEmails();
+    }
+
     @Override
     public Optional<Customer> selectCustomerById(Integer id) {
         return customerRepository.findById(id);
     }
 
+    @Override
+    public Optional<Customer> selectCustomerById(Integer id, Set<CustomerField> fields) {
+        return customerRepository.findFieldsById(id, CustomerField.selected(fields));
+    }
+
+    @Override
+    public Optional<Integer> selectCustomerVersionById(Integer id) {
+        return customerRepository.findVersionById(id);
+    }
+
     @Override
     public void insertCustomer(Customer customer) {
         customerRepository.save(customer);
     }
 
+    @Override
+    public void insertCustomers(List<Customer> customers) {
+        customerRepository.saveAll(customers);
+    }
+
+    @Override
+    public boolean insertCustomerIfAbsent(Customer customer) {
+        Optional<Integer> id = customerRepository.insertIfAbsent(
+                nextIds(1)[0], customer.getName(), customer.getEmail(), customer.getAge()
+        );
+        id.ifPresent(insertedId -> {
+            customer.setId(insertedId);
+            customer.setVersion(0);
+            customerRepository.evictEmailLookups();
+        });
+        return id.isPresent();
+    }
+
+    @Override
+    public Set<String> insertCustomersIfAbsent(List<Customer> customers) {
+        if (customers.isEmpty()) {
+            return Set.of();
+        }
+        Map<String, Integer> ids = new HashMap<>();
+        customerRepository.insertAllIfAbsent(
+                Arrays.stream(nextIds(customers.size())).boxed().toArray(Integer[]::new),
+                customers.stream().map(Customer::getName).toArray(String[]::new),
+                customers.stream().map(Customer::getEmail).toArray(String[]::new),
+                customers.stream().map(Customer::getAge).toArray(Integer[]::new)
+        ).forEach(row -> ids.put((String) row[1], ((Number) row[0]).intValue()));
+        if (!ids.isEmpty()) {
+            customerRepository.evictEmailLookups();
+        }
+        return CustomerJDBCDataAccessService.assignIds(customers, ids);
+    }
+
+    private int[] nextIds(int count) {
+        return idPool.nextIds(count, customerRepository::reserveIdBlocks);
+    }
+
     @Override
     public boolean existsPersonWithEmail(String email) {
         return customerRepository.existsCustomerByEmail(email);
     }
 
     @Override
-    public void deleteCustomerById(Integer id) {
-        customerRepository.deleteById(id);
+    public Set<String> selectExistingEmails(Collection<String> emails) {
+        if (emails.isEmpty()) {
+            return Set.of();
+        }
+        return customerRepository.findEmailsIn(emails);
+    }
+
+    @Override
+    public boolean deleteCustomerById(Integer id) {
+        return customerRepository.deleteCustomerById(id) > 0;
+    }
+
+    @Override
+    public void deleteCustomerById(Integer id, Integer version) {
+        if (customerRepository.deleteByIdAndVersion(id, version) == 0) {
+            throw new OptimisticLockingFailureException(
+                    "customer with id [%s] and version [%s] not found".formatted(id, version)
+            );
+        }
     }
 
     @Override
     public boolean existsPersonWithId(Integer id) {
-        return customerRepository.existsCustomerById(id);
+        // a lookup by id is answered from the second-level cache, an exists query never is
+        return customerRepository.findById(id).isPresent();
     }
 
     @Override
     public void updateCustomer(Customer update) {
-        customerRepository.save(update);
+        // inside the service transaction this is served from the persistence context,
+        // the flush then issues one version-checked UPDATE of the dirty columns only
+        Customer customer = customerRepository.findById(update.getId()).orElse(null);
+        if(customer == null || (update.getVersion() != null && !update.getVersion().equals(customer.getVersion()))){
+            if(update.getVersion() == null){
+                return;
+            }
+            throw new OptimisticLockingFailureException(
+                    "customer with id [%s] and version [%s] not found".formatted(update.getId(), update.getVersion())
+            );
+        }
+
+        if(update.getName() != null){
+            customer.setName(update.getName());
+        }
+        if(update.getEmail() != null){
+            customer.setEmail(update.getEmail());
+        }
+        if(update.getAge() != null){
+            customer.setAge(update.getAge());
+        }
+
+        Customer saved = customerRepository.saveAndFlush(customer);
+        update.setVersion(saved.getVersion());
+    }
+
+    @Override
+    public Map<Integer, Long> selectAgeCounts() {
+        Map<Integer, Long> counts = new HashMap<>();
+        for (Object[] row : customerRepository.countByAge()) {
+            counts.put((Integer) row[0], (Long) row[1]);
+        }
+        return counts;
     }
 }
@@ -1,71 +1,258 @@
 package com.amigoscode.customer;
 
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.dao.OptimisticLockingFailureException;
 import org.springframework.stereotype.Repository;
 
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
+/**
+ * In-memory customer store. Customers are kept as immutable snapshots in a concurrent
+ * primary index by id, with a unique email index that doubles as the insert lock:
+ * claiming the email with {@code putIfAbsent} is the point at which an insert either
+ * happens or fails as a duplicate, so concurrent registrations of one email cannot both win.
+ */
 @Repository("list")
 public class CustomerListDataAcessService implements CustomerDao{
 
-    private static List<Customer> customers;
+    private final AtomicInteger ids = new AtomicInteger();
+    private final ConcurrentHashMap<Integer, Customer> customers = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, Integer> idsByEmail = new ConcurrentHashMap<>();
+    // keeps ids ordered for keyset pagination and ordered scans
+    private final ConcurrentSkipListSet<Integer> orderedIds = new ConcurrentSkipListSet<>();
 
-    static {
-        customers = new ArrayList<>();
-
-        Customer alex = new Customer(
+    public CustomerListDataAcessService() {
+        insertCustomer(new Customer(
                 "alex", "alex@gmail.com", 21
-        );
-        customers.add(alex);
-
-        Customer mike = new Customer(
-                 "mike", "mike@gmail.com", 24
-        );
-        customers.add(mike);
+        ));
+        insertCustomer(new Customer(
+                "mike", "mike@gmail.com", 24
+        ));
     }
 
     @Override
     public List<Customer> selectAllCustomer() {
-        return customers;
+        return streamAllCustomers().toList();
+    }
+
+    @Override
+    public List<Customer> selectCustomersAfterId(Integer id, int limit) {
+        return snapshots(orderedIds.tailSet(id, false).stream())
+                .limit(limit)
+                .toList();
+    }
+
+    @Override
+    public List<Customer> selectCustomersAfterId(Integer id, int limit, Set<CustomerField> fields) {
+        return selectCustomersAfterId(id, limit).stream()
+                .map(customer -> CustomerField.project(customer, fields))
+                .toList();
+    }
+
+    @Override
+    public List<Customer> selectCustomers(CustomerQuery query) {
+        return snapshots(orderedIds.stream())
+                .filter(query::matches)
+                .sorted(query.comparator())
+                .limit(query.limit())
+                .toList();
+    }
+
+    @Override
+    public Stream<Customer> streamAllCustomers() {
+        return snapshots(orderedIds.stream());
+    }
+
+    @Override
+    public Stream<String> streamAllEmails() {
+        return idsByEmail.keySet().stream();
     }
 
     @Override
     public Optional<Customer> selectCustomerById(Integer id) {
-        return customers.stream()
-                .filter(c -> c.getId().equals(id))
-                .findFirst();
+        return Optional.ofNullable(customers.get(id))
+                .map(CustomerListDataAcessService::copyOf);
+    }
+
+    @Override
+    public Optional<Customer> selectCustomerById(Integer id, Set<CustomerField> fields) {
+        return selectCustomerById(id).map(customer -> CustomerField.project(customer, fields));
+    }
+
+    @Override
+    public Optional<Integer> selectCustomerVersionById(Integer id) {
+        return Optional.ofNullable(customers.get(id))
+                .map(Customer::getVersion);
     }
 
     @Override
     public void insertCustomer(Customer customer) {
-        customers.add(customer);
+        if (!insertCustomerIfAbsent(customer)) {
+            throw new DuplicateKeyException(
+                    "email [%s] already exists".formatted(customer.getEmail())
+            );
+        }
+    }
+
+    @Override
+    public boolean insertCustomerIfAbsent(Customer customer) {
+        int id = ids.incrementAndGet();
+        if (idsByEmail.putIfAbsent(customer.getEmail(), id) != null) {
+            return false;
+        }
+        customers.put(id, new Customer(id, customer.getName(), customer.getEmail(), customer.getAge(), 0));
+        orderedIds.add(id);
+
+        customer.setId(id);
+        customer.setVersion(0);
+        return true;
+    }
+
+    @Override
+    public Set<String> insertCustomersIfAbsent(List<Customer> batch) {
+        Set<String> inserted = new HashSet<>();
+        for (Customer customer : batch) {
+            if (insertCustomerIfAbsent(customer)) {
+                inserted.add(customer.getEmail());
+            }
+        }
+        return inserted;
+    }
+
+    @Override
+    public void insertCustomers(List<Customer> batch) {
+        // all or nothing, like the batch insert of the database backed daos
+        List<Integer> inserted = new ArrayList<>(batch.size());
+        try {
+            for (Customer customer : batch) {
+                insertCustomer(customer);
+                inserted.add(customer.getId());
+            }
+        } catch (RuntimeException e) {
+            inserted.forEach(this::deleteCustomerById);
+            throw e;
+        }
     }
 
     @Override
     public boolean existsPersonWithEmail(String email) {
-        return customers.stream()
-                .anyMatch(c -> c.getEmail().equals(email));
+        return idsByEmail.containsKey(email);
     }
 
     @Override
-    public void deleteCustomerById(Integer id) {
-//        customers.removeIf(c -> c.getId().equals(id));
-        customers.stream()
-                .filter(c -> c.getId().equals(id))
-                .findFirst()
-                .ifPresent(c -> customers.remove(c));
-        //      .ifPresent(customers::remove);
+    public Set<String> selectExistingEmails(Collection<String> emails) {
+        return emails.stream()
+                .filter(idsByEmail::containsKey)
+                .collect(Collectors.toSet());
+    }
+
+    @Override
+    public boolean deleteCustomerById(Integer id) {
+        Customer removed = customers.remove(id);
+        if (removed == null) {
+            return false;
+        }
+        orderedIds.remove(id);
+        idsByEmail.remove(removed.getEmail(), id);
+        return true;
+    }
+
+    @Override
+    public void deleteCustomerById(Integer id, Integer version) {
+        Customer current = customers.get(id);
+        // removing only the customer we checked, a concurrent update replaces it
+        if (current == null || !current.getVersion().equals(version) || !customers.remove(id, current)) {
+            throw staleVersion(id, version);
+        }
+        orderedIds.remove(id);
+        idsByEmail.remove(current.getEmail(), id);
     }
 
     @Override
     public boolean existsPersonWithId(Integer id) {
-        return customers.stream()
-                .anyMatch(c -> c.getId().equals(id));
+        return customers.containsKey(id);
     }
 
     @Override
     public void updateCustomer(Customer update) {
-        customers.add(update);
+        if (update.getName() == null && update.getEmail() == null && update.getAge() == null) {
+            return;
+        }
+
+        Customer updated = customers.computeIfPresent(update.getId(), (id, current) -> {
+            if (update.getVersion() != null && !update.getVersion().equals(current.getVersion())) {
+                throw staleVersion(update);
+            }
+
+            String email = current.getEmail();
+            if (update.getEmail() != null && !update.getEmail().equals(email)) {
+                if (idsByEmail.putIfAbsent(update.getEmail(), id) != null) {
+                    throw new DuplicateKeyException(
+                            "email [%s] already exists".formatted(update.getEmail())
+                    );
+                }
+                idsByEmail.remove(email, id);
+                email = update.getEmail();
+            }
+
+            return new Customer(
+                    id,
+                    update.getName() != null ? update.getName() : current.getName(),
+                    email,
+                    update.getAge() != null ? update.getAge() : current.getAge(),
+                    current.getVersion() + 1
+            );
+        });
+
+        if (update.getVersion() != null) {
+            if (updated == null) {
+                throw staleVersion(update);
+            }
+            update.setVersion(updated.getVersion());
+        }
+    }
+
+    @Override
+    public Map<Integer, Long> selectAgeCounts() {
+        return customers.values().stream()
+                .collect(Collectors.groupingBy(Customer::getAge, Collectors.counting()));
+    }
+
+    private static OptimisticLockingFailureException staleVersion(Customer update) {
+        return staleVersion(update.getId(), update.getVersion());
+    }
+
+    private static OptimisticLockingFailureException staleVersion(Integer id, Integer version) {
+        return new OptimisticLockingFailureException(
+                "customer with id [%s] and version [%s] not found".formatted(id, version)
+        );
+    }
+
+    private Stream<Customer> snapshots(Stream<Integer> ids) {
+        return ids.map(customers::get)
+                .filter(Objects::nonNull)
+                .map(CustomerListDataAcessService::copyOf);
+    }
+
+    private static Customer copyOf(Customer customer) {
+        return new Customer(
+                customer.getId(),
+                customer.getName(),
+                customer.getEmail(),
+                customer.getAge(),
+                customer.getVersion()
+        );
     }
 }
@@ -0,0 +1,15 @@
+package com.amigoscode.customer;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+
+/**
+ * Reads of only some customer columns, returned as detached customers whose other fields are
+ * {@code null}. Spring Data has no projection over a set of properties chosen at runtime, so
+ * {@link CustomerProjectionRepositoryImpl} builds the queries itself.
+ */
+public interface CustomerProjectionRepository {
+    List<Customer> findFieldsAfterId(Integer id, int limit, Set<CustomerField> fields);
+    Optional<Customer> findFieldsById(Integer id, Set<CustomerField> fields);
+}
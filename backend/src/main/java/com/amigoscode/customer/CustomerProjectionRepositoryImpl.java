@@ -0,0 +1,69 @@
+package com.amigoscode.customer;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import jakarta.persistence.Tuple;
+import jakarta.persistence.criteria.CriteriaBuilder;
+import jakarta.persistence.criteria.CriteriaQuery;
+import jakarta.persistence.criteria.Root;
+import jakarta.persistence.criteria.Selection;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+
+class CustomerProjectionRepositoryImpl implements CustomerProjectionRepository {
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Override
+    public List<Customer> findFieldsAfterId(Integer id, int limit, Set<CustomerField> fields) {
+        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+        CriteriaQuery<Tuple> query = cb.createTupleQuery();
+        Root<Customer> root = query.from(Customer.class);
+        query.multiselect(selections(root, fields))
+                .where(cb.greaterThan(root.get("id"), id))
+                .orderBy(cb.asc(root.get("id")));
+
+        // a page is read whole, a result stream would hold its cursor open until closed
+        return entityManager.createQuery(query)
+                .setMaxResults(limit)
+                .getResultList()
+                .stream()
+                .map(tuple -> toCustomer(tuple, fields))
+                .toList();
+    }
+
+    @Override
+    public Optional<Customer> findFieldsById(Integer id, Set<CustomerField> fields) {
+        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+        CriteriaQuery<Tuple> query = cb.createTupleQuery();
+        Root<Customer> root = query.from(Customer.class);
+        query.multiselect(selections(root, fields))
+                .where(cb.equal(root.get("id"), id));
+
+        return entityManager.createQuery(query)
+                .getResultList()
+                .stream()
+                .findFirst()
+                .map(tuple -> toCustomer(tuple, fields));
+    }
+
+    // scalar selections, so nothing is loaded into the persistence context
+    private static List<Selection<?>> selections(Root<Customer> root, Set<CustomerField> fields) {
+        return fields.stream()
+                .<Selection<?>>map(field -> root.get(field.column()).alias(field.column()))
+                .toList();
+    }
+
+    private static Customer toCustomer(Tuple tuple, Set<CustomerField> fields) {
+        return new Customer(
+                tuple.get("id", Integer.class),
+                fields.contains(CustomerField.NAME) ? tuple.get("name", String.class) : null,
+                fields.contains(CustomerField.EMAIL) ? tuple.get("email", String.class) : null,
+                fields.contains(CustomerField.AGE) ? tuple.get("age", Integer.class) : null,
+                tuple.get("version", Integer.class)
+        );
+    }
+}
@@ -0,0 +1,77 @@
+package com.amigoscode.customer;
+
+import java.util.Comparator;
+import java.util.Locale;
+
+/**
+ * Filters, order and limit of a customer search. Absent filters are {@code null}. Name
+ * prefix and email domain match case-insensitively, the age bounds are inclusive, and
+ * rows with the same sort value are ordered by id so results are stable across calls.
+ */
+public record CustomerQuery(
+        String namePrefix,
+        String emailDomain,
+        Integer minAge,
+        Integer maxAge,
+        SortField sortBy,
+        boolean descending,
+        int limit) {
+
+    public enum SortField {
+        ID("id", Comparator.comparing(Customer::getId)),
+        NAME("name", Comparator.comparing(Customer::getName)),
+        AGE("age", Comparator.comparing(Customer::getAge));
+
+        private final String column;
+        private final Comparator<Customer> comparator;
+
+        SortField(String column, Comparator<Customer> comparator) {
+            this.column = column;
+            this.comparator = comparator;
+        }
+
+        public String column() {
+            return column;
+        }
+    }
+
+    /**
+     * The name prefix as a {@code LIKE} pattern on the lower-cased name, with the
+     * wildcards in the prefix itself escaped by backslash.
+     */
+    String namePattern() {
+        return namePrefix.toLowerCase(Locale.ROOT)
+                .replace("\\", "\\\\")
+                .replace("%", "\\%")
+                .replace("_", "\\_") + "%";
+    }
+
+    String lowerEmailDomain() {
+        return emailDomain.toLowerCase(Locale.ROOT);
+    }
+
+    boolean matches(Customer customer) {
+        if (minAge != null && customer.getAge() < minAge) {
+            return false;
+        }
+        if (maxAge != null && customer.getAge() > maxAge) {
+            return false;
+        }
+        if (namePrefix != null
+                && !customer.getName().toLowerCase(Locale.ROOT).startsWith(namePrefix.toLowerCase(Locale.ROOT))) {
+            return false;
+        }
+        if (emailDomain != null) {
+            String email = customer.getEmail();
+            int at = email.indexOf('@');
+            String domain = at < 0 ? "" : email.substring(at + 1);
+            return domain.toLowerCase(Locale.ROOT).equals(lowerEmailDomain());
+        }
+        return true;
+    }
+
+    Comparator<Customer> comparator() {
+        Comparator<Customer> comparator = sortBy.comparator.thenComparing(Customer::getId);
+        return descending ? comparator.reversed() : comparator;
+    }
+}
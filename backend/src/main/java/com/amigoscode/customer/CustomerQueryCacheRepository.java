@@ -0,0 +1,11 @@
+package com.amigoscode.customer;
+
+public interface CustomerQueryCacheRepository {
+
+    /**
+     * Drops the cached {@code existsCustomerByEmail} answers, now and again once the current
+     * transaction ends. Hibernate only invalidates them for writes it sees, the native
+     * inserts have to call this.
+     */
+    void evictEmailLookups();
+}
@@ -0,0 +1,33 @@
+package com.amigoscode.customer;
+
+import jakarta.persistence.EntityManagerFactory;
+import jakarta.persistence.PersistenceUnit;
+import org.hibernate.SessionFactory;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+class CustomerQueryCacheRepositoryImpl implements CustomerQueryCacheRepository {
+
+    @PersistenceUnit
+    private EntityManagerFactory entityManagerFactory;
+
+    @Override
+    public void evictEmailLookups() {
+        evict();
+        // a lookup between the insert and its commit may cache the old answer again
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    evict();
+                }
+            });
+        }
+    }
+
+    private void evict() {
+        entityManagerFactory.unwrap(SessionFactory.class)
+                .getCache()
+                .evictQueryRegion(CustomerRepository.EMAIL_LOOKUP_REGION);
+    }
+}
@@ -0,0 +1,88 @@
+package com.amigoscode.customer;
+
+import com.zaxxer.hikari.HikariDataSource;
+import io.r2dbc.pool.ConnectionPool;
+import io.r2dbc.pool.ConnectionPoolConfiguration;
+import io.r2dbc.spi.ConnectionFactory;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.autoconfigure.r2dbc.R2dbcProperties;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.boot.r2dbc.ConnectionFactoryBuilder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Profile;
+import org.springframework.r2dbc.connection.R2dbcTransactionManager;
+import org.springframework.r2dbc.core.DatabaseClient;
+import org.springframework.transaction.reactive.TransactionalOperator;
+import org.springframework.web.reactive.function.server.RouterFunction;
+import org.springframework.web.reactive.function.server.ServerResponse;
+
+import static org.springframework.web.reactive.function.server.RequestPredicates.queryParam;
+import static org.springframework.web.reactive.function.server.RouterFunctions.route;
+
+/**
+ * The non-blocking stack of the {@code reactive} profile: an R2DBC connection pool from
+ * {@code spring.r2dbc.*} and functional WebFlux routes mirroring {@link CustomerController}.
+ * The pool and the transaction manager are wired here rather than auto-configured, so
+ * the jpa transaction manager stays the only {@code PlatformTransactionManager}.
+ * <p>
+ * Boot backs its {@code DataSource} off as soon as a {@link ConnectionFactory} exists,
+ * so the hikari pool that flyway, jpa and the statistics reconciliation still use is
+ * declared here too.
+ */
+@Configuration
+@Profile("reactive")
+@EnableConfigurationProperties({R2dbcProperties.class, DataSourceProperties.class})
+public class CustomerReactiveConfig {
+
+    @Bean
+    @ConfigurationProperties("spring.datasource.hikari")
+    public HikariDataSource dataSource(DataSourceProperties properties) {
+        return properties.initializeDataSourceBuilder()
+                .type(HikariDataSource.class)
+                .build();
+    }
+
+    @Bean(destroyMethod = "dispose")
+    public ConnectionPool connectionFactory(R2dbcProperties properties) {
+        ConnectionFactory connectionFactory = ConnectionFactoryBuilder.withUrl(properties.getUrl())
+                .username(properties.getUsername())
+                .password(properties.getPassword())
+                .build();
+        R2dbcProperties.Pool pool = properties.getPool();
+        return new ConnectionPool(ConnectionPoolConfiguration.builder(connectionFactory)
+                .initialSize(pool.getInitialSize())
+                .maxSize(pool.getMaxSize())
+                .maxIdleTime(pool.getMaxIdleTime())
+                .build());
+    }
+
+    @Bean
+    public DatabaseClient databaseClient(ConnectionFactory connectionFactory) {
+        return DatabaseClient.create(connectionFactory);
+    }
+
+    @Bean
+    public TransactionalOperator transactionalOperator(ConnectionFactory connectionFactory) {
+        return TransactionalOperator.create(new R2dbcTransactionManager(connectionFactory));
+    }
+
+    @Bean
+    public RouterFunction<ServerResponse> customerRoutes(ReactiveCustomerService customerService) {
+        CustomerHandler handler = new CustomerHandler(customerService);
+        return route()
+                .path("api/v1/customers", builder -> builder
+                        .GET("", queryParam("all", "true"::equals), handler::getAllCustomers)
+                        .GET("", handler::getCustomers)
+                        .GET("/export", handler::exportCustomers)
+                        .GET("/search", handler::searchCustomers)
+                        .GET("/stats", handler::getCustomerStats)
+                        .GET("/{customerId}", handler::getCustomer)
+                        .POST("", handler::registerCustomer)
+                        .POST("/bulk", handler::registerCustomers)
+                        .PUT("/{customerId}", handler::updateCustomer)
+                        .DELETE("/{customerId}", handler::deleteCustomer))
+                .build();
+    }
+}
@@ -0,0 +1,325 @@
+package com.amigoscode.customer;
+
+import io.r2dbc.spi.Readable;
+import org.springframework.context.annotation.Profile;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.r2dbc.core.DatabaseClient;
+import org.springframework.stereotype.Repository;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Non-blocking counterpart of {@link CustomerJDBCDataAccessService} on R2DBC, with the
+ * same SQL so both use the same indexes.
+ */
+@Repository
+@Profile("reactive")
+public class CustomerReactiveDataAccessService {
+
+    static final int STREAM_FETCH_SIZE = 1000;
+
+    private final DatabaseClient databaseClient;
+    private final CustomerIdPool idPool = new CustomerIdPool();
+
+    public CustomerReactiveDataAccessService(DatabaseClient databaseClient) {
+        this.databaseClient = databaseClient;
+    }
+
+    public Flux<Customer> streamAllCustomers() {
+        var sql = """
+                SELECT id, name, email, age, version
+                FROM customer
+                ORDER BY id
+                """;
+
+        // rows are fetched in portions as the subscriber requests them, not all at once
+        return databaseClient.sql(sql)
+                .filter(statement -> statement.fetchSize(STREAM_FETCH_SIZE))
+                .map(row -> toCustomer(row, CustomerField.ALL))
+                .all();
+    }
+
+    public Flux<Customer> selectCustomersAfterId(Integer id, int limit) {
+        return selectCustomersAfterId(id, limit, CustomerField.ALL);
+    }
+
+    public Flux<Customer> selectCustomersAfterId(Integer id, int limit, Set<CustomerField> fields) {
+        var sql = """
+                SELECT %s
+                FROM customer
+                WHERE id > $1
+                ORDER BY id
+                LIMIT $2
+                """.formatted(CustomerField.selectList(fields));
+
+        return databaseClient.sql(sql)
+                .bind(0, id)
+                .bind(1, limit)
+                .map(row -> toCustomer(row, fields))
+                .all();
+    }
+
+    public Flux<Customer> selectCustomers(CustomerQuery query) {
+        List<String> conditions = new ArrayList<>();
+        List<Object> args = new ArrayList<>();
+
+        if(query.namePrefix() != null){
+            args.add(query.namePattern());
+            conditions.add("lower(name) LIKE $" + args.size());
+        }
+
+        if(query.emailDomain() != null){
+            args.add(query.lowerEmailDomain());
+            conditions.add("lower(split_part(email, '@', 2)) = $" + args.size());
+        }
+
+        if(query.minAge() != null){
+            args.add(query.minAge());
+            conditions.add("age >= $" + args.size());
+        }
+
+        if(query.maxAge() != null){
+            args.add(query.maxAge());
+            conditions.add("age <= $" + args.size());
+        }
+
+        var sql = new StringBuilder("""
+                SELECT id, name, email, age, version
+                FROM customer
+                """);
+        if(!conditions.isEmpty()){
+            sql.append("WHERE ").append(String.join(" AND ", conditions)).append('\n');
+        }
+
+        String direction = query.descending() ? "DESC" : "ASC";
+        sql.append("ORDER BY ").append(query.sortBy().column()).append(' ').append(direction);
+        if(query.sortBy() != CustomerQuery.SortField.ID){
+            sql.append(", id ").append(direction);
+        }
+        args.add(query.limit());
+        sql.append("\nLIMIT $").append(args.size());
+
+        return bindAll(databaseClient.sql(sql.toString()), args)
+                .map(row -> toCustomer(row, CustomerField.ALL))
+                .all();
+    }
+
+    public Mono<Customer> selectCustomerById(Integer id) {
+        return selectCustomerById(id, CustomerField.ALL);
+    }
+
+    public Mono<Customer> selectCustomerById(Integer id, Set<CustomerField> fields) {
+        var sql = """
+                SELECT %s
+                FROM customer
+                WHERE id = $1
+                """.formatted(CustomerField.selectList(fields));
+
+        return databaseClient.sql(sql)
+                .bind(0, id)
+                .map(row -> toCustomer(row, fields))
+                .one();
+    }
+
+    public Mono<Integer> selectCustomerVersionById(Integer id) {
+        var sql = """
+                SELECT version
+                FROM customer
+                WHERE id = $1
+                """;
+
+        return databaseClient.sql(sql)
+                .bind(0, id)
+                .map(row -> row.get("version", Integer.class))
+                .one();
+    }
+
+    /**
+     * Emits {@code true} when the customer was inserted and {@code false} when the email
+     * is already taken, setting the generated id on the customer.
+     */
+    public Mono<Boolean> insertCustomerIfAbsent(Customer customer) {
+        var sql = """
+                INSERT INTO customer(id, name, email, age)
+                VALUES ($1, $2, $3, $4)
+                ON CONFLICT (email) DO NOTHING
+                RETURNING id
+                """;
+
+        return nextIds(1).flatMap(ids -> databaseClient.sql(sql)
+                        .bind(0, ids[0])
+                        .bind(1, customer.getName())
+                        .bind(2, customer.getEmail())
+                        .bind(3, customer.getAge())
+                        .map(row -> row.get("id", Integer.class))
+                        .one())
+                .doOnNext(customer::setId)
+                .map(id -> true)
+                .defaultIfEmpty(false);
+    }
+
+    /**
+     * Inserts the customers in one statement, skipping taken emails, and emits the
+     * emails that were inserted. The emails must be distinct.
+     */
+    public Flux<String> insertCustomersIfAbsent(List<Customer> customers) {
+        return nextIds(customers.size()).flatMapMany(ids -> {
+            StringBuilder sql = new StringBuilder("INSERT INTO customer(id, name, email, age) VALUES ");
+            List<Object> args = new ArrayList<>(customers.size() * 4);
+            for (int i = 0; i < customers.size(); i++) {
+                Customer customer = customers.get(i);
+                if(!args.isEmpty()){
+                    sql.append(", ");
+                }
+                sql.append("($").append(args.size() + 1)
+                        .append(", $").append(args.size() + 2)
+                        .append(", $").append(args.size() + 3)
+                        .append(", $").append(args.size() + 4).append(')');
+                args.add(ids[i]);
+                args.add(customer.getName());
+                args.add(customer.getEmail());
+                args.add(customer.getAge());
+            }
+            sql.append(" ON CONFLICT (email) DO NOTHING RETURNING email");
+
+            return bindAll(databaseClient.sql(sql.toString()), args)
+                    .map(row -> row.get("email", String.class))
+                    .all();
+        });
+    }
+
+    public Mono<Boolean> existsPersonWithEmail(String email) {
+        var sql = """
+                SELECT EXISTS(SELECT 1 FROM customer WHERE email = $1) AS present
+                """;
+
+        return databaseClient.sql(sql)
+                .bind(0, email)
+                .map(row -> row.get("present", Boolean.class))
+                .one();
+    }
+
+    /**
+     * Emits the deleted customer, or nothing when there was no customer with that id.
+     */
+    public Mono<Customer> deleteCustomerById(Integer id) {
+        var sql = """
+                DELETE FROM customer
+                WHERE id = $1
+                RETURNING id, name, email, age, version
+                """;
+
+        return databaseClient.sql(sql)
+                .bind(0, id)
+                .map(row -> toCustomer(row, CustomerField.ALL))
+                .one();
+    }
+
+    /**
+     * Emits the deleted customer, or fails with an {@link OptimisticLockingFailureException}
+     * when there is no customer with that id at that version.
+     */
+    public Mono<Customer> deleteCustomerById(Integer id, Integer version) {
+        var sql = """
+                DELETE FROM customer
+                WHERE id = $1 AND version = $2
+                RETURNING id, name, email, age, version
+                """;
+
+        return databaseClient.sql(sql)
+                .bind(0, id)
+                .bind(1, version)
+                .map(row -> toCustomer(row, CustomerField.ALL))
+                .one()
+                .switchIfEmpty(Mono.error(() -> new OptimisticLockingFailureException(
+                        "customer with id [%s] and version [%s] not found".formatted(id, version)
+                )));
+    }
+
+    public Mono<Void> updateCustomer(Customer update) {
+        List<String> assignments = new ArrayList<>();
+        List<Object> args = new ArrayList<>();
+
+        if(update.getName() != null){
+            args.add(update.getName());
+            assignments.add("name = $" + args.size());
+        }
+
+        if(update.getEmail() != null){
+            args.add(update.getEmail());
+            assignments.add("email = $" + args.size());
+        }
+
+        if(update.getAge() != null){
+            args.add(update.getAge());
+            assignments.add("age = $" + args.size());
+        }
+
+        if(assignments.isEmpty()){
+            return Mono.empty();
+        }
+
+        args.add(update.getId());
+        var sql = new StringBuilder("UPDATE customer SET ")
+                .append(String.join(", ", assignments))
+                .append(", version = version + 1 WHERE id = $").append(args.size());
+
+        if(update.getVersion() != null){
+            args.add(update.getVersion());
+            sql.append(" AND version = $").append(args.size());
+        }
+
+        return bindAll(databaseClient.sql(sql.toString()), args)
+                .fetch()
+                .rowsUpdated()
+                .flatMap(rows -> {
+                    if(update.getVersion() == null){
+                        return Mono.empty();
+                    }
+                    if(rows == 0){
+                        return Mono.error(new OptimisticLockingFailureException(
+                                "customer with id [%s] and version [%s] not found".formatted(update.getId(), update.getVersion())
+                        ));
+                    }
+                    update.setVersion(update.getVersion() + 1);
+                    return Mono.empty();
+                });
+    }
+
+    /**
+     * Ids from the pool, reserving the blocks it runs short of without blocking.
+     */
+    private Mono<int[]> nextIds(int count) {
+        int[] taken = idPool.take(count);
+        if (taken.length == count) {
+            return Mono.just(taken);
+        }
+        return databaseClient.sql("SELECT nextval('customer_id_seq') AS block FROM generate_series(1, $1)")
+                .bind(0, CustomerIdPool.blocksFor(count - taken.length))
+                .map(row -> row.get("block", Long.class))
+                .all()
+                .collectList()
+                .map(blocks -> idPool.takeWith(taken, blocks, count));
+    }
+
+    private static DatabaseClient.GenericExecuteSpec bindAll(DatabaseClient.GenericExecuteSpec spec, List<Object> args) {
+        for (int i = 0; i < args.size(); i++) {
+            spec = spec.bind(i, args.get(i));
+        }
+        return spec;
+    }
+
+    private static Customer toCustomer(Readable row, Set<CustomerField> fields) {
+        return new Customer(
+                row.get("id", Integer.class),
+                fields.contains(CustomerField.NAME) ? row.get("name", String.class) : null,
+                fields.contains(CustomerField.EMAIL) ? row.get("email", String.class) : null,
+                fields.contains(CustomerField.AGE) ? row.get("age", Integer.class) : null,
+                row.get("version", Integer.class)
+        );
+    }
+}
@@ -1,8 +1,93 @@
 package com.amigoscode.customer;
 
+import jakarta.persistence.QueryHint;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.transaction.annotation.Transactional;
 
-public interface CustomerRepository extends JpaRepository<Customer, Integer> {
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.stream.Stream;
+
+import static org.hibernate.jpa.HibernateHints.HINT_CACHEABLE;
+import static org.hibernate.jpa.HibernateHints.HINT_CACHE_REGION;
+import static org.hibernate.jpa.HibernateHints.HINT_FETCH_SIZE;
+
+public interface CustomerRepository extends JpaRepository<Customer, Integer>, JpaSpecificationExecutor<Customer>,
+        CustomerProjectionRepository, CustomerQueryCacheRepository {
+
+    String EMAIL_LOOKUP_REGION = "customer-email-lookup";
+
+    @QueryHints({
+            @QueryHint(name = HINT_CACHEABLE, value = "true"),
+            @QueryHint(name = HINT_CACHE_REGION, value = EMAIL_LOOKUP_REGION)
+    })
     boolean existsCustomerByEmail(String email);
     boolean existsCustomerById(Integer id);
+    @Query("SELECT c.version FROM Customer c WHERE c.id = :id")
+    Optional<Integer> findVersionById(Integer id);
+
+    // one statement registration, no id comes back when the email is already taken
+    @Transactional
+    @Query(
+            value = """
+                    INSERT INTO customer (id, name, email, age)
+                    VALUES (:id, :name, :email, :age)
+                    ON CONFLICT (email) DO NOTHING
+                    RETURNING id
+                    """,
+            nativeQuery = true
+    )
+    Optional<Integer> insertIfAbsent(Integer id, String name, String email, Integer age);
+
+    @Transactional
+    @Query(
+            value = """
+                    INSERT INTO customer (id, name, email, age)
+                    SELECT * FROM unnest(
+                            CAST(:ids AS int[]), CAST(:names AS text[]), CAST(:emails AS text[]), CAST(:ages AS int[])
+                    )
+                    ON CONFLICT (email) DO NOTHING
+                    RETURNING id, email
+                    """,
+            nativeQuery = true
+    )
+    List<Object[]> insertAllIfAbsent(Integer[] ids, String[] names, String[] emails, Integer[] ages);
+
+    // the native inserts take their ids from these blocks, see CustomerIdPool
+    @Query(value = "SELECT nextval('customer_id_seq') FROM generate_series(1, :blocks)", nativeQuery = true)
+    List<Long> reserveIdBlocks(int blocks);
+
+    @Transactional
+    @Modifying
+    @Query("DELETE FROM Customer c WHERE c.id = :id")
+    int deleteCustomerById(Integer id);
+
+    @Transactional
+    @Modifying
+    @Query("DELETE FROM Customer c WHERE c.id = :id AND c.version = :version")
+    int deleteByIdAndVersion(Integer id, Integer version);
+
+    @Query("SELECT c.age, COUNT(c) FROM Customer c GROUP BY c.age")
+    List<Object[]> countByAge();
+
+    List<Customer> findByIdGreaterThanOrderByIdAsc(Integer id, Limit limit);
+
+    @Query("SELECT c.email FROM Customer c WHERE c.email IN :emails")
+    Set<String> findEmailsIn(Collection<String> emails);
+
+    // constructor expression so rows are not attached to (and retained by) the persistence context
+    @QueryHints(@QueryHint(name = HINT_FETCH_SIZE, value = "1000"))
+    @Query("SELECT new com.amigoscode.customer.Customer(c.id, c.name, c.email, c.age, c.version) FROM Customer c ORDER BY c.id")
+    Stream<Customer> streamAll();
+
+    @QueryHints(@QueryHint(name = HINT_FETCH_SIZE, value = "1000"))
+    @Query("SELECT c.email FROM Customer c")
+    Stream<String> streamAllEmails();
 }
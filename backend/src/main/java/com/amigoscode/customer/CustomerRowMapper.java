@@ -14,7 +14,8 @@ public class CustomerRowMapper implements RowMapper<Customer> {
                 rs.getInt("id"),
                 rs.getString("name"),
                 rs.getString("email"),
-                rs.getInt("age")
+                rs.getInt("age"),
+                rs.getInt("version")
         );
     }
 }
@@ -0,0 +1,10 @@
+package com.amigoscode.customer;
+
+public record CustomerSearchRequest(
+        String namePrefix,
+        String emailDomain,
+        Integer minAge,
+        Integer maxAge,
+        String sort,
+        Integer limit) {
+}
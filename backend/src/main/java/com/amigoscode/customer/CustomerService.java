@@ -1,25 +1,75 @@
 package com.amigoscode.customer;
 
 import com.amigoscode.exception.DuplicateResourceException;
+import com.amigoscode.exception.PreconditionFailedException;
 import com.amigoscode.exception.RequestValidationException;
 import com.amigoscode.exception.ResourceNotFoundException;
-import org.springframework.beans.factory.annotation.Qualifier;
+import com.amigoscode.exception.StaleResourceException;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.OptimisticLockingFailureException;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
 
 @Service
 public class CustomerService {
+    static final int MAX_PAGE_SIZE = 1000;
+    static final int DEFAULT_SEARCH_LIMIT = 50;
+
     private final CustomerDao customerDao;
+    private final CustomerStatistics customerStatistics;
 
-    public CustomerService(@Qualifier("jpa") CustomerDao customerDao) {
+    public CustomerService(CustomerDao customerDao, CustomerStatistics customerStatistics) {
         this.customerDao = customerDao;
+        this.customerStatistics = customerStatistics;
     }
 
+    @Transactional(readOnly = true)
     public List<Customer> getAllCustomers(){
         return customerDao.selectAllCustomer();
     }
 
+    @Transactional(readOnly = true)
+    public CustomerPage getCustomers(String cursor, int limit){
+        return getCustomers(cursor, limit, CustomerField.ALL);
+    }
+
+    @Transactional(readOnly = true)
+    public CustomerPage getCustomers(String cursor, int limit, Set<CustomerField> fields){
+        checkLimit(limit);
+
+        int afterId = cursor == null ? 0 : CustomerCursor.decode(cursor);
+
+        // one extra row tells us whether there is a next page without a COUNT(*)
+        List<Customer> customers = fields.equals(CustomerField.ALL)
+                ? customerDao.selectCustomersAfterId(afterId, limit + 1)
+                : customerDao.selectCustomersAfterId(afterId, limit + 1, fields);
+        if(customers.size() <= limit){
+            return new CustomerPage(customers, null);
+        }
+
+        List<Customer> page = List.copyOf(customers.subList(0, limit));
+        return new CustomerPage(page, CustomerCursor.encode(page.get(limit - 1).getId()));
+    }
+
+    @Transactional(readOnly = true)
+    public List<Customer> searchCustomers(CustomerSearchRequest request){
+        return customerDao.selectCustomers(toQuery(request));
+    }
+
+    @Transactional(readOnly = true)
+    public void exportCustomers(Consumer<Customer> consumer){
+        try(Stream<Customer> customers = customerDao.streamAllCustomers()){
+            customers.forEach(consumer);
+        }
+    }
+
+    @Transactional(readOnly = true)
     public Customer getCustomerById(int id){
         return customerDao.selectCustomerById(id).orElseThrow(
                 () -> new ResourceNotFoundException(
@@ -27,44 +77,97 @@ public class CustomerService {
         );
     }
 
-    public void addCustomer(CustomerRegistrationRequest customerRegistrationRequest){
-        String email = customerRegistrationRequest.email();
-        if(customerDao.existsPersonWithEmail(email)){
-            throw new DuplicateResourceException(
-                    "email already exists"
-            );
+    @Transactional(readOnly = true)
+    public Customer getCustomerById(int id, Set<CustomerField> fields){
+        if(fields.equals(CustomerField.ALL)){
+            return getCustomerById(id);
         }
+        return customerDao.selectCustomerById(id, fields).orElseThrow(
+                () -> new ResourceNotFoundException(
+                        "customer with id [%s] not found".formatted(id))
+        );
+    }
+
+    @Transactional(readOnly = true)
+    public int getCustomerVersion(int id){
+        return customerDao.selectCustomerVersionById(id).orElseThrow(
+                () -> new ResourceNotFoundException(
+                        "customer with id [%s] not found".formatted(id))
+        );
+    }
 
+    public void addCustomer(CustomerRegistrationRequest customerRegistrationRequest){
         Customer customer = new Customer(
                 customerRegistrationRequest.name(),
                 customerRegistrationRequest.email(),
                 customerRegistrationRequest.age()
         );
-        customerDao.insertCustomer(customer);
+        // the insert itself checks the email, no lookup beforehand that a concurrent registration could race
+        if(!customerDao.insertCustomerIfAbsent(customer)){
+            throw new DuplicateResourceException(
+                    "email already exists"
+            );
+        }
+        customerStatistics.customerAdded(customer.getAge());
     }
 
     public void deleteCustomerById(int id){
-        if(customerDao.existsPersonWithId(id)){
-            customerDao.deleteCustomerById(id);
+        deleteCustomerById(id, null);
+    }
+
+    public void deleteCustomerById(int id, Integer expectedVersion){
+        // the row is read rather than checked for existence, the statistics need its age
+        Customer customer = customerDao.selectCustomerById(id).orElseThrow(
+                () -> new ResourceNotFoundException("customer with id [%s] not found".formatted(id))
+        );
+        if(expectedVersion == null){
+            // a concurrent delete of the same customer may have won, only one of them is counted
+            if(!customerDao.deleteCustomerById(id)){
+                throw new ResourceNotFoundException("customer with id [%s] not found".formatted(id));
+            }
         }else{
-            throw new ResourceNotFoundException("Not Found");
+            checkVersion(id, customer.getVersion(), expectedVersion);
+            // the delete checks the version again, an update after our read is not deleted unseen
+            try{
+                customerDao.deleteCustomerById(id, expectedVersion);
+            }catch(OptimisticLockingFailureException e){
+                throw notAtVersion(id, expectedVersion);
+            }
         }
+        customerStatistics.customerRemoved(customer.getAge());
+    }
+
+    public CustomerStats getCustomerStats(){
+        return customerStatistics.snapshot();
     }
 
+    // a call on this, not the proxy, so the overload needs its own transaction
+    @Transactional
     public void updateCustomer(int id , CustomerUpdateRequest updateRequest){
+        updateCustomer(id, updateRequest, null);
+    }
+
+    @Transactional
+    public void updateCustomer(int id , CustomerUpdateRequest updateRequest, Integer expectedVersion){
         Customer customer = getCustomerById(id);
+        if(expectedVersion != null){
+            checkVersion(id, customer.getVersion(), expectedVersion);
+        }
+
+        // only the changed columns are sent, guarded by the version we just read
+        Customer update = new Customer();
+        update.setId(id);
+        update.setVersion(customer.getVersion());
 
         boolean changes = false;
 
         if(updateRequest.name() != null && !updateRequest.name().equals(customer.getName())){
-            customer.setName(updateRequest.name());
-//            customerDao.insertCustomer(customer);
+            update.setName(updateRequest.name());
             changes = true;
         }
 
         if(updateRequest.age() != null && !updateRequest.age().equals(customer.getAge())){
-            customer.setAge(updateRequest.age());
-//            customerDao.insertCustomer(customer);
+            update.setAge(updateRequest.age());
             changes = true;
         }
 
@@ -74,8 +177,7 @@ public class CustomerService {
                         "email already exists"
                 );
             }
-            customer.setEmail(updateRequest.email());
-//            customerDao.insertCustomer(customer);
+            update.setEmail(updateRequest.email());
             changes = true;
         }
 
@@ -83,6 +185,78 @@ public class CustomerService {
             throw new RequestValidationException("no data changes found");
         }
 
-        customerDao.updateCustomer(customer);
+        try{
+            customerDao.updateCustomer(update);
+        }catch(OptimisticLockingFailureException e){
+            throw new StaleResourceException(
+                    "customer with id [%s] was modified concurrently".formatted(id)
+            );
+        }catch(DataIntegrityViolationException e){
+            // the lookup can miss an email taken since or through another instance, the unique constraint cannot
+            throw new DuplicateResourceException(
+                    "email already exists"
+            );
+        }
+
+        if(update.getAge() != null){
+            customerStatistics.ageChanged(customer.getAge(), update.getAge());
+        }
+    }
+
+    static void checkLimit(int limit){
+        if(limit < 1 || limit > MAX_PAGE_SIZE){
+            throw new RequestValidationException(
+                    "limit must be between 1 and %s".formatted(MAX_PAGE_SIZE)
+            );
+        }
+    }
+
+    static CustomerQuery toQuery(CustomerSearchRequest request){
+        int limit = request.limit() == null ? DEFAULT_SEARCH_LIMIT : request.limit();
+        checkLimit(limit);
+
+        if(request.minAge() != null && request.maxAge() != null && request.minAge() > request.maxAge()){
+            throw new RequestValidationException("minAge must not be greater than maxAge");
+        }
+
+        // "age" sorts ascending, "-age" descending
+        String sort = request.sort() == null || request.sort().isBlank() ? "id" : request.sort();
+        boolean descending = sort.startsWith("-");
+        CustomerQuery.SortField sortBy;
+        try{
+            sortBy = CustomerQuery.SortField.valueOf(
+                    (descending ? sort.substring(1) : sort).toUpperCase(Locale.ROOT)
+            );
+        }catch(IllegalArgumentException e){
+            throw new RequestValidationException(
+                    "sort must be one of id, name or age, prefixed with - for descending order"
+            );
+        }
+
+        return new CustomerQuery(
+                blankToNull(request.namePrefix()),
+                blankToNull(request.emailDomain()),
+                request.minAge(),
+                request.maxAge(),
+                sortBy,
+                descending,
+                limit
+        );
+    }
+
+    private static String blankToNull(String value){
+        return value == null || value.isBlank() ? null : value;
+    }
+
+    static void checkVersion(int id, Integer actualVersion, int expectedVersion){
+        if(actualVersion == null || actualVersion != expectedVersion){
+            throw notAtVersion(id, expectedVersion);
+        }
+    }
+
+    static PreconditionFailedException notAtVersion(int id, int expectedVersion){
+        return new PreconditionFailedException(
+                "customer with id [%s] is not at version [%s]".formatted(id, expectedVersion)
+        );
     }
 }
@@ -0,0 +1,180 @@
+package com.amigoscode.customer;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionOperations;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Customer count and age distribution kept in memory. The service reports every
+ * registration, age change and deletion the dao confirmed, once it is committed, so a
+ * snapshot never touches the database; a periodic reconciliation replaces the counts with
+ * a grouped count from the dao, plus the changes reported after the count was sent, to
+ * correct any drift (writes from other instances, changes reported around a recount).
+ * <p>
+ * Every change is numbered as it is reported. A recount notes the number reached once its
+ * transaction has begun, right before the count is sent, and drops the changes up to it:
+ * those were committed before the count and are part of it.
+ */
+@Component
+public class CustomerStatistics {
+
+    private static final Logger log = LoggerFactory.getLogger(CustomerStatistics.class);
+
+    private final CustomerDao customerDao;
+    private final TransactionOperations transactionOperations;
+
+    private final TreeMap<Integer, Long> ageCounts = new TreeMap<>();
+    private long count;
+    private long ageSum;
+    // number of the last change reported
+    private long changes;
+    // changes reported while a recount runs, null when none is running
+    private List<Change> changesDuringRecount;
+    private Instant reconciledAt;
+    private CustomerStats snapshot;
+
+    private record Change(long number, int age, long customers) {
+    }
+
+    public CustomerStatistics(CustomerDao customerDao, TransactionOperations transactionOperations) {
+        this.customerDao = customerDao;
+        this.transactionOperations = transactionOperations;
+    }
+
+    public void customerAdded(int age) {
+        afterCommit(() -> change(age, 1));
+    }
+
+    public void customerRemoved(int age) {
+        afterCommit(() -> change(age, -1));
+    }
+
+    public void ageChanged(int oldAge, int newAge) {
+        afterCommit(() -> {
+            synchronized (this) {
+                change(oldAge, -1);
+                change(newAge, 1);
+            }
+        });
+    }
+
+    public synchronized CustomerStats snapshot() {
+        if (snapshot == null) {
+            snapshot = new CustomerStats(
+                    count,
+                    ageCounts.isEmpty() ? null : ageCounts.firstKey(),
+                    ageCounts.isEmpty() ? null : ageCounts.lastKey(),
+                    count == 0 ? null : (double) ageSum / count,
+                    Collections.unmodifiableSortedMap(new TreeMap<>(ageCounts)),
+                    reconciledAt
+            );
+        }
+        return snapshot;
+    }
+
+    /**
+     * Recounts from the dao once the application is ready and then every
+     * {@code customer.statistics.reconcile-interval}. Changes reported after the count was
+     * sent are applied on top of it, so it corrects drift however busy the writes are. The
+     * count runs in a read-write transaction so it reads the primary.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    @Scheduled(
+            initialDelayString = "${customer.statistics.reconcile-interval:PT5M}",
+            fixedDelayString = "${customer.statistics.reconcile-interval:PT5M}"
+    )
+    public void reconcile() {
+        synchronized (this) {
+            if (changesDuringRecount != null) {
+                log.debug("customer statistics are already being reconciled");
+                return;
+            }
+            changesDuringRecount = new ArrayList<>();
+        }
+
+        long[] countedUpTo = new long[1];
+        Map<Integer, Long> counts;
+        try {
+            counts = transactionOperations.execute(status -> {
+                synchronized (this) {
+                    countedUpTo[0] = changes;
+                }
+                return customerDao.selectAgeCounts();
+            });
+        } catch (RuntimeException e) {
+            synchronized (this) {
+                changesDuringRecount = null;
+            }
+            throw e;
+        }
+
+        synchronized (this) {
+            List<Change> reported = changesDuringRecount;
+            changesDuringRecount = null;
+            long previousCount = count;
+            ageCounts.clear();
+            count = 0;
+            ageSum = 0;
+            counts.forEach(this::add);
+            for (Change change : reported) {
+                if (change.number() > countedUpTo[0]) {
+                    add(change.age(), change.customers());
+                }
+            }
+            if (reconciledAt != null && previousCount != count) {
+                log.info("customer statistics drifted by {} customers, corrected", count - previousCount);
+            }
+            reconciledAt = Instant.now();
+            modified();
+        }
+    }
+
+    // inside a transaction a change only counts once it is committed
+    private void afterCommit(Runnable change) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            change.run();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                change.run();
+            }
+        });
+    }
+
+    private synchronized void change(int age, long customers) {
+        add(age, customers);
+        changes++;
+        if (changesDuringRecount != null) {
+            changesDuringRecount.add(new Change(changes, age, customers));
+        }
+        modified();
+    }
+
+    private void add(int age, long customers) {
+        long updated = ageCounts.merge(age, customers, Long::sum);
+        if (updated <= 0) {
+            ageCounts.remove(age);
+        }
+        count += customers;
+        ageSum += (long) age * customers;
+    }
+
+    private void modified() {
+        snapshot = null;
+    }
+}
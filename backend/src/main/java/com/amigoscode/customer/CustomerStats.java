@@ -0,0 +1,13 @@
+package com.amigoscode.customer;
+
+import java.time.Instant;
+import java.util.SortedMap;
+
+public record CustomerStats(
+        long count,
+        Integer minAge,
+        Integer maxAge,
+        Double meanAge,
+        SortedMap<Integer, Long> ageHistogram,
+        Instant reconciledAt) {
+}
@@ -0,0 +1,148 @@
+package com.amigoscode.customer;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Scalable Bloom filter of emails: once a slice holds its capacity a new one twice as large
+ * is added, each with half the false positive rate of the one before, so the combined rate
+ * stays under the target however many emails arrive. Lookups are lock-free, adds are
+ * serialized. Nothing can be removed, removed emails linger as stale entries until the
+ * filter is rebuilt.
+ */
+final class EmailBloomFilter {
+
+    private final double falsePositiveRate;
+    private volatile Slice[] slices;
+    private long entries;
+
+    EmailBloomFilter(long initialCapacity, double falsePositiveRate) {
+        if (initialCapacity < 1) {
+            throw new IllegalArgumentException("initial capacity must be positive but was " + initialCapacity);
+        }
+        if (falsePositiveRate <= 0 || falsePositiveRate >= 1) {
+            throw new IllegalArgumentException("false positive rate must be in (0, 1) but was " + falsePositiveRate);
+        }
+        this.falsePositiveRate = falsePositiveRate;
+        // halving the rate per slice makes the series sum to the target
+        this.slices = new Slice[]{new Slice(initialCapacity, falsePositiveRate / 2)};
+    }
+
+    boolean mightContain(String email) {
+        long h1 = hash(email);
+        long h2 = mix(h1 ^ 0x9E3779B97F4A7C15L) | 1;
+        for (Slice slice : slices) {
+            if (slice.mightContain(h1, h2)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return whether the email was added, false when it (or a colliding email) was already present
+     */
+    synchronized boolean put(String email) {
+        long h1 = hash(email);
+        long h2 = mix(h1 ^ 0x9E3779B97F4A7C15L) | 1;
+        Slice[] current = slices;
+        for (Slice slice : current) {
+            if (slice.mightContain(h1, h2)) {
+                return false;
+            }
+        }
+        Slice last = current[current.length - 1];
+        if (last.entries == last.capacity) {
+            Slice[] grown = Arrays.copyOf(current, current.length + 1);
+            last = new Slice(last.capacity * 2, last.falsePositiveRate / 2);
+            grown[current.length] = last;
+            slices = grown;
+        }
+        last.put(h1, h2);
+        entries++;
+        return true;
+    }
+
+    synchronized long entries() {
+        return entries;
+    }
+
+    long bitSize() {
+        long bits = 0;
+        for (Slice slice : slices) {
+            bits += slice.bits;
+        }
+        return bits;
+    }
+
+    /**
+     * The chance that an email never added is reported present, from how full each slice is.
+     */
+    synchronized double expectedFalsePositiveRate() {
+        double allMiss = 1;
+        for (Slice slice : slices) {
+            double slotEmpty = Math.exp(-(double) slice.hashes * slice.entries / slice.bits);
+            allMiss *= 1 - Math.pow(1 - slotEmpty, slice.hashes);
+        }
+        return 1 - allMiss;
+    }
+
+    double targetFalsePositiveRate() {
+        return falsePositiveRate;
+    }
+
+    private static long hash(String email) {
+        // FNV-1a over the chars, then a finalizer so nearby emails land far apart
+        long hash = 0xCBF29CE484222325L;
+        for (int i = 0; i < email.length(); i++) {
+            hash ^= email.charAt(i);
+            hash *= 0x100000001B3L;
+        }
+        return mix(hash);
+    }
+
+    private static long mix(long z) {
+        z = (z ^ (z >>> 33)) * 0xFF51AFD7ED558CCDL;
+        z = (z ^ (z >>> 33)) * 0xC4CEB9FE1A85EC53L;
+        return z ^ (z >>> 33);
+    }
+
+    private static final class Slice {
+
+        private final long capacity;
+        private final double falsePositiveRate;
+        private final long bits;
+        private final int hashes;
+        private final AtomicLongArray words;
+        private long entries;
+
+        Slice(long capacity, double falsePositiveRate) {
+            this.capacity = capacity;
+            this.falsePositiveRate = falsePositiveRate;
+            // optimal size and hash count for the capacity at this rate
+            this.bits = Math.max(64, (long) Math.ceil(-capacity * Math.log(falsePositiveRate) / (Math.log(2) * Math.log(2))));
+            this.hashes = Math.max(1, (int) Math.round(-Math.log(falsePositiveRate) / Math.log(2)));
+            this.words = new AtomicLongArray(Math.toIntExact((bits + 63) / 64));
+        }
+
+        boolean mightContain(long h1, long h2) {
+            for (int i = 0; i < hashes; i++) {
+                long bit = Math.floorMod(h1 + i * h2, bits);
+                if ((words.get((int) (bit >>> 6)) & (1L << bit)) == 0) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        // callers hold the filter's lock, the volatile write publishes each word to readers
+        void put(long h1, long h2) {
+            for (int i = 0; i < hashes; i++) {
+                long bit = Math.floorMod(h1 + i * h2, bits);
+                int word = (int) (bit >>> 6);
+                words.set(word, words.get(word) | (1L << bit));
+            }
+            entries++;
+        }
+    }
+}
@@ -0,0 +1,52 @@
+package com.amigoscode.customer;
+
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.boot.actuate.endpoint.annotation.WriteOperation;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+
+/**
+ * {@code /actuator/emailfilter}: the state of the email filter, and a rebuild on POST.
+ * Also builds the filter once the application is ready, and rebuilds it whenever stale
+ * entries have grown past the configured share of its entries.
+ */
+@Endpoint(id = "emailfilter")
+public class EmailFilterEndpoint {
+
+    private final EmailFilteringCustomerDao customerDao;
+    private final double rebuildStaleRatio;
+
+    EmailFilterEndpoint(EmailFilteringCustomerDao customerDao, double rebuildStaleRatio) {
+        this.customerDao = customerDao;
+        this.rebuildStaleRatio = rebuildStaleRatio;
+    }
+
+    @ReadOperation
+    public EmailFilterStatus status() {
+        return customerDao.status();
+    }
+
+    @WriteOperation
+    public EmailFilterStatus rebuild() {
+        customerDao.rebuild();
+        return customerDao.status();
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    void build() {
+        customerDao.rebuild();
+    }
+
+    @Scheduled(
+            initialDelayString = "${customer.dao.email-filter.stale-check-interval:PT1M}",
+            fixedDelayString = "${customer.dao.email-filter.stale-check-interval:PT1M}"
+    )
+    void rebuildIfStale() {
+        EmailFilterStatus status = customerDao.status();
+        if (status.built() && status.staleEntries() > status.entries() * rebuildStaleRatio) {
+            customerDao.rebuild();
+        }
+    }
+}
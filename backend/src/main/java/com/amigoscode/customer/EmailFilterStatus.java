@@ -0,0 +1,19 @@
+package com.amigoscode.customer;
+
+import java.time.Instant;
+
+/**
+ * @param entries                   emails in the filter, stale ones included
+ * @param staleEntries              deleted or replaced emails still in the filter
+ * @param observedFalsePositiveRate share of absent emails let through since the filter was built
+ */
+public record EmailFilterStatus(
+        boolean built,
+        Instant builtAt,
+        long entries,
+        long staleEntries,
+        long bits,
+        double targetFalsePositiveRate,
+        double expectedFalsePositiveRate,
+        double observedFalsePositiveRate) {
+}
@@ -0,0 +1,276 @@
+package com.amigoscode.customer;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.transaction.support.TransactionOperations;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+
+/**
+ * Answers email lookups the {@link EmailBloomFilter} of known emails rules out without a
+ * query; only emails the filter might contain reach the wrapped dao. Until the first
+ * {@link #rebuild()} every lookup goes through.
+ * <p>
+ * Emails are added before they are written and again once the write is done or committed,
+ * so a lookup never misses a committed email, including one committed while a rebuild
+ * was streaming. Deletes and email changes leave stale entries that only cost false
+ * positives, and are counted so the filter can be rebuilt once they pile up.
+ * <p>
+ * The filter only learns the emails written through this instance since its last rebuild,
+ * so it can rule out an email another instance just took. A "no" is therefore only a hint:
+ * every path that acts on it is backed by the unique constraint on the email, and turns
+ * its violation into the same duplicate answer.
+ * <p>
+ * Meant for a single instance. Behind several, every email another instance took since the
+ * last rebuild is a miss: a bulk insert chunk holding one fails as a whole and is retried
+ * row by row, which costs more than the lookups the filter saves. A single sign-up saves
+ * no query either way, its insert is backed by the constraint.
+ */
+class EmailFilteringCustomerDao extends ForwardingCustomerDao {
+
+    private final TransactionOperations transactionOperations;
+    private final long initialCapacity;
+    private final double falsePositiveRate;
+    private final Clock clock;
+
+    private volatile EmailBloomFilter filter;
+    private volatile EmailBloomFilter building;
+    private volatile Instant builtAt;
+    private final AtomicLong staleEntries = new AtomicLong();
+    private final AtomicLong ruledOut = new AtomicLong();
+    private final AtomicLong falsePositives = new AtomicLong();
+
+    private Counter ruledOutCounter;
+    private Counter confirmedCounter;
+    private Counter falsePositiveCounter;
+
+    EmailFilteringCustomerDao(CustomerDao delegate,
+                              TransactionOperations transactionOperations,
+                              long initialCapacity,
+                              double falsePositiveRate,
+                              Clock clock) {
+        super(delegate);
+        this.transactionOperations = transactionOperations;
+        this.initialCapacity = initialCapacity;
+        this.falsePositiveRate = falsePositiveRate;
+        this.clock = clock;
+    }
+
+    void bindTo(MeterRegistry meterRegistry) {
+        ruledOutCounter = lookups("ruled-out", meterRegistry);
+        confirmedCounter = lookups("confirmed", meterRegistry);
+        falsePositiveCounter = lookups("false-positive", meterRegistry);
+        Gauge.builder("customer.email-filter.entries", this, dao -> dao.status().entries())
+                .description("Emails in the filter, stale ones included")
+                .register(meterRegistry);
+        Gauge.builder("customer.email-filter.stale-entries", staleEntries, AtomicLong::get)
+                .description("Deleted or replaced emails still in the filter")
+                .register(meterRegistry);
+        Gauge.builder("customer.email-filter.false-positive-rate.expected", this,
+                        dao -> dao.status().expectedFalsePositiveRate())
+                .description("False positive rate predicted from how full the filter is")
+                .register(meterRegistry);
+        Gauge.builder("customer.email-filter.false-positive-rate.observed", this,
+                        dao -> dao.status().observedFalsePositiveRate())
+                .description("Share of absent emails the filter let through since it was built")
+                .register(meterRegistry);
+    }
+
+    @Override
+    public boolean existsPersonWithEmail(String email) {
+        EmailBloomFilter current = filter;
+        if (current != null && !current.mightContain(email)) {
+            ruledOut(1);
+            return false;
+        }
+        boolean exists = super.existsPersonWithEmail(email);
+        if (current != null) {
+            if (exists) {
+                increment(confirmedCounter, 1);
+            } else {
+                falsePositive(1);
+            }
+        }
+        return exists;
+    }
+
+    @Override
+    public Set<String> selectExistingEmails(Collection<String> emails) {
+        EmailBloomFilter current = filter;
+        if (current == null) {
+            return super.selectExistingEmails(emails);
+        }
+        List<String> candidates = emails.stream()
+                .filter(current::mightContain)
+                .toList();
+        ruledOut(emails.size() - candidates.size());
+        if (candidates.isEmpty()) {
+            return Set.of();
+        }
+        Set<String> existing = super.selectExistingEmails(candidates);
+        increment(confirmedCounter, existing.size());
+        falsePositive(candidates.size() - existing.size());
+        return existing;
+    }
+
+    @Override
+    public void insertCustomer(Customer customer) {
+        writing(List.of(customer.getEmail()), () -> {
+            super.insertCustomer(customer);
+            return null;
+        });
+    }
+
+    @Override
+    public void insertCustomers(List<Customer> customers) {
+        writing(customers.stream().map(Customer::getEmail).toList(), () -> {
+            super.insertCustomers(customers);
+            return null;
+        });
+    }
+
+    @Override
+    public boolean insertCustomerIfAbsent(Customer customer) {
+        return writing(List.of(customer.getEmail()), () -> super.insertCustomerIfAbsent(customer));
+    }
+
+    @Override
+    public Set<String> insertCustomersIfAbsent(List<Customer> customers) {
+        return writing(customers.stream().map(Customer::getEmail).toList(), () -> super.insertCustomersIfAbsent(customers));
+    }
+
+    @Override
+    public void updateCustomer(Customer update) {
+        if (update.getEmail() == null) {
+            super.updateCustomer(update);
+            return;
+        }
+        writing(List.of(update.getEmail()), () -> {
+            super.updateCustomer(update);
+            return null;
+        });
+        staleEntries.incrementAndGet();
+    }
+
+    @Override
+    public boolean deleteCustomerById(Integer id) {
+        boolean deleted = super.deleteCustomerById(id);
+        if (deleted) {
+            staleEntries.incrementAndGet();
+        }
+        return deleted;
+    }
+
+    @Override
+    public void deleteCustomerById(Integer id, Integer version) {
+        super.deleteCustomerById(id, version);
+        staleEntries.incrementAndGet();
+    }
+
+    /**
+     * Streams every email into a fresh filter and swaps it in. Runs in a read-write
+     * transaction so it reads the primary, a lagging replica would drop recent emails.
+     */
+    synchronized void rebuild() {
+        EmailBloomFilter previous = filter;
+        EmailBloomFilter next = new EmailBloomFilter(
+                Math.max(initialCapacity, previous == null ? 0 : previous.entries() - staleEntries.get()),
+                falsePositiveRate
+        );
+        building = next;
+        try {
+            long stale = staleEntries.get();
+            transactionOperations.executeWithoutResult(status -> {
+                try (Stream<String> emails = super.streamAllEmails()) {
+                    emails.forEach(next::put);
+                }
+            });
+            filter = next;
+            builtAt = clock.instant();
+            staleEntries.addAndGet(-stale);
+            ruledOut.set(0);
+            falsePositives.set(0);
+        } finally {
+            building = null;
+        }
+    }
+
+    EmailFilterStatus status() {
+        EmailBloomFilter current = filter;
+        if (current == null) {
+            return new EmailFilterStatus(false, null, 0, staleEntries.get(), 0, falsePositiveRate, 0, 0);
+        }
+        long negatives = ruledOut.get() + falsePositives.get();
+        return new EmailFilterStatus(
+                true,
+                builtAt,
+                current.entries(),
+                staleEntries.get(),
+                current.bitSize(),
+                current.targetFalsePositiveRate(),
+                current.expectedFalsePositiveRate(),
+                negatives == 0 ? 0 : (double) falsePositives.get() / negatives
+        );
+    }
+
+    private <T> T writing(List<String> emails, Supplier<T> write) {
+        emails.forEach(this::remember);
+        T result = write.get();
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    emails.forEach(EmailFilteringCustomerDao.this::remember);
+                }
+            });
+        } else {
+            emails.forEach(this::remember);
+        }
+        return result;
+    }
+
+    private void remember(String email) {
+        // building is read first: a null there means any rebuild already swapped its filter in
+        EmailBloomFilter next = building;
+        if (next != null) {
+            next.put(email);
+        }
+        EmailBloomFilter current = filter;
+        if (current != null) {
+            current.put(email);
+        }
+    }
+
+    private void ruledOut(long count) {
+        ruledOut.addAndGet(count);
+        increment(ruledOutCounter, count);
+    }
+
+    private void falsePositive(long count) {
+        falsePositives.addAndGet(count);
+        increment(falsePositiveCounter, count);
+    }
+
+    private static void increment(Counter counter, long count) {
+        if (counter != null && count > 0) {
+            counter.increment(count);
+        }
+    }
+
+    private static Counter lookups(String result, MeterRegistry meterRegistry) {
+        return Counter.builder("customer.email-filter.lookups")
+                .description("Email lookups by what the filter made of them")
+                .tag("result", result)
+                .register(meterRegistry);
+    }
+}
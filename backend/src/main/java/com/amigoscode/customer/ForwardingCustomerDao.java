@@ -0,0 +1,133 @@
+package com.amigoscode.customer;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.stream.Stream;
+
+/**
+ * Base for {@link CustomerDao} decorators, forwards every call to the wrapped dao
+ * so subclasses only override the operations they care about. Closing a decorator
+ * closes the chain beneath it.
+ */
+abstract class ForwardingCustomerDao implements CustomerDao, AutoCloseable {
+
+    private final CustomerDao delegate;
+
+    protected ForwardingCustomerDao(CustomerDao delegate) {
+        this.delegate = delegate;
+    }
+
+    protected CustomerDao delegate() {
+        return delegate;
+    }
+
+    @Override
+    public List<Customer> selectAllCustomer() {
+        return delegate.selectAllCustomer();
+    }
+
+    @Override
+    public List<Customer> selectCustomersAfterId(Integer id, int limit) {
+        return delegate.selectCustomersAfterId(id, limit);
+    }
+
+    @Override
+    public List<Customer> selectCustomersAfterId(Integer id, int limit, Set<CustomerField> fields) {
+        return delegate.selectCustomersAfterId(id, limit, fields);
+    }
+
+    @Override
+    public List<Customer> selectCustomers(CustomerQuery query) {
+        return delegate.selectCustomers(query);
+    }
+
+    @Override
+    public Stream<Customer> streamAllCustomers() {
+        return delegate.streamAllCustomers();
+    }
+
+    @Override
+    public Stream<String> streamAllEmails() {
+        return delegate.streamAllEmails();
+    }
+
+    @Override
+    public Optional<Customer> selectCustomerById(Integer id) {
+        return delegate.selectCustomerById(id);
+    }
+
+    @Override
+    public Optional<Customer> selectCustomerById(Integer id, Set<CustomerField> fields) {
+        return delegate.selectCustomerById(id, fields);
+    }
+
+    @Override
+    public Optional<Integer> selectCustomerVersionById(Integer id) {
+        return delegate.selectCustomerVersionById(id);
+    }
+
+    @Override
+    public void insertCustomer(Customer customer) {
+        delegate.insertCustomer(customer);
+    }
+
+    @Override
+    public void insertCustomers(List<Customer> customers) {
+        delegate.insertCustomers(customers);
+    }
+
+    @Override
+    public boolean insertCustomerIfAbsent(Customer customer) {
+        return delegate.insertCustomerIfAbsent(customer);
+    }
+
+    @Override
+    public Set<String> insertCustomersIfAbsent(List<Customer> customers) {
+        return delegate.insertCustomersIfAbsent(customers);
+    }
+
+    @Override
+    public boolean existsPersonWithEmail(String email) {
+        return delegate.existsPersonWithEmail(email);
+    }
+
+    @Override
+    public Set<String> selectExistingEmails(Collection<String> emails) {
+        return delegate.selectExistingEmails(emails);
+    }
+
+    @Override
+    public boolean deleteCustomerById(Integer id) {
+        return delegate.deleteCustomerById(id);
+    }
+
+    @Override
+    public void deleteCustomerById(Integer id, Integer version) {
+        delegate.deleteCustomerById(id, version);
+    }
+
+    @Override
+    public boolean existsPersonWithId(Integer id) {
+        return delegate.existsPersonWithId(id);
+    }
+
+    @Override
+    public void updateCustomer(Customer update) {
+        delegate.updateCustomer(update);
+    }
+
+    @Override
+    public Map<Integer, Long> selectAgeCounts() {
+        return delegate.selectAgeCounts();
+    }
+
+    @Override
+    public void close() {
+        if (delegate instanceof ForwardingCustomerDao forwarding) {
+            forwarding.close();
+        }
+    }
+}
@@ -0,0 +1,182 @@
+package com.amigoscode.customer;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.Timer;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+
+/**
+ * Times every operation of the wrapped backend as {@code customer.dao}, tagged with the
+ * method, the backend name and the outcome, and publishes percentile histograms so the
+ * backends can be compared by latency distribution rather than by average. Sits directly
+ * on the backend so cache hits above it are not counted as backend calls.
+ */
+class InstrumentedCustomerDao extends ForwardingCustomerDao {
+
+    static final String METRIC_NAME = "customer.dao";
+
+    private final MeterRegistry meterRegistry;
+    private final Tags backendTags;
+
+    InstrumentedCustomerDao(CustomerDao delegate, String backend, MeterRegistry meterRegistry) {
+        super(delegate);
+        this.meterRegistry = meterRegistry;
+        this.backendTags = Tags.of("backend", backend);
+    }
+
+    @Override
+    public List<Customer> selectAllCustomer() {
+        return record("selectAllCustomer", super::selectAllCustomer);
+    }
+
+    @Override
+    public List<Customer> selectCustomersAfterId(Integer id, int limit) {
+        return record("selectCustomersAfterId", () -> super.selectCustomersAfterId(id, limit));
+    }
+
+    @Override
+    public List<Customer> selectCustomersAfterId(Integer id, int limit, Set<CustomerField> fields) {
+        return record("selectCustomersAfterId", () -> super.selectCustomersAfterId(id, limit, fields));
+    }
+
+    @Override
+    public List<Customer> selectCustomers(CustomerQuery query) {
+        return record("selectCustomers", () -> super.selectCustomers(query));
+    }
+
+    @Override
+    public Stream<Customer> streamAllCustomers() {
+        return recordStream("streamAllCustomers", super::streamAllCustomers);
+    }
+
+    @Override
+    public Stream<String> streamAllEmails() {
+        return recordStream("streamAllEmails", super::streamAllEmails);
+    }
+
+    @Override
+    public Optional<Customer> selectCustomerById(Integer id) {
+        return record("selectCustomerById", () -> super.selectCustomerById(id));
+    }
+
+    @Override
+    public Optional<Customer> selectCustomerById(Integer id, Set<CustomerField> fields) {
+        return record("selectCustomerById", () -> super.selectCustomerById(id, fields));
+    }
+
+    @Override
+    public Optional<Integer> selectCustomerVersionById(Integer id) {
+        return record("selectCustomerVersionById", () -> super.selectCustomerVersionById(id));
+    }
+
+    @Override
+    public void insertCustomer(Customer customer) {
+        record("insertCustomer", () -> super.insertCustomer(customer));
+    }
+
+    @Override
+    public void insertCustomers(List<Customer> customers) {
+        record("insertCustomers", () -> super.insertCustomers(customers));
+    }
+
+    @Override
+    public boolean insertCustomerIfAbsent(Customer customer) {
+        return record("insertCustomerIfAbsent", () -> super.insertCustomerIfAbsent(customer));
+    }
+
+    @Override
+    public Set<String> insertCustomersIfAbsent(List<Customer> customers) {
+        return record("insertCustomersIfAbsent", () -> super.insertCustomersIfAbsent(customers));
+    }
+
+    @Override
+    public boolean existsPersonWithEmail(String email) {
+        return record("existsPersonWithEmail", () -> super.existsPersonWithEmail(email));
+    }
+
+    @Override
+    public Set<String> selectExistingEmails(Collection<String> emails) {
+        return record("selectExistingEmails", () -> super.selectExistingEmails(emails));
+    }
+
+    @Override
+    public boolean deleteCustomerById(Integer id) {
+        return record("deleteCustomerById", () -> super.deleteCustomerById(id));
+    }
+
+    @Override
+    public void deleteCustomerById(Integer id, Integer version) {
+        record("deleteCustomerById", () -> super.deleteCustomerById(id, version));
+    }
+
+    @Override
+    public boolean existsPersonWithId(Integer id) {
+        return record("existsPersonWithId", () -> super.existsPersonWithId(id));
+    }
+
+    @Override
+    public void updateCustomer(Customer update) {
+        record("updateCustomer", () -> super.updateCustomer(update));
+    }
+
+    @Override
+    public Map<Integer, Long> selectAgeCounts() {
+        return record("selectAgeCounts", super::selectAgeCounts);
+    }
+
+    private void record(String method, Runnable operation) {
+        record(method, () -> {
+            operation.run();
+            return null;
+        });
+    }
+
+    private <T> Stream<T> recordStream(String method, Supplier<Stream<T>> operation) {
+        // rows are fetched while the stream is consumed, so time until it is closed
+        Timer.Sample sample = Timer.start(meterRegistry);
+        try {
+            return operation.get()
+                    .onClose(() -> sample.stop(timer(method, "success", "none")));
+        } catch (RuntimeException e) {
+            sample.stop(timer(method, "error", e.getClass().getSimpleName()));
+            throw e;
+        }
+    }
+
+    private <T> T record(String method, Supplier<T> operation) {
+        long start = System.nanoTime();
+        String outcome = "success";
+        String exception = "none";
+        try {
+            return operation.get();
+        } catch (RuntimeException e) {
+            outcome = "error";
+            exception = e.getClass().getSimpleName();
+            throw e;
+        } finally {
+            timer(method, outcome, exception).record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    private Timer timer(String method, String outcome, String exception) {
+        return Timer.builder(METRIC_NAME)
+                .description("Time spent in customer dao operations")
+                .tags(backendTags)
+                .tag("method", method)
+                .tag("outcome", outcome)
+                .tag("exception", exception)
+                .publishPercentileHistogram()
+                .minimumExpectedValue(Duration.ofMillis(1))
+                .maximumExpectedValue(Duration.ofSeconds(10))
+                .register(meterRegistry);
+    }
+}
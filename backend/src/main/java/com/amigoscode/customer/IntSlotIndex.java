@@ -0,0 +1,102 @@
+package com.amigoscode.customer;
+
+/**
+ * Open-addressing hash map from a positive int key to an int slot, linear probing
+ * with backward-shift deletion so no tombstones accumulate. Not thread-safe.
+ */
+final class IntSlotIndex {
+
+    static final int ABSENT = -1;
+
+    private int[] keys;
+    private int[] slots;
+    private int mask;
+    private int size;
+
+    IntSlotIndex(int expectedSize) {
+        allocate(tableSizeFor(expectedSize));
+    }
+
+    int get(int key) {
+        for (int i = mix(key) & mask; keys[i] != 0; i = (i + 1) & mask) {
+            if (keys[i] == key) {
+                return slots[i];
+            }
+        }
+        return ABSENT;
+    }
+
+    void put(int key, int slot) {
+        if (key <= 0) {
+            throw new IllegalArgumentException("key must be positive but was " + key);
+        }
+        if ((size + 1) * 2 > keys.length) {
+            resize(keys.length * 2);
+        }
+        int i = mix(key) & mask;
+        while (keys[i] != 0) {
+            if (keys[i] == key) {
+                slots[i] = slot;
+                return;
+            }
+            i = (i + 1) & mask;
+        }
+        keys[i] = key;
+        slots[i] = slot;
+        size++;
+    }
+
+    void remove(int key) {
+        int i = mix(key) & mask;
+        while (keys[i] != key) {
+            if (keys[i] == 0) {
+                return;
+            }
+            i = (i + 1) & mask;
+        }
+        // shift back every entry of the probe run that would no longer be reachable
+        int hole = i;
+        for (int j = (hole + 1) & mask; keys[j] != 0; j = (j + 1) & mask) {
+            int home = mix(keys[j]) & mask;
+            if (((j - home) & mask) >= ((j - hole) & mask)) {
+                keys[hole] = keys[j];
+                slots[hole] = slots[j];
+                hole = j;
+            }
+        }
+        keys[hole] = 0;
+        size--;
+    }
+
+    long footprintBytes() {
+        return 8L * keys.length;
+    }
+
+    private void resize(int capacity) {
+        int[] oldKeys = keys;
+        int[] oldSlots = slots;
+        allocate(capacity);
+        size = 0;
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] != 0) {
+                put(oldKeys[i], oldSlots[i]);
+            }
+        }
+    }
+
+    private void allocate(int capacity) {
+        keys = new int[capacity];
+        slots = new int[capacity];
+        mask = capacity - 1;
+    }
+
+    static int tableSizeFor(int expectedSize) {
+        int capacity = Integer.highestOneBit(Math.max(expectedSize, 8) * 2 - 1) << 1;
+        return Math.max(capacity, 16);
+    }
+
+    static int mix(int key) {
+        int h = key * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+}
@@ -0,0 +1,233 @@
+package com.amigoscode.customer;
+
+import com.amigoscode.customer.CustomerBulkRegistrationResult.Status;
+import com.amigoscode.exception.DuplicateResourceException;
+import com.amigoscode.exception.RequestValidationException;
+import com.amigoscode.exception.ResourceNotFoundException;
+import com.amigoscode.exception.StaleResourceException;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Profile;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.reactive.TransactionalOperator;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.util.function.Tuple2;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * {@link CustomerService} for the reactive profile: the same rules and errors, but every
+ * operation is a publisher backed by {@link CustomerReactiveDataAccessService}.
+ */
+@Service
+@Profile("reactive")
+public class ReactiveCustomerService {
+
+    private final CustomerReactiveDataAccessService customerDao;
+    private final CustomerStatistics customerStatistics;
+    private final TransactionalOperator transactionalOperator;
+    private final int chunkSize;
+
+    public ReactiveCustomerService(CustomerReactiveDataAccessService customerDao,
+                                   CustomerStatistics customerStatistics,
+                                   TransactionalOperator transactionalOperator,
+                                   @Value("${customer.bulk-registration.chunk-size:1000}") int chunkSize) {
+        this.customerDao = customerDao;
+        this.customerStatistics = customerStatistics;
+        this.transactionalOperator = transactionalOperator;
+        this.chunkSize = chunkSize;
+    }
+
+    public Flux<Customer> getAllCustomers(){
+        return customerDao.streamAllCustomers();
+    }
+
+    public Mono<CustomerPage> getCustomers(String cursor, int limit){
+        return getCustomers(cursor, limit, CustomerField.ALL);
+    }
+
+    public Mono<CustomerPage> getCustomers(String cursor, int limit, Set<CustomerField> fields){
+        return Mono.fromCallable(() -> {
+                    CustomerService.checkLimit(limit);
+                    return cursor == null ? 0 : CustomerCursor.decode(cursor);
+                })
+                // one extra row tells us whether there is a next page without a COUNT(*)
+                .flatMap(afterId -> (fields.equals(CustomerField.ALL)
+                        ? customerDao.selectCustomersAfterId(afterId, limit + 1)
+                        : customerDao.selectCustomersAfterId(afterId, limit + 1, fields)).collectList())
+                .map(customers -> {
+                    if(customers.size() <= limit){
+                        return new CustomerPage(customers, null);
+                    }
+                    List<Customer> page = List.copyOf(customers.subList(0, limit));
+                    return new CustomerPage(page, CustomerCursor.encode(page.get(limit - 1).getId()));
+                });
+    }
+
+    public Flux<Customer> searchCustomers(CustomerSearchRequest request){
+        return Mono.fromCallable(() -> CustomerService.toQuery(request))
+                .flatMapMany(customerDao::selectCustomers);
+    }
+
+    public Mono<Customer> getCustomerById(int id){
+        return customerDao.selectCustomerById(id)
+                .switchIfEmpty(Mono.error(() -> notFound(id)));
+    }
+
+    public Mono<Customer> getCustomerById(int id, Set<CustomerField> fields){
+        if(fields.equals(CustomerField.ALL)){
+            return getCustomerById(id);
+        }
+        return customerDao.selectCustomerById(id, fields)
+                .switchIfEmpty(Mono.error(() -> notFound(id)));
+    }
+
+    public Mono<Integer> getCustomerVersion(int id){
+        return customerDao.selectCustomerVersionById(id)
+                .switchIfEmpty(Mono.error(() -> notFound(id)));
+    }
+
+    public Mono<CustomerStats> getCustomerStats(){
+        return Mono.fromSupplier(customerStatistics::snapshot);
+    }
+
+    public Mono<Void> addCustomer(CustomerRegistrationRequest request){
+        Customer customer = new Customer(request.name(), request.email(), request.age());
+        return customerDao.insertCustomerIfAbsent(customer)
+                .flatMap(inserted -> {
+                    if(!inserted){
+                        return Mono.error(new DuplicateResourceException("email already exists"));
+                    }
+                    customerStatistics.customerAdded(customer.getAge());
+                    return Mono.<Void>empty();
+                });
+    }
+
+    /**
+     * Registers the requests as they arrive, one multi-row insert per chunk; the emails
+     * the insert hands back are the created customers, the rest were already taken.
+     */
+    public Flux<CustomerBulkRegistrationResult> addCustomers(Flux<CustomerRegistrationRequest> requests){
+        return requests.index()
+                .buffer(chunkSize)
+                .concatMap(this::addChunk);
+    }
+
+    private Flux<CustomerBulkRegistrationResult> addChunk(List<Tuple2<Long, CustomerRegistrationRequest>> chunk){
+        // invalid and repeated requests are settled up front, the rest wait for the insert
+        CustomerBulkRegistrationResult[] results = new CustomerBulkRegistrationResult[chunk.size()];
+        Map<String, Customer> pending = new LinkedHashMap<>();
+        for (int i = 0; i < chunk.size(); i++) {
+            int index = chunk.get(i).getT1().intValue();
+            CustomerRegistrationRequest request = chunk.get(i).getT2();
+            if(request.name() == null || request.email() == null || request.age() == null){
+                results[i] = new CustomerBulkRegistrationResult(index, request.email(), Status.INVALID);
+            }else if(pending.containsKey(request.email())){
+                results[i] = new CustomerBulkRegistrationResult(index, request.email(), Status.DUPLICATE);
+            }else{
+                pending.put(request.email(), new Customer(request.name(), request.email(), request.age()));
+            }
+        }
+
+        Mono<Set<String>> inserted = pending.isEmpty()
+                ? Mono.just(Set.of())
+                : customerDao.insertCustomersIfAbsent(List.copyOf(pending.values())).collect(Collectors.toSet());
+        return inserted.flatMapIterable(created -> {
+            for (int i = 0; i < chunk.size(); i++) {
+                if(results[i] != null){
+                    continue;
+                }
+                String email = chunk.get(i).getT2().email();
+                int index = chunk.get(i).getT1().intValue();
+                if(created.contains(email)){
+                    customerStatistics.customerAdded(pending.get(email).getAge());
+                    results[i] = new CustomerBulkRegistrationResult(index, email, Status.CREATED);
+                }else{
+                    results[i] = new CustomerBulkRegistrationResult(index, email, Status.DUPLICATE);
+                }
+            }
+            return Arrays.asList(results);
+        });
+    }
+
+    public Mono<Void> deleteCustomerById(int id, Integer expectedVersion){
+        Mono<Customer> delete = expectedVersion == null
+                ? customerDao.deleteCustomerById(id)
+                : getCustomerVersion(id)
+                        .doOnNext(version -> CustomerService.checkVersion(id, version, expectedVersion))
+                        .then(customerDao.deleteCustomerById(id, expectedVersion))
+                        .onErrorMap(OptimisticLockingFailureException.class,
+                                e -> CustomerService.notAtVersion(id, expectedVersion))
+                        .as(transactionalOperator::transactional);
+        return delete
+                .switchIfEmpty(Mono.error(() -> notFound(id)))
+                .doOnNext(deleted -> customerStatistics.customerRemoved(deleted.getAge()))
+                .then();
+    }
+
+    public Mono<Void> updateCustomer(int id, CustomerUpdateRequest updateRequest, Integer expectedVersion){
+        return getCustomerById(id)
+                .flatMap(customer -> {
+                    if(expectedVersion != null){
+                        CustomerService.checkVersion(id, customer.getVersion(), expectedVersion);
+                    }
+
+                    // only the changed columns are sent, guarded by the version we just read
+                    Customer update = new Customer();
+                    update.setId(id);
+                    update.setVersion(customer.getVersion());
+
+                    boolean changes = false;
+                    if(updateRequest.name() != null && !updateRequest.name().equals(customer.getName())){
+                        update.setName(updateRequest.name());
+                        changes = true;
+                    }
+                    if(updateRequest.age() != null && !updateRequest.age().equals(customer.getAge())){
+                        update.setAge(updateRequest.age());
+                        changes = true;
+                    }
+                    boolean emailChanged = updateRequest.email() != null
+                            && !updateRequest.email().equals(customer.getEmail());
+                    if(emailChanged){
+                        update.setEmail(updateRequest.email());
+                        changes = true;
+                    }
+                    if(!changes){
+                        return Mono.error(new RequestValidationException("no data changes found"));
+                    }
+
+                    Mono<Void> emailCheck = emailChanged
+                            ? customerDao.existsPersonWithEmail(updateRequest.email())
+                                    .flatMap(taken -> taken
+                                            ? Mono.error(new DuplicateResourceException("email already exists"))
+                                            : Mono.empty())
+                            : Mono.empty();
+
+                    return emailCheck
+                            .then(customerDao.updateCustomer(update))
+                            .onErrorMap(OptimisticLockingFailureException.class, e -> new StaleResourceException(
+                                    "customer with id [%s] was modified concurrently".formatted(id)
+                            ))
+                            // the email may have been taken since the lookup
+                            .onErrorMap(DataIntegrityViolationException.class,
+                                    e -> new DuplicateResourceException("email already exists"))
+                            .doOnSuccess(done -> {
+                                if(update.getAge() != null){
+                                    customerStatistics.ageChanged(customer.getAge(), update.getAge());
+                                }
+                            });
+                })
+                .as(transactionalOperator::transactional);
+    }
+
+    private static ResourceNotFoundException notFound(int id){
+        return new ResourceNotFoundException("customer with id [%s] not found".formatted(id));
+    }
+}
@@ -0,0 +1,25 @@
+package com.amigoscode.customer;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+import java.time.Duration;
+import java.util.Map;
+
+/**
+ * @param regions the Hibernate cache regions by name, a region Hibernate asks for but is
+ *                not listed here fails the start
+ */
+@ConfigurationProperties(prefix = "customer.second-level-cache")
+public record SecondLevelCacheProperties(
+        @DefaultValue Map<String, Region> regions) {
+
+    /**
+     * @param expireAfterWrite entries never expire when not set, the update timestamps
+     *                         region must not expire
+     */
+    public record Region(
+            @DefaultValue("10000") long maximumSize,
+            Duration expireAfterWrite) {
+    }
+}
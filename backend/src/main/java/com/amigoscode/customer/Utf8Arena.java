@@ -0,0 +1,93 @@
+package com.amigoscode.customer;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Append-only byte arena holding UTF-8 strings, each prefixed with a two byte length.
+ * Entries are addressed by offset; replaced entries are only counted as garbage
+ * and reclaimed when the owner rebuilds the arena. Not thread-safe.
+ */
+final class Utf8Arena {
+
+    static final int MAX_LENGTH = 0xFFFF;
+
+    private byte[] bytes;
+    private int used;
+    private long garbage;
+
+    Utf8Arena(int initialCapacity) {
+        this.bytes = new byte[Math.max(initialCapacity, 16)];
+    }
+
+    static byte[] encode(String value) {
+        byte[] encoded = value.getBytes(StandardCharsets.UTF_8);
+        if (encoded.length > MAX_LENGTH) {
+            throw new IllegalArgumentException(
+                    "value of %s bytes exceeds %s bytes".formatted(encoded.length, MAX_LENGTH)
+            );
+        }
+        return encoded;
+    }
+
+    /**
+     * Appends a value produced by {@link #encode(String)} and returns its offset.
+     */
+    int append(byte[] value) {
+        return append(value, 0, value.length);
+    }
+
+    /**
+     * Copies the entry at {@code offset} of another arena, used when compacting.
+     */
+    int copy(Utf8Arena source, int offset) {
+        return append(source.bytes, offset + 2, source.lengthAt(offset));
+    }
+
+    private int append(byte[] value, int from, int length) {
+        int required = used + 2 + length;
+        if (required > bytes.length) {
+            bytes = Arrays.copyOf(bytes, Math.max(required, bytes.length + (bytes.length >> 1)));
+        }
+        int offset = used;
+        bytes[offset] = (byte) (length >>> 8);
+        bytes[offset + 1] = (byte) length;
+        System.arraycopy(value, from, bytes, offset + 2, length);
+        used = required;
+        return offset;
+    }
+
+    String read(int offset) {
+        return new String(bytes, offset + 2, lengthAt(offset), StandardCharsets.UTF_8);
+    }
+
+    boolean equalsAt(int offset, byte[] value) {
+        int start = offset + 2;
+        return Arrays.equals(bytes, start, start + lengthAt(offset), value, 0, value.length);
+    }
+
+    int hashAt(int offset) {
+        int start = offset + 2;
+        return Utf8SlotIndex.hash(bytes, start, start + lengthAt(offset));
+    }
+
+    void release(int offset) {
+        garbage += 2 + lengthAt(offset);
+    }
+
+    int used() {
+        return used;
+    }
+
+    long garbage() {
+        return garbage;
+    }
+
+    long footprintBytes() {
+        return bytes.length;
+    }
+
+    private int lengthAt(int offset) {
+        return ((bytes[offset] & 0xFF) << 8) | (bytes[offset + 1] & 0xFF);
+    }
+}
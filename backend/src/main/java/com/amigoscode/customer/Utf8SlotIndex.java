@@ -0,0 +1,99 @@
+package com.amigoscode.customer;
+
+/**
+ * Open-addressing hash set of slots keyed by a UTF-8 string that lives in a
+ * {@link Utf8Arena}. Only the slot and the key's hash are stored here, keys are
+ * compared against the arena entry each slot's offset points at. Linear probing
+ * with backward-shift deletion. Not thread-safe.
+ */
+final class Utf8SlotIndex {
+
+    private int[] slotsPlusOne;
+    private int[] hashes;
+    private int mask;
+    private int size;
+
+    Utf8SlotIndex(int expectedSize) {
+        allocate(IntSlotIndex.tableSizeFor(expectedSize));
+    }
+
+    int get(byte[] key, int hash, Utf8Arena arena, int[] offsets) {
+        for (int i = hash & mask; slotsPlusOne[i] != 0; i = (i + 1) & mask) {
+            if (hashes[i] == hash && arena.equalsAt(offsets[slotsPlusOne[i] - 1], key)) {
+                return slotsPlusOne[i] - 1;
+            }
+        }
+        return IntSlotIndex.ABSENT;
+    }
+
+    /**
+     * Callers must have checked that the key is absent.
+     */
+    void add(int hash, int slot) {
+        if ((size + 1) * 2 > slotsPlusOne.length) {
+            resize(slotsPlusOne.length * 2);
+        }
+        int i = hash & mask;
+        while (slotsPlusOne[i] != 0) {
+            i = (i + 1) & mask;
+        }
+        slotsPlusOne[i] = slot + 1;
+        hashes[i] = hash;
+        size++;
+    }
+
+    void remove(int hash, int slot) {
+        int i = hash & mask;
+        while (slotsPlusOne[i] != slot + 1) {
+            if (slotsPlusOne[i] == 0) {
+                return;
+            }
+            i = (i + 1) & mask;
+        }
+        int hole = i;
+        for (int j = (hole + 1) & mask; slotsPlusOne[j] != 0; j = (j + 1) & mask) {
+            int home = hashes[j] & mask;
+            if (((j - home) & mask) >= ((j - hole) & mask)) {
+                slotsPlusOne[hole] = slotsPlusOne[j];
+                hashes[hole] = hashes[j];
+                hole = j;
+            }
+        }
+        slotsPlusOne[hole] = 0;
+        size--;
+    }
+
+    long footprintBytes() {
+        return 8L * slotsPlusOne.length;
+    }
+
+    static int hash(byte[] key) {
+        return hash(key, 0, key.length);
+    }
+
+    static int hash(byte[] bytes, int from, int to) {
+        int h = 1;
+        for (int i = from; i < to; i++) {
+            h = 31 * h + bytes[i];
+        }
+        return IntSlotIndex.mix(h);
+    }
+
+    private void resize(int capacity) {
+        int[] oldSlots = slotsPlusOne;
+        int[] oldHashes = hashes;
+        allocate(capacity);
+        size = 0;
+        for (int i = 0; i < oldSlots.length; i++) {
+            if (oldSlots[i] != 0) {
+                add(oldHashes[i], oldSlots[i] - 1);
+            }
+        }
+    }
+
+    private void allocate(int capacity) {
+        slotsPlusOne = new int[capacity];
+        hashes = new int[capacity];
+        mask = capacity - 1;
+    }
+}
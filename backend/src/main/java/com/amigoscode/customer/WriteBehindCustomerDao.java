@@ -0,0 +1,223 @@
+package com.amigoscode.customer;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Groups inserts from concurrent callers into one multi-row statement, so a burst of
+ * registrations pays one commit per batch instead of one per customer. A single flusher
+ * thread writes a batch once it holds {@code maxBatchSize} customers or {@code maxDelay}
+ * after its first one arrived; each caller's future completes once the batch is committed,
+ * with whether its customer was inserted or its email already taken.
+ * <p>
+ * The queue is bounded: when it is full, or the dao is closed, callers insert on their own.
+ * Inserts inside a transaction also go straight through, they must commit or roll back
+ * with it.
+ */
+class WriteBehindCustomerDao extends ForwardingCustomerDao {
+
+    private final int maxBatchSize;
+    private final long maxDelayNanos;
+    private final int queueCapacity;
+
+    private final ConcurrentLinkedQueue<Pending> queue = new ConcurrentLinkedQueue<>();
+    // reserved before offering, so the unbounded queue never holds more than the capacity
+    private final AtomicInteger queued = new AtomicInteger();
+    private final Thread flusher;
+    private volatile boolean closed;
+
+    private DistributionSummary batchSizes;
+
+    WriteBehindCustomerDao(CustomerDao delegate, int maxBatchSize, Duration maxDelay, int queueCapacity) {
+        super(delegate);
+        if (maxBatchSize < 1) {
+            throw new IllegalArgumentException("max batch size must be positive but was " + maxBatchSize);
+        }
+        if (queueCapacity < 1) {
+            throw new IllegalArgumentException("queue capacity must be positive but was " + queueCapacity);
+        }
+        this.maxBatchSize = maxBatchSize;
+        this.maxDelayNanos = maxDelay.toNanos();
+        this.queueCapacity = queueCapacity;
+        this.flusher = Thread.ofPlatform()
+                .name("customer-write-behind")
+                .daemon()
+                .start(this::flushUntilClosed);
+    }
+
+    void bindTo(MeterRegistry meterRegistry) {
+        batchSizes = DistributionSummary.builder("customer.write-behind.batch-size")
+                .description("Customers written per group commit")
+                .register(meterRegistry);
+        Gauge.builder("customer.write-behind.queued", queued, AtomicInteger::get)
+                .description("Customers waiting for the next group commit")
+                .register(meterRegistry);
+    }
+
+    /**
+     * @return completes with true once the customer is committed, or false when its email
+     * already exists, exceptionally when its insert failed
+     */
+    CompletableFuture<Boolean> insertCustomerIfAbsentAsync(Customer customer) {
+        if (!reserve()) {
+            return insertDirectly(customer);
+        }
+        Pending pending = new Pending(customer, new CompletableFuture<>());
+        queue.offer(pending);
+        if (closed) {
+            // the flusher may already have drained, nobody else is left to write it
+            flush(drain(Integer.MAX_VALUE));
+        } else {
+            LockSupport.unpark(flusher);
+        }
+        return pending.inserted();
+    }
+
+    @Override
+    public boolean insertCustomerIfAbsent(Customer customer) {
+        if (TransactionSynchronizationManager.isActualTransactionActive()) {
+            return super.insertCustomerIfAbsent(customer);
+        }
+        return await(insertCustomerIfAbsentAsync(customer));
+    }
+
+    @Override
+    public void insertCustomer(Customer customer) {
+        if (TransactionSynchronizationManager.isActualTransactionActive()) {
+            super.insertCustomer(customer);
+            return;
+        }
+        if (!await(insertCustomerIfAbsentAsync(customer))) {
+            throw new DuplicateKeyException(
+                    "email [%s] already exists".formatted(customer.getEmail())
+            );
+        }
+    }
+
+    /**
+     * Stops the flusher once everything queued so far is written.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        LockSupport.unpark(flusher);
+        try {
+            flusher.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        flush(drain(Integer.MAX_VALUE));
+        super.close();
+    }
+
+    int queued() {
+        return queued.get();
+    }
+
+    private boolean reserve() {
+        while (!closed) {
+            int current = queued.get();
+            if (current >= queueCapacity) {
+                return false;
+            }
+            if (queued.compareAndSet(current, current + 1)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void flushUntilClosed() {
+        while (!closed) {
+            if (queue.isEmpty()) {
+                LockSupport.park(this);
+                continue;
+            }
+            // the first customer waits at most maxDelay for others to join its batch
+            long deadline = System.nanoTime() + maxDelayNanos;
+            long remaining;
+            while (queued.get() < maxBatchSize && !closed
+                    && (remaining = deadline - System.nanoTime()) > 0) {
+                LockSupport.parkNanos(this, remaining);
+            }
+            flush(drain(maxBatchSize));
+        }
+    }
+
+    private List<Pending> drain(int limit) {
+        List<Pending> batch = new ArrayList<>();
+        Pending pending;
+        while (batch.size() < limit && (pending = queue.poll()) != null) {
+            queued.decrementAndGet();
+            batch.add(pending);
+        }
+        return batch;
+    }
+
+    private void flush(List<Pending> batch) {
+        if (batch.isEmpty()) {
+            return;
+        }
+        if (batchSizes != null) {
+            batchSizes.record(batch.size());
+        }
+        Set<String> inserted;
+        try {
+            inserted = super.insertCustomersIfAbsent(batch.stream().map(Pending::customer).toList());
+        } catch (RuntimeException e) {
+            // one bad row fails the whole statement, retry one by one so only its caller sees the error
+            batch.forEach(pending -> insertDirectly(pending.customer())
+                    .whenComplete((result, error) -> complete(pending, result, error)));
+            return;
+        }
+        // the batch may repeat an email, only the first customer with it was inserted
+        Set<String> unclaimed = new HashSet<>(inserted);
+        for (Pending pending : batch) {
+            pending.inserted().complete(unclaimed.remove(pending.customer().getEmail()));
+        }
+    }
+
+    private CompletableFuture<Boolean> insertDirectly(Customer customer) {
+        try {
+            return CompletableFuture.completedFuture(super.insertCustomerIfAbsent(customer));
+        } catch (RuntimeException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
+    private static void complete(Pending pending, Boolean result, Throwable error) {
+        if (error != null) {
+            pending.inserted().completeExceptionally(error);
+        } else {
+            pending.inserted().complete(result);
+        }
+    }
+
+    private static boolean await(CompletableFuture<Boolean> inserted) {
+        try {
+            return inserted.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+
+    private record Pending(Customer customer, CompletableFuture<Boolean> inserted) {
+    }
+}
@@ -0,0 +1,85 @@
+package com.amigoscode.datasource;
+
+import com.zaxxer.hikari.HikariConfig;
+import com.zaxxer.hikari.HikariDataSource;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.boot.context.properties.bind.Bindable;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.core.env.Environment;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+
+import java.time.Clock;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication.Type.SERVLET;
+
+/**
+ * Replaces the auto-configured pool with a primary and its read replicas. The primary is
+ * {@code spring.datasource.*}; each replica pool copies its {@code spring.datasource.hikari.*}
+ * settings and only swaps the url and credentials.
+ */
+@Configuration
+@ConditionalOnWebApplication(type = SERVLET)
+@ConditionalOnProperty(prefix = "customer.datasource.routing", name = "enabled", havingValue = "true")
+@EnableConfigurationProperties(DataSourceRoutingProperties.class)
+public class DataSourceRoutingConfig {
+
+    @Bean(autowireCandidate = false)
+    ReplicaRoutingDataSource replicaRoutingDataSource(DataSourceProperties dataSourceProperties,
+                                                      DataSourceRoutingProperties properties,
+                                                      Environment environment,
+                                                      MeterRegistry meterRegistry) {
+        HikariDataSource primary = dataSourceProperties.initializeDataSourceBuilder()
+                .type(HikariDataSource.class)
+                .build();
+        Binder.get(environment).bind("spring.datasource.hikari", Bindable.ofInstance(primary));
+
+        List<Replica> replicas = new ArrayList<>();
+        for (int i = 0; i < properties.replicas().size(); i++) {
+            DataSourceRoutingProperties.Replica replica = properties.replicas().get(i);
+            HikariConfig config = new HikariConfig();
+            primary.copyStateTo(config);
+            config.setPoolName("replica-" + (i + 1));
+            config.setJdbcUrl(replica.url());
+            config.setUsername(replica.username() != null ? replica.username() : primary.getUsername());
+            config.setPassword(replica.password() != null ? replica.password() : primary.getPassword());
+            // a replica that is down at startup is only taken out of rotation
+            config.setInitializationFailTimeout(-1);
+            replicas.add(new Replica(config.getPoolName(), new HikariDataSource(config)));
+        }
+
+        return new ReplicaRoutingDataSource(
+                primary, replicas, properties.selection(), properties.maxReplicationLag(), meterRegistry
+        );
+    }
+
+    // the routing data source is a DataSource bean too, boot's single candidate checks need this one marked
+    @Bean
+    @Primary
+    public LazyConnectionDataSourceProxy dataSource(DataSourceProperties dataSourceProperties,
+                                                    DataSourceRoutingProperties properties,
+                                                    Environment environment,
+                                                    MeterRegistry meterRegistry) {
+        return new LazyConnectionDataSourceProxy(
+                replicaRoutingDataSource(dataSourceProperties, properties, environment, meterRegistry)
+        );
+    }
+
+    @Bean
+    public FilterRegistrationBean<ReadYourWritesFilter> readYourWritesFilter(DataSourceRoutingProperties properties) {
+        FilterRegistrationBean<ReadYourWritesFilter> registration = new FilterRegistrationBean<>(
+                new ReadYourWritesFilter(properties.readYourWritesWindow(), Clock.systemUTC())
+        );
+        registration.addUrlPatterns("/api/*");
+        return registration;
+    }
+}
@@ -0,0 +1,32 @@
+package com.amigoscode.datasource;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+import java.time.Duration;
+import java.util.List;
+
+/**
+ * @param readYourWritesWindow how long a client's reads stay on the primary after it wrote
+ * @param maxReplicationLag    replicas further behind than this are taken out of rotation
+ */
+@ConfigurationProperties(prefix = "customer.datasource.routing")
+public record DataSourceRoutingProperties(
+        @DefaultValue("false") boolean enabled,
+        @DefaultValue List<Replica> replicas,
+        @DefaultValue("ROUND_ROBIN") ReplicaSelection selection,
+        @DefaultValue("5s") Duration readYourWritesWindow,
+        @DefaultValue("10s") Duration maxReplicationLag) {
+
+    /**
+     * @param username defaults to {@code spring.datasource.username}
+     * @param password defaults to {@code spring.datasource.password}
+     */
+    public record Replica(String url, String username, String password) {
+    }
+
+    public enum ReplicaSelection {
+        ROUND_ROBIN,
+        LEAST_OUTSTANDING
+    }
+}
@@ -0,0 +1,69 @@
+package com.amigoscode.datasource;
+
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.function.Supplier;
+
+/**
+ * Whether the current request has to read from the primary, because its client wrote
+ * recently or it is a write itself, and whether its transaction already reads from a replica.
+ * Without replica routing nobody looks at the pin and no transaction is on a replica.
+ */
+public final class ReadYourWrites {
+
+    private static final ThreadLocal<Boolean> PINNED = ThreadLocal.withInitial(() -> false);
+    private static final Object ON_REPLICA = new Object();
+
+    private ReadYourWrites() {
+    }
+
+    /**
+     * Runs {@code read} pinned to the primary. The pin only decides where the transaction's
+     * connection comes from, a transaction that already got one from a replica keeps it, see
+     * {@link #isReadingFromReplica()}.
+     */
+    public static <T> T onPrimary(Supplier<T> read) {
+        if (isPinnedToPrimary()) {
+            return read.get();
+        }
+        pinToPrimary();
+        try {
+            return read.get();
+        } finally {
+            clear();
+        }
+    }
+
+    /**
+     * @return whether the current transaction's connection came from a replica
+     */
+    public static boolean isReadingFromReplica() {
+        return TransactionSynchronizationManager.hasResource(ON_REPLICA);
+    }
+
+    static boolean isPinnedToPrimary() {
+        return PINNED.get();
+    }
+
+    static void pinToPrimary() {
+        PINNED.set(true);
+    }
+
+    static void clear() {
+        PINNED.remove();
+    }
+
+    static void readingFromReplica() {
+        if (!TransactionSynchronizationManager.isSynchronizationActive() || isReadingFromReplica()) {
+            return;
+        }
+        TransactionSynchronizationManager.bindResource(ON_REPLICA, Boolean.TRUE);
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                TransactionSynchronizationManager.unbindResourceIfPossible(ON_REPLICA);
+            }
+        });
+    }
+}
@@ -0,0 +1,193 @@
+package com.amigoscode.datasource;
+
+import com.amigoscode.datasource.DataSourceRoutingProperties.ReplicaSelection;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.hibernate.CacheMode;
+import org.hibernate.Session;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+import org.springframework.orm.jpa.EntityManagerHolder;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.sql.DataSource;
+import java.io.Closeable;
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Duration;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Sends connections for read-only transactions to a healthy replica and everything else
+ * to the primary. The flag is only set once the transaction has begun, so this has to sit
+ * behind a {@code LazyConnectionDataSourceProxy} that fetches the connection on first use.
+ * <p>
+ * Requests pinned by {@link ReadYourWritesFilter} stay on the primary, and so does every
+ * read while no replica is healthy. A transaction reading from a replica may see rows older
+ * than the cached ones, so it only reads the second-level cache and never fills it, and it
+ * is marked for the customer caches to do the same.
+ */
+class ReplicaRoutingDataSource extends AbstractRoutingDataSource implements Closeable {
+
+    static final String PRIMARY = "primary";
+
+    private static final Logger log = LoggerFactory.getLogger(ReplicaRoutingDataSource.class);
+
+    private final DataSource primary;
+    private final List<Replica> replicas;
+    private final ReplicaSelection selection;
+    private final Duration maxReplicationLag;
+    private final AtomicInteger next = new AtomicInteger();
+    private final Map<String, Counter> connections = new HashMap<>();
+
+    ReplicaRoutingDataSource(DataSource primary,
+                             List<Replica> replicas,
+                             ReplicaSelection selection,
+                             Duration maxReplicationLag,
+                             MeterRegistry meterRegistry) {
+        this.primary = primary;
+        this.replicas = List.copyOf(replicas);
+        this.selection = selection;
+        this.maxReplicationLag = maxReplicationLag;
+
+        Map<Object, Object> targets = new HashMap<>();
+        targets.put(PRIMARY, primary);
+        connections.put(PRIMARY, connectionCounter(PRIMARY, meterRegistry));
+        for (Replica replica : this.replicas) {
+            targets.put(replica.name(), replica);
+            connections.put(replica.name(), connectionCounter(replica.name(), meterRegistry));
+            Gauge.builder("customer.datasource.replica.healthy", replica, r -> r.isHealthy() ? 1 : 0)
+                    .description("Whether the replica is in rotation")
+                    .tag("target", replica.name())
+                    .register(meterRegistry);
+        }
+        setTargetDataSources(targets);
+        setDefaultTargetDataSource(primary);
+        initialize();
+    }
+
+    @Override
+    protected Object determineCurrentLookupKey() {
+        if (!TransactionSynchronizationManager.isCurrentTransactionReadOnly()
+                || ReadYourWrites.isPinnedToPrimary()) {
+            return PRIMARY;
+        }
+        Replica replica = selectReplica();
+        return replica == null ? PRIMARY : replica.name();
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        DataSource target = determineTargetDataSource();
+        if (target instanceof Replica replica) {
+            try {
+                Connection connection = replica.getConnection();
+                connections.get(replica.name()).increment();
+                ReadYourWrites.readingFromReplica();
+                readSecondLevelCacheOnly();
+                return connection;
+            } catch (SQLException e) {
+                log.warn("Replica {} is unreachable, reading from the primary until it recovers", replica.name(), e);
+                replica.setHealthy(false);
+            }
+        }
+        connections.get(PRIMARY).increment();
+        return primary.getConnection();
+    }
+
+    private static void readSecondLevelCacheOnly() {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            return;
+        }
+        for (Object resource : TransactionSynchronizationManager.getResourceMap().values()) {
+            if (resource instanceof EntityManagerHolder holder) {
+                Session session = holder.getEntityManager().unwrap(Session.class);
+                CacheMode previous = session.getCacheMode();
+                session.setCacheMode(CacheMode.GET);
+                // an entity manager kept open for the whole request outlives the transaction
+                TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                    @Override
+                    public void afterCompletion(int status) {
+                        if (session.isOpen()) {
+                            session.setCacheMode(previous);
+                        }
+                    }
+                });
+            }
+        }
+    }
+
+    Replica selectReplica() {
+        List<Replica> healthy = replicas.stream().filter(Replica::isHealthy).toList();
+        if (healthy.isEmpty()) {
+            return null;
+        }
+        return switch (selection) {
+            case ROUND_ROBIN -> healthy.get(Math.floorMod(next.getAndIncrement(), healthy.size()));
+            case LEAST_OUTSTANDING -> healthy.stream()
+                    .min(Comparator.comparingInt(Replica::outstanding))
+                    .orElseThrow();
+        };
+    }
+
+    /**
+     * Puts replicas that answer and are not lagging too far behind back in rotation, and
+     * takes the rest out.
+     */
+    @Scheduled(fixedDelayString = "${customer.datasource.routing.health-check-interval:PT5S}")
+    void checkReplicas() {
+        for (Replica replica : replicas) {
+            boolean healthy = isHealthy(replica);
+            if (healthy != replica.isHealthy()) {
+                log.info("Replica {} is {}", replica.name(), healthy ? "back in rotation" : "out of rotation");
+            }
+            replica.setHealthy(healthy);
+        }
+    }
+
+    private boolean isHealthy(Replica replica) {
+        // a caught up replica has replayed everything it received, however long ago the
+        // last write was; on a server that is not replaying the lag is null
+        try (Connection connection = replica.getTargetDataSource().getConnection();
+             Statement statement = connection.createStatement();
+             ResultSet lag = statement.executeQuery("""
+                     SELECT CASE WHEN pg_last_wal_receive_lsn() = pg_last_wal_replay_lsn() THEN 0
+                                 ELSE EXTRACT(EPOCH FROM now() - pg_last_xact_replay_timestamp()) * 1000
+                            END
+                     """)) {
+            lag.next();
+            double lagMillis = lag.getDouble(1);
+            return lag.wasNull() || lagMillis <= maxReplicationLag.toMillis();
+        } catch (SQLException e) {
+            return false;
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        for (DataSource dataSource : getResolvedDataSources().values()) {
+            DataSource target = dataSource instanceof Replica replica ? replica.getTargetDataSource() : dataSource;
+            if (target instanceof Closeable closeable) {
+                closeable.close();
+            }
+        }
+    }
+
+    private static Counter connectionCounter(String target, MeterRegistry meterRegistry) {
+        return Counter.builder("customer.datasource.connections")
+                .description("Connections handed out, by the database they came from")
+                .tag("target", target)
+                .register(meterRegistry);
+    }
+}
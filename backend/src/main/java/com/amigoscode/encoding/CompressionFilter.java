@@ -0,0 +1,338 @@
+package com.amigoscode.encoding;
+
+import com.github.luben.zstd.ZstdOutputStream;
+import jakarta.servlet.AsyncContext;
+import jakarta.servlet.AsyncEvent;
+import jakarta.servlet.AsyncListener;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.ServletOutputStream;
+import jakarta.servlet.WriteListener;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import jakarta.servlet.http.HttpServletResponseWrapper;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.io.UncheckedIOException;
+import java.nio.charset.Charset;
+import java.util.Collection;
+import java.util.List;
+import java.util.Locale;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Compresses responses with zstd or gzip, whichever the client prefers, zstd on a tie.
+ * The body is held back until it reaches {@code minResponseSize}: smaller bodies go out as
+ * they are, larger ones of a compressible type are streamed through the compressor from there on.
+ * A body still unwritten when the request goes async, or written with a {@link WriteListener},
+ * goes out uncompressed.
+ * <p>
+ * It stands in for Tomcat's compression, which knows no zstd and skips every response with
+ * a strong entity tag, so every customer page. This filter weakens the tag instead: the
+ * compressed body is no longer byte for byte the one the tag was computed for, and
+ * {@code If-None-Match} compares weakly anyway.
+ */
+class CompressionFilter extends OncePerRequestFilter {
+
+    static final String ZSTD = "zstd";
+    static final String GZIP = "gzip";
+
+    private final int minResponseSize;
+    private final List<MediaType> mimeTypes;
+    private final int level;
+
+    CompressionFilter(int minResponseSize, Collection<MediaType> mimeTypes, int level) {
+        this.minResponseSize = minResponseSize;
+        this.mimeTypes = List.copyOf(mimeTypes);
+        this.level = level;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request,
+                                    HttpServletResponse response,
+                                    FilterChain filterChain) throws ServletException, IOException {
+        String coding = negotiate(request.getHeader(HttpHeaders.ACCEPT_ENCODING));
+        if (coding == null) {
+            filterChain.doFilter(request, response);
+            return;
+        }
+        CompressingResponse compressing = new CompressingResponse(response, coding);
+        filterChain.doFilter(request, compressing);
+        if (request.isAsyncStarted()) {
+            compressing.finishAsync(request.getAsyncContext());
+        } else {
+            compressing.finish();
+        }
+    }
+
+    /**
+     * @return {@code zstd}, {@code gzip} or {@code null} when the client accepts neither
+     */
+    static String negotiate(String acceptEncoding) {
+        if (acceptEncoding == null) {
+            return null;
+        }
+        double zstd = 0;
+        double gzip = 0;
+        double any = 0;
+        boolean zstdListed = false;
+        boolean gzipListed = false;
+        for (String coding : acceptEncoding.split(",")) {
+            String[] parts = coding.split(";");
+            String name = parts[0].trim().toLowerCase(Locale.ROOT);
+            double quality = quality(parts);
+            switch (name) {
+                case ZSTD -> {
+                    zstd = quality;
+                    zstdListed = true;
+                }
+                case GZIP, "x-gzip" -> {
+                    gzip = Math.max(gzip, quality);
+                    gzipListed = true;
+                }
+                case "*" -> any = quality;
+                default -> {
+                }
+            }
+        }
+        // a wildcard only stands in for codings not listed by name
+        zstd = zstdListed ? zstd : any;
+        gzip = gzipListed ? gzip : any;
+        if (zstd > 0 && zstd >= gzip) {
+            return ZSTD;
+        }
+        return gzip > 0 ? GZIP : null;
+    }
+
+    private static double quality(String[] parts) {
+        for (int i = 1; i < parts.length; i++) {
+            String parameter = parts[i].trim().toLowerCase(Locale.ROOT);
+            if (parameter.startsWith("q=")) {
+                try {
+                    return Double.parseDouble(parameter.substring(2));
+                } catch (NumberFormatException e) {
+                    return 0;
+                }
+            }
+        }
+        return 1;
+    }
+
+    private boolean compressible(String contentType) {
+        if (contentType == null) {
+            return false;
+        }
+        MediaType mediaType = MediaType.parseMediaType(contentType);
+        return mimeTypes.stream().anyMatch(mediaType::equalsTypeAndSubtype);
+    }
+
+    private class CompressingResponse extends HttpServletResponseWrapper {
+
+        private final String coding;
+        private final ThresholdOutputStream body = new ThresholdOutputStream();
+        private PrintWriter writer;
+
+        CompressingResponse(HttpServletResponse response, String coding) {
+            super(response);
+            this.coding = coding;
+        }
+
+        @Override
+        public ServletOutputStream getOutputStream() {
+            return body;
+        }
+
+        @Override
+        public PrintWriter getWriter() {
+            if (writer == null) {
+                writer = new PrintWriter(new OutputStreamWriter(body, Charset.forName(getCharacterEncoding())));
+            }
+            return writer;
+        }
+
+        // the length of the compressed body is not known up front
+        @Override
+        public void setContentLength(int len) {
+        }
+
+        @Override
+        public void setContentLengthLong(long len) {
+        }
+
+        @Override
+        public void setHeader(String name, String value) {
+            if (!HttpHeaders.CONTENT_LENGTH.equalsIgnoreCase(name)) {
+                super.setHeader(name, value);
+            }
+        }
+
+        @Override
+        public void addHeader(String name, String value) {
+            if (!HttpHeaders.CONTENT_LENGTH.equalsIgnoreCase(name)) {
+                super.addHeader(name, value);
+            }
+        }
+
+        @Override
+        public void flushBuffer() throws IOException {
+            if (writer != null) {
+                writer.flush();
+            }
+            body.flush();
+            if (body.target != null) {
+                super.flushBuffer();
+            }
+        }
+
+        @Override
+        public void resetBuffer() {
+            body.pending.reset();
+            super.resetBuffer();
+        }
+
+        @Override
+        public void reset() {
+            body.pending.reset();
+            super.reset();
+        }
+
+        void finish() throws IOException {
+            if (writer != null) {
+                writer.flush();
+            }
+            body.finish();
+        }
+
+        /**
+         * The rest of the body is written after the filter returned: whatever is not being
+         * compressed yet goes out as it is written, a compressor already started is finished
+         * once the async request completes.
+         */
+        void finishAsync(AsyncContext asyncContext) throws IOException {
+            body.bypass();
+            asyncContext.addListener(new AsyncListener() {
+                @Override
+                public void onComplete(AsyncEvent event) throws IOException {
+                    finish();
+                }
+
+                @Override
+                public void onTimeout(AsyncEvent event) {
+                }
+
+                @Override
+                public void onError(AsyncEvent event) {
+                }
+
+                @Override
+                public void onStartAsync(AsyncEvent event) {
+                }
+            });
+        }
+
+        /**
+         * Buffers until the threshold, then decides once whether the rest is compressed.
+         */
+        private class ThresholdOutputStream extends ServletOutputStream {
+
+            private final ByteArrayOutputStream pending = new ByteArrayOutputStream();
+            private OutputStream target;
+            // the container's stream, once compression is bypassed
+            private ServletOutputStream plain;
+
+            @Override
+            public void write(int b) throws IOException {
+                write(new byte[]{(byte) b}, 0, 1);
+            }
+
+            @Override
+            public void write(byte[] b, int off, int len) throws IOException {
+                if (target != null) {
+                    target.write(b, off, len);
+                    return;
+                }
+                pending.write(b, off, len);
+                if (pending.size() >= minResponseSize) {
+                    open();
+                }
+            }
+
+            // holding back until the threshold matters more than an early flush
+            @Override
+            public void flush() throws IOException {
+                if (target != null) {
+                    target.flush();
+                }
+            }
+
+            void finish() throws IOException {
+                // the container finishes its own stream
+                if (plain != null) {
+                    return;
+                }
+                if (target == null) {
+                    if (pending.size() == 0) {
+                        return;
+                    }
+                    HttpServletResponse response = (HttpServletResponse) getResponse();
+                    response.setContentLength(pending.size());
+                    target = response.getOutputStream();
+                    pending.writeTo(target);
+                }
+                target.close();
+            }
+
+            private void open() throws IOException {
+                HttpServletResponse response = (HttpServletResponse) getResponse();
+                OutputStream out = response.getOutputStream();
+                if (compressible(getContentType()) && !containsHeader(HttpHeaders.CONTENT_ENCODING)) {
+                    response.setHeader(HttpHeaders.CONTENT_ENCODING, coding);
+                    response.addHeader(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+                    String eTag = response.getHeader(HttpHeaders.ETAG);
+                    if (eTag != null && eTag.startsWith("\"")) {
+                        response.setHeader(HttpHeaders.ETAG, "W/" + eTag);
+                    }
+                    out = coding.equals(ZSTD) ? new ZstdOutputStream(out, level) : new GZIPOutputStream(out, 8192);
+                }
+                target = out;
+                pending.writeTo(target);
+                pending.reset();
+            }
+
+            void bypass() throws IOException {
+                if (target == null) {
+                    plain = getResponse().getOutputStream();
+                    target = plain;
+                    pending.writeTo(target);
+                    pending.reset();
+                }
+            }
+
+            @Override
+            public boolean isReady() {
+                return plain == null || plain.isReady();
+            }
+
+            // non-blocking writes go straight to the container, the compressor writes blocking
+            @Override
+            public void setWriteListener(WriteListener writeListener) {
+                if (plain == null && (target != null || pending.size() > 0)) {
+                    throw new IllegalStateException("the body was already written blocking");
+                }
+                try {
+                    bypass();
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+                plain.setWriteListener(writeListener);
+            }
+        }
+    }
+}
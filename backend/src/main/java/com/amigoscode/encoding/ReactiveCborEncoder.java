@@ -0,0 +1,59 @@
+package com.amigoscode.encoding;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.reactivestreams.Publisher;
+import org.springframework.core.ResolvableType;
+import org.springframework.core.io.Resource;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferFactory;
+import org.springframework.http.MediaType;
+import org.springframework.http.codec.cbor.Jackson2CborEncoder;
+import org.springframework.util.MimeType;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.Map;
+
+/**
+ * The CBOR encoder as WebFlux needs it next to JSON. Custom codecs are consulted before the
+ * default ones, so this one only applies when CBOR was asked for by name, and never to bodies
+ * that are bytes already. The stock encoder refuses any publisher; this one writes a
+ * {@link Mono} as its value and a {@link Flux} as one indefinite-length array, element by
+ * element as they arrive.
+ */
+class ReactiveCborEncoder extends Jackson2CborEncoder {
+
+    // major type 4 with additional information 31, closed by the break stop code (RFC 8949, 3.2.2)
+    private static final byte START_INDEFINITE_ARRAY = (byte) 0x9F;
+    private static final byte BREAK = (byte) 0xFF;
+
+    ReactiveCborEncoder(ObjectMapper mapper) {
+        super(mapper, MediaType.APPLICATION_CBOR);
+    }
+
+    @Override
+    public boolean canEncode(ResolvableType elementType, MimeType mimeType) {
+        if (mimeType == null || !MediaType.APPLICATION_CBOR.isCompatibleWith(mimeType)) {
+            return false;
+        }
+        // a body that is already bytes, cbor encoded elsewhere, goes out as it is
+        Class<?> type = elementType.toClass();
+        if (type == byte[].class || DataBuffer.class.isAssignableFrom(type) || Resource.class.isAssignableFrom(type)) {
+            return false;
+        }
+        return super.canEncode(elementType, mimeType);
+    }
+
+    @Override
+    public Flux<DataBuffer> encode(Publisher<?> inputStream, DataBufferFactory bufferFactory,
+                                   ResolvableType elementType, MimeType mimeType, Map<String, Object> hints) {
+        if (inputStream instanceof Mono<?> mono) {
+            return mono.map(value -> encodeValue(value, bufferFactory, elementType, mimeType, hints)).flux();
+        }
+        return Flux.concat(
+                Mono.fromSupplier(() -> bufferFactory.wrap(new byte[]{START_INDEFINITE_ARRAY})),
+                Flux.from(inputStream).map(value -> encodeValue(value, bufferFactory, elementType, mimeType, hints)),
+                Mono.fromSupplier(() -> bufferFactory.wrap(new byte[]{BREAK}))
+        );
+    }
+}
@@ -0,0 +1,111 @@
+package com.amigoscode.encoding;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.boot.autoconfigure.web.ServerProperties;
+import org.springframework.boot.web.codec.CodecCustomizer;
+import org.springframework.boot.web.server.Compression;
+import org.springframework.boot.web.server.WebServerFactoryCustomizer;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.boot.web.servlet.server.ConfigurableServletWebServerFactory;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.MediaType;
+import org.springframework.http.codec.cbor.Jackson2CborDecoder;
+import org.springframework.http.codec.json.Jackson2SmileDecoder;
+import org.springframework.http.codec.json.Jackson2SmileEncoder;
+import org.springframework.http.converter.cbor.MappingJackson2CborHttpMessageConverter;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.http.converter.smile.MappingJackson2SmileHttpMessageConverter;
+
+import java.util.Arrays;
+
+/**
+ * Binary alternatives to JSON for service-to-service traffic, picked by content negotiation:
+ * {@code application/cbor} and {@code application/x-jackson-smile} requests and responses
+ * are handled by mappers built by Boot's {@link Jackson2ObjectMapperBuilder}, so every format
+ * carries the same fields as the JSON one.
+ * <p>
+ * Responses above {@code server.compression.min-response-size} are compressed: with zstd or
+ * gzip by {@link CompressionFilter} on the servlet stack, with gzip by netty on the reactive one.
+ */
+@Configuration
+public class WireFormatConfig {
+
+    @Configuration
+    @ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
+    static class ServletWireFormats {
+
+        // take the place of spring mvc's own, which would not see boot's jackson settings
+        @Bean
+        MappingJackson2CborHttpMessageConverter cborHttpMessageConverter(
+                ObjectProvider<Jackson2ObjectMapperBuilder> builders) {
+            return new MappingJackson2CborHttpMessageConverter(mapper(builders, new CBORFactory()));
+        }
+
+        @Bean
+        MappingJackson2SmileHttpMessageConverter smileHttpMessageConverter(
+                ObjectProvider<Jackson2ObjectMapperBuilder> builders) {
+            return new MappingJackson2SmileHttpMessageConverter(mapper(builders, new SmileFactory()));
+        }
+
+        @Bean
+        @ConditionalOnProperty(prefix = "server.compression", name = "enabled", havingValue = "true")
+        FilterRegistrationBean<CompressionFilter> compressionFilter(
+                ServerProperties serverProperties,
+                @Value("${customer.compression.zstd-level:3}") int level) {
+            Compression compression = serverProperties.getCompression();
+            FilterRegistrationBean<CompressionFilter> registration = new FilterRegistrationBean<>(
+                    new CompressionFilter(
+                            (int) compression.getMinResponseSize().toBytes(),
+                            Arrays.stream(compression.getMimeTypes()).map(MediaType::parseMediaType).toList(),
+                            level
+                    )
+            );
+            registration.addUrlPatterns("/*");
+            return registration;
+        }
+
+        // tomcat would gzip a zstd body a second time, the filter does all of the compressing
+        @Bean
+        @ConditionalOnProperty(prefix = "server.compression", name = "enabled", havingValue = "true")
+        WebServerFactoryCustomizer<ConfigurableServletWebServerFactory> serverCompressionDisabler() {
+            return factory -> {
+                Compression disabled = new Compression();
+                disabled.setEnabled(false);
+                factory.setCompression(disabled);
+            };
+        }
+    }
+
+    @Configuration
+    @ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.REACTIVE)
+    static class ReactiveWireFormats {
+
+        @Bean
+        CodecCustomizer binaryCodecCustomizer(ObjectProvider<Jackson2ObjectMapperBuilder> builders) {
+            ObjectMapper cbor = mapper(builders, new CBORFactory());
+            ObjectMapper smile = mapper(builders, new SmileFactory());
+            // without media types the jackson codecs would claim application/json
+            MediaType smileType = MediaType.valueOf("application/x-jackson-smile");
+            return configurer -> {
+                // smile is one of webflux's own codecs, cbor is not
+                configurer.defaultCodecs().jackson2SmileEncoder(new Jackson2SmileEncoder(smile, smileType));
+                configurer.defaultCodecs().jackson2SmileDecoder(new Jackson2SmileDecoder(smile, smileType));
+                configurer.customCodecs().register(new ReactiveCborEncoder(cbor));
+                configurer.customCodecs().register(new Jackson2CborDecoder(cbor, MediaType.APPLICATION_CBOR));
+            };
+        }
+    }
+
+    // the builder bean is a prototype, each format gets its own
+    private static ObjectMapper mapper(ObjectProvider<Jackson2ObjectMapperBuilder> builders, JsonFactory factory) {
+        return builders.getObject().factory(factory).build();
+    }
+}
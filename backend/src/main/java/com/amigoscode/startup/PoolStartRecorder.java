@@ -0,0 +1,49 @@
+package com.amigoscode.startup;
+
+import com.zaxxer.hikari.HikariDataSource;
+import org.springframework.beans.BeansException;
+import org.springframework.beans.factory.BeanCreationException;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.context.ApplicationStartupAware;
+import org.springframework.core.Ordered;
+import org.springframework.core.metrics.ApplicationStartup;
+import org.springframework.core.metrics.StartupStep;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+
+/**
+ * Starts connection pools as soon as their bean exists, in a startup step of their own.
+ * Hikari would otherwise start on the first borrowed connection, somewhere inside Flyway
+ * or Hibernate, and the time would be counted there.
+ */
+class PoolStartRecorder implements BeanPostProcessor, ApplicationStartupAware, Ordered {
+
+    private ApplicationStartup applicationStartup = ApplicationStartup.DEFAULT;
+
+    @Override
+    public void setApplicationStartup(ApplicationStartup applicationStartup) {
+        this.applicationStartup = applicationStartup;
+    }
+
+    // sees the pool before anything wraps it
+    @Override
+    public int getOrder() {
+        return Ordered.HIGHEST_PRECEDENCE;
+    }
+
+    @Override
+    public Object postProcessAfterInitialization(Object bean, String beanName) throws BeansException {
+        if (bean instanceof HikariDataSource pool && !pool.isRunning()) {
+            StartupStep step = applicationStartup.start(StartupPhases.POOL_START_STEP).tag("beanName", beanName);
+            try (Connection ignored = pool.getConnection()) {
+                // borrowing the first connection starts the pool
+            } catch (SQLException e) {
+                throw new BeanCreationException(beanName, "could not start the connection pool", e);
+            } finally {
+                step.end();
+            }
+        }
+        return bean;
+    }
+}
@@ -0,0 +1,40 @@
+package com.amigoscode.startup;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * How long a start may take, in total and per phase of the {@link StartupReport}.
+ *
+ * @param total  from the launch of the application until it is ready, no limit when not set
+ * @param phases limits by phase name, phases not listed have none
+ */
+@ConfigurationProperties(prefix = "customer.startup.budget")
+public record StartupBudgetProperties(
+        Duration total,
+        @DefaultValue Map<String, Duration> phases) {
+
+    /**
+     * @return one line per limit the start went past, empty when it kept to all of them
+     */
+    public List<String> exceededBy(StartupReport report) {
+        List<String> exceeded = new ArrayList<>();
+        if (total != null && report.totalMillis() > total.toMillis()) {
+            exceeded.add("start took %d ms, over its budget of %d ms".formatted(report.totalMillis(), total.toMillis()));
+        }
+        phases.forEach((phase, budget) -> {
+            Long millis = report.phaseMillis().get(phase);
+            if (millis == null) {
+                exceeded.add("%s was not reported".formatted(phase));
+            } else if (millis > budget.toMillis()) {
+                exceeded.add("%s took %d ms, over its budget of %d ms".formatted(phase, millis, budget.toMillis()));
+            }
+        });
+        return exceeded;
+    }
+}
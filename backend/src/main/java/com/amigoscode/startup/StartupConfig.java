@@ -0,0 +1,21 @@
+package com.amigoscode.startup;
+
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+@EnableConfigurationProperties(StartupBudgetProperties.class)
+public class StartupConfig {
+
+    // static, post-processors are created before the rest of the configuration
+    @Bean
+    static PoolStartRecorder poolStartRecorder() {
+        return new PoolStartRecorder();
+    }
+
+    @Bean
+    public StartupReportEndpoint startupReportEndpoint(StartupBudgetProperties budget) {
+        return new StartupReportEndpoint(budget);
+    }
+}
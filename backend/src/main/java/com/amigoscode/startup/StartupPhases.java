@@ -0,0 +1,135 @@
+package com.amigoscode.startup;
+
+import org.springframework.boot.context.metrics.buffering.StartupTimeline;
+import org.springframework.core.metrics.StartupStep;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Predicate;
+
+/**
+ * Breaks a recorded startup down into the phases worth watching. Beans are counted from the
+ * {@code spring.beans.instantiate} steps; a bean's step includes the beans it depends on, so
+ * a phase only adds up the outermost of its steps. Flyway and Hibernate run inside the
+ * creation of their beans, the pool is started by {@link PoolStartRecorder}, and runners
+ * fill the gap between the started event and the application being ready.
+ */
+final class StartupPhases {
+
+    static final String BEANS = "beans";
+    static final String DATASOURCE_POOL = "datasource-pool";
+    static final String FLYWAY = "flyway";
+    static final String ENTITY_MANAGER_FACTORY = "entity-manager-factory";
+    static final String RUNNERS = "runners";
+
+    static final String POOL_START_STEP = "customer.datasource.pool-start";
+
+    private static final String BEAN_STEP = "spring.beans.instantiate";
+    private static final String STARTED_STEP = "spring.boot.application.started";
+    private static final Set<String> FLYWAY_BEANS = Set.of("flyway", "flywayInitializer");
+    private static final Set<String> ENTITY_MANAGER_FACTORY_BEANS = Set.of("entityManagerFactory");
+    private static final int SLOWEST_BEANS = 10;
+
+    private final Map<Long, StartupTimeline.TimelineEvent> eventsById = new HashMap<>();
+    private final List<StartupTimeline.TimelineEvent> events;
+
+    private StartupPhases(List<StartupTimeline.TimelineEvent> events) {
+        this.events = events;
+        for (StartupTimeline.TimelineEvent event : events) {
+            eventsById.put(event.getStartupStep().getId(), event);
+        }
+    }
+
+    /**
+     * @param ready when the application was ready, before any ready listener ran
+     */
+    static StartupReport of(StartupTimeline timeline, Instant ready) {
+        StartupPhases phases = new StartupPhases(timeline.getEvents());
+        return new StartupReport(
+                Duration.between(timeline.getStartTime(), ready).toMillis(),
+                phases.phaseMillis(ready),
+                phases.slowestBeanMillis()
+        );
+    }
+
+    private Map<String, Long> phaseMillis(Instant ready) {
+        Map<String, Long> phases = new LinkedHashMap<>();
+        phases.put(BEANS, outermost(event -> isStep(event, BEAN_STEP)).toMillis());
+        phases.put(DATASOURCE_POOL, outermost(event -> isStep(event, POOL_START_STEP)).toMillis());
+        phases.put(FLYWAY, outermost(event -> isBeanOf(event, FLYWAY_BEANS)).toMillis());
+        phases.put(ENTITY_MANAGER_FACTORY, outermost(event -> isBeanOf(event, ENTITY_MANAGER_FACTORY_BEANS)).toMillis());
+        phases.put(RUNNERS, events.stream()
+                .filter(event -> isStep(event, STARTED_STEP))
+                .findFirst()
+                .map(started -> Duration.between(started.getEndTime(), ready).toMillis())
+                .orElse(0L));
+        return phases;
+    }
+
+    private Map<String, Long> slowestBeanMillis() {
+        Map<String, Duration> beans = new HashMap<>();
+        for (StartupTimeline.TimelineEvent event : events) {
+            String beanName = beanName(event);
+            if (beanName != null) {
+                beans.merge(beanName, event.getDuration(), Duration::plus);
+            }
+        }
+        Map<String, Long> slowest = new LinkedHashMap<>();
+        beans.entrySet().stream()
+                .sorted(Map.Entry.<String, Duration>comparingByValue(Comparator.reverseOrder()))
+                .limit(SLOWEST_BEANS)
+                .forEach(bean -> slowest.put(bean.getKey(), bean.getValue().toMillis()));
+        return slowest;
+    }
+
+    private Duration outermost(Predicate<StartupTimeline.TimelineEvent> phase) {
+        Duration total = Duration.ZERO;
+        for (StartupTimeline.TimelineEvent event : events) {
+            if (phase.test(event) && !withinAnother(event, phase)) {
+                total = total.plus(event.getDuration());
+            }
+        }
+        return total;
+    }
+
+    private boolean withinAnother(StartupTimeline.TimelineEvent event, Predicate<StartupTimeline.TimelineEvent> phase) {
+        StartupTimeline.TimelineEvent parent = eventsById.get(event.getStartupStep().getParentId());
+        while (parent != null) {
+            if (phase.test(parent)) {
+                return true;
+            }
+            parent = eventsById.get(parent.getStartupStep().getParentId());
+        }
+        return false;
+    }
+
+    private static boolean isStep(StartupTimeline.TimelineEvent event, String name) {
+        return event.getStartupStep().getName().equals(name);
+    }
+
+    private static boolean isBeanOf(StartupTimeline.TimelineEvent event, Set<String> beanNames) {
+        String beanName = beanName(event);
+        return beanName != null && beanNames.contains(beanName);
+    }
+
+    /**
+     * @return the bean a creation step is for, factory beans without their {@code &}
+     */
+    private static String beanName(StartupTimeline.TimelineEvent event) {
+        if (!isStep(event, BEAN_STEP)) {
+            return null;
+        }
+        for (StartupStep.Tag tag : event.getStartupStep().getTags()) {
+            if (tag.getKey().equals("beanName")) {
+                return tag.getValue().startsWith("&") ? tag.getValue().substring(1) : tag.getValue();
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,14 @@
+package com.amigoscode.startup;
+
+import java.util.Map;
+
+/**
+ * @param totalMillis       from the launch of the application until it was ready
+ * @param phaseMillis       time spent per startup phase, phases can contain one another
+ * @param slowestBeanMillis the beans that took longest to create, dependencies included
+ */
+public record StartupReport(
+        long totalMillis,
+        Map<String, Long> phaseMillis,
+        Map<String, Long> slowestBeanMillis) {
+}
@@ -0,0 +1,49 @@
+package com.amigoscode.startup;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.boot.context.metrics.buffering.BufferingApplicationStartup;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+
+import java.time.Instant;
+
+/**
+ * {@code /actuator/startupphases}: where the last start spent its time. The report is taken
+ * once the application is ready, from a snapshot of the buffered steps, so draining
+ * {@code /actuator/startup} does not empty it. Without a {@link BufferingApplicationStartup}
+ * there is nothing to report. A start that went past its {@link StartupBudgetProperties} is
+ * logged as a warning.
+ */
+@Endpoint(id = "startupphases")
+public class StartupReportEndpoint {
+
+    private static final Logger log = LoggerFactory.getLogger(StartupReportEndpoint.class);
+
+    private final StartupBudgetProperties budget;
+    private volatile StartupReport report;
+
+    StartupReportEndpoint(StartupBudgetProperties budget) {
+        this.budget = budget;
+    }
+
+    @ReadOperation
+    public StartupReport report() {
+        return report;
+    }
+
+    // ahead of the other ready listeners, their work is no longer part of the start
+    @EventListener
+    @Order(Ordered.HIGHEST_PRECEDENCE)
+    void record(ApplicationReadyEvent event) {
+        if (event.getApplicationContext().getApplicationStartup() instanceof BufferingApplicationStartup startup) {
+            report = StartupPhases.of(startup.getBufferedTimeline(), Instant.now());
+            log.info("Startup took {} ms, by phase {}", report.totalMillis(), report.phaseMillis());
+            budget.exceededBy(report).forEach(exceeded -> log.warn("Startup over budget: {}", exceeded));
+        }
+    }
+}
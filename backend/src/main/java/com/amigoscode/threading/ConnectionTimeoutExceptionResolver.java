@@ -0,0 +1,46 @@
+package com.amigoscode.threading;
+
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.core.Ordered;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.servlet.HandlerExceptionResolver;
+import org.springframework.web.servlet.ModelAndView;
+
+import java.io.IOException;
+import java.sql.SQLTransientConnectionException;
+
+/**
+ * Answers 503 to a request that gave up waiting for a pooled connection. The pool throws a
+ * {@link SQLTransientConnectionException} once {@code spring.datasource.hikari.connection-timeout}
+ * has passed, it reaches the dispatcher wrapped in whatever data access exception it was
+ * translated to.
+ */
+class ConnectionTimeoutExceptionResolver implements HandlerExceptionResolver, Ordered {
+
+    static final String REASON = "no database connection available";
+
+    @Override
+    public ModelAndView resolveException(HttpServletRequest request,
+                                         HttpServletResponse response,
+                                         Object handler,
+                                         Exception ex) {
+        for (Throwable cause = ex; cause != null; cause = cause.getCause()) {
+            if (cause instanceof SQLTransientConnectionException) {
+                try {
+                    response.sendError(HttpStatus.SERVICE_UNAVAILABLE.value(), REASON);
+                    return new ModelAndView();
+                } catch (IOException e) {
+                    return null;
+                }
+            }
+        }
+        return null;
+    }
+
+    // after DefaultErrorAttributes has recorded the exception, ahead of the mvc resolvers
+    @Override
+    public int getOrder() {
+        return Ordered.HIGHEST_PRECEDENCE + 1;
+    }
+}
@@ -0,0 +1,35 @@
+package com.amigoscode.threading;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnThreading;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.boot.autoconfigure.thread.Threading;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import static org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication.Type.SERVLET;
+
+/**
+ * Virtual thread support on top of {@code spring.threads.virtual.enabled}, which already
+ * moves Tomcat, the application task executor and scheduling onto virtual threads (see
+ * the {@code virtual-threads} profile).
+ */
+@Configuration
+@EnableConfigurationProperties(ThreadingProperties.class)
+public class ThreadingConfig {
+
+    // the pool's own wait queue is the limit, its connection-timeout bounds how long a request waits
+    @Bean
+    @ConditionalOnWebApplication(type = SERVLET)
+    ConnectionTimeoutExceptionResolver connectionTimeoutExceptionResolver() {
+        return new ConnectionTimeoutExceptionResolver();
+    }
+
+    @Bean
+    @ConditionalOnThreading(Threading.VIRTUAL)
+    public VirtualThreadPinningMonitor virtualThreadPinningMonitor(ThreadingProperties properties,
+                                                                   MeterRegistry meterRegistry) {
+        return new VirtualThreadPinningMonitor(meterRegistry, properties.pinningThreshold());
+    }
+}
@@ -0,0 +1,11 @@
+package com.amigoscode.threading;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+import java.time.Duration;
+
+@ConfigurationProperties(prefix = "customer.threading")
+public record ThreadingProperties(
+        @DefaultValue("20ms") Duration pinningThreshold) {
+}
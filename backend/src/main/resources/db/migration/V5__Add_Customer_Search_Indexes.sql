@@ -0,0 +1,3 @@
+CREATE INDEX customer_age_idx ON customer (age);
+CREATE INDEX customer_lower_name_pattern_idx ON customer (lower(name) text_pattern_ops);
+CREATE INDEX customer_lower_email_domain_idx ON customer (lower(split_part(email, '@', 2)));
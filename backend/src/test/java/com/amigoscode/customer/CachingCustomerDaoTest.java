@@ -0,0 +1,186 @@
+package com.amigoscode.customer;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class CachingCustomerDaoTest {
+
+    @Mock private CustomerDao customerDao;
+    private CachingCustomerDao underTest;
+
+    @BeforeEach
+    void setUp() {
+        underTest = new CachingCustomerDao(customerDao, 100, Duration.ofMinutes(5));
+    }
+
+    @Test
+    void selectCustomerByIdIsServedFromCacheAfterFirstRead() {
+        // Given
+        Customer customer = new Customer(1, "Alex", "alex@gmail.com", 19, 0);
+        when(customerDao.selectCustomerById(1)).thenReturn(Optional.of(customer));
+
+        // When
+        underTest.selectCustomerById(1);
+        Optional<Customer> actual = underTest.selectCustomerById(1);
+
+        // Then
+        assertThat(actual).hasValue(customer);
+        verify(customerDao, times(1)).selectCustomerById(1);
+    }
+
+    @Test
+    void missesInReadOnlyTransactionsOffTheReplicasAreCached() {
+        // Given
+        Customer customer = new Customer(1, "Alex", "alex@gmail.com", 19, 0);
+        when(customerDao.selectCustomerById(1)).thenReturn(Optional.of(customer));
+        TransactionSynchronizationManager.setCurrentTransactionReadOnly(true);
+        try {
+            // When
+            underTest.selectCustomerById(1);
+            underTest.selectCustomerById(1);
+        } finally {
+            TransactionSynchronizationManager.setCurrentTransactionReadOnly(false);
+        }
+
+        // Then
+        verify(customerDao, times(1)).selectCustomerById(1);
+    }
+
+    @Test
+    void cachedCustomersAreCopies() {
+        // Given
+        Customer customer = new Customer(1, "Alex", "alex@gmail.com", 19, 0);
+        when(customerDao.selectCustomerById(1)).thenReturn(Optional.of(customer));
+        underTest.selectCustomerById(1);
+
+        // When
+        underTest.selectCustomerById(1).orElseThrow().setName("Mutated");
+
+        // Then
+        assertThat(underTest.selectCustomerById(1)).hasValueSatisfying(
+                c -> assertThat(c.getName()).isEqualTo("Alex")
+        );
+    }
+
+    @Test
+    void existenceAndVersionChecksAreAnsweredFromCache() {
+        // Given
+        Customer customer = new Customer(1, "Alex", "alex@gmail.com", 19, 4);
+        when(customerDao.selectCustomerById(1)).thenReturn(Optional.of(customer));
+        underTest.selectCustomerById(1);
+
+        // When
+        boolean existsById = underTest.existsPersonWithId(1);
+        boolean existsByEmail = underTest.existsPersonWithEmail("alex@gmail.com");
+        Optional<Integer> version = underTest.selectCustomerVersionById(1);
+
+        // Then
+        assertThat(existsById).isTrue();
+        assertThat(existsByEmail).isTrue();
+        assertThat(version).contains(4);
+        verify(customerDao, never()).existsPersonWithId(any());
+        verify(customerDao, never()).existsPersonWithEmail(any());
+        verify(customerDao, never()).selectCustomerVersionById(any());
+    }
+
+    @Test
+    void updateEvictsTheCustomer() {
+        // Given
+        Customer customer = new Customer(1, "Alex", "alex@gmail.com", 19, 0);
+        when(customerDao.selectCustomerById(1)).thenReturn(Optional.of(customer));
+        underTest.selectCustomerById(1);
+
+        Customer update = new Customer();
+        update.setId(1);
+        update.setEmail("alexandro@gmail.com");
+
+        // When
+        underTest.updateCustomer(update);
+        underTest.existsPersonWithEmail("alex@gmail.com");
+        underTest.selectCustomerById(1);
+
+        // Then
+        verify(customerDao).updateCustomer(update);
+        verify(customerDao, times(2)).selectCustomerById(1);
+        verify(customerDao).existsPersonWithEmail("alex@gmail.com");
+    }
+
+    @Test
+    void deleteEvictsTheCustomer() {
+        // Given
+        Customer customer = new Customer(1, "Alex", "alex@gmail.com", 19, 0);
+        when(customerDao.selectCustomerById(1)).thenReturn(Optional.of(customer));
+        underTest.selectCustomerById(1);
+
+        // When
+        underTest.deleteCustomerById(1);
+        underTest.existsPersonWithId(1);
+
+        // Then
+        verify(customerDao).deleteCustomerById(1);
+        verify(customerDao).existsPersonWithId(1);
+    }
+
+    @Test
+    void projectionsAreServedFromCachedCustomers() {
+        // Given
+        Customer customer = new Customer(1, "Alex", "alex@gmail.com", 19, 0);
+        when(customerDao.selectCustomerById(1)).thenReturn(Optional.of(customer));
+        underTest.selectCustomerById(1);
+
+        // When
+        Optional<Customer> actual = underTest.selectCustomerById(1, CustomerField.parse("name"));
+
+        // Then
+        assertThat(actual).hasValueSatisfying(c -> {
+            assertThat(c.getName()).isEqualTo("Alex");
+            assertThat(c.getEmail()).isNull();
+        });
+        verify(customerDao, never()).selectCustomerById(eq(1), any());
+    }
+
+    @Test
+    void missesAreNotCached() {
+        // Given
+        when(customerDao.selectCustomerById(1)).thenReturn(Optional.empty());
+
+        // When
+        underTest.selectCustomerById(1);
+        underTest.selectCustomerById(1);
+
+        // Then
+        verify(customerDao, times(2)).selectCustomerById(1);
+    }
+
+    @Test
+    void exportsCacheMetrics() {
+        // Given
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        underTest.bindTo(meterRegistry);
+        when(customerDao.selectCustomerById(1)).thenReturn(Optional.empty());
+
+        // When
+        underTest.selectCustomerById(1);
+
+        // Then
+        assertThat(meterRegistry.get("cache.gets")
+                .tag("cache", "customers.by-id")
+                .tag("result", "miss")
+                .functionCounter()
+                .count()).isEqualTo(1);
+    }
+}
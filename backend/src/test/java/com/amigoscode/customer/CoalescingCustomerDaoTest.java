@@ -0,0 +1,197 @@
+package com.amigoscode.customer;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.QueryTimeoutException;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.api.Assertions.fail;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class CoalescingCustomerDaoTest {
+
+    private static final int CALLERS = 20;
+
+    @Mock private CustomerDao customerDao;
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+    private final CountDownLatch release = new CountDownLatch(1);
+    private CoalescingCustomerDao underTest;
+
+    @BeforeEach
+    void setUp() {
+        underTest = new CoalescingCustomerDao(customerDao);
+        underTest.bindTo(meterRegistry);
+    }
+
+    @AfterEach
+    void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    void concurrentLookupsOfOneIdShareOneLoad() throws Exception {
+        // Given
+        when(customerDao.selectCustomerById(1)).thenAnswer(invocation -> {
+            release.await();
+            return Optional.of(new Customer(1, "Alex", "alex@gmail.com", 20, 0));
+        });
+
+        // When
+        List<Future<Optional<Customer>>> actual = lookupsHeldUntilAllJoined(() -> underTest.selectCustomerById(1));
+
+        // Then
+        verify(customerDao, times(1)).selectCustomerById(1);
+        for (Future<Optional<Customer>> customer : actual) {
+            assertThat(customer.get()).hasValueSatisfying(c -> assertThat(c.getName()).isEqualTo("Alex"));
+        }
+        assertThat(actual.get(0).get().get()).isNotSameAs(actual.get(1).get().get());
+        assertThat(underTest.coalescingRatio()).isEqualTo((double) (CALLERS - 1) / CALLERS);
+        assertThat(meterRegistry.get("customer.coalescing.lookups").tag("result", "joined").functionCounter().count())
+                .isEqualTo(CALLERS - 1);
+    }
+
+    @Test
+    void aMissingCustomerIsSharedToo() throws Exception {
+        // Given
+        when(customerDao.selectCustomerById(1)).thenAnswer(invocation -> {
+            release.await();
+            return Optional.empty();
+        });
+
+        // When
+        List<Future<Optional<Customer>>> actual = lookupsHeldUntilAllJoined(() -> underTest.selectCustomerById(1));
+
+        // Then
+        verify(customerDao, times(1)).selectCustomerById(1);
+        for (Future<Optional<Customer>> customer : actual) {
+            assertThat(customer.get()).isEmpty();
+        }
+    }
+
+    @Test
+    void aFailedLoadFailsEveryCallerThatJoinedIt() throws Exception {
+        // Given
+        when(customerDao.selectCustomerVersionById(1)).thenAnswer(invocation -> {
+            release.await();
+            throw new QueryTimeoutException("timed out");
+        });
+
+        // When
+        List<Future<Optional<Integer>>> actual = lookupsHeldUntilAllJoined(() -> underTest.selectCustomerVersionById(1));
+
+        // Then
+        verify(customerDao, times(1)).selectCustomerVersionById(1);
+        for (Future<Optional<Integer>> version : actual) {
+            assertThatThrownBy(version::get).hasCauseInstanceOf(QueryTimeoutException.class);
+        }
+    }
+
+    @Test
+    void lookupsAfterALoadStartAFreshOne() {
+        // Given
+        when(customerDao.selectCustomerVersionById(1)).thenReturn(Optional.of(0), Optional.of(1));
+
+        // When
+        underTest.selectCustomerVersionById(1);
+        Optional<Integer> actual = underTest.selectCustomerVersionById(1);
+
+        // Then
+        assertThat(actual).contains(1);
+        verify(customerDao, times(2)).selectCustomerVersionById(1);
+    }
+
+    @Test
+    void lookupsInAReadWriteTransactionLoadOnTheirOwn() {
+        // Given
+        when(customerDao.selectCustomerVersionById(1)).thenReturn(Optional.of(0));
+        TransactionSynchronizationManager.setActualTransactionActive(true);
+        try {
+            // When
+            underTest.selectCustomerVersionById(1);
+        } finally {
+            TransactionSynchronizationManager.setActualTransactionActive(false);
+        }
+
+        // Then
+        assertThat(underTest.coalescingRatio()).isZero();
+        assertThat(meterRegistry.get("customer.coalescing.lookups").tag("result", "loaded").functionCounter().count())
+                .isZero();
+    }
+
+    @Test
+    void cacheMissesInReadOnlyTransactionsShareOneLoad() throws Exception {
+        // Given
+        CachingCustomerDao cachingCustomerDao = new CachingCustomerDao(underTest, 100, Duration.ofMinutes(5));
+        when(customerDao.selectCustomerById(1)).thenAnswer(invocation -> {
+            release.await();
+            return Optional.of(new Customer(1, "Alex", "alex@gmail.com", 20, 0));
+        });
+
+        // When
+        List<Future<Optional<Customer>>> actual = lookupsHeldUntilAllJoined(() -> {
+            TransactionSynchronizationManager.setActualTransactionActive(true);
+            TransactionSynchronizationManager.setCurrentTransactionReadOnly(true);
+            return cachingCustomerDao.selectCustomerById(1);
+        });
+
+        // Then
+        verify(customerDao, times(1)).selectCustomerById(1);
+        for (Future<Optional<Customer>> customer : actual) {
+            assertThat(customer.get()).hasValueSatisfying(c -> assertThat(c.getName()).isEqualTo("Alex"));
+        }
+    }
+
+    /**
+     * Starts one lookup, lets the others pile up behind it, then releases the load.
+     */
+    private <T> List<Future<T>> lookupsHeldUntilAllJoined(Callable<T> lookup) throws Exception {
+        List<Future<T>> results = new ArrayList<>();
+        results.add(executor.submit(lookup));
+        awaitUntil(() -> meterRegistry.get("customer.coalescing.in-flight").gauge().value() == 1);
+        for (int i = 1; i < CALLERS; i++) {
+            results.add(executor.submit(lookup));
+        }
+        awaitUntil(() -> meterRegistry.get("customer.coalescing.lookups")
+                .tag("result", "joined").functionCounter().count() == CALLERS - 1);
+        release.countDown();
+        for (Future<T> result : results) {
+            try {
+                result.get(5, TimeUnit.SECONDS);
+            } catch (Exception ignored) {
+                // asserted by the test
+            }
+        }
+        return results;
+    }
+
+    private static void awaitUntil(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (!condition.getAsBoolean()) {
+            if (System.nanoTime() > deadline) {
+                fail("condition not met within 5 seconds");
+            }
+            Thread.sleep(1);
+        }
+    }
+}
@@ -0,0 +1,114 @@
+package com.amigoscode.customer;
+
+import com.amigoscode.customer.CustomerBulkRegistrationResult.Status;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.transaction.support.TransactionOperations;
+
+import java.util.List;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class CustomerBulkRegistrationServiceTest {
+
+    @Mock private CustomerDao customerDao;
+    @Mock private CustomerStatistics customerStatistics;
+    private CustomerBulkRegistrationService underTest;
+
+    @BeforeEach
+    void setUp() {
+        underTest = new CustomerBulkRegistrationService(
+                customerDao, customerStatistics, TransactionOperations.withoutTransaction(), 2
+        );
+    }
+
+    @Test
+    void addCustomersInChunks() {
+        // Given
+        List<CustomerRegistrationRequest> requests = List.of(
+                new CustomerRegistrationRequest("Alex", "alex@gmail.com", 19),
+                new CustomerRegistrationRequest("Mike", "mike@gmail.com", 24),
+                new CustomerRegistrationRequest("Ali", "ali@gmail.com", 23)
+        );
+        when(customerDao.selectExistingEmails(any())).thenReturn(Set.of());
+
+        // When
+        List<CustomerBulkRegistrationResult> actual = underTest.addCustomers(requests.iterator());
+
+        // Then
+        assertThat(actual).containsExactly(
+                new CustomerBulkRegistrationResult(0, "alex@gmail.com", Status.CREATED),
+                new CustomerBulkRegistrationResult(1, "mike@gmail.com", Status.CREATED),
+                new CustomerBulkRegistrationResult(2, "ali@gmail.com", Status.CREATED)
+        );
+        verify(customerDao).selectExistingEmails(Set.of("alex@gmail.com", "mike@gmail.com"));
+        verify(customerDao).selectExistingEmails(Set.of("ali@gmail.com"));
+        verify(customerDao, times(2)).insertCustomers(anyList());
+        verify(customerDao, never()).existsPersonWithEmail(any());
+        verify(customerStatistics).customerAdded(19);
+        verify(customerStatistics).customerAdded(24);
+        verify(customerStatistics).customerAdded(23);
+    }
+
+    @Test
+    void addCustomersReportsDuplicatesAndInvalidRequests() {
+        // Given
+        underTest = new CustomerBulkRegistrationService(
+                customerDao, customerStatistics, TransactionOperations.withoutTransaction(), 10
+        );
+        List<CustomerRegistrationRequest> requests = List.of(
+                new CustomerRegistrationRequest("Alex", "alex@gmail.com", 19),
+                new CustomerRegistrationRequest("Mike", "mike@gmail.com", 24),
+                new CustomerRegistrationRequest("Mike", "mike@gmail.com", 24),
+                new CustomerRegistrationRequest("Ali", null, 23)
+        );
+        when(customerDao.selectExistingEmails(any())).thenReturn(Set.of("alex@gmail.com"));
+
+        // When
+        List<CustomerBulkRegistrationResult> actual = underTest.addCustomers(requests.iterator());
+
+        // Then
+        assertThat(actual).extracting(CustomerBulkRegistrationResult::status)
+                .containsExactly(Status.DUPLICATE, Status.CREATED, Status.DUPLICATE, Status.INVALID);
+
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<List<Customer>> customersCaptor = ArgumentCaptor.forClass(List.class);
+        verify(customerDao).insertCustomers(customersCaptor.capture());
+        assertThat(customersCaptor.getValue())
+                .extracting(Customer::getEmail)
+                .containsExactly("mike@gmail.com");
+    }
+
+    @Test
+    void addCustomersFallsBackToRowByRowWhenBatchHitsAConcurrentDuplicate() {
+        // Given
+        List<CustomerRegistrationRequest> requests = List.of(
+                new CustomerRegistrationRequest("Alex", "alex@gmail.com", 19),
+                new CustomerRegistrationRequest("Mike", "mike@gmail.com", 24)
+        );
+        when(customerDao.selectExistingEmails(any())).thenReturn(Set.of());
+        doThrow(new DuplicateKeyException("customer_email_unique"))
+                .when(customerDao).insertCustomers(anyList());
+        doAnswer(invocation -> {
+            Customer customer = invocation.getArgument(0);
+            return !customer.getEmail().equals("mike@gmail.com");
+        }).when(customerDao).insertCustomerIfAbsent(any());
+
+        // When
+        List<CustomerBulkRegistrationResult> actual = underTest.addCustomers(requests.iterator());
+
+        // Then
+        assertThat(actual).extracting(CustomerBulkRegistrationResult::status)
+                .containsExactly(Status.CREATED, Status.DUPLICATE);
+    }
+}
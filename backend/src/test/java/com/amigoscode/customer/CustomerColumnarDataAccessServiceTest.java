@@ -0,0 +1,277 @@
+package com.amigoscode.customer;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.openjdk.jol.info.GraphLayout;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.dao.OptimisticLockingFailureException;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.api.Assertions.tuple;
+
+class CustomerColumnarDataAccessServiceTest {
+
+    private CustomerColumnarDataAccessService underTest;
+
+    @BeforeEach
+    void setUp() {
+        underTest = new CustomerColumnarDataAccessService();
+        underTest.insertCustomer(new Customer("alex", "alex@gmail.com", 21));
+        underTest.insertCustomer(new Customer("mike", "mike@gmail.com", 24));
+    }
+
+    @Test
+    void insertCustomerAssignsIdAndIndexesEmail() {
+        // Given
+        Customer customer = new Customer("Ali", "ali@gmail.com", 23);
+
+        // When
+        underTest.insertCustomer(customer);
+
+        // Then
+        assertThat(customer.getId()).isEqualTo(3);
+        assertThat(underTest.existsPersonWithEmail("ali@gmail.com")).isTrue();
+        assertThat(underTest.existsPersonWithId(3)).isTrue();
+        assertThat(underTest.selectCustomerById(3)).contains(new Customer(3, "Ali", "ali@gmail.com", 23));
+        assertThat(underTest.selectCustomerVersionById(3)).contains(0);
+    }
+
+    @Test
+    void projectionsOnlyDecodeTheRequestedColumns() {
+        // When
+        List<Customer> actual = underTest.selectCustomersAfterId(0, 10, CustomerField.parse("age"));
+
+        // Then
+        assertThat(actual).extracting(Customer::getId, Customer::getAge, Customer::getName, Customer::getEmail)
+                .containsExactly(
+                        tuple(1, 21, null, null),
+                        tuple(2, 24, null, null)
+                );
+        assertThat(underTest.selectCustomerById(2, CustomerField.parse("name")))
+                .hasValueSatisfying(c -> assertThat(c.getName()).isEqualTo("mike"));
+    }
+
+    @Test
+    void insertCustomerKeepsMultiByteNames() {
+        // Given
+        Customer customer = new Customer("Zoë Ñúñez 李", "zoe@gmail.com", 33);
+
+        // When
+        underTest.insertCustomer(customer);
+
+        // Then
+        assertThat(underTest.selectCustomerById(customer.getId())).hasValueSatisfying(
+                c -> assertThat(c.getName()).isEqualTo("Zoë Ñúñez 李")
+        );
+    }
+
+    @Test
+    void insertCustomersIsAllOrNothing() {
+        // Given
+        List<Customer> batch = List.of(
+                new Customer("Ali", "ali@gmail.com", 23),
+                new Customer("Alex", "alex@gmail.com", 30)
+        );
+
+        // When
+        assertThatThrownBy(() -> underTest.insertCustomers(batch))
+                .isInstanceOf(DuplicateKeyException.class);
+
+        // Then
+        assertThat(underTest.existsPersonWithEmail("ali@gmail.com")).isFalse();
+        assertThat(underTest.size()).isEqualTo(2);
+    }
+
+    @Test
+    void selectCustomersAfterIdSkipsDeletedSlots() {
+        // Given
+        underTest.insertCustomer(new Customer("Ali", "ali@gmail.com", 23));
+        underTest.deleteCustomerById(2);
+
+        // When
+        List<Customer> actual = underTest.selectCustomersAfterId(1, 1);
+
+        // Then
+        assertThat(actual).extracting(Customer::getId).containsExactly(3);
+    }
+
+    @Test
+    void selectCustomersFiltersSortsAndLimits() {
+        // Given
+        underTest.insertCustomer(new Customer("Alice", "alice@Example.com", 30));
+        underTest.insertCustomer(new Customer("Albert", "albert@example.com", 40));
+        underTest.insertCustomer(new Customer("Alfred", "alfred@gmail.com", 35));
+        underTest.deleteCustomerById(4);
+
+        // When
+        List<Customer> byAge = underTest.selectCustomers(new CustomerQuery(
+                "al", "EXAMPLE.COM", 25, null, CustomerQuery.SortField.AGE, true, 10
+        ));
+        List<Customer> byId = underTest.selectCustomers(new CustomerQuery(
+                "al", null, null, null, CustomerQuery.SortField.ID, false, 2
+        ));
+
+        // Then
+        assertThat(byAge).extracting(Customer::getName).containsExactly("Alice");
+        assertThat(byId).extracting(Customer::getId).containsExactly(1, 3);
+    }
+
+    @Test
+    void selectAgeCountsSkipsDeletedSlots() {
+        // Given
+        underTest.insertCustomer(new Customer("Ali", "ali@gmail.com", 21));
+        underTest.deleteCustomerById(2);
+
+        // When
+        Map<Integer, Long> actual = underTest.selectAgeCounts();
+
+        // Then
+        assertThat(actual).containsOnly(Map.entry(21, 2L));
+    }
+
+    @Test
+    void updateCustomerMovesEmailIndexAndBumpsVersion() {
+        // Given
+        Customer update = new Customer();
+        update.setId(1);
+        update.setEmail("alexandro@gmail.com");
+        update.setVersion(0);
+
+        // When
+        underTest.updateCustomer(update);
+
+        // Then
+        assertThat(update.getVersion()).isEqualTo(1);
+        assertThat(underTest.existsPersonWithEmail("alex@gmail.com")).isFalse();
+        assertThat(underTest.existsPersonWithEmail("alexandro@gmail.com")).isTrue();
+        assertThat(underTest.selectCustomerById(1)).hasValueSatisfying(c -> {
+            assertThat(c.getName()).isEqualTo("alex");
+            assertThat(c.getEmail()).isEqualTo("alexandro@gmail.com");
+            assertThat(c.getVersion()).isEqualTo(1);
+        });
+    }
+
+    @Test
+    void updateCustomerWillThrowWhenVersionIsStale() {
+        // Given
+        Customer update = new Customer();
+        update.setId(1);
+        update.setAge(40);
+        update.setVersion(7);
+
+        // When
+        // Then
+        assertThatThrownBy(() -> underTest.updateCustomer(update))
+                .isInstanceOf(OptimisticLockingFailureException.class);
+        assertThat(underTest.selectCustomerById(1)).hasValueSatisfying(
+                c -> assertThat(c.getAge()).isEqualTo(21)
+        );
+    }
+
+    @Test
+    void updateCustomerWillThrowWhenEmailIsTaken() {
+        // Given
+        Customer update = new Customer();
+        update.setId(1);
+        update.setEmail("mike@gmail.com");
+
+        // When
+        // Then
+        assertThatThrownBy(() -> underTest.updateCustomer(update))
+                .isInstanceOf(DuplicateKeyException.class);
+        assertThat(underTest.existsPersonWithEmail("alex@gmail.com")).isTrue();
+    }
+
+    @Test
+    void deleteCustomerByIdReleasesEmail() {
+        // When
+        underTest.deleteCustomerById(1);
+
+        // Then
+        assertThat(underTest.existsPersonWithId(1)).isFalse();
+        assertThat(underTest.existsPersonWithEmail("alex@gmail.com")).isFalse();
+        assertThat(underTest.selectAllCustomer()).extracting(Customer::getId).containsExactly(2);
+    }
+
+    @Test
+    void deleteAtAStaleVersionKeepsTheCustomer() {
+        // Given
+        underTest.updateCustomer(new Customer(1, "Alexandro", null, null, 0));
+
+        // When
+        // Then
+        assertThatThrownBy(() -> underTest.deleteCustomerById(1, 0))
+                .isInstanceOf(OptimisticLockingFailureException.class);
+        assertThat(underTest.existsPersonWithId(1)).isTrue();
+        underTest.deleteCustomerById(1, 1);
+        assertThat(underTest.existsPersonWithId(1)).isFalse();
+    }
+
+    @Test
+    void compactionKeepsSurvivorsAndIndexes() {
+        // Given
+        List<Customer> batch = IntStream.range(0, 5_000)
+                .mapToObj(i -> new Customer("name-" + i, "customer-" + i + "@gmail.com", 20 + i % 50))
+                .toList();
+        underTest.insertCustomers(batch);
+        long before = underTest.footprintBytes();
+
+        // When
+        for (Customer customer : batch) {
+            if (customer.getId() % 10 != 0) {
+                underTest.deleteCustomerById(customer.getId());
+            }
+        }
+
+        // Then
+        List<Customer> survivors = underTest.streamAllCustomers().toList();
+        assertThat(survivors).hasSize(2 + 500);
+        assertThat(survivors).extracting(Customer::getId).isSorted();
+        assertThat(underTest.existsPersonWithEmail("customer-17@gmail.com")).isTrue();
+        assertThat(underTest.existsPersonWithEmail("customer-8@gmail.com")).isFalse();
+        assertThat(underTest.selectCustomerById(10)).hasValueSatisfying(
+                c -> assertThat(c.getEmail()).isEqualTo("customer-7@gmail.com")
+        );
+        assertThat(underTest.footprintBytes()).isLessThan(before);
+    }
+
+    @Test
+    void footprintPerCustomerIsFarBelowTheListStore() {
+        // Given
+        int customers = 20_000;
+        CustomerListDataAcessService list = new CustomerListDataAcessService();
+        CustomerColumnarDataAccessService columnar = new CustomerColumnarDataAccessService();
+        List<Customer> batch = new ArrayList<>(customers);
+        for (int i = 0; i < customers; i++) {
+            batch.add(new Customer("Customer Name " + i, "customer." + i + "@amigoscode.com", 18 + i % 60));
+        }
+
+        // When
+        list.insertCustomers(batch);
+        columnar.insertCustomers(batch);
+        double listBytes = (double) GraphLayout.parseInstance(list).totalSize() / customers;
+        double columnarBytes = (double) GraphLayout.parseInstance(columnar).totalSize() / customers;
+
+        // Then
+        assertThat(columnarBytes).isLessThan(listBytes / 2);
+    }
+
+    @Test
+    void streamAllEmailsSkipsDeletedSlots() {
+        // Given
+        underTest.insertCustomer(new Customer("Ali", "ali@gmail.com", 23));
+        underTest.deleteCustomerById(2);
+
+        // When
+        List<String> actual = underTest.streamAllEmails().toList();
+
+        // Then
+        assertThat(actual).containsExactly("alex@gmail.com", "ali@gmail.com");
+    }
+}
@@ -0,0 +1,86 @@
+package com.amigoscode.customer;
+
+import com.amigoscode.exception.PreconditionFailedException;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class CustomerETagTest {
+
+    @Test
+    void versionTagIsStrongAndQuoted() {
+        assertThat(CustomerETag.of(3)).isEqualTo("\"3\"");
+    }
+
+    @Test
+    void projectionTagFoldsInTheFields() {
+        // Given
+        Set<CustomerField> name = CustomerField.parse("name");
+        Set<CustomerField> age = CustomerField.parse("age");
+
+        // When
+        String nameTag = CustomerETag.of(3, name);
+        String ageTag = CustomerETag.of(3, age);
+
+        // Then
+        assertThat(nameTag).matches("\"3-[0-9a-f]{8}\"");
+        assertThat(nameTag).isNotEqualTo(ageTag).isEqualTo(CustomerETag.of(3, CustomerField.parse(" name ")));
+        assertThat(CustomerETag.of(3, CustomerField.parse(null))).isEqualTo(CustomerETag.of(3));
+    }
+
+    @Test
+    void projectedListIsTaggedApartFromTheWholeList() {
+        // Given
+        List<Customer> customers = List.of(new Customer(1, "Alex", "alex@gmail.com", 19, 0));
+
+        // When
+        String whole = CustomerETag.of(customers, null);
+        String projected = CustomerETag.of(customers, null, CustomerField.parse("email"));
+
+        // Then
+        assertThat(projected).isNotEqualTo(whole);
+        assertThat(CustomerETag.of(customers, null, CustomerField.ALL)).isEqualTo(whole);
+    }
+
+    @Test
+    void listTagChangesWhenAVersionChanges() {
+        // Given
+        Customer alex = new Customer(1, "Alex", "alex@gmail.com", 19, 0);
+        Customer updatedAlex = new Customer(1, "Alex", "alex@gmail.com", 20, 1);
+
+        // When
+        String before = CustomerETag.of(List.of(alex), null);
+        String after = CustomerETag.of(List.of(updatedAlex), null);
+
+        // Then
+        assertThat(before).isNotEqualTo(after);
+        assertThat(before).isEqualTo(CustomerETag.of(List.of(alex), null));
+    }
+
+    @Test
+    void ifNoneMatchUsesWeakComparison() {
+        assertThat(CustomerETag.matchesAny("W/\"3\"", "\"3\"")).isTrue();
+        assertThat(CustomerETag.matchesAny("\"1\", \"3\"", "\"3\"")).isTrue();
+        assertThat(CustomerETag.matchesAny("*", "\"3\"")).isTrue();
+        assertThat(CustomerETag.matchesAny("\"2\"", "\"3\"")).isFalse();
+    }
+
+    @Test
+    void parseIfMatch() {
+        assertThat(CustomerETag.parseIfMatch("\"3\"")).isEqualTo(3);
+        assertThat(CustomerETag.parseIfMatch("*")).isNull();
+        assertThat(CustomerETag.parseIfMatch(null)).isNull();
+    }
+
+    @Test
+    void weakOrMalformedIfMatchNeverMatches() {
+        assertThatThrownBy(() -> CustomerETag.parseIfMatch("W/\"3\""))
+                .isInstanceOf(PreconditionFailedException.class);
+        assertThatThrownBy(() -> CustomerETag.parseIfMatch("\"abc\""))
+                .isInstanceOf(PreconditionFailedException.class);
+    }
+}
@@ -0,0 +1,53 @@
+package com.amigoscode.customer;
+
+import com.amigoscode.exception.RequestValidationException;
+import org.junit.jupiter.api.Test;
+
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class CustomerFieldTest {
+
+    @Test
+    void noFieldsMeansAllFields() {
+        assertThat(CustomerField.parse(null)).isEqualTo(CustomerField.ALL);
+        assertThat(CustomerField.parse(" ")).isEqualTo(CustomerField.ALL);
+    }
+
+    @Test
+    void parsedFieldsAlwaysIncludeIdAndVersion() {
+        // When
+        Set<CustomerField> actual = CustomerField.parse("Name, age");
+
+        // Then
+        assertThat(actual).containsExactlyInAnyOrder(
+                CustomerField.ID, CustomerField.NAME, CustomerField.AGE, CustomerField.VERSION
+        );
+        assertThat(CustomerField.selectList(actual)).isEqualTo("id, name, age, version");
+    }
+
+    @Test
+    void unknownFieldsAreRejected() {
+        assertThatThrownBy(() -> CustomerField.parse("name,password"))
+                .isInstanceOf(RequestValidationException.class)
+                .hasMessage("fields must be a comma separated list of id, name, email, age, version");
+    }
+
+    @Test
+    void projectLeavesOutTheOtherFields() {
+        // Given
+        Customer customer = new Customer(1, "Alex", "alex@gmail.com", 19, 2);
+
+        // When
+        Customer actual = CustomerField.project(customer, CustomerField.parse("email"));
+
+        // Then
+        assertThat(actual.getId()).isEqualTo(1);
+        assertThat(actual.getEmail()).isEqualTo("alex@gmail.com");
+        assertThat(actual.getVersion()).isEqualTo(2);
+        assertThat(actual.getName()).isNull();
+        assertThat(actual.getAge()).isNull();
+    }
+}
@@ -0,0 +1,47 @@
+package com.amigoscode.customer;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class CustomerIdPoolTest {
+
+    private final CustomerIdPool underTest = new CustomerIdPool();
+    private final List<Integer> reservations = new ArrayList<>();
+
+    @Test
+    void idsComeFromOneBlockUntilItIsUsedUp() {
+        // When
+        int[] first = underTest.nextIds(1, blocks -> reserve(blocks, 101L));
+        int[] rest = underTest.nextIds(CustomerIdPool.BLOCK_SIZE - 1, blocks -> reserve(blocks, 151L));
+
+        // Then
+        assertThat(first).containsExactly(101);
+        assertThat(rest).hasSize(CustomerIdPool.BLOCK_SIZE - 1).startsWith(102).endsWith(150);
+        assertThat(reservations).containsExactly(1);
+    }
+
+    @Test
+    void aLargeRequestReservesEnoughBlocksAndKeepsTheRest() {
+        // Given
+        underTest.nextIds(CustomerIdPool.BLOCK_SIZE - 2, blocks -> reserve(blocks, 1L));
+
+        // When
+        int[] actual = underTest.nextIds(60, blocks -> reserve(blocks, 51L, 201L));
+        int[] next = underTest.nextIds(1, blocks -> reserve(blocks, 301L));
+
+        // Then
+        assertThat(actual).startsWith(49, 50, 51).contains(100, 201).endsWith(208);
+        assertThat(next).containsExactly(209);
+        assertThat(reservations).containsExactly(1, 2);
+    }
+
+    private List<Long> reserve(int blocks, Long... starts) {
+        reservations.add(blocks);
+        assertThat(starts).hasSize(blocks);
+        return List.of(starts);
+    }
+}
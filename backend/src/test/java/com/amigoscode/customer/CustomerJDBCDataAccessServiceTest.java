@@ -3,13 +3,24 @@ package com.amigoscode.customer;
 import com.amigoscode.AbstractTestcontainers;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.springframework.dao.OptimisticLockingFailureException;
 import org.springframework.jdbc.core.JdbcTemplate;
 
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.stream.Stream;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
 import static org.junit.jupiter.api.Assertions.*;
 
 class CustomerJDBCDataAccessServiceTest extends AbstractTestcontainers {
@@ -42,6 +53,111 @@ class CustomerJDBCDataAccessServiceTest extends AbstractTestcontainers {
         assertThat(actual).isNotEmpty();
     }
 
+    @Test
+    void selectCustomersAfterId() {
+        // Given
+        for (int i = 0; i < 3; i++) {
+            underTest.insertCustomer(new Customer(
+                    FAKER.name().fullName(),
+                    FAKER.internet().safeEmailAddress() + "-" + UUID.randomUUID(),
+                    20
+            ));
+        }
+        int firstId = underTest.selectCustomersAfterId(0, 1).get(0).getId();
+
+        // When
+        List<Customer> actual = underTest.selectCustomersAfterId(firstId, 2);
+
+        // Then
+        assertThat(actual).hasSize(2);
+        assertThat(actual).extracting(Customer::getId)
+                .isSorted()
+                .allMatch(id -> id > firstId);
+    }
+
+    @Test
+    void selectCustomersFiltersInSql() {
+        // Given
+        String domain = UUID.randomUUID() + ".com";
+        underTest.insertCustomer(new Customer("Alice", "alice@" + domain.toUpperCase(), 30));
+        underTest.insertCustomer(new Customer("Albert", "albert@" + domain, 40));
+        underTest.insertCustomer(new Customer("Alfred", "alfred@" + domain, 60));
+        underTest.insertCustomer(new Customer("Bob", "bob@" + domain, 35));
+        underTest.insertCustomer(new Customer("Al%", "percent@" + domain, 35));
+
+        // When
+        List<Customer> actual = underTest.selectCustomers(new CustomerQuery(
+                "al", domain, 25, 45, CustomerQuery.SortField.AGE, true, 10
+        ));
+
+        // Then
+        assertThat(actual).extracting(Customer::getName).containsExactly("Albert", "Al%", "Alice");
+        assertThat(underTest.selectCustomers(new CustomerQuery(
+                "al%", domain, null, null, CustomerQuery.SortField.ID, false, 10
+        ))).extracting(Customer::getName).containsExactly("Al%");
+    }
+
+    @Test
+    void selectAgeCounts() {
+        // Given
+        int age = 150 + ThreadLocalRandom.current().nextInt(1000);
+        Map<Integer, Long> before = underTest.selectAgeCounts();
+        for (int i = 0; i < 2; i++) {
+            underTest.insertCustomer(new Customer(
+                    FAKER.name().fullName(),
+                    FAKER.internet().safeEmailAddress() + "-" + UUID.randomUUID(),
+                    age
+            ));
+        }
+
+        // When
+        Map<Integer, Long> actual = underTest.selectAgeCounts();
+
+        // Then
+        assertThat(actual.get(age)).isEqualTo(before.getOrDefault(age, 0L) + 2);
+    }
+
+    @Test
+    void streamAllCustomers() {
+        // Given
+        String email = FAKER.internet().safeEmailAddress() + "-" + UUID.randomUUID();
+        underTest.insertCustomer(new Customer(
+                FAKER.name().fullName(),
+                email,
+                20
+        ));
+
+        // When
+        List<Customer> actual;
+        try (Stream<Customer> customers = underTest.streamAllCustomers()) {
+            actual = customers.toList();
+        }
+
+        // Then
+        assertThat(actual).extracting(Customer::getEmail).contains(email);
+        assertThat(actual).extracting(Customer::getId).isSorted();
+    }
+
+    @Test
+    void streamAllEmails() {
+        // Given
+        String email = FAKER.internet().safeEmailAddress() + "-" + UUID.randomUUID();
+        underTest.insertCustomer(new Customer(
+                FAKER.name().fullName(),
+                email,
+                20
+        ));
+
+        // When
+        List<String> actual;
+        try (Stream<String> emails = underTest.streamAllEmails()) {
+            actual = emails.toList();
+        }
+
+        // Then
+        assertThat(actual).contains(email);
+    }
+
     @Test
     void selectCustomerById() {
         // Given
@@ -72,6 +188,26 @@ class CustomerJDBCDataAccessServiceTest extends AbstractTestcontainers {
         });
     }
 
+    @Test
+    void selectCustomerVersionById() {
+        // Given
+        String email = FAKER.internet().safeEmailAddress() + "-" + UUID.randomUUID();
+        underTest.insertCustomer(new Customer(FAKER.name().fullName(), email, 20));
+
+        int id = underTest.selectAllCustomer().stream()
+                .filter(c -> c.getEmail().equals(email))
+                .map(c -> c.getId())
+                .findFirst()
+                .orElseThrow();
+
+        // When
+        var actual = underTest.selectCustomerVersionById(id);
+
+        // Then
+        assertThat(actual).contains(0);
+        assertThat(underTest.selectCustomerVersionById(-1)).isEmpty();
+    }
+
     @Test
     void willReturnEmptyWhenselectCustomerById() {
         // Given
@@ -102,6 +238,144 @@ class CustomerJDBCDataAccessServiceTest extends AbstractTestcontainers {
         assertThat(actual).isTrue();
     }
 
+    @Test
+    void insertCustomerIfAbsent() {
+        // Given
+        String email = FAKER.internet().safeEmailAddress() + "-" + UUID.randomUUID();
+        Customer customer = new Customer(FAKER.name().fullName(), email, 20);
+
+        // When
+        boolean actual = underTest.insertCustomerIfAbsent(customer);
+
+        // Then
+        assertThat(actual).isTrue();
+        assertThat(underTest.selectCustomerById(customer.getId())).hasValueSatisfying(
+                c -> assertThat(c.getEmail()).isEqualTo(email)
+        );
+    }
+
+    @Test
+    void insertCustomerIfAbsentReturnsFalseWhenEmailIsTaken() {
+        // Given
+        String email = FAKER.internet().safeEmailAddress() + "-" + UUID.randomUUID();
+        underTest.insertCustomer(new Customer(FAKER.name().fullName(), email, 20));
+        Customer duplicate = new Customer(FAKER.name().fullName(), email, 30);
+
+        // When
+        boolean actual = underTest.insertCustomerIfAbsent(duplicate);
+
+        // Then
+        assertThat(actual).isFalse();
+        assertThat(duplicate.getId()).isNull();
+    }
+
+    @Test
+    void selectCustomerByIdWithFieldsSelectsOnlyThoseColumns() {
+        // Given
+        String email = FAKER.internet().safeEmailAddress() + "-" + UUID.randomUUID();
+        Customer customer = new Customer(FAKER.name().fullName(), email, 20);
+        underTest.insertCustomerIfAbsent(customer);
+
+        // When
+        Optional<Customer> actual = underTest.selectCustomerById(customer.getId(), CustomerField.parse("email"));
+        List<Customer> page = underTest.selectCustomersAfterId(customer.getId() - 1, 1, CustomerField.parse("age"));
+
+        // Then
+        assertThat(actual).hasValueSatisfying(c -> {
+            assertThat(c.getEmail()).isEqualTo(email);
+            assertThat(c.getVersion()).isZero();
+            assertThat(c.getName()).isNull();
+            assertThat(c.getAge()).isNull();
+        });
+        assertThat(page).singleElement().satisfies(c -> {
+            assertThat(c.getId()).isEqualTo(customer.getId());
+            assertThat(c.getAge()).isEqualTo(20);
+            assertThat(c.getEmail()).isNull();
+        });
+    }
+
+    @Test
+    void insertCustomersIfAbsentWritesFreeEmailsInOneStatement() {
+        // Given
+        String taken = FAKER.internet().safeEmailAddress() + "-" + UUID.randomUUID();
+        String free = FAKER.internet().safeEmailAddress() + "-" + UUID.randomUUID();
+        underTest.insertCustomer(new Customer(FAKER.name().fullName(), taken, 20));
+        Customer first = new Customer(FAKER.name().fullName(), free, 21);
+        Customer duplicateOfTaken = new Customer(FAKER.name().fullName(), taken, 22);
+        Customer duplicateInBatch = new Customer(FAKER.name().fullName(), free, 23);
+
+        // When
+        Set<String> actual = underTest.insertCustomersIfAbsent(List.of(first, duplicateOfTaken, duplicateInBatch));
+
+        // Then
+        assertThat(actual).containsExactly(free);
+        assertThat(duplicateOfTaken.getId()).isNull();
+        assertThat(duplicateInBatch.getId()).isNull();
+        assertThat(underTest.selectCustomerById(first.getId())).hasValueSatisfying(
+                c -> assertThat(c.getAge()).isEqualTo(21)
+        );
+    }
+
+    @Test
+    void concurrentInsertCustomerIfAbsentOfOneEmailHasExactlyOneWinner() throws Exception {
+        // Given
+        String email = FAKER.internet().safeEmailAddress() + "-" + UUID.randomUUID();
+        int threads = 8;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<Boolean>> results = new ArrayList<>();
+
+        // When
+        for (int i = 0; i < threads; i++) {
+            results.add(executor.submit(() -> {
+                start.await();
+                return underTest.insertCustomerIfAbsent(new Customer(FAKER.name().fullName(), email, 20));
+            }));
+        }
+        start.countDown();
+
+        int winners = 0;
+        for (Future<Boolean> result : results) {
+            winners += result.get() ? 1 : 0;
+        }
+        executor.shutdown();
+
+        // Then
+        assertThat(winners).isEqualTo(1);
+    }
+
+    @Test
+    void insertCustomers() {
+        // Given
+        String email1 = FAKER.internet().safeEmailAddress() + "-" + UUID.randomUUID();
+        String email2 = FAKER.internet().safeEmailAddress() + "-" + UUID.randomUUID();
+        List<Customer> customers = List.of(
+                new Customer(FAKER.name().fullName(), email1, 20),
+                new Customer(FAKER.name().fullName(), email2, 30)
+        );
+
+        // When
+        underTest.insertCustomers(customers);
+
+        // Then
+        assertThat(underTest.existsPersonWithEmail(email1)).isTrue();
+        assertThat(underTest.existsPersonWithEmail(email2)).isTrue();
+    }
+
+    @Test
+    void selectExistingEmails() {
+        // Given
+        String email = FAKER.internet().safeEmailAddress() + "-" + UUID.randomUUID();
+        String unknownEmail = FAKER.internet().safeEmailAddress() + "-" + UUID.randomUUID();
+        underTest.insertCustomer(new Customer(FAKER.name().fullName(), email, 20));
+
+        // When
+        var actual = underTest.selectExistingEmails(List.of(email, unknownEmail));
+
+        // Then
+        assertThat(actual).containsExactly(email);
+    }
+
     @Test
     void existsPersonWithEmail() {
         // Given
@@ -153,11 +427,13 @@ class CustomerJDBCDataAccessServiceTest extends AbstractTestcontainers {
                 .orElseThrow();
 
         // When
-        underTest.deleteCustomerById(id);
+        boolean deleted = underTest.deleteCustomerById(id);
         var actual = underTest.selectCustomerById(id);
 
         // Then
+        assertThat(deleted).isTrue();
         assertThat(actual).isNotPresent();
+        assertThat(underTest.deleteCustomerById(id)).isFalse();
 
     }
 
@@ -337,6 +613,60 @@ class CustomerJDBCDataAccessServiceTest extends AbstractTestcontainers {
         assertThat(actual).isPresent().hasValue(update);
     }
 
+    @Test
+    void updateCustomerBumpsVersion() {
+        // Given
+        String email = FAKER.internet().safeEmailAddress() + "-" + UUID.randomUUID();
+        underTest.insertCustomer(new Customer(FAKER.name().fullName(), email, 20));
+
+        Customer customer = underTest.selectAllCustomer().stream()
+                .filter(c -> c.getEmail().equals(email))
+                .findFirst()
+                .orElseThrow();
+
+        // When
+        Customer update = new Customer();
+        update.setId(customer.getId());
+        update.setVersion(customer.getVersion());
+        update.setAge(21);
+        underTest.updateCustomer(update);
+
+        // Then
+        assertThat(update.getVersion()).isEqualTo(customer.getVersion() + 1);
+        assertThat(underTest.selectCustomerById(customer.getId()))
+                .hasValueSatisfying(c -> assertThat(c.getVersion()).isEqualTo(update.getVersion()));
+    }
+
+    @Test
+    void willThrowWhenUpdatingAStaleVersion() {
+        // Given
+        String email = FAKER.internet().safeEmailAddress() + "-" + UUID.randomUUID();
+        underTest.insertCustomer(new Customer(FAKER.name().fullName(), email, 20));
+
+        Customer customer = underTest.selectAllCustomer().stream()
+                .filter(c -> c.getEmail().equals(email))
+                .findFirst()
+                .orElseThrow();
+
+        Customer first = new Customer();
+        first.setId(customer.getId());
+        first.setVersion(customer.getVersion());
+        first.setName("foo");
+        underTest.updateCustomer(first);
+
+        // When
+        Customer second = new Customer();
+        second.setId(customer.getId());
+        second.setVersion(customer.getVersion());
+        second.setName("bar");
+
+        // Then
+        assertThatThrownBy(() -> underTest.updateCustomer(second))
+                .isInstanceOf(OptimisticLockingFailureException.class);
+        assertThat(underTest.selectCustomerById(customer.getId()))
+                .hasValueSatisfying(c -> assertThat(c.getName()).isEqualTo("foo"));
+    }
+
     @Test
     void willNotUpdateWhenNothingToUpdate() {
         // Given
@@ -6,9 +6,20 @@ import org.junit.jupiter.api.Test;
 import org.mockito.Mock;
 import org.mockito.Mockito;
 import org.mockito.MockitoAnnotations;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.data.domain.Limit;
 
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
 import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
 
 class CustomerJPADataAccessServiceTest {
 
@@ -36,6 +47,28 @@ class CustomerJPADataAccessServiceTest {
         verify(customerRepository).findAll();
     }
 
+    @Test
+    void selectCustomersAfterId() {
+        // Given
+        int id = 1;
+        int limit = 10;
+
+        // When
+        underTest.selectCustomersAfterId(id, limit);
+
+        // Then
+        verify(customerRepository).findByIdGreaterThanOrderByIdAsc(id, Limit.of(limit));
+    }
+
+    @Test
+    void streamAllCustomers() {
+        // When
+        underTest.streamAllCustomers();
+
+        // Then
+        verify(customerRepository).streamAll();
+    }
+
     @Test
     void selectCustomerById() {
         // Given
@@ -48,6 +81,18 @@ class CustomerJPADataAccessServiceTest {
         verify(customerRepository).findById(id);
     }
 
+    @Test
+    void selectCustomerVersionById() {
+        // Given
+        int id = 1;
+
+        // When
+        underTest.selectCustomerVersionById(id);
+
+        // Then
+        verify(customerRepository).findVersionById(id);
+    }
+
     @Test
     void insertCustomer() {
         // Given
@@ -62,6 +107,106 @@ class CustomerJPADataAccessServiceTest {
         verify(customerRepository).save(customer);
     }
 
+    @Test
+    void insertCustomerIfAbsent() {
+        // Given
+        Customer customer = new Customer("Ali", "ali@gmail.com", 23);
+        when(customerRepository.reserveIdBlocks(1)).thenReturn(List.of(7L));
+        when(customerRepository.insertIfAbsent(7, "Ali", "ali@gmail.com", 23)).thenReturn(Optional.of(7));
+
+        // When
+        boolean actual = underTest.insertCustomerIfAbsent(customer);
+
+        // Then
+        assertThat(actual).isTrue();
+        assertThat(customer.getId()).isEqualTo(7);
+        assertThat(customer.getVersion()).isZero();
+        verify(customerRepository).evictEmailLookups();
+    }
+
+    @Test
+    void insertCustomersIfAbsentAssignsReturnedIds() {
+        // Given
+        Customer ali = new Customer("Ali", "ali@gmail.com", 23);
+        Customer taken = new Customer("Alex", "alex@gmail.com", 30);
+        when(customerRepository.reserveIdBlocks(1)).thenReturn(List.of(7L));
+        when(customerRepository.insertAllIfAbsent(
+                new Integer[]{7, 8},
+                new String[]{"Ali", "Alex"},
+                new String[]{"ali@gmail.com", "alex@gmail.com"},
+                new Integer[]{23, 30}
+        )).thenReturn(List.<Object[]>of(new Object[]{7, "ali@gmail.com"}));
+
+        // When
+        Set<String> actual = underTest.insertCustomersIfAbsent(List.of(ali, taken));
+
+        // Then
+        assertThat(actual).containsExactly("ali@gmail.com");
+        assertThat(ali.getId()).isEqualTo(7);
+        assertThat(ali.getVersion()).isZero();
+        assertThat(taken.getId()).isNull();
+        verify(customerRepository).evictEmailLookups();
+    }
+
+    @Test
+    void insertsShareOneReservedBlockOfIds() {
+        // Given
+        when(customerRepository.reserveIdBlocks(1)).thenReturn(List.of(101L));
+        when(customerRepository.insertIfAbsent(any(), any(), any(), any())).thenReturn(Optional.empty());
+
+        // When
+        underTest.insertCustomerIfAbsent(new Customer("Ali", "ali@gmail.com", 23));
+        underTest.insertCustomerIfAbsent(new Customer("Alex", "alex@gmail.com", 30));
+
+        // Then
+        verify(customerRepository, Mockito.times(1)).reserveIdBlocks(1);
+        verify(customerRepository).insertIfAbsent(101, "Ali", "ali@gmail.com", 23);
+        verify(customerRepository).insertIfAbsent(102, "Alex", "alex@gmail.com", 30);
+    }
+
+    @Test
+    void insertCustomerIfAbsentReturnsFalseWhenEmailIsTaken() {
+        // Given
+        Customer customer = new Customer("Ali", "ali@gmail.com", 23);
+        when(customerRepository.reserveIdBlocks(1)).thenReturn(List.of(7L));
+        when(customerRepository.insertIfAbsent(7, "Ali", "ali@gmail.com", 23)).thenReturn(Optional.empty());
+
+        // When
+        boolean actual = underTest.insertCustomerIfAbsent(customer);
+
+        // Then
+        assertThat(actual).isFalse();
+        assertThat(customer.getId()).isNull();
+        verify(customerRepository, never()).evictEmailLookups();
+    }
+
+    @Test
+    void insertCustomers() {
+        // Given
+        List<Customer> customers = List.of(
+                new Customer("Ali", "ali@gmail.com", 23),
+                new Customer("Alex", "alex@gmail.com", 19)
+        );
+
+        // When
+        underTest.insertCustomers(customers);
+
+        // Then
+        verify(customerRepository).saveAll(customers);
+    }
+
+    @Test
+    void selectExistingEmails() {
+        // Given
+        Set<String> emails = Set.of("ali@gmail.com", "alex@gmail.com");
+
+        // When
+        underTest.selectExistingEmails(emails);
+
+        // Then
+        verify(customerRepository).findEmailsIn(emails);
+    }
+
     @Test
     void existsPersonWithEmail() {
         // Given
@@ -78,12 +223,25 @@ class CustomerJPADataAccessServiceTest {
     void deleteCustomerById() {
         // Given
         int id = 1;
+        when(customerRepository.deleteCustomerById(id)).thenReturn(1);
 
         // When
-        underTest.deleteCustomerById(id);
+        boolean deleted = underTest.deleteCustomerById(id);
+
+        // Then
+        assertThat(deleted).isTrue();
+        verify(customerRepository).deleteCustomerById(id);
+    }
+
+    @Test
+    void deleteCustomerByIdAtAStaleVersionThrows() {
+        // Given
+        when(customerRepository.deleteByIdAndVersion(1, 2)).thenReturn(0);
 
+        // When
         // Then
-        verify(customerRepository).deleteById(id);
+        assertThatThrownBy(() -> underTest.deleteCustomerById(1, 2))
+                .isInstanceOf(OptimisticLockingFailureException.class);
     }
 
     @Test
@@ -91,24 +249,65 @@ class CustomerJPADataAccessServiceTest {
         // Given
         int id = 1;
 
+        when(customerRepository.findById(id)).thenReturn(Optional.of(new Customer(id, "Ali", "ali@gmail.com", 23)));
+
         // When
-        underTest.existsPersonWithId(id);
+        boolean actual = underTest.existsPersonWithId(id);
 
         // Then
-        verify(customerRepository).existsCustomerById(id);
+        assertThat(actual).isTrue();
+        verify(customerRepository, never()).existsCustomerById(id);
     }
 
     @Test
     void updateCustomer() {
         // Given
         Customer customer = new Customer(
-                1, "Ali","Ali@gmail.com",23
+                1, "Ali","Ali@gmail.com",23, 0
         );
+        when(customerRepository.findById(1)).thenReturn(Optional.of(customer));
+        when(customerRepository.saveAndFlush(customer)).thenReturn(customer);
+
+        Customer update = new Customer();
+        update.setId(1);
+        update.setAge(24);
+        update.setVersion(0);
 
         // When
-        underTest.updateCustomer(customer);
+        underTest.updateCustomer(update);
 
         // Then
-        verify(customerRepository).save(customer);
+        verify(customerRepository).saveAndFlush(customer);
+        assertThat(customer.getAge()).isEqualTo(24);
+        assertThat(customer.getName()).isEqualTo("Ali");
+    }
+
+    @Test
+    void updateCustomerWillThrowWhenVersionIsStale() {
+        // Given
+        Customer customer = new Customer(
+                1, "Ali","Ali@gmail.com",23, 2
+        );
+        when(customerRepository.findById(1)).thenReturn(Optional.of(customer));
+
+        Customer update = new Customer();
+        update.setId(1);
+        update.setAge(24);
+        update.setVersion(1);
+
+        // When
+        // Then
+        assertThatThrownBy(() -> underTest.updateCustomer(update))
+                .isInstanceOf(OptimisticLockingFailureException.class);
+        verify(customerRepository, never()).saveAndFlush(any());
+    }
+
+    @Test
+    void streamAllEmails() {
+        // When
+        underTest.streamAllEmails();
+
+        // Then
+        verify(customerRepository).streamAllEmails();
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,290 @@
+package com.amigoscode.customer;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.dao.OptimisticLockingFailureException;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class CustomerListDataAcessServiceTest {
+
+    private CustomerListDataAcessService underTest;
+
+    @BeforeEach
+    void setUp() {
+        underTest = new CustomerListDataAcessService();
+    }
+
+    @Test
+    void seededCustomersHaveIds() {
+        // When
+        List<Customer> actual = underTest.selectAllCustomer();
+
+        // Then
+        assertThat(actual).extracting(Customer::getId).containsExactly(1, 2);
+        assertThat(underTest.selectCustomerById(1)).hasValueSatisfying(
+                c -> assertThat(c.getEmail()).isEqualTo("alex@gmail.com")
+        );
+    }
+
+    @Test
+    void insertCustomerAssignsIdAndIndexesEmail() {
+        // Given
+        Customer customer = new Customer("Ali", "ali@gmail.com", 23);
+
+        // When
+        underTest.insertCustomer(customer);
+
+        // Then
+        assertThat(customer.getId()).isEqualTo(3);
+        assertThat(underTest.existsPersonWithEmail("ali@gmail.com")).isTrue();
+        assertThat(underTest.existsPersonWithId(3)).isTrue();
+        assertThat(underTest.selectCustomerVersionById(3)).contains(0);
+    }
+
+    @Test
+    void deleteAtAVersionOnlyDeletesThatVersion() {
+        // Given
+        underTest.updateCustomer(new Customer(1, "Alexandro", null, null, 0));
+
+        // When
+        // Then
+        assertThatThrownBy(() -> underTest.deleteCustomerById(1, 0))
+                .isInstanceOf(OptimisticLockingFailureException.class);
+        underTest.deleteCustomerById(1, 1);
+        assertThat(underTest.existsPersonWithId(1)).isFalse();
+        assertThat(underTest.existsPersonWithEmail("alex@gmail.com")).isFalse();
+    }
+
+    @Test
+    void insertCustomerWillThrowWhenEmailExists() {
+        // When
+        // Then
+        assertThatThrownBy(() -> underTest.insertCustomer(new Customer("Alex", "alex@gmail.com", 30)))
+                .isInstanceOf(DuplicateKeyException.class);
+        assertThat(underTest.selectAllCustomer()).hasSize(2);
+    }
+
+    @Test
+    void insertCustomerIfAbsentReturnsFalseWhenEmailExists() {
+        // When
+        boolean actual = underTest.insertCustomerIfAbsent(new Customer("Alex", "alex@gmail.com", 30));
+
+        // Then
+        assertThat(actual).isFalse();
+        assertThat(underTest.selectAllCustomer()).hasSize(2);
+    }
+
+    @Test
+    void insertCustomersIfAbsentSkipsTakenEmails() {
+        // Given
+        Customer ali = new Customer("Ali", "ali@gmail.com", 23);
+        Customer taken = new Customer("Alex", "alex@gmail.com", 30);
+        Customer repeated = new Customer("Ali", "ali@gmail.com", 40);
+
+        // When
+        Set<String> actual = underTest.insertCustomersIfAbsent(List.of(ali, taken, repeated));
+
+        // Then
+        assertThat(actual).containsExactly("ali@gmail.com");
+        assertThat(ali.getId()).isNotNull();
+        assertThat(taken.getId()).isNull();
+        assertThat(repeated.getId()).isNull();
+        assertThat(underTest.selectAllCustomer()).hasSize(3);
+    }
+
+    @Test
+    void insertCustomersIsAllOrNothing() {
+        // Given
+        List<Customer> batch = List.of(
+                new Customer("Ali", "ali@gmail.com", 23),
+                new Customer("Alex", "alex@gmail.com", 30)
+        );
+
+        // When
+        assertThatThrownBy(() -> underTest.insertCustomers(batch))
+                .isInstanceOf(DuplicateKeyException.class);
+
+        // Then
+        assertThat(underTest.existsPersonWithEmail("ali@gmail.com")).isFalse();
+        assertThat(underTest.selectAllCustomer()).hasSize(2);
+    }
+
+    @Test
+    void selectCustomersAfterId() {
+        // Given
+        underTest.insertCustomer(new Customer("Ali", "ali@gmail.com", 23));
+
+        // When
+        List<Customer> actual = underTest.selectCustomersAfterId(1, 1);
+
+        // Then
+        assertThat(actual).extracting(Customer::getId).containsExactly(2);
+    }
+
+    @Test
+    void updateCustomerMovesEmailIndexAndBumpsVersion() {
+        // Given
+        Customer update = new Customer();
+        update.setId(1);
+        update.setEmail("alexandro@gmail.com");
+        update.setVersion(0);
+
+        // When
+        underTest.updateCustomer(update);
+
+        // Then
+        assertThat(update.getVersion()).isEqualTo(1);
+        assertThat(underTest.existsPersonWithEmail("alex@gmail.com")).isFalse();
+        assertThat(underTest.existsPersonWithEmail("alexandro@gmail.com")).isTrue();
+        assertThat(underTest.selectCustomerById(1)).hasValueSatisfying(c -> {
+            assertThat(c.getName()).isEqualTo("alex");
+            assertThat(c.getEmail()).isEqualTo("alexandro@gmail.com");
+            assertThat(c.getVersion()).isEqualTo(1);
+        });
+    }
+
+    @Test
+    void updateCustomerWillThrowWhenVersionIsStale() {
+        // Given
+        Customer update = new Customer();
+        update.setId(1);
+        update.setAge(40);
+        update.setVersion(7);
+
+        // When
+        // Then
+        assertThatThrownBy(() -> underTest.updateCustomer(update))
+                .isInstanceOf(OptimisticLockingFailureException.class);
+        assertThat(underTest.selectCustomerById(1)).hasValueSatisfying(
+                c -> assertThat(c.getAge()).isEqualTo(21)
+        );
+    }
+
+    @Test
+    void updateCustomerWillThrowWhenEmailIsTaken() {
+        // Given
+        Customer update = new Customer();
+        update.setId(1);
+        update.setEmail("mike@gmail.com");
+
+        // When
+        // Then
+        assertThatThrownBy(() -> underTest.updateCustomer(update))
+                .isInstanceOf(DuplicateKeyException.class);
+        assertThat(underTest.existsPersonWithEmail("alex@gmail.com")).isTrue();
+    }
+
+    @Test
+    void deleteCustomerByIdReleasesEmail() {
+        // When
+        underTest.deleteCustomerById(1);
+
+        // Then
+        assertThat(underTest.existsPersonWithId(1)).isFalse();
+        assertThat(underTest.existsPersonWithEmail("alex@gmail.com")).isFalse();
+        assertThat(underTest.selectAllCustomer()).extracting(Customer::getId).containsExactly(2);
+    }
+
+    @Test
+    void onlyTheFirstDeleteOfACustomerDeletesIt() {
+        // When
+        boolean first = underTest.deleteCustomerById(1);
+        boolean second = underTest.deleteCustomerById(1);
+
+        // Then
+        assertThat(first).isTrue();
+        assertThat(second).isFalse();
+    }
+
+    @Test
+    void selectCustomersFiltersSortsAndLimits() {
+        // Given
+        underTest.insertCustomer(new Customer("Alice", "alice@Example.com", 30));
+        underTest.insertCustomer(new Customer("Albert", "albert@example.com", 40));
+        underTest.insertCustomer(new Customer("Alfred", "alfred@gmail.com", 35));
+        underTest.insertCustomer(new Customer("Al_x", "al_x@example.com", 50));
+
+        // When
+        List<Customer> actual = underTest.selectCustomers(new CustomerQuery(
+                "AL", "example.com", 25, 45, CustomerQuery.SortField.AGE, true, 10
+        ));
+
+        // Then
+        assertThat(actual).extracting(Customer::getName).containsExactly("Albert", "Alice");
+        assertThat(underTest.selectCustomers(new CustomerQuery(
+                null, null, null, null, CustomerQuery.SortField.NAME, false, 2
+        ))).extracting(Customer::getName).containsExactly("Al_x", "Albert");
+    }
+
+    @Test
+    void selectAgeCountsGroupsByAge() {
+        // Given
+        underTest.insertCustomer(new Customer("Ali", "ali@gmail.com", 21));
+
+        // When
+        Map<Integer, Long> actual = underTest.selectAgeCounts();
+
+        // Then
+        assertThat(actual).containsOnly(
+                Map.entry(21, 2L),
+                Map.entry(24, 1L)
+        );
+    }
+
+    @Test
+    void concurrentInsertsOfOneEmailHaveExactlyOneWinner() throws Exception {
+        // Given
+        int threads = 16;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<Boolean>> results = new ArrayList<>();
+
+        // When
+        for (int i = 0; i < threads; i++) {
+            results.add(executor.submit(() -> {
+                start.await();
+                try {
+                    underTest.insertCustomer(new Customer("Ali", "ali@gmail.com", 23));
+                    return true;
+                } catch (DuplicateKeyException e) {
+                    return false;
+                }
+            }));
+        }
+        start.countDown();
+
+        int winners = 0;
+        for (Future<Boolean> result : results) {
+            winners += result.get() ? 1 : 0;
+        }
+        executor.shutdown();
+
+        // Then
+        assertThat(winners).isEqualTo(1);
+        assertThat(underTest.selectAllCustomer()).hasSize(3);
+    }
+
+    @Test
+    void streamAllEmails() {
+        // Given
+        underTest.insertCustomer(new Customer("Ali", "ali@gmail.com", 23));
+
+        // When
+        List<String> actual = underTest.streamAllEmails().toList();
+
+        // Then
+        assertThat(actual).containsExactlyInAnyOrder("alex@gmail.com", "mike@gmail.com", "ali@gmail.com");
+    }
+}
@@ -10,7 +10,9 @@ import org.springframework.boot.test.autoconfigure.orm.jpa.AutoConfigureDataJpa;
 import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
 import org.springframework.context.ApplicationContext;
 
+import java.util.List;
 import java.util.Optional;
+import java.util.Set;
 import java.util.UUID;
 
 import static org.assertj.core.api.Assertions.assertThat;
@@ -87,6 +89,89 @@ class CustomerRepositoryTest extends AbstractTestcontainers {
         assertThat(actual).isTrue();
     }
 
+    @Test
+    void selectCustomersThroughSpecification() {
+        // Given
+        String domain = UUID.randomUUID() + ".com";
+        underTest.saveAll(List.of(
+                new Customer("Alice", "alice@" + domain.toUpperCase(), 30),
+                new Customer("Albert", "albert@" + domain, 40),
+                new Customer("Alfred", "alfred@" + domain, 60),
+                new Customer("Bob", "bob@" + domain, 35)
+        ));
+        CustomerJPADataAccessService customerDao = new CustomerJPADataAccessService(underTest);
+
+        // When
+        List<Customer> actual = customerDao.selectCustomers(new CustomerQuery(
+                "AL", domain, 25, 45, CustomerQuery.SortField.NAME, false, 10
+        ));
+
+        // Then
+        assertThat(actual).extracting(Customer::getName).containsExactly("Albert", "Alice");
+    }
+
+    @Test
+    void insertAllIfAbsentReturnsIdsOfInsertedRows() {
+        // Given
+        String taken = FAKER.internet().safeEmailAddress() + "-" + UUID.randomUUID();
+        String free = FAKER.internet().safeEmailAddress() + "-" + UUID.randomUUID();
+        underTest.save(new Customer(FAKER.name().fullName(), taken, 20));
+
+        int id = Math.toIntExact(underTest.reserveIdBlocks(1).get(0));
+
+        // When
+        List<Object[]> actual = underTest.insertAllIfAbsent(
+                new Integer[]{id, id + 1}, new String[]{"Ali", "Alex"}, new String[]{free, taken}, new Integer[]{21, 22}
+        );
+
+        // Then
+        assertThat(actual).singleElement().satisfies(row -> {
+            assertThat(((Number) row[0]).intValue()).isEqualTo(id);
+            assertThat(row[1]).isEqualTo(free);
+        });
+        assertThat(underTest.existsCustomerByEmail(free)).isTrue();
+    }
+
+    @Test
+    void findFieldsReadsOnlyTheGivenProperties() {
+        // Given
+        String email = FAKER.internet().safeEmailAddress() + "-" + UUID.randomUUID();
+        Customer customer = underTest.save(new Customer(FAKER.name().fullName(), email, 20));
+        Set<CustomerField> fields = CustomerField.selected(CustomerField.parse("email"));
+
+        // When
+        Optional<Customer> actual = underTest.findFieldsById(customer.getId(), fields);
+        List<Customer> page = underTest.findFieldsAfterId(customer.getId() - 1, 1, fields);
+
+        // Then
+        assertThat(actual).hasValueSatisfying(c -> {
+            assertThat(c.getEmail()).isEqualTo(email);
+            assertThat(c.getName()).isNull();
+            assertThat(c.getAge()).isNull();
+        });
+        assertThat(page).singleElement().satisfies(c -> assertThat(c.getEmail()).isEqualTo(email));
+    }
+
+    @Test
+    void countByAge() {
+        // Given
+        int age = 2000;
+        underTest.save(new Customer(
+                FAKER.name().fullName(),
+                FAKER.internet().safeEmailAddress() + "-" + UUID.randomUUID(),
+                age
+        ));
+
+        // When
+        List<Object[]> actual = underTest.countByAge();
+
+        // Then
+        assertThat(actual).anySatisfy(row -> {
+            assertThat(row[0]).isEqualTo(age);
+            assertThat(row[1]).isEqualTo(1L);
+        });
+    }
+
     @Test
     void existsCustomerByEmailFailsWhenIdNotPresent() {
         // Given
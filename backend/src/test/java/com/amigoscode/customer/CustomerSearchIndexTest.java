@@ -0,0 +1,73 @@
+package com.amigoscode.customer;
+
+import com.amigoscode.AbstractTestcontainers;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * The search predicates of {@link CustomerJDBCDataAccessService} must be planned as
+ * index scans on the V5 indexes once the table is large enough for that to matter.
+ */
+class CustomerSearchIndexTest extends AbstractTestcontainers {
+
+    private static final int CUSTOMERS = 20_000;
+
+    private static JdbcTemplate jdbcTemplate;
+
+    @BeforeAll
+    static void populate() {
+        jdbcTemplate = getJdbcTemplate();
+        CustomerJDBCDataAccessService customerDao = new CustomerJDBCDataAccessService(
+                jdbcTemplate, new CustomerRowMapper()
+        );
+        String run = UUID.randomUUID().toString();
+        List<Customer> customers = new ArrayList<>(CUSTOMERS);
+        for (int i = 0; i < CUSTOMERS; i++) {
+            customers.add(new Customer(
+                    FAKER.name().firstName() + " " + i,
+                    "customer" + i + "-" + run + "@domain" + (i % 500) + ".com",
+                    18 + i % 80
+            ));
+        }
+        customerDao.insertCustomers(customers);
+        jdbcTemplate.execute("ANALYZE customer");
+    }
+
+    @Test
+    void namePrefixUsesPatternIndex() {
+        // When
+        String plan = explain("SELECT id FROM customer WHERE lower(name) LIKE ?", "zz%");
+
+        // Then
+        assertThat(plan).contains("customer_lower_name_pattern_idx");
+    }
+
+    @Test
+    void emailDomainUsesExpressionIndex() {
+        // When
+        String plan = explain("SELECT id FROM customer WHERE lower(split_part(email, '@', 2)) = ?", "domain7.com");
+
+        // Then
+        assertThat(plan).contains("customer_lower_email_domain_idx");
+    }
+
+    @Test
+    void ageRangeUsesAgeIndex() {
+        // When
+        String plan = explain("SELECT id FROM customer WHERE age >= ? AND age <= ?", 30, 30);
+
+        // Then
+        assertThat(plan).contains("customer_age_idx");
+    }
+
+    private static String explain(String sql, Object... args) {
+        return String.join("\n", jdbcTemplate.queryForList("EXPLAIN " + sql, String.class, args));
+    }
+}
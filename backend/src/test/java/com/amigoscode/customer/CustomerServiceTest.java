@@ -1,8 +1,10 @@
 package com.amigoscode.customer;
 
 import com.amigoscode.exception.DuplicateResourceException;
+import com.amigoscode.exception.PreconditionFailedException;
 import com.amigoscode.exception.RequestValidationException;
 import com.amigoscode.exception.ResourceNotFoundException;
+import com.amigoscode.exception.StaleResourceException;
 import org.checkerframework.checker.units.qual.C;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
@@ -11,8 +13,15 @@ import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.ArgumentCaptor;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.OptimisticLockingFailureException;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Stream;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.assertThatThrownBy;
@@ -22,11 +31,12 @@ import static org.mockito.Mockito.*;
 class CustomerServiceTest {
 
     @Mock private CustomerDao customerDao;
+    @Mock private CustomerStatistics customerStatistics;
     private CustomerService underTest;
 
     @BeforeEach
     void setUp() {
-        underTest = new CustomerService(customerDao);
+        underTest = new CustomerService(customerDao, customerStatistics);
     }
 
     @Test
@@ -38,6 +48,130 @@ class CustomerServiceTest {
         verify(customerDao).selectAllCustomer();
     }
 
+    @Test
+    void canGetFirstPageOfCustomers() {
+        // Given
+        Customer alex = new Customer(1, "Alex", "alex@gmail.com", 19);
+        Customer mike = new Customer(2, "Mike", "mike@gmail.com", 24);
+        Customer ali = new Customer(3, "Ali", "ali@gmail.com", 23);
+        when(customerDao.selectCustomersAfterId(0, 3)).thenReturn(List.of(alex, mike, ali));
+
+        // When
+        CustomerPage actual = underTest.getCustomers(null, 2);
+
+        // Then
+        assertThat(actual.customers()).containsExactly(alex, mike);
+        assertThat(actual.next()).isEqualTo(CustomerCursor.encode(2));
+    }
+
+    @Test
+    void canGetNextPageOfCustomersFromCursor() {
+        // Given
+        Customer ali = new Customer(3, "Ali", "ali@gmail.com", 23);
+        when(customerDao.selectCustomersAfterId(2, 3)).thenReturn(List.of(ali));
+
+        // When
+        CustomerPage actual = underTest.getCustomers(CustomerCursor.encode(2), 2);
+
+        // Then
+        assertThat(actual.customers()).containsExactly(ali);
+        assertThat(actual.next()).isNull();
+    }
+
+    @Test
+    void willThrowWhenPageLimitIsOutOfRange() {
+        // When
+        assertThatThrownBy(() -> underTest.getCustomers(null, CustomerService.MAX_PAGE_SIZE + 1))
+                .isInstanceOf(RequestValidationException.class)
+                .hasMessage("limit must be between 1 and %s".formatted(CustomerService.MAX_PAGE_SIZE));
+
+        // Then
+        verify(customerDao, never()).selectCustomersAfterId(any(), anyInt());
+    }
+
+    @Test
+    void willThrowWhenCursorIsInvalid() {
+        // When
+        assertThatThrownBy(() -> underTest.getCustomers("not-a-cursor", 10))
+                .isInstanceOf(RequestValidationException.class)
+                .hasMessage("invalid cursor [not-a-cursor]");
+
+        // Then
+        verify(customerDao, never()).selectCustomersAfterId(any(), anyInt());
+    }
+
+    @Test
+    void canSearchCustomers() {
+        // Given
+        CustomerSearchRequest request = new CustomerSearchRequest("al", "Gmail.com", 18, 30, "-age", 10);
+        Customer alex = new Customer(1, "Alex", "alex@gmail.com", 19);
+        when(customerDao.selectCustomers(any())).thenReturn(List.of(alex));
+
+        // When
+        List<Customer> actual = underTest.searchCustomers(request);
+
+        // Then
+        assertThat(actual).containsExactly(alex);
+        verify(customerDao).selectCustomers(new CustomerQuery(
+                "al", "Gmail.com", 18, 30, CustomerQuery.SortField.AGE, true, 10
+        ));
+    }
+
+    @Test
+    void searchCustomersDefaultsToIdOrderAndDefaultLimit() {
+        // When
+        underTest.searchCustomers(new CustomerSearchRequest(" ", null, null, null, null, null));
+
+        // Then
+        verify(customerDao).selectCustomers(new CustomerQuery(
+                null, null, null, null, CustomerQuery.SortField.ID, false, CustomerService.DEFAULT_SEARCH_LIMIT
+        ));
+    }
+
+    @Test
+    void willThrowWhenSearchSortIsUnknown() {
+        // When
+        assertThatThrownBy(() -> underTest.searchCustomers(
+                new CustomerSearchRequest(null, null, null, null, "email", null)
+        ))
+                .isInstanceOf(RequestValidationException.class)
+                .hasMessageContaining("sort must be one of");
+
+        // Then
+        verifyNoInteractions(customerDao);
+    }
+
+    @Test
+    void willThrowWhenSearchAgeRangeIsInverted() {
+        // When
+        assertThatThrownBy(() -> underTest.searchCustomers(
+                new CustomerSearchRequest(null, null, 40, 30, null, null)
+        ))
+                .isInstanceOf(RequestValidationException.class)
+                .hasMessage("minAge must not be greater than maxAge");
+
+        // Then
+        verifyNoInteractions(customerDao);
+    }
+
+    @Test
+    void canExportCustomersAndCloseTheStream() {
+        // Given
+        Customer alex = new Customer(1, "Alex", "alex@gmail.com", 19);
+        Customer mike = new Customer(2, "Mike", "mike@gmail.com", 24);
+        AtomicBoolean closed = new AtomicBoolean();
+        when(customerDao.streamAllCustomers())
+                .thenReturn(Stream.of(alex, mike).onClose(() -> closed.set(true)));
+
+        // When
+        List<Customer> exported = new ArrayList<>();
+        underTest.exportCustomers(exported::add);
+
+        // Then
+        assertThat(exported).containsExactly(alex, mike);
+        assertThat(closed).isTrue();
+    }
+
     @Test
     void canGetCustomerById() {
         // Given
@@ -54,6 +188,22 @@ class CustomerServiceTest {
         assertThat(actual).isEqualTo(customer);
     }
 
+    @Test
+    void canGetSomeFieldsOfCustomerById() {
+        // Given
+        int id = 10;
+        Set<CustomerField> fields = CustomerField.parse("name");
+        Customer customer = new Customer(id, "Alex", null, null, 0);
+        when(customerDao.selectCustomerById(id, fields)).thenReturn(Optional.of(customer));
+
+        // When
+        Customer actual = underTest.getCustomerById(id, fields);
+
+        // Then
+        assertThat(actual).isEqualTo(customer);
+        verify(customerDao, never()).selectCustomerById(id);
+    }
+
     @Test
     void willThrowWhenGetCustomerByIdReturnEmptyOptional() {
         // Given
@@ -75,7 +225,7 @@ class CustomerServiceTest {
         // Given
         String email = "alex@gmail.com";
 
-        when(customerDao.existsPersonWithEmail(email)).thenReturn(false);
+        when(customerDao.insertCustomerIfAbsent(any())).thenReturn(true);
 
         CustomerRegistrationRequest request = new CustomerRegistrationRequest(
                 "Alex", email, 19
@@ -87,13 +237,15 @@ class CustomerServiceTest {
         // Then
         ArgumentCaptor<Customer> customerCaptor = ArgumentCaptor.forClass(Customer.class);
 
-        verify(customerDao).insertCustomer(customerCaptor.capture());
+        verify(customerDao).insertCustomerIfAbsent(customerCaptor.capture());
+        verify(customerDao, never()).existsPersonWithEmail(any());
         Customer capturedCustomer = customerCaptor.getValue();
 
         assertThat(capturedCustomer.getId()).isNull();
         assertThat(capturedCustomer.getName()).isEqualTo(request.name());
         assertThat(capturedCustomer.getEmail()).isEqualTo(request.email());
         assertThat(capturedCustomer.getAge()).isEqualTo(request.age());
+        verify(customerStatistics).customerAdded(19);
     }
 
     @Test
@@ -101,7 +253,7 @@ class CustomerServiceTest {
         // Given
         String email = "alex@gmail.com";
 
-        when(customerDao.existsPersonWithEmail(email)).thenReturn(true);
+        when(customerDao.insertCustomerIfAbsent(any())).thenReturn(false);
 
         CustomerRegistrationRequest request = new CustomerRegistrationRequest(
                 "Alex", email, 19
@@ -121,13 +273,91 @@ class CustomerServiceTest {
         // Given
         int id = 10;
 
-        when(customerDao.existsPersonWithId(id)).thenReturn(true);
+        when(customerDao.selectCustomerById(id)).thenReturn(Optional.of(
+                new Customer(id, "Alex", "alex@gmail.com", 19, 0)
+        ));
+        when(customerDao.deleteCustomerById(id)).thenReturn(true);
 
         // When
         underTest.deleteCustomerById(id);
 
         // Then
         verify(customerDao).deleteCustomerById(id);
+        verify(customerStatistics).customerRemoved(19);
+    }
+
+    @Test
+    void willThrowWhenAConcurrentDeleteRemovedTheCustomerFirst() {
+        // Given
+        int id = 10;
+
+        when(customerDao.selectCustomerById(id)).thenReturn(Optional.of(
+                new Customer(id, "Alex", "alex@gmail.com", 19, 0)
+        ));
+        when(customerDao.deleteCustomerById(id)).thenReturn(false);
+
+        // When
+        assertThatThrownBy(() -> underTest.deleteCustomerById(id))
+                .isInstanceOf(ResourceNotFoundException.class)
+                .hasMessage("customer with id [%s] not found".formatted(id));
+
+        // Then
+        verifyNoInteractions(customerStatistics);
+    }
+
+    @Test
+    void canDeleteCustomerByIdAtExpectedVersion() {
+        // Given
+        int id = 10;
+
+        when(customerDao.selectCustomerById(id)).thenReturn(Optional.of(
+                new Customer(id, "Alex", "alex@gmail.com", 19, 2)
+        ));
+
+        // When
+        underTest.deleteCustomerById(id, 2);
+
+        // Then
+        verify(customerDao).deleteCustomerById(id, 2);
+        verify(customerDao, never()).deleteCustomerById(id);
+    }
+
+    @Test
+    void willThrowWhenCustomerIsUpdatedBetweenReadAndDelete() {
+        // Given
+        int id = 10;
+
+        when(customerDao.selectCustomerById(id)).thenReturn(Optional.of(
+                new Customer(id, "Alex", "alex@gmail.com", 19, 2)
+        ));
+        doThrow(new OptimisticLockingFailureException("stale"))
+                .when(customerDao).deleteCustomerById(id, 2);
+
+        // When
+        assertThatThrownBy(() -> underTest.deleteCustomerById(id, 2))
+                .isInstanceOf(PreconditionFailedException.class)
+                .hasMessage("customer with id [%s] is not at version [%s]".formatted(id, 2));
+
+        // Then
+        verifyNoInteractions(customerStatistics);
+    }
+
+    @Test
+    void willThrowWhenDeletingCustomerAtStaleVersion() {
+        // Given
+        int id = 10;
+
+        when(customerDao.selectCustomerById(id)).thenReturn(Optional.of(
+                new Customer(id, "Alex", "alex@gmail.com", 19, 3)
+        ));
+
+        // When
+        assertThatThrownBy(() -> underTest.deleteCustomerById(id, 2))
+                .isInstanceOf(PreconditionFailedException.class)
+                .hasMessage("customer with id [%s] is not at version [2]".formatted(id));
+
+        // Then
+        verify(customerDao, never()).deleteCustomerById(id);
     }
 
     @Test
@@ -135,15 +365,16 @@ class CustomerServiceTest {
         // Given
         int id = 10;
 
-        when(customerDao.existsPersonWithId(id)).thenReturn(false);
+        when(customerDao.selectCustomerById(id)).thenReturn(Optional.empty());
 
         // When
         assertThatThrownBy(() -> underTest.deleteCustomerById(id))
                 .isInstanceOf(ResourceNotFoundException.class)
-                .hasMessage("Not Found");
+                .hasMessage("customer with id [%s] not found".formatted(id));
 
         // Then
         verify(customerDao, never()).deleteCustomerById(id);
+        verifyNoInteractions(customerStatistics);
     }
 
     @Test
@@ -173,6 +404,90 @@ class CustomerServiceTest {
         assertThat(capturedCustomer.getAge()).isEqualTo(updateRequest.age());
         assertThat(capturedCustomer.getEmail()).isEqualTo(updateRequest.email());
         assertThat(capturedCustomer.getName()).isEqualTo(updateRequest.name());
+        verify(customerStatistics).ageChanged(19, 23);
+    }
+
+    @Test
+    void canUpdateCustomerGuardedByTheVersionThatWasRead() {
+        // Given
+        int id = 10;
+        Customer customer = new Customer(
+                id, "Alex","alex@gmail.com",19, 3
+        );
+        when(customerDao.selectCustomerById(id)).thenReturn(Optional.of(customer));
+
+        CustomerUpdateRequest updateRequest = new CustomerUpdateRequest(
+                null, null, 23
+        );
+
+        // When
+        underTest.updateCustomer(id, updateRequest);
+
+        // Then
+        ArgumentCaptor<Customer> customerCaptor = ArgumentCaptor.forClass(Customer.class);
+        verify(customerDao).updateCustomer(customerCaptor.capture());
+        Customer capturedCustomer = customerCaptor.getValue();
+
+        assertThat(capturedCustomer.getId()).isEqualTo(id);
+        assertThat(capturedCustomer.getVersion()).isEqualTo(3);
+    }
+
+    @Test
+    void willThrowWhenUpdatingCustomerAtStaleVersion() {
+        // Given
+        int id = 10;
+        Customer customer = new Customer(
+                id, "Alex","alex@gmail.com",19, 3
+        );
+        when(customerDao.selectCustomerById(id)).thenReturn(Optional.of(customer));
+
+        CustomerUpdateRequest updateRequest = new CustomerUpdateRequest(
+                "Alexandro", null, null
+        );
+
+        // When
+        assertThatThrownBy(() -> underTest.updateCustomer(id, updateRequest, 2))
+                .isInstanceOf(PreconditionFailedException.class)
+                .hasMessage("customer with id [%s] is not at version [2]".formatted(id));
+
+        // Then
+        verify(customerDao, never()).updateCustomer(any());
+    }
+
+    @Test
+    void canGetCustomerVersion() {
+        // Given
+        int id = 10;
+        when(customerDao.selectCustomerVersionById(id)).thenReturn(Optional.of(4));
+
+        // When
+        int actual = underTest.getCustomerVersion(id);
+
+        // Then
+        assertThat(actual).isEqualTo(4);
+        verify(customerDao, never()).selectCustomerById(any());
+    }
+
+    @Test
+    void willThrowWhenCustomerWasModifiedConcurrently() {
+        // Given
+        int id = 10;
+        Customer customer = new Customer(
+                id, "Alex","alex@gmail.com",19, 3
+        );
+        when(customerDao.selectCustomerById(id)).thenReturn(Optional.of(customer));
+        doThrow(new OptimisticLockingFailureException("stale"))
+                .when(customerDao).updateCustomer(any());
+
+        CustomerUpdateRequest updateRequest = new CustomerUpdateRequest(
+                "Alexandro", null, null
+        );
+
+        // When
+        // Then
+        assertThatThrownBy(() -> underTest.updateCustomer(id, updateRequest))
+                .isInstanceOf(StaleResourceException.class)
+                .hasMessage("customer with id [%s] was modified concurrently".formatted(id));
     }
 
     @Test
@@ -196,8 +511,8 @@ class CustomerServiceTest {
         verify(customerDao).updateCustomer(customerCaptor.capture());
         Customer capturedCustomer = customerCaptor.getValue();
 
-        assertThat(capturedCustomer.getAge()).isEqualTo(customer.getAge());
-        assertThat(capturedCustomer.getEmail()).isEqualTo(customer.getEmail());
+        assertThat(capturedCustomer.getAge()).isNull();
+        assertThat(capturedCustomer.getEmail()).isNull();
         assertThat(capturedCustomer.getName()).isEqualTo(updateRequest.name());
     }
 
@@ -225,9 +540,9 @@ class CustomerServiceTest {
         verify(customerDao).updateCustomer(customerCaptor.capture());
         Customer capturedCustomer = customerCaptor.getValue();
 
-        assertThat(capturedCustomer.getAge()).isEqualTo(customer.getAge());
+        assertThat(capturedCustomer.getAge()).isNull();
         assertThat(capturedCustomer.getEmail()).isEqualTo(updateRequest.email());
-        assertThat(capturedCustomer.getName()).isEqualTo(customer.getName());
+        assertThat(capturedCustomer.getName()).isNull();
     }
 
     @Test
@@ -252,8 +567,8 @@ class CustomerServiceTest {
         Customer capturedCustomer = customerCaptor.getValue();
 
         assertThat(capturedCustomer.getAge()).isEqualTo(updateRequest.age());
-        assertThat(capturedCustomer.getEmail()).isEqualTo(customer.getEmail());
-        assertThat(capturedCustomer.getName()).isEqualTo(customer.getName());
+        assertThat(capturedCustomer.getEmail()).isNull();
+        assertThat(capturedCustomer.getName()).isNull();
     }
 
     @Test
@@ -281,6 +596,33 @@ class CustomerServiceTest {
         verify(customerDao, never()).updateCustomer(any());
     }
 
+    @Test
+    void willThrowWhenUpdatedEmailIsTakenAfterTheLookup() {
+        // Given
+        int id = 10;
+        Customer customer = new Customer(
+                id, "Alex","alex@gmail.com",19
+        );
+        when(customerDao.selectCustomerById(id)).thenReturn(Optional.of(customer));
+
+        String newEmail = "alexandro@gamil.com";
+        CustomerUpdateRequest updateRequest = new CustomerUpdateRequest(
+                null, newEmail, null
+        );
+
+        when(customerDao.existsPersonWithEmail(newEmail)).thenReturn(false);
+        doThrow(new DataIntegrityViolationException("customer_email_unique"))
+                .when(customerDao).updateCustomer(any());
+
+        // When
+        assertThatThrownBy(() -> underTest.updateCustomer(id, updateRequest))
+                .isInstanceOf(DuplicateResourceException.class)
+                .hasMessage("email already exists");
+
+        // Then
+        verifyNoInteractions(customerStatistics);
+    }
+
     @Test
     void willThrowWhenCustomerUpdateHasNoChanges() {
         // Given
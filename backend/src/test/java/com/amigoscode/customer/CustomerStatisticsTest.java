@@ -0,0 +1,155 @@
+package com.amigoscode.customer;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionOperations;
+
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class CustomerStatisticsTest {
+
+    @Mock private CustomerDao customerDao;
+    private CustomerStatistics underTest;
+
+    @BeforeEach
+    void setUp() {
+        underTest = new CustomerStatistics(customerDao, TransactionOperations.withoutTransaction());
+    }
+
+    @Test
+    void snapshotReflectsIncrementalChanges() {
+        // Given
+        underTest.customerAdded(20);
+        underTest.customerAdded(30);
+        underTest.customerAdded(30);
+        underTest.customerAdded(70);
+
+        // When
+        underTest.customerRemoved(70);
+        underTest.ageChanged(20, 40);
+        CustomerStats actual = underTest.snapshot();
+
+        // Then
+        assertThat(actual.count()).isEqualTo(3);
+        assertThat(actual.minAge()).isEqualTo(30);
+        assertThat(actual.maxAge()).isEqualTo(40);
+        assertThat(actual.meanAge()).isCloseTo(33.3, within(0.1));
+        assertThat(actual.ageHistogram()).containsExactly(Map.entry(30, 2L), Map.entry(40, 1L));
+        assertThat(actual.reconciledAt()).isNull();
+    }
+
+    @Test
+    void snapshotIsReusedUntilSomethingChanges() {
+        // Given
+        underTest.customerAdded(20);
+        CustomerStats first = underTest.snapshot();
+
+        // When
+        CustomerStats second = underTest.snapshot();
+        underTest.customerAdded(21);
+        CustomerStats third = underTest.snapshot();
+
+        // Then
+        assertThat(second).isSameAs(first);
+        assertThat(third.count()).isEqualTo(2);
+    }
+
+    @Test
+    void emptySnapshotHasNoAgeFigures() {
+        // When
+        CustomerStats actual = underTest.snapshot();
+
+        // Then
+        assertThat(actual.count()).isZero();
+        assertThat(actual.minAge()).isNull();
+        assertThat(actual.maxAge()).isNull();
+        assertThat(actual.meanAge()).isNull();
+        assertThat(actual.ageHistogram()).isEmpty();
+    }
+
+    @Test
+    void reconcileReplacesDriftedCounts() {
+        // Given
+        underTest.customerAdded(20);
+        underTest.customerAdded(99);
+        when(customerDao.selectAgeCounts()).thenReturn(Map.of(20, 3L, 25, 1L));
+
+        // When
+        underTest.reconcile();
+        CustomerStats actual = underTest.snapshot();
+
+        // Then
+        assertThat(actual.count()).isEqualTo(4);
+        assertThat(actual.ageHistogram()).containsExactly(Map.entry(20, 3L), Map.entry(25, 1L));
+        assertThat(actual.meanAge()).isEqualTo(21.25);
+        assertThat(actual.reconciledAt()).isNotNull();
+    }
+
+    @Test
+    void reconcileAppliesTheWritesReportedDuringTheRecount() {
+        // Given
+        underTest.customerAdded(99);
+        when(customerDao.selectAgeCounts()).thenAnswer(invocation -> {
+            underTest.customerAdded(50);
+            return Map.of(20, 1L);
+        });
+
+        // When
+        underTest.reconcile();
+        CustomerStats actual = underTest.snapshot();
+
+        // Then
+        assertThat(actual.count()).isEqualTo(2);
+        assertThat(actual.ageHistogram()).containsExactly(Map.entry(20, 1L), Map.entry(50, 1L));
+        assertThat(actual.reconciledAt()).isNotNull();
+    }
+
+    @Test
+    void writesAfterAReconciliationAreNotAppliedTwice() {
+        // Given
+        when(customerDao.selectAgeCounts()).thenAnswer(invocation -> {
+            underTest.customerAdded(50);
+            return Map.of(20, 1L);
+        });
+        underTest.reconcile();
+
+        // When
+        underTest.customerRemoved(20);
+        CustomerStats actual = underTest.snapshot();
+
+        // Then
+        assertThat(actual.ageHistogram()).containsExactly(Map.entry(50, 1L));
+    }
+
+    @Test
+    void reconcileDropsTheWritesReportedBeforeTheCountWasSent() {
+        // Given
+        TransactionOperations waitsForAConnection = new TransactionOperations() {
+            @Override
+            public <T> T execute(TransactionCallback<T> action) {
+                // a write committed and reported while the recount waited for its connection
+                underTest.customerAdded(50);
+                return action.doInTransaction(null);
+            }
+        };
+        underTest = new CustomerStatistics(customerDao, waitsForAConnection);
+        when(customerDao.selectAgeCounts()).thenReturn(Map.of(20, 1L, 50, 1L));
+
+        // When
+        underTest.reconcile();
+        CustomerStats actual = underTest.snapshot();
+
+        // Then
+        assertThat(actual.count()).isEqualTo(2);
+        assertThat(actual.ageHistogram()).containsExactly(Map.entry(20, 1L), Map.entry(50, 1L));
+    }
+}
@@ -0,0 +1,76 @@
+package com.amigoscode.customer;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class EmailBloomFilterTest {
+
+    @Test
+    void addedEmailsAreAlwaysReported() {
+        // Given
+        EmailBloomFilter underTest = new EmailBloomFilter(1_000, 0.01);
+
+        // When
+        IntStream.range(0, 10_000).forEach(i -> underTest.put("customer-" + i + "@gmail.com"));
+
+        // Then
+        assertThat(IntStream.range(0, 10_000))
+                .allMatch(i -> underTest.mightContain("customer-" + i + "@gmail.com"));
+        // emails colliding with ones already in are not added again
+        assertThat(underTest.entries()).isBetween(9_900L, 10_000L);
+    }
+
+    @Test
+    void falsePositiveRateStaysNearTheTargetAsTheFilterGrows() {
+        // Given
+        EmailBloomFilter underTest = new EmailBloomFilter(1_000, 0.01);
+        IntStream.range(0, 20_000).forEach(i -> underTest.put("customer-" + i + "@gmail.com"));
+
+        // When
+        long falsePositives = IntStream.range(0, 100_000)
+                .filter(i -> underTest.mightContain("stranger-" + i + "@gmail.com"))
+                .count();
+
+        // Then
+        assertThat(falsePositives / 100_000.0).isLessThan(0.015);
+        assertThat(underTest.expectedFalsePositiveRate()).isLessThan(0.01);
+    }
+
+    @Test
+    void emptyFilterRulesEverythingOut() {
+        // Given
+        EmailBloomFilter underTest = new EmailBloomFilter(1_000, 0.01);
+
+        // When
+        // Then
+        assertThat(underTest.mightContain("alex@gmail.com")).isFalse();
+        assertThat(underTest.expectedFalsePositiveRate()).isZero();
+    }
+
+    @Test
+    void addingAnEmailTwiceCountsItOnce() {
+        // Given
+        EmailBloomFilter underTest = new EmailBloomFilter(1_000, 0.01);
+        underTest.put("alex@gmail.com");
+
+        // When
+        boolean added = underTest.put("alex@gmail.com");
+
+        // Then
+        assertThat(added).isFalse();
+        assertThat(underTest.entries()).isEqualTo(1);
+    }
+
+    @Test
+    void rejectsAFalsePositiveRateOutsideZeroAndOne() {
+        // When
+        // Then
+        assertThatThrownBy(() -> new EmailBloomFilter(1_000, 1))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessage("false positive rate must be in (0, 1) but was 1.0");
+    }
+}
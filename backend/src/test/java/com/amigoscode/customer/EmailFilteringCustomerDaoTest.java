@@ -0,0 +1,167 @@
+package com.amigoscode.customer;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.transaction.support.TransactionOperations;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class EmailFilteringCustomerDaoTest {
+
+    private static final Instant NOW = Instant.parse("2024-05-01T10:00:00Z");
+
+    @Mock private CustomerDao customerDao;
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private EmailFilteringCustomerDao underTest;
+
+    @BeforeEach
+    void setUp() {
+        underTest = new EmailFilteringCustomerDao(
+                customerDao, TransactionOperations.withoutTransaction(), 1_000, 0.01, Clock.fixed(NOW, ZoneOffset.UTC)
+        );
+        underTest.bindTo(meterRegistry);
+    }
+
+    @Test
+    void lookupsGoThroughUntilTheFilterIsBuilt() {
+        // Given
+        when(customerDao.existsPersonWithEmail("alex@gmail.com")).thenReturn(false);
+
+        // When
+        boolean actual = underTest.existsPersonWithEmail("alex@gmail.com");
+
+        // Then
+        assertThat(actual).isFalse();
+        verify(customerDao).existsPersonWithEmail("alex@gmail.com");
+        assertThat(underTest.status().built()).isFalse();
+    }
+
+    @Test
+    void unknownEmailsAreRuledOutWithoutAQuery() {
+        // Given
+        when(customerDao.streamAllEmails()).thenReturn(Stream.of("alex@gmail.com"));
+        underTest.rebuild();
+
+        // When
+        boolean actual = underTest.existsPersonWithEmail("mike@gmail.com");
+
+        // Then
+        assertThat(actual).isFalse();
+        verify(customerDao, never()).existsPersonWithEmail(any());
+        assertThat(lookups("ruled-out")).isEqualTo(1);
+    }
+
+    @Test
+    void knownEmailsAreConfirmedByTheDao() {
+        // Given
+        when(customerDao.streamAllEmails()).thenReturn(Stream.of("alex@gmail.com"));
+        when(customerDao.existsPersonWithEmail("alex@gmail.com")).thenReturn(true);
+        underTest.rebuild();
+
+        // When
+        boolean actual = underTest.existsPersonWithEmail("alex@gmail.com");
+
+        // Then
+        assertThat(actual).isTrue();
+        assertThat(lookups("confirmed")).isEqualTo(1);
+    }
+
+    @Test
+    void selectExistingEmailsOnlyQueriesCandidates() {
+        // Given
+        when(customerDao.streamAllEmails()).thenReturn(Stream.of("alex@gmail.com"));
+        when(customerDao.selectExistingEmails(List.of("alex@gmail.com"))).thenReturn(Set.of("alex@gmail.com"));
+        underTest.rebuild();
+
+        // When
+        Set<String> actual = underTest.selectExistingEmails(List.of("alex@gmail.com", "mike@gmail.com"));
+
+        // Then
+        assertThat(actual).containsExactly("alex@gmail.com");
+        assertThat(lookups("ruled-out")).isEqualTo(1);
+    }
+
+    @Test
+    void insertedEmailsAreKnownAfterwards() {
+        // Given
+        when(customerDao.streamAllEmails()).thenReturn(Stream.empty());
+        underTest.rebuild();
+        when(customerDao.existsPersonWithEmail("ali@gmail.com")).thenReturn(true);
+
+        // When
+        underTest.insertCustomerIfAbsent(new Customer("Ali", "ali@gmail.com", 23));
+
+        // Then
+        assertThat(underTest.existsPersonWithEmail("ali@gmail.com")).isTrue();
+        verify(customerDao).existsPersonWithEmail("ali@gmail.com");
+    }
+
+    @Test
+    void emailsWrittenWhileARebuildStreamsMakeItIntoTheNewFilter() {
+        // Given
+        when(customerDao.streamAllEmails()).thenReturn(Stream.empty());
+        underTest.rebuild();
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            underTest.insertCustomer(new Customer("Ali", "ali@gmail.com", 23));
+            // the insert commits after the rebuild read its snapshot
+            when(customerDao.streamAllEmails()).thenReturn(Stream.empty());
+            underTest.rebuild();
+
+            // When
+            TransactionSynchronizationManager.getSynchronizations()
+                    .forEach(s -> s.afterCompletion(TransactionSynchronization.STATUS_COMMITTED));
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+
+        // Then
+        underTest.existsPersonWithEmail("ali@gmail.com");
+        verify(customerDao).existsPersonWithEmail("ali@gmail.com");
+    }
+
+    @Test
+    void deletesAndEmailChangesAreCountedAsStaleUntilTheNextRebuild() {
+        // Given
+        when(customerDao.streamAllEmails()).thenReturn(Stream.of("alex@gmail.com", "mike@gmail.com"));
+        underTest.rebuild();
+        Customer update = new Customer();
+        update.setId(1);
+        update.setEmail("alexandro@gmail.com");
+        when(customerDao.deleteCustomerById(2)).thenReturn(true);
+
+        // When
+        underTest.deleteCustomerById(2);
+        underTest.deleteCustomerById(3);
+        underTest.updateCustomer(update);
+
+        // Then
+        assertThat(underTest.status().staleEntries()).isEqualTo(2);
+        when(customerDao.streamAllEmails()).thenReturn(Stream.of("alexandro@gmail.com"));
+        underTest.rebuild();
+        EmailFilterStatus status = underTest.status();
+        assertThat(status.staleEntries()).isZero();
+        assertThat(status.entries()).isEqualTo(1);
+        assertThat(status.builtAt()).isEqualTo(NOW);
+    }
+
+    private double lookups(String result) {
+        return meterRegistry.get("customer.email-filter.lookups").tag("result", result).counter().count();
+    }
+}
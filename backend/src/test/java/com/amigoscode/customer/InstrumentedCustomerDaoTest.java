@@ -0,0 +1,86 @@
+package com.amigoscode.customer;
+
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.DuplicateKeyException;
+
+import java.util.Optional;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class InstrumentedCustomerDaoTest {
+
+    @Mock private CustomerDao customerDao;
+    private SimpleMeterRegistry meterRegistry;
+    private InstrumentedCustomerDao underTest;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        underTest = new InstrumentedCustomerDao(customerDao, "jdbc", meterRegistry);
+    }
+
+    @Test
+    void recordsSuccessfulCallsPerMethodAndBackend() {
+        // Given
+        Customer customer = new Customer(1, "Alex", "alex@gmail.com", 19, 0);
+        when(customerDao.selectCustomerById(1)).thenReturn(Optional.of(customer));
+
+        // When
+        Optional<Customer> actual = underTest.selectCustomerById(1);
+
+        // Then
+        assertThat(actual).hasValue(customer);
+        Timer timer = meterRegistry.get(InstrumentedCustomerDao.METRIC_NAME)
+                .tags("method", "selectCustomerById", "backend", "jdbc", "outcome", "success", "exception", "none")
+                .timer();
+        assertThat(timer.count()).isEqualTo(1);
+    }
+
+    @Test
+    void recordsFailedCallsWithTheException() {
+        // Given
+        Customer customer = new Customer("Alex", "alex@gmail.com", 19);
+        doThrow(new DuplicateKeyException("customer_email_unique")).when(customerDao).insertCustomer(customer);
+
+        // When
+        assertThatThrownBy(() -> underTest.insertCustomer(customer))
+                .isInstanceOf(DuplicateKeyException.class);
+
+        // Then
+        Timer timer = meterRegistry.get(InstrumentedCustomerDao.METRIC_NAME)
+                .tags("method", "insertCustomer", "outcome", "error", "exception", "DuplicateKeyException")
+                .timer();
+        assertThat(timer.count()).isEqualTo(1);
+    }
+
+    @Test
+    void timesStreamsUntilTheyAreClosed() {
+        // Given
+        when(customerDao.streamAllCustomers()).thenReturn(Stream.of(new Customer(1, "Alex", "alex@gmail.com", 19, 0)));
+
+        // When
+        Stream<Customer> stream = underTest.streamAllCustomers();
+        boolean recordedBeforeClose = meterRegistry.find(InstrumentedCustomerDao.METRIC_NAME).timer() != null;
+        try (stream) {
+            stream.forEach(customer -> {});
+        }
+
+        // Then
+        assertThat(recordedBeforeClose).isFalse();
+        assertThat(meterRegistry.get(InstrumentedCustomerDao.METRIC_NAME)
+                .tags("method", "streamAllCustomers", "outcome", "success")
+                .timer()
+                .count()).isEqualTo(1);
+    }
+}
@@ -0,0 +1,125 @@
+package com.amigoscode.customer;
+
+import com.amigoscode.customer.CustomerBulkRegistrationResult.Status;
+import com.amigoscode.exception.DuplicateResourceException;
+import com.amigoscode.exception.ResourceNotFoundException;
+import com.amigoscode.exception.StaleResourceException;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.transaction.reactive.TransactionalOperator;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class ReactiveCustomerServiceTest {
+
+    @Mock private CustomerReactiveDataAccessService customerDao;
+    @Mock private CustomerStatistics customerStatistics;
+    @Mock private TransactionalOperator transactionalOperator;
+    private ReactiveCustomerService underTest;
+
+    @BeforeEach
+    void setUp() {
+        underTest = new ReactiveCustomerService(customerDao, customerStatistics, transactionalOperator, 2);
+    }
+
+    @Test
+    void addCustomer() {
+        // Given
+        CustomerRegistrationRequest request = new CustomerRegistrationRequest("Alex", "alex@gmail.com", 19);
+        when(customerDao.insertCustomerIfAbsent(any())).thenReturn(Mono.just(true));
+
+        // When
+        underTest.addCustomer(request).block();
+
+        // Then
+        verify(customerStatistics).customerAdded(19);
+    }
+
+    @Test
+    void willThrowWhenEmailExistsWhileAddingACustomer() {
+        // Given
+        CustomerRegistrationRequest request = new CustomerRegistrationRequest("Alex", "alex@gmail.com", 19);
+        when(customerDao.insertCustomerIfAbsent(any())).thenReturn(Mono.just(false));
+
+        // When
+        // Then
+        assertThatThrownBy(() -> underTest.addCustomer(request).block())
+                .isInstanceOf(DuplicateResourceException.class)
+                .hasMessage("email already exists");
+        verifyNoInteractions(customerStatistics);
+    }
+
+    @Test
+    void addCustomersInChunks() {
+        // Given
+        Flux<CustomerRegistrationRequest> requests = Flux.just(
+                new CustomerRegistrationRequest("Alex", "alex@gmail.com", 19),
+                new CustomerRegistrationRequest("Alex", "alex@gmail.com", 19),
+                new CustomerRegistrationRequest("Mike", null, 24),
+                new CustomerRegistrationRequest("Ali", "ali@gmail.com", 23)
+        );
+        when(customerDao.insertCustomersIfAbsent(anyList()))
+                .thenReturn(Flux.just("alex@gmail.com"))
+                .thenReturn(Flux.empty());
+
+        // When
+        List<CustomerBulkRegistrationResult> actual = underTest.addCustomers(requests).collectList().block();
+
+        // Then
+        assertThat(actual).containsExactly(
+                new CustomerBulkRegistrationResult(0, "alex@gmail.com", Status.CREATED),
+                new CustomerBulkRegistrationResult(1, "alex@gmail.com", Status.DUPLICATE),
+                new CustomerBulkRegistrationResult(2, null, Status.INVALID),
+                new CustomerBulkRegistrationResult(3, "ali@gmail.com", Status.DUPLICATE)
+        );
+        verify(customerDao, times(2)).insertCustomersIfAbsent(anyList());
+        verify(customerStatistics).customerAdded(19);
+        verifyNoMoreInteractions(customerStatistics);
+    }
+
+    @Test
+    void willThrowWhenDeleteCustomerByIdNotExists() {
+        // Given
+        int id = 10;
+        when(customerDao.deleteCustomerById(id)).thenReturn(Mono.empty());
+
+        // When
+        // Then
+        assertThatThrownBy(() -> underTest.deleteCustomerById(id, null).block())
+                .isInstanceOf(ResourceNotFoundException.class)
+                .hasMessage("customer with id [%s] not found".formatted(id));
+        verifyNoInteractions(customerStatistics);
+    }
+
+    @Test
+    void willThrowStaleWhenUpdateLosesTheRace() {
+        // Given
+        int id = 10;
+        Customer customer = new Customer(id, "Alex", "alex@gmail.com", 19);
+        customer.setVersion(3);
+        when(customerDao.selectCustomerById(id)).thenReturn(Mono.just(customer));
+        when(customerDao.updateCustomer(any()))
+                .thenReturn(Mono.error(new OptimisticLockingFailureException("version moved")));
+        when(transactionalOperator.transactional(any(Mono.class))).thenAnswer(invocation -> invocation.getArgument(0));
+
+        // When
+        // Then
+        assertThatThrownBy(() -> underTest.updateCustomer(id, new CustomerUpdateRequest(null, null, 20), null).block())
+                .isInstanceOf(StaleResourceException.class)
+                .hasMessage("customer with id [10] was modified concurrently");
+        verifyNoInteractions(customerStatistics);
+    }
+}
@@ -0,0 +1,172 @@
+package com.amigoscode.customer;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class WriteBehindCustomerDaoTest {
+
+    @Mock private CustomerDao customerDao;
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private WriteBehindCustomerDao underTest;
+
+    @AfterEach
+    void tearDown() {
+        underTest.close();
+    }
+
+    @Test
+    void concurrentInsertsAreWrittenInOneStatement() {
+        // Given
+        underTest = writeBehind(3, Duration.ofSeconds(10), 100);
+        Customer ali = new Customer("Ali", "ali@gmail.com", 23);
+        Customer alex = new Customer("Alex", "alex@gmail.com", 30);
+        Customer mike = new Customer("Mike", "mike@gmail.com", 40);
+        when(customerDao.insertCustomersIfAbsent(List.of(ali, alex, mike)))
+                .thenReturn(Set.of("ali@gmail.com", "alex@gmail.com", "mike@gmail.com"));
+
+        // When
+        List<CompletableFuture<Boolean>> actual = List.of(
+                underTest.insertCustomerIfAbsentAsync(ali),
+                underTest.insertCustomerIfAbsentAsync(alex),
+                underTest.insertCustomerIfAbsentAsync(mike)
+        );
+
+        // Then
+        assertThat(actual).allSatisfy(inserted -> assertThat(inserted.join()).isTrue());
+        verify(customerDao).insertCustomersIfAbsent(any());
+        assertThat(meterRegistry.get("customer.write-behind.batch-size").summary().max()).isEqualTo(3);
+    }
+
+    @Test
+    void aPartialBatchIsWrittenAfterTheDelay() {
+        // Given
+        underTest = writeBehind(100, Duration.ofMillis(10), 100);
+        Customer ali = new Customer("Ali", "ali@gmail.com", 23);
+        when(customerDao.insertCustomersIfAbsent(List.of(ali))).thenReturn(Set.of("ali@gmail.com"));
+
+        // When
+        boolean actual = underTest.insertCustomerIfAbsent(ali);
+
+        // Then
+        assertThat(actual).isTrue();
+    }
+
+    @Test
+    void duplicateEmailsAreReportedToEachCaller() {
+        // Given
+        underTest = writeBehind(3, Duration.ofSeconds(10), 100);
+        Customer ali = new Customer("Ali", "ali@gmail.com", 23);
+        Customer aliAgain = new Customer("Ali", "ali@gmail.com", 24);
+        Customer taken = new Customer("Alex", "alex@gmail.com", 30);
+        when(customerDao.insertCustomersIfAbsent(List.of(ali, aliAgain, taken))).thenReturn(Set.of("ali@gmail.com"));
+
+        // When
+        CompletableFuture<Boolean> first = underTest.insertCustomerIfAbsentAsync(ali);
+        CompletableFuture<Boolean> second = underTest.insertCustomerIfAbsentAsync(aliAgain);
+        CompletableFuture<Boolean> third = underTest.insertCustomerIfAbsentAsync(taken);
+
+        // Then
+        assertThat(first.join()).isTrue();
+        assertThat(second.join()).isFalse();
+        assertThat(third.join()).isFalse();
+    }
+
+    @Test
+    void insertCustomerWillThrowWhenEmailIsTaken() {
+        // Given
+        underTest = writeBehind(1, Duration.ofSeconds(10), 100);
+        Customer taken = new Customer("Alex", "alex@gmail.com", 30);
+        when(customerDao.insertCustomersIfAbsent(List.of(taken))).thenReturn(Set.of());
+
+        // When
+        // Then
+        assertThatThrownBy(() -> underTest.insertCustomer(taken))
+                .isInstanceOf(DuplicateKeyException.class)
+                .hasMessage("email [alex@gmail.com] already exists");
+    }
+
+    @Test
+    void aFailedBatchIsRetriedSoOnlyTheBadInsertFails() {
+        // Given
+        underTest = writeBehind(2, Duration.ofSeconds(10), 100);
+        Customer ali = new Customer("Ali", "ali@gmail.com", 23);
+        Customer tooOld = new Customer("Alex", "alex@gmail.com", -1);
+        when(customerDao.insertCustomersIfAbsent(List.of(ali, tooOld)))
+                .thenThrow(new DataIntegrityViolationException("age"));
+        when(customerDao.insertCustomerIfAbsent(ali)).thenReturn(true);
+        when(customerDao.insertCustomerIfAbsent(tooOld)).thenThrow(new DataIntegrityViolationException("age"));
+
+        // When
+        CompletableFuture<Boolean> first = underTest.insertCustomerIfAbsentAsync(ali);
+        CompletableFuture<Boolean> second = underTest.insertCustomerIfAbsentAsync(tooOld);
+
+        // Then
+        assertThat(first.join()).isTrue();
+        assertThatThrownBy(second::join).hasCauseInstanceOf(DataIntegrityViolationException.class);
+    }
+
+    @Test
+    void callersInsertThemselvesWhenTheQueueIsFull() {
+        // Given
+        underTest = writeBehind(100, Duration.ofSeconds(10), 1);
+        Customer queued = new Customer("Ali", "ali@gmail.com", 23);
+        Customer overflow = new Customer("Alex", "alex@gmail.com", 30);
+        when(customerDao.insertCustomerIfAbsent(overflow)).thenReturn(true);
+        when(customerDao.insertCustomersIfAbsent(List.of(queued))).thenReturn(Set.of("ali@gmail.com"));
+        CompletableFuture<Boolean> waiting = underTest.insertCustomerIfAbsentAsync(queued);
+
+        // When
+        boolean actual = underTest.insertCustomerIfAbsent(overflow);
+
+        // Then
+        assertThat(actual).isTrue();
+        assertThat(waiting).isNotDone();
+        underTest.close();
+        assertThat(waiting.join()).isTrue();
+    }
+
+    @Test
+    void insertsInsideATransactionGoStraightThrough() {
+        // Given
+        underTest = writeBehind(100, Duration.ofSeconds(10), 100);
+        Customer ali = new Customer("Ali", "ali@gmail.com", 23);
+        when(customerDao.insertCustomerIfAbsent(ali)).thenReturn(true);
+        TransactionSynchronizationManager.setActualTransactionActive(true);
+        boolean actual;
+        try {
+            // When
+            actual = underTest.insertCustomerIfAbsent(ali);
+        } finally {
+            TransactionSynchronizationManager.setActualTransactionActive(false);
+        }
+
+        // Then
+        assertThat(actual).isTrue();
+        assertThat(underTest.queued()).isZero();
+        verify(customerDao, never()).insertCustomersIfAbsent(any());
+    }
+
+    private WriteBehindCustomerDao writeBehind(int maxBatchSize, Duration maxDelay, int queueCapacity) {
+        WriteBehindCustomerDao writeBehind = new WriteBehindCustomerDao(customerDao, maxBatchSize, maxDelay, queueCapacity);
+        writeBehind.bindTo(meterRegistry);
+        return writeBehind;
+    }
+}
@@ -0,0 +1,75 @@
+package com.amigoscode.datasource;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.http.Cookie;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ReadYourWritesFilterTest {
+
+    private static final Instant NOW = Instant.parse("2024-05-01T10:00:00Z");
+
+    private final ReadYourWritesFilter underTest =
+            new ReadYourWritesFilter(Duration.ofSeconds(5), Clock.fixed(NOW, ZoneOffset.UTC));
+
+    @Test
+    void writesArePinnedAndStartTheWindow() throws Exception {
+        // Given
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        AtomicBoolean pinned = new AtomicBoolean();
+
+        // When
+        underTest.doFilter(new MockHttpServletRequest("POST", "/api/v1/customers"), response, recordPin(pinned));
+
+        // Then
+        assertThat(pinned).isTrue();
+        Cookie cookie = response.getCookie(ReadYourWritesFilter.COOKIE);
+        assertThat(cookie).isNotNull();
+        assertThat(cookie.getValue()).isEqualTo(String.valueOf(NOW.plusSeconds(5).toEpochMilli()));
+        assertThat(cookie.getMaxAge()).isEqualTo(5);
+        assertThat(ReadYourWrites.isPinnedToPrimary()).isFalse();
+    }
+
+    @Test
+    void readsWithinTheWindowArePinned() throws Exception {
+        // Given
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/api/v1/customers/1");
+        request.setCookies(new Cookie(ReadYourWritesFilter.COOKIE, String.valueOf(NOW.plusSeconds(1).toEpochMilli())));
+        AtomicBoolean pinned = new AtomicBoolean();
+
+        // When
+        underTest.doFilter(request, new MockHttpServletResponse(), recordPin(pinned));
+
+        // Then
+        assertThat(pinned).isTrue();
+    }
+
+    @Test
+    void readsAfterTheWindowAreNotPinned() throws Exception {
+        // Given
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/api/v1/customers/1");
+        request.setCookies(new Cookie(ReadYourWritesFilter.COOKIE, String.valueOf(NOW.minusMillis(1).toEpochMilli())));
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        AtomicBoolean pinned = new AtomicBoolean();
+
+        // When
+        underTest.doFilter(request, response, recordPin(pinned));
+
+        // Then
+        assertThat(pinned).isFalse();
+        assertThat(response.getCookie(ReadYourWritesFilter.COOKIE)).isNull();
+    }
+
+    private static FilterChain recordPin(AtomicBoolean pinned) {
+        return (req, res) -> pinned.set(ReadYourWrites.isPinnedToPrimary());
+    }
+}
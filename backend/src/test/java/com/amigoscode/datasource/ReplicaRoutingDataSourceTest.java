@@ -0,0 +1,232 @@
+package com.amigoscode.datasource;
+
+import com.amigoscode.datasource.DataSourceRoutingProperties.ReplicaSelection;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.CacheMode;
+import org.hibernate.Session;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.orm.jpa.EntityManagerHolder;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class ReplicaRoutingDataSourceTest {
+
+    @Mock private DataSource primary;
+    @Mock private DataSource first;
+    @Mock private DataSource second;
+    @Mock private Connection connection;
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    @AfterEach
+    void tearDown() {
+        TransactionSynchronizationManager.setCurrentTransactionReadOnly(false);
+        ReadYourWrites.clear();
+    }
+
+    @Test
+    void writesGoToThePrimary() throws Exception {
+        // Given
+        ReplicaRoutingDataSource underTest = routing(ReplicaSelection.ROUND_ROBIN);
+        when(primary.getConnection()).thenReturn(connection);
+
+        // When
+        underTest.getConnection();
+
+        // Then
+        verifyNoInteractions(first, second);
+        assertThat(connections("primary")).isEqualTo(1);
+    }
+
+    @Test
+    void readOnlyTransactionsRoundRobinOverTheReplicas() throws Exception {
+        // Given
+        ReplicaRoutingDataSource underTest = routing(ReplicaSelection.ROUND_ROBIN);
+        TransactionSynchronizationManager.setCurrentTransactionReadOnly(true);
+        when(first.getConnection()).thenReturn(connection);
+        when(second.getConnection()).thenReturn(connection);
+
+        // When
+        for (int i = 0; i < 4; i++) {
+            underTest.getConnection();
+        }
+
+        // Then
+        verify(first, times(2)).getConnection();
+        verify(second, times(2)).getConnection();
+        verifyNoInteractions(primary);
+    }
+
+    @Test
+    void leastOutstandingPicksTheReplicaWithFewestOpenConnections() throws Exception {
+        // Given
+        ReplicaRoutingDataSource underTest = routing(ReplicaSelection.LEAST_OUTSTANDING);
+        TransactionSynchronizationManager.setCurrentTransactionReadOnly(true);
+        when(first.getConnection()).thenReturn(connection);
+        when(second.getConnection()).thenReturn(connection);
+        Connection held = underTest.getConnection();
+
+        // When
+        underTest.getConnection().close();
+        held.close();
+        underTest.getConnection();
+
+        // Then
+        verify(first, times(2)).getConnection();
+        verify(second, times(1)).getConnection();
+    }
+
+    @Test
+    void pinnedReadsGoToThePrimary() throws Exception {
+        // Given
+        ReplicaRoutingDataSource underTest = routing(ReplicaSelection.ROUND_ROBIN);
+        TransactionSynchronizationManager.setCurrentTransactionReadOnly(true);
+        ReadYourWrites.pinToPrimary();
+        when(primary.getConnection()).thenReturn(connection);
+
+        // When
+        underTest.getConnection();
+
+        // Then
+        verifyNoInteractions(first, second);
+    }
+
+    @Test
+    void readsRunOnThePrimaryGetAPrimaryConnectionInsideAReadOnlyTransaction() throws Exception {
+        // Given
+        ReplicaRoutingDataSource underTest = routing(ReplicaSelection.ROUND_ROBIN);
+        TransactionSynchronizationManager.setCurrentTransactionReadOnly(true);
+        when(primary.getConnection()).thenReturn(connection);
+
+        // When
+        Connection actual = ReadYourWrites.onPrimary(() -> {
+            try {
+                return underTest.getConnection();
+            } catch (SQLException e) {
+                throw new IllegalStateException(e);
+            }
+        });
+
+        // Then
+        assertThat(actual).isSameAs(connection);
+        assertThat(ReadYourWrites.isPinnedToPrimary()).isFalse();
+        verifyNoInteractions(first, second);
+    }
+
+    @Test
+    void transactionsOnAReplicaAreMarkedUntilTheyComplete() throws Exception {
+        // Given
+        ReplicaRoutingDataSource underTest = routing(ReplicaSelection.ROUND_ROBIN);
+        TransactionSynchronizationManager.setCurrentTransactionReadOnly(true);
+        when(first.getConnection()).thenReturn(connection);
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            // When
+            underTest.getConnection();
+            assertThat(ReadYourWrites.isReadingFromReplica()).isTrue();
+            TransactionSynchronizationManager.getSynchronizations()
+                    .forEach(s -> s.afterCompletion(TransactionSynchronization.STATUS_COMMITTED));
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+
+        // Then
+        assertThat(ReadYourWrites.isReadingFromReplica()).isFalse();
+    }
+
+    @Test
+    void transactionsOnAReplicaDoNotFillTheSecondLevelCache() throws Exception {
+        // Given
+        ReplicaRoutingDataSource underTest = routing(ReplicaSelection.ROUND_ROBIN);
+        TransactionSynchronizationManager.setCurrentTransactionReadOnly(true);
+        when(first.getConnection()).thenReturn(connection);
+        EntityManagerFactory entityManagerFactory = mock(EntityManagerFactory.class);
+        EntityManager entityManager = mock(EntityManager.class);
+        Session session = mock(Session.class);
+        when(entityManager.unwrap(Session.class)).thenReturn(session);
+        when(session.getCacheMode()).thenReturn(CacheMode.NORMAL);
+        when(session.isOpen()).thenReturn(true);
+        TransactionSynchronizationManager.bindResource(entityManagerFactory, new EntityManagerHolder(entityManager));
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            // When
+            underTest.getConnection();
+            verify(session).setCacheMode(CacheMode.GET);
+            TransactionSynchronizationManager.getSynchronizations()
+                    .forEach(s -> s.afterCompletion(TransactionSynchronization.STATUS_COMMITTED));
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+            TransactionSynchronizationManager.unbindResource(entityManagerFactory);
+        }
+
+        // Then
+        verify(session).setCacheMode(CacheMode.NORMAL);
+    }
+
+    @Test
+    void unreachableReplicaFallsBackToThePrimaryAndLeavesRotation() throws Exception {
+        // Given
+        ReplicaRoutingDataSource underTest = routing(ReplicaSelection.ROUND_ROBIN);
+        TransactionSynchronizationManager.setCurrentTransactionReadOnly(true);
+        when(first.getConnection()).thenThrow(new SQLException("connection refused"));
+        when(primary.getConnection()).thenReturn(connection);
+        when(second.getConnection()).thenReturn(connection);
+
+        // When
+        Connection fallback = underTest.getConnection();
+        underTest.getConnection();
+        underTest.getConnection();
+
+        // Then
+        assertThat(fallback).isSameAs(connection);
+        verify(first, times(1)).getConnection();
+        verify(second, times(2)).getConnection();
+        assertThat(meterRegistry.get("customer.datasource.replica.healthy").tag("target", "replica-1").gauge().value())
+                .isZero();
+    }
+
+    @Test
+    void readsStayOnThePrimaryWhileNoReplicaIsHealthy() throws Exception {
+        // Given
+        ReplicaRoutingDataSource underTest = routing(ReplicaSelection.ROUND_ROBIN);
+        TransactionSynchronizationManager.setCurrentTransactionReadOnly(true);
+        when(first.getConnection()).thenThrow(new SQLException("connection refused"));
+        when(second.getConnection()).thenThrow(new SQLException("connection refused"));
+
+        // When
+        underTest.checkReplicas();
+
+        // Then
+        assertThat(underTest.selectReplica()).isNull();
+        assertThat(underTest.determineCurrentLookupKey()).isEqualTo(ReplicaRoutingDataSource.PRIMARY);
+    }
+
+    private ReplicaRoutingDataSource routing(ReplicaSelection selection) {
+        return new ReplicaRoutingDataSource(
+                primary,
+                List.of(new Replica("replica-1", first), new Replica("replica-2", second)),
+                selection,
+                Duration.ofSeconds(10),
+                meterRegistry
+        );
+    }
+
+    private double connections(String target) {
+        return meterRegistry.get("customer.datasource.connections").tag("target", target).counter().count();
+    }
+}
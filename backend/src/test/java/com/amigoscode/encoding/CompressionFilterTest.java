@@ -0,0 +1,153 @@
+package com.amigoscode.encoding;
+
+import com.github.luben.zstd.Zstd;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletResponse;
+import jakarta.servlet.http.HttpServletResponse;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class CompressionFilterTest {
+
+    private static final byte[] LARGE_BODY = "{\"name\":\"Alex\"}".repeat(1000).getBytes(StandardCharsets.UTF_8);
+
+    private final CompressionFilter underTest =
+            new CompressionFilter(2048, List.of(MediaType.APPLICATION_JSON), 3);
+
+    @Test
+    void compressesLargeResponsesForClientsThatAcceptZstd() throws Exception {
+        // Given
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        // When
+        underTest.doFilter(acceptingEncoding("gzip, zstd"), response, writing(MediaType.APPLICATION_JSON_VALUE, LARGE_BODY));
+
+        // Then
+        assertThat(response.getHeader(HttpHeaders.CONTENT_ENCODING)).isEqualTo("zstd");
+        assertThat(response.getHeader(HttpHeaders.VARY)).isEqualTo(HttpHeaders.ACCEPT_ENCODING);
+        assertThat(response.getHeader(HttpHeaders.CONTENT_LENGTH)).isNull();
+        assertThat(response.getHeader(HttpHeaders.ETAG)).isEqualTo("W/\"1\"");
+        byte[] compressed = response.getContentAsByteArray();
+        assertThat(compressed.length).isLessThan(LARGE_BODY.length / 10);
+        assertThat(Zstd.decompress(compressed, LARGE_BODY.length)).isEqualTo(LARGE_BODY);
+    }
+
+    @Test
+    void leavesSmallResponsesAlone() throws Exception {
+        // Given
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        byte[] body = "{\"name\":\"Alex\"}".getBytes(StandardCharsets.UTF_8);
+
+        // When
+        underTest.doFilter(acceptingEncoding("zstd"), response, writing(MediaType.APPLICATION_JSON_VALUE, body));
+
+        // Then
+        assertThat(response.getHeader(HttpHeaders.CONTENT_ENCODING)).isNull();
+        assertThat(response.getContentLength()).isEqualTo(body.length);
+        assertThat(response.getContentAsByteArray()).isEqualTo(body);
+    }
+
+    @Test
+    void leavesOtherContentTypesAlone() throws Exception {
+        // Given
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        // When
+        underTest.doFilter(acceptingEncoding("zstd"), response, writing(MediaType.IMAGE_PNG_VALUE, LARGE_BODY));
+
+        // Then
+        assertThat(response.getHeader(HttpHeaders.CONTENT_ENCODING)).isNull();
+        assertThat(response.getContentAsByteArray()).isEqualTo(LARGE_BODY);
+    }
+
+    @Test
+    void compressesWithGzipForClientsThatDoNotAcceptZstd() throws Exception {
+        // Given
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        // When
+        underTest.doFilter(acceptingEncoding("gzip, zstd;q=0"), response, writing(MediaType.APPLICATION_JSON_VALUE, LARGE_BODY));
+
+        // Then
+        assertThat(response.getHeader(HttpHeaders.CONTENT_ENCODING)).isEqualTo("gzip");
+        try (GZIPInputStream in = new GZIPInputStream(new ByteArrayInputStream(response.getContentAsByteArray()))) {
+            assertThat(in.readAllBytes()).isEqualTo(LARGE_BODY);
+        }
+    }
+
+    @Test
+    void leavesClientsThatAcceptNeitherAlone() throws Exception {
+        // Given
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        // When
+        underTest.doFilter(acceptingEncoding("br, *;q=0"), response, writing(MediaType.APPLICATION_JSON_VALUE, LARGE_BODY));
+
+        // Then
+        assertThat(response.getHeader(HttpHeaders.CONTENT_ENCODING)).isNull();
+        assertThat(response.getContentAsByteArray()).isEqualTo(LARGE_BODY);
+    }
+
+    @Test
+    void leavesTheRestOfAnAsyncResponseUncompressed() throws Exception {
+        // Given
+        MockHttpServletRequest request = acceptingEncoding("zstd");
+        request.setAsyncSupported(true);
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        ServletResponse[] wrapped = new ServletResponse[1];
+        FilterChain startingAsync = (req, res) -> {
+            res.setContentType(MediaType.APPLICATION_JSON_VALUE);
+            res.getOutputStream().write(LARGE_BODY, 0, 512);
+            req.startAsync(req, res);
+            wrapped[0] = res;
+        };
+
+        // When
+        underTest.doFilter(request, response, startingAsync);
+        wrapped[0].getOutputStream().write(LARGE_BODY, 512, LARGE_BODY.length - 512);
+        request.getAsyncContext().complete();
+
+        // Then
+        assertThat(response.getHeader(HttpHeaders.CONTENT_ENCODING)).isNull();
+        assertThat(response.getContentAsByteArray()).isEqualTo(LARGE_BODY);
+    }
+
+    @Test
+    void picksTheCodingTheClientPrefers() {
+        assertThat(CompressionFilter.negotiate("gzip, zstd")).isEqualTo("zstd");
+        assertThat(CompressionFilter.negotiate("gzip;q=1, zstd;q=0.5")).isEqualTo("gzip");
+        assertThat(CompressionFilter.negotiate("*")).isEqualTo("zstd");
+        assertThat(CompressionFilter.negotiate("gzip, deflate, br")).isEqualTo("gzip");
+        assertThat(CompressionFilter.negotiate("identity")).isNull();
+        assertThat(CompressionFilter.negotiate(null)).isNull();
+    }
+
+    private static MockHttpServletRequest acceptingEncoding(String acceptEncoding) {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/api/v1/customers");
+        request.addHeader(HttpHeaders.ACCEPT_ENCODING, acceptEncoding);
+        return request;
+    }
+
+    private static FilterChain writing(String contentType, byte[] body) {
+        return (req, res) -> {
+            res.setContentType(contentType);
+            ((HttpServletResponse) res).setHeader(HttpHeaders.ETAG, "\"1\"");
+            res.setContentLength(body.length);
+            // written in small chunks, as a serializer would
+            for (int offset = 0; offset < body.length; offset += 512) {
+                res.getOutputStream().write(body, offset, Math.min(512, body.length - offset));
+            }
+            res.flushBuffer();
+        };
+    }
+}
@@ -0,0 +1,50 @@
+package com.amigoscode.encoding;
+
+import com.amigoscode.customer.Customer;
+import com.fasterxml.jackson.dataformat.cbor.databind.CBORMapper;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.ResolvableType;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DefaultDataBufferFactory;
+import org.springframework.http.MediaType;
+import reactor.core.publisher.Flux;
+
+import java.io.ByteArrayOutputStream;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ReactiveCborEncoderTest {
+
+    private final CBORMapper mapper = new CBORMapper();
+    private final ReactiveCborEncoder underTest = new ReactiveCborEncoder(mapper);
+
+    @Test
+    void writesAFluxAsOneArrayElementByElement() throws Exception {
+        // Given
+        List<Customer> customers = List.of(
+                new Customer(1, "Alex", "alex@gmail.com", 19, 0),
+                new Customer(2, "Jamila", "jamila@gmail.com", 21, 3)
+        );
+
+        // When
+        List<DataBuffer> buffers = underTest.encode(
+                Flux.fromIterable(customers),
+                DefaultDataBufferFactory.sharedInstance,
+                ResolvableType.forClass(Customer.class),
+                MediaType.APPLICATION_CBOR,
+                Map.of()
+        ).collectList().block();
+
+        // Then
+        assertThat(buffers).hasSize(customers.size() + 2);
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        for (DataBuffer buffer : buffers) {
+            byte[] bytes = new byte[buffer.readableByteCount()];
+            buffer.read(bytes);
+            body.write(bytes);
+        }
+        assertThat(mapper.readValue(body.toByteArray(), Customer[].class)).containsExactlyElementsOf(customers);
+    }
+}
@@ -0,0 +1,128 @@
+package com.amigoscode.journey;
+
+import com.amigoscode.customer.Customer;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.flywaydb.core.Flyway;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.test.web.reactive.server.WebTestClient;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.boot.test.context.SpringBootTest.WebEnvironment.RANDOM_PORT;
+
+/**
+ * Replica routing with the customer cache and the coalescing of lookups in front of it, on a
+ * primary pool of two connections. The stand-in replica holds an older copy of every customer
+ * read here, so a name tells which database a read came from.
+ */
+@SpringBootTest(webEnvironment = RANDOM_PORT, properties = {
+        "customer.datasource.routing.enabled=true",
+        "customer.datasource.routing.replicas[0].url=" + ReplicaRoutingIntegrationTest.REPLICA_URL,
+        "customer.dao.cache.enabled=true",
+        "customer.dao.coalescing.enabled=true",
+        "spring.datasource.hikari.maximum-pool-size=2",
+        "spring.datasource.hikari.connection-timeout=5000"
+})
+class CachedReplicaRoutingIntegrationTest {
+
+    private static final String PRIMARY_URL = "jdbc:postgresql://localhost:5432/customer";
+    private static final String CUSTOMER_URI = "api/v1/customers";
+    private static final int CLIENTS = 50;
+
+    @Autowired
+    private WebTestClient webClient;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @BeforeAll
+    static void createReplica() {
+        JdbcTemplate primary = primary();
+        if (primary.queryForList("SELECT 1 FROM pg_database WHERE datname = 'customer_replica'").isEmpty()) {
+            primary.execute("CREATE DATABASE customer_replica");
+        }
+        Flyway.configure()
+                .dataSource(ReplicaRoutingIntegrationTest.REPLICA_URL, "amigoscode", "password")
+                .load()
+                .migrate();
+    }
+
+    @Test
+    void cacheMissesAreReadFromThePrimaryAndServedFromTheCacheAfterwards() {
+        //a customer older on the replica, and not cached
+        Integer id = customerOnBothDatabases();
+        double replicaConnections = replicaConnections();
+
+        //read it twice
+        Customer miss = get(id);
+        Customer hit = get(id);
+
+        assertThat(miss.getName()).isEqualTo("Primary");
+        assertThat(hit.getName()).isEqualTo("Primary");
+        assertThat(replicaConnections()).isEqualTo(replicaConnections);
+    }
+
+    @Test
+    void concurrentMissesOnOneCustomerAreServedFromThePrimary() throws Exception {
+        //a customer older on the replica, and not cached
+        Integer id = customerOnBothDatabases();
+
+        //many clients read it at once, more than the pool has connections
+        List<Future<Customer>> reads = new ArrayList<>(CLIENTS);
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int i = 0; i < CLIENTS; i++) {
+                reads.add(executor.submit(() -> get(id)));
+            }
+        }
+
+        for (Future<Customer> read : reads) {
+            assertThat(read.get().getName()).isEqualTo("Primary");
+        }
+    }
+
+    private Integer customerOnBothDatabases() {
+        String email = "customer@" + UUID.randomUUID() + ".com";
+        Integer id = primary().queryForObject(
+                "INSERT INTO customer(id, name, email, age) VALUES (nextval('customer_id_seq'), ?, ?, ?) RETURNING id",
+                Integer.class, "Primary", email, 30);
+        replica().update("INSERT INTO customer(id, name, email, age) VALUES (?, ?, ?, ?)",
+                id, "Replica", email, 30);
+        return id;
+    }
+
+    private Customer get(Integer id) {
+        return webClient.get()
+                .uri(CUSTOMER_URI + "/{id}", id)
+                .accept(MediaType.APPLICATION_JSON)
+                .exchange()
+                .expectStatus()
+                .isOk()
+                .expectBody(Customer.class)
+                .returnResult()
+                .getResponseBody();
+    }
+
+    private double replicaConnections() {
+        return meterRegistry.get("customer.datasource.connections").tag("target", "replica-1").counter().count();
+    }
+
+    private static JdbcTemplate primary() {
+        return new JdbcTemplate(new DriverManagerDataSource(PRIMARY_URL, "amigoscode", "password"));
+    }
+
+    private static JdbcTemplate replica() {
+        return new JdbcTemplate(new DriverManagerDataSource(ReplicaRoutingIntegrationTest.REPLICA_URL, "amigoscode", "password"));
+    }
+}
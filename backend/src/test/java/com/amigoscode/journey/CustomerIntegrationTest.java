@@ -1,18 +1,25 @@
 package com.amigoscode.journey;
 
 import com.amigoscode.customer.Customer;
+import com.amigoscode.customer.CustomerBulkRegistrationResult;
 import com.amigoscode.customer.CustomerRegistrationRequest;
+import com.amigoscode.customer.CustomerStats;
 import com.amigoscode.customer.CustomerUpdateRequest;
+import com.fasterxml.jackson.dataformat.cbor.databind.CBORMapper;
+import com.fasterxml.jackson.dataformat.smile.databind.SmileMapper;
 import com.github.javafaker.Faker;
 import com.github.javafaker.Name;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
+import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.test.web.reactive.server.WebTestClient;
 import reactor.core.publisher.Mono;
 
+import java.io.IOException;
 import java.util.List;
 import java.util.Random;
 import java.util.UUID;
@@ -31,6 +38,8 @@ public class CustomerIntegrationTest {
     private static final String CUSTOMER_URI = "api/v1/customers";
     @Autowired
     private WebTestClient webTestClient;
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
 
     @Test
     void canRegisterACustomer(){
@@ -57,7 +66,7 @@ public class CustomerIntegrationTest {
 
         //get all customers
         List<Customer> allCustomers = webClient.get()
-                .uri(CUSTOMER_URI)
+                .uri(CUSTOMER_URI + "?all=true")
                 .accept(MediaType.APPLICATION_JSON)
                 .exchange()
                 .expectStatus()
@@ -73,7 +82,7 @@ public class CustomerIntegrationTest {
         );
 
         assertThat(allCustomers)
-                .usingRecursiveFieldByFieldElementComparatorIgnoringFields("id")
+                .usingRecursiveFieldByFieldElementComparatorIgnoringFields("id", "version")
                 .contains(expectedCustomer);
 
         int id = allCustomers.stream()
@@ -96,6 +105,92 @@ public class CustomerIntegrationTest {
                 .isEqualTo(expectedCustomer);
     }
 
+    @Test
+    void canGetCustomerStats(){
+        //statistics before registering
+        CustomerStats before = getStats();
+
+        //register a customer
+        CustomerRegistrationRequest request = new CustomerRegistrationRequest(
+                "Stats Customer", "stats-" + UUID.randomUUID() + "@gmail.com", 42
+        );
+        webClient.post()
+                .uri(CUSTOMER_URI)
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(Mono.just(request), CustomerRegistrationRequest.class)
+                .exchange()
+                .expectStatus()
+                .isOk();
+
+        //the aggregate is updated without waiting for a reconciliation
+        CustomerStats after = getStats();
+
+        assertThat(after.count()).isEqualTo(before.count() + 1);
+        assertThat(after.ageHistogram().get(42))
+                .isEqualTo(before.ageHistogram().getOrDefault(42, 0L) + 1);
+        assertThat(after.reconciledAt()).isNotNull();
+    }
+
+    private CustomerStats getStats(){
+        return webClient.get()
+                .uri(CUSTOMER_URI + "/stats")
+                .accept(MediaType.APPLICATION_JSON)
+                .exchange()
+                .expectStatus()
+                .isOk()
+                .expectBody(CustomerStats.class)
+                .returnResult()
+                .getResponseBody();
+    }
+
+    @Test
+    void canSearchCustomers(){
+        //register customers on a domain of their own
+        String domain = UUID.randomUUID() + ".com";
+        List<CustomerRegistrationRequest> requests = List.of(
+                new CustomerRegistrationRequest("Alice Search", "alice@" + domain, 30),
+                new CustomerRegistrationRequest("Albert Search", "albert@" + domain, 40),
+                new CustomerRegistrationRequest("Bob Search", "bob@" + domain, 35)
+        );
+        for (CustomerRegistrationRequest request : requests) {
+            webClient.post()
+                    .uri(CUSTOMER_URI)
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .body(Mono.just(request), CustomerRegistrationRequest.class)
+                    .exchange()
+                    .expectStatus()
+                    .isOk();
+        }
+
+        //search by name prefix and domain, oldest first
+        List<Customer> found = webClient.get()
+                .uri(uriBuilder -> uriBuilder.path(CUSTOMER_URI + "/search")
+                        .queryParam("namePrefix", "al")
+                        .queryParam("emailDomain", domain)
+                        .queryParam("minAge", 18)
+                        .queryParam("sort", "-age")
+                        .build())
+                .accept(MediaType.APPLICATION_JSON)
+                .exchange()
+                .expectStatus()
+                .isOk()
+                .expectBodyList(new ParameterizedTypeReference<Customer>() {
+                })
+                .returnResult()
+                .getResponseBody();
+
+        assertThat(found).extracting(Customer::getName)
+                .containsExactly("Albert Search", "Alice Search");
+
+        //unknown sort fields are rejected as a validation error
+        webClient.get()
+                .uri(CUSTOMER_URI + "/search?sort=email")
+                .accept(MediaType.APPLICATION_JSON)
+                .exchange()
+                .expectStatus()
+                .isNotFound();
+    }
+
     @Test
     void canDeleteACustomer(){
         //create registration request
@@ -121,7 +216,7 @@ public class CustomerIntegrationTest {
 
         //get all customers
         List<Customer> allCustomers = webClient.get()
-                .uri(CUSTOMER_URI)
+                .uri(CUSTOMER_URI + "?all=true")
                 .accept(MediaType.APPLICATION_JSON)
                 .exchange()
                 .expectStatus()
@@ -179,7 +274,7 @@ public class CustomerIntegrationTest {
 
         //get all customers
         List<Customer> allCustomers = webClient.get()
-                .uri(CUSTOMER_URI)
+                .uri(CUSTOMER_URI + "?all=true")
                 .accept(MediaType.APPLICATION_JSON)
                 .exchange()
                 .expectStatus()
@@ -227,5 +322,384 @@ public class CustomerIntegrationTest {
         
         assertThat(updateCustomer).isEqualTo(expectedCustomer);
     }
-}
 
+    @Test
+    void cannotTakeAnEmailRegisteredThroughAnotherInstance(){
+        //register a customer
+        String domain = UUID.randomUUID() + ".com";
+        webClient.post()
+                .uri(CUSTOMER_URI)
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(Mono.just(new CustomerRegistrationRequest("Alex", "alex@" + domain, 30)),
+                        CustomerRegistrationRequest.class)
+                .exchange()
+                .expectStatus()
+                .isOk();
+        int id = webClient.get()
+                .uri(CUSTOMER_URI + "/search?emailDomain={domain}", domain)
+                .accept(MediaType.APPLICATION_JSON)
+                .exchange()
+                .expectStatus()
+                .isOk()
+                .expectBodyList(Customer.class)
+                .returnResult()
+                .getResponseBody()
+                .getFirst()
+                .getId();
+
+        //another instance registers an email this one's email filter has never seen
+        String taken = "taken@" + domain;
+        jdbcTemplate.update(
+                "INSERT INTO customer(id, name, email, age) VALUES (nextval('customer_id_seq'), ?, ?, ?)",
+                "Taken", taken, 40);
+
+        //moving the customer to that email is a conflict
+        webTestClient.put()
+                .uri(CUSTOMER_URI + "/{id}", id)
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(Mono.just(new CustomerUpdateRequest(null, taken, null)), CustomerUpdateRequest.class)
+                .exchange()
+                .expectStatus()
+                .isEqualTo(HttpStatus.CONFLICT);
+    }
+
+    @Test
+    void malformedNumbersAreBadRequests(){
+        //a limit, an age and a customer id that are not numbers
+        for (String uri : List.of(
+                CUSTOMER_URI + "?limit=ten",
+                CUSTOMER_URI + "/search?minAge=old",
+                CUSTOMER_URI + "/not-an-id")) {
+            webClient.get()
+                    .uri(uri)
+                    .accept(MediaType.APPLICATION_JSON)
+                    .exchange()
+                    .expectStatus()
+                    .isBadRequest();
+        }
+    }
+
+    @Test
+    void canExportCustomersAsNdjson(){
+        //create registration request
+        Faker faker = new Faker();
+        Name fakerName = faker.name();
+
+        String name = fakerName.fullName();
+        String email = fakerName.lastName() + "-" + UUID.randomUUID() + "@gmail.com";
+        int age = RANDOM.nextInt(1,100);
+
+        CustomerRegistrationRequest request = new CustomerRegistrationRequest(
+                name,email,age
+        );
+        //send a post request
+        webClient.post()
+                .uri(CUSTOMER_URI)
+                .accept(MediaType.APPLICATION_JSON)
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(Mono.just(request), CustomerRegistrationRequest.class)
+                .exchange()
+                .expectStatus()
+                .isOk();
+
+        //export all customers
+        List<Customer> exportedCustomers = webClient.get()
+                .uri(CUSTOMER_URI + "/export")
+                .accept(MediaType.APPLICATION_NDJSON)
+                .exchange()
+                .expectStatus()
+                .isOk()
+                .returnResult(Customer.class)
+                .getResponseBody()
+                .collectList()
+                .block();
+
+        //make sure that customer is present
+        assertThat(exportedCustomers)
+                .usingRecursiveFieldByFieldElementComparatorIgnoringFields("id", "version")
+                .contains(new Customer(name, email, age));
+    }
+
+    @Test
+    void canRegisterCustomersInBulk(){
+        //create registration requests, one of them twice
+        Faker faker = new Faker();
+        Name fakerName = faker.name();
+
+        String email = fakerName.lastName() + "-" + UUID.randomUUID() + "@gmail.com";
+        String otherEmail = fakerName.lastName() + "-" + UUID.randomUUID() + "@gmail.com";
+
+        List<CustomerRegistrationRequest> requests = List.of(
+                new CustomerRegistrationRequest(fakerName.fullName(), email, RANDOM.nextInt(1,100)),
+                new CustomerRegistrationRequest(fakerName.fullName(), otherEmail, RANDOM.nextInt(1,100)),
+                new CustomerRegistrationRequest(fakerName.fullName(), email, RANDOM.nextInt(1,100))
+        );
+
+        //send a bulk post request
+        List<CustomerBulkRegistrationResult> results = webClient.post()
+                .uri(CUSTOMER_URI + "/bulk")
+                .accept(MediaType.APPLICATION_JSON)
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue(requests)
+                .exchange()
+                .expectStatus()
+                .isOk()
+                .expectBodyList(CustomerBulkRegistrationResult.class)
+                .returnResult()
+                .getResponseBody();
+
+        //make sure every request got a result
+        assertThat(results).extracting(CustomerBulkRegistrationResult::status)
+                .containsExactly(
+                        CustomerBulkRegistrationResult.Status.CREATED,
+                        CustomerBulkRegistrationResult.Status.CREATED,
+                        CustomerBulkRegistrationResult.Status.DUPLICATE
+                );
+    }
+
+    @Test
+    void canRevalidateAndConditionallyUpdateACustomer(){
+        //create registration request
+        Faker faker = new Faker();
+        Name fakerName = faker.name();
+
+        String name = fakerName.fullName();
+        String email = fakerName.lastName() + "-" + UUID.randomUUID() + "@gmail.com";
+        int age = RANDOM.nextInt(1,100);
+
+        CustomerRegistrationRequest request = new CustomerRegistrationRequest(
+                name,email,age
+        );
+        //send a post request
+        webClient.post()
+                .uri(CUSTOMER_URI)
+                .accept(MediaType.APPLICATION_JSON)
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(Mono.just(request), CustomerRegistrationRequest.class)
+                .exchange()
+                .expectStatus()
+                .isOk();
+
+        int id = webClient.get()
+                .uri(CUSTOMER_URI + "?all=true")
+                .accept(MediaType.APPLICATION_JSON)
+                .exchange()
+                .expectStatus()
+                .isOk()
+                .expectBodyList(Customer.class)
+                .returnResult()
+                .getResponseBody()
+                .stream()
+                .filter(c -> c.getEmail().equals(email))
+                .map(c -> c.getId())
+                .findFirst()
+                .orElseThrow();
+
+        //get customer by id and remember its etag
+        String eTag = webClient.get()
+                .uri(CUSTOMER_URI + "/{id}", id)
+                .accept(MediaType.APPLICATION_JSON)
+                .exchange()
+                .expectStatus()
+                .isOk()
+                .returnResult(Customer.class)
+                .getResponseHeaders()
+                .getETag();
+
+        assertThat(eTag).isNotNull();
+
+        //revalidate
+        webClient.get()
+                .uri(CUSTOMER_URI + "/{id}", id)
+                .accept(MediaType.APPLICATION_JSON)
+                .ifNoneMatch(eTag)
+                .exchange()
+                .expectStatus()
+                .isNotModified()
+                .expectHeader()
+                .valueEquals("ETag", eTag);
+
+        //update with the current etag
+        webTestClient.put()
+                .uri(CUSTOMER_URI + "/{id}", id)
+                .accept(MediaType.APPLICATION_JSON)
+                .contentType(MediaType.APPLICATION_JSON)
+                .header("If-Match", eTag)
+                .body(Mono.just(new CustomerUpdateRequest("Ali", null, null)), CustomerUpdateRequest.class)
+                .exchange()
+                .expectStatus()
+                .isOk();
+
+        //updating again with the old etag fails
+        webTestClient.put()
+                .uri(CUSTOMER_URI + "/{id}", id)
+                .accept(MediaType.APPLICATION_JSON)
+                .contentType(MediaType.APPLICATION_JSON)
+                .header("If-Match", eTag)
+                .body(Mono.just(new CustomerUpdateRequest("Bob", null, null)), CustomerUpdateRequest.class)
+                .exchange()
+                .expectStatus()
+                .isEqualTo(412);
+
+        //the old etag no longer revalidates
+        webClient.get()
+                .uri(CUSTOMER_URI + "/{id}", id)
+                .accept(MediaType.APPLICATION_JSON)
+                .ifNoneMatch(eTag)
+                .exchange()
+                .expectStatus()
+                .isOk();
+
+        //deleting with the old etag fails too, the customer stays
+        webTestClient.delete()
+                .uri(CUSTOMER_URI + "/{id}", id)
+                .header("If-Match", eTag)
+                .exchange()
+                .expectStatus()
+                .isEqualTo(412);
+
+        String currentETag = webClient.get()
+                .uri(CUSTOMER_URI + "/{id}", id)
+                .accept(MediaType.APPLICATION_JSON)
+                .exchange()
+                .expectStatus()
+                .isOk()
+                .returnResult(String.class)
+                .getResponseHeaders()
+                .getETag();
+
+        //deleting with the current etag succeeds
+        webTestClient.delete()
+                .uri(CUSTOMER_URI + "/{id}", id)
+                .header("If-Match", currentETag)
+                .exchange()
+                .expectStatus()
+                .isOk();
+    }
+
+    @Test
+    void canGetOnlySomeFieldsOfACustomer(){
+        //register a customer
+        String email = "fields-" + UUID.randomUUID() + "@gmail.com";
+        webClient.post()
+                .uri(CUSTOMER_URI)
+                .accept(MediaType.APPLICATION_JSON)
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(Mono.just(new CustomerRegistrationRequest("Fields Customer", email, 33)), CustomerRegistrationRequest.class)
+                .exchange()
+                .expectStatus()
+                .isOk();
+
+        int id = webClient.get()
+                .uri(CUSTOMER_URI + "?all=true")
+                .accept(MediaType.APPLICATION_JSON)
+                .exchange()
+                .expectStatus()
+                .isOk()
+                .expectBodyList(Customer.class)
+                .returnResult()
+                .getResponseBody()
+                .stream()
+                .filter(c -> c.getEmail().equals(email))
+                .map(Customer::getId)
+                .findFirst()
+                .orElseThrow();
+
+        //only the requested fields, plus id and version, are sent
+        webClient.get()
+                .uri(CUSTOMER_URI + "/{id}?fields=name", id)
+                .accept(MediaType.APPLICATION_JSON)
+                .exchange()
+                .expectStatus()
+                .isOk()
+                .expectBody()
+                .jsonPath("$.id").isEqualTo(id)
+                .jsonPath("$.name").isEqualTo("Fields Customer")
+                .jsonPath("$.version").isEqualTo(0)
+                .jsonPath("$.email").doesNotExist()
+                .jsonPath("$.age").doesNotExist();
+
+        //the projection is tagged apart from the whole customer, the whole customer's tag does not revalidate it
+        String projectionTag = webClient.get()
+                .uri(CUSTOMER_URI + "/{id}?fields=name", id)
+                .header("If-None-Match", "\"0\"")
+                .accept(MediaType.APPLICATION_JSON)
+                .exchange()
+                .expectStatus()
+                .isOk()
+                .returnResult(Customer.class)
+                .getResponseHeaders()
+                .getETag();
+        assertThat(projectionTag).startsWith("\"0-").isNotEqualTo("\"0\"");
+
+        webClient.get()
+                .uri(CUSTOMER_URI + "/{id}?fields=name", id)
+                .header("If-None-Match", projectionTag)
+                .accept(MediaType.APPLICATION_JSON)
+                .exchange()
+                .expectStatus()
+                .isNotModified();
+    }
+
+    @Test
+    void canRegisterAndGetACustomerInBinaryFormats() throws IOException {
+        //register a customer with a cbor body
+        CBORMapper cborMapper = new CBORMapper();
+        String email = "cbor-" + UUID.randomUUID() + "@gmail.com";
+        webClient.post()
+                .uri(CUSTOMER_URI)
+                .contentType(MediaType.APPLICATION_CBOR)
+                .bodyValue(cborMapper.writeValueAsBytes(new CustomerRegistrationRequest("Cbor Customer", email, 44)))
+                .exchange()
+                .expectStatus()
+                .isOk();
+
+        int id = webClient.get()
+                .uri(CUSTOMER_URI + "?all=true")
+                .accept(MediaType.APPLICATION_JSON)
+                .exchange()
+                .expectStatus()
+                .isOk()
+                .expectBodyList(Customer.class)
+                .returnResult()
+                .getResponseBody()
+                .stream()
+                .filter(c -> c.getEmail().equals(email))
+                .map(Customer::getId)
+                .findFirst()
+                .orElseThrow();
+
+        Customer expectedCustomer = new Customer(id, "Cbor Customer", email, 44, 0);
+
+        //get customer by id as cbor
+        byte[] cbor = webClient.get()
+                .uri(CUSTOMER_URI + "/{id}", id)
+                .accept(MediaType.APPLICATION_CBOR)
+                .exchange()
+                .expectStatus()
+                .isOk()
+                .expectHeader().contentType(MediaType.APPLICATION_CBOR)
+                .expectBody(byte[].class)
+                .returnResult()
+                .getResponseBody();
+
+        assertThat(cborMapper.readValue(cbor, Customer.class))
+                .usingRecursiveComparison()
+                .isEqualTo(expectedCustomer);
+
+        //and as smile
+        byte[] smile = webClient.get()
+                .uri(CUSTOMER_URI + "/{id}", id)
+                .accept(MediaType.valueOf("application/x-jackson-smile"))
+                .exchange()
+                .expectStatus()
+                .isOk()
+                .expectBody(byte[].class)
+                .returnResult()
+                .getResponseBody();
+
+        assertThat(new SmileMapper().readValue(smile, Customer.class))
+                .usingRecursiveComparison()
+                .isEqualTo(expectedCustomer);
+    }
+}
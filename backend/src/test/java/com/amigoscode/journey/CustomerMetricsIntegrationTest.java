@@ -0,0 +1,151 @@
+package com.amigoscode.journey;
+
+import com.amigoscode.customer.Customer;
+import com.amigoscode.customer.CustomerRegistrationRequest;
+import com.amigoscode.customer.CustomerUpdateRequest;
+import com.amigoscode.customer.EmailFilterStatus;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.actuate.observability.AutoConfigureObservability;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.reactive.server.WebTestClient;
+
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.boot.test.context.SpringBootTest.WebEnvironment.RANDOM_PORT;
+
+@SpringBootTest(webEnvironment = RANDOM_PORT, properties = "customer.dao.email-filter.enabled=true")
+@AutoConfigureObservability(tracing = false)
+public class CustomerMetricsIntegrationTest {
+
+    private static final String CUSTOMER_URI = "api/v1/customers";
+
+    @Autowired
+    private WebTestClient webClient;
+
+    @Test
+    void daoTimersAndPoolGaugesAreScrapeable(){
+        //touch the dao
+        webClient.get()
+                .uri(CUSTOMER_URI + "?limit=1")
+                .accept(MediaType.APPLICATION_JSON)
+                .exchange()
+                .expectStatus()
+                .isOk();
+
+        //scrape the prometheus endpoint
+        String scrape = webClient.get()
+                .uri("actuator/prometheus")
+                .exchange()
+                .expectStatus()
+                .isOk()
+                .expectBody(String.class)
+                .returnResult()
+                .getResponseBody();
+
+        assertThat(scrape)
+                .contains("customer_dao_seconds_bucket{backend=\"jpa\"")
+                .contains("method=\"selectCustomersAfterId\"")
+                .contains("hikaricp_connections_active");
+    }
+
+    @Test
+    void emailFilterIsBuiltAtStartupAndCanBeRebuilt(){
+        //the filter is built once the application is ready
+        EmailFilterStatus status = webClient.get()
+                .uri("actuator/emailfilter")
+                .exchange()
+                .expectStatus()
+                .isOk()
+                .expectBody(EmailFilterStatus.class)
+                .returnResult()
+                .getResponseBody();
+
+        assertThat(status.built()).isTrue();
+
+        //rebuild on demand
+        EmailFilterStatus rebuilt = webClient.post()
+                .uri("actuator/emailfilter")
+                .exchange()
+                .expectStatus()
+                .isOk()
+                .expectBody(EmailFilterStatus.class)
+                .returnResult()
+                .getResponseBody();
+
+        assertThat(rebuilt.builtAt()).isAfterOrEqualTo(status.builtAt());
+        assertThat(rebuilt.staleEntries()).isZero();
+
+        //and its rates are scrapeable
+        webClient.get()
+                .uri("actuator/prometheus")
+                .exchange()
+                .expectStatus()
+                .isOk()
+                .expectBody(String.class)
+                .value(scrape -> assertThat(scrape)
+                        .contains("customer_email_filter_false_positive_rate_expected")
+                        .contains("customer_email_filter_entries"));
+    }
+
+    @Test
+    void customerLookupsByIdAreServedFromTheSecondLevelCache(){
+        //register a customer
+        String email = "second-level-" + UUID.randomUUID() + "@gmail.com";
+        webClient.post()
+                .uri(CUSTOMER_URI)
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue(new CustomerRegistrationRequest("Ali", email, 23))
+                .exchange()
+                .expectStatus()
+                .isOk();
+
+        //loading it puts it in the customer region
+        int id = webClient.get()
+                .uri(CUSTOMER_URI + "?all=true")
+                .accept(MediaType.APPLICATION_JSON)
+                .exchange()
+                .expectStatus()
+                .isOk()
+                .expectBodyList(Customer.class)
+                .returnResult()
+                .getResponseBody()
+                .stream()
+                .filter(customer -> customer.getEmail().equals(email))
+                .map(Customer::getId)
+                .findFirst()
+                .orElseThrow();
+        double hitsBefore = secondLevelCacheHits();
+
+        //the update reads it back by id
+        webClient.put()
+                .uri(CUSTOMER_URI + "/{id}", id)
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue(new CustomerUpdateRequest("Alex", null, null))
+                .exchange()
+                .expectStatus()
+                .isOk();
+
+        assertThat(secondLevelCacheHits()).isGreaterThan(hitsBefore);
+    }
+
+    private double secondLevelCacheHits() {
+        MetricResponse metric = webClient.get()
+                .uri("actuator/metrics/hibernate.second.level.cache.requests?tag=region:customer&tag=result:hit")
+                .exchange()
+                .expectStatus()
+                .isOk()
+                .expectBody(MetricResponse.class)
+                .returnResult()
+                .getResponseBody();
+        return metric.measurements().get(0).value();
+    }
+
+    record MetricResponse(List<Measurement> measurements) {
+        record Measurement(String statistic, double value) {
+        }
+    }
+}
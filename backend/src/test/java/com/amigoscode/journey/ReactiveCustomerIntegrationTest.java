@@ -0,0 +1,10 @@
+package com.amigoscode.journey;
+
+import org.springframework.test.context.ActiveProfiles;
+
+/**
+ * The customer journeys against the WebFlux routes and R2DBC of the reactive profile.
+ */
+@ActiveProfiles("reactive")
+class ReactiveCustomerIntegrationTest extends CustomerIntegrationTest {
+}
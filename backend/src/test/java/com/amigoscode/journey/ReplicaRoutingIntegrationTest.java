@@ -0,0 +1,165 @@
+package com.amigoscode.journey;
+
+import com.amigoscode.customer.Customer;
+import com.amigoscode.customer.CustomerRegistrationRequest;
+import org.flywaydb.core.Flyway;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseCookie;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.test.web.reactive.server.WebTestClient;
+import reactor.core.publisher.Mono;
+
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.boot.test.context.SpringBootTest.WebEnvironment.RANDOM_PORT;
+
+/**
+ * Routes reads to a second database standing in for a replica. Nothing replicates into it,
+ * so a customer only found there proves where a read went.
+ */
+@SpringBootTest(webEnvironment = RANDOM_PORT, properties = {
+        "customer.datasource.routing.enabled=true",
+        "customer.datasource.routing.replicas[0].url=" + ReplicaRoutingIntegrationTest.REPLICA_URL,
+        "customer.dao.cache.enabled=false"
+})
+class ReplicaRoutingIntegrationTest {
+
+    static final String REPLICA_URL = "jdbc:postgresql://localhost:5432/customer_replica";
+
+    private static final String PRIMARY_URL = "jdbc:postgresql://localhost:5432/customer";
+    private static final String CUSTOMER_URI = "api/v1/customers";
+    private static final String COOKIE = "customer-read-your-writes";
+
+    @Autowired
+    private WebTestClient webClient;
+
+    @BeforeAll
+    static void createReplica() {
+        JdbcTemplate primary = new JdbcTemplate(new DriverManagerDataSource(PRIMARY_URL, "amigoscode", "password"));
+        if (primary.queryForList("SELECT 1 FROM pg_database WHERE datname = 'customer_replica'").isEmpty()) {
+            primary.execute("CREATE DATABASE customer_replica");
+        }
+        Flyway.configure()
+                .dataSource(REPLICA_URL, "amigoscode", "password")
+                .load()
+                .migrate();
+    }
+
+    @Test
+    void readsAreServedByTheReplica() {
+        //a customer that only exists on the replica
+        String domain = UUID.randomUUID() + ".com";
+        replica().update("INSERT INTO customer(name, email, age) VALUES (?, ?, ?)",
+                "Replica", "replica@" + domain, 30);
+
+        //search for it through the api
+        List<Customer> found = search(domain, null);
+
+        assertThat(found).extracting(Customer::getEmail).containsExactly("replica@" + domain);
+    }
+
+    @Test
+    void clientReadsItsOwnWritesFromThePrimary() {
+        //register a customer, which only reaches the primary
+        String domain = UUID.randomUUID() + ".com";
+        ResponseCookie cookie = webClient.post()
+                .uri(CUSTOMER_URI)
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(Mono.just(new CustomerRegistrationRequest("Primary", "primary@" + domain, 30)),
+                        CustomerRegistrationRequest.class)
+                .exchange()
+                .expectStatus()
+                .isOk()
+                .expectCookie()
+                .exists(COOKIE)
+                .expectBody()
+                .returnResult()
+                .getResponseCookies()
+                .getFirst(COOKIE);
+
+        //the writer reads from the primary, everyone else from the replica
+        assertThat(search(domain, cookie)).extracting(Customer::getEmail).containsExactly("primary@" + domain);
+        assertThat(search(domain, null)).isEmpty();
+    }
+
+    @Test
+    void replicaReadsDoNotFillTheSecondLevelCache() {
+        //the same customer, older on the replica, and in neither cache
+        String domain = UUID.randomUUID() + ".com";
+        Integer id = primary().queryForObject(
+                "INSERT INTO customer(id, name, email, age) VALUES (nextval('customer_id_seq'), ?, ?, ?) RETURNING id",
+                Integer.class, "Primary", "customer@" + domain, 30);
+        replica().update("INSERT INTO customer(id, name, email, age) VALUES (?, ?, ?, ?)",
+                id, "Replica", "customer@" + domain, 30);
+
+        //read it from the replica, then as a client that just wrote
+        Customer fromReplica = get(id, null);
+        ResponseCookie cookie = webClient.post()
+                .uri(CUSTOMER_URI)
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(Mono.just(new CustomerRegistrationRequest("Writer", "writer@" + domain, 30)),
+                        CustomerRegistrationRequest.class)
+                .exchange()
+                .expectStatus()
+                .isOk()
+                .expectBody()
+                .returnResult()
+                .getResponseCookies()
+                .getFirst(COOKIE);
+        Customer fromPrimary = get(id, cookie);
+
+        assertThat(fromReplica.getName()).isEqualTo("Replica");
+        assertThat(fromPrimary.getName()).isEqualTo("Primary");
+    }
+
+    private Customer get(Integer id, ResponseCookie cookie) {
+        return webClient.get()
+                .uri(CUSTOMER_URI + "/{id}", id)
+                .cookies(cookies -> {
+                    if (cookie != null) {
+                        cookies.add(cookie.getName(), cookie.getValue());
+                    }
+                })
+                .accept(MediaType.APPLICATION_JSON)
+                .exchange()
+                .expectStatus()
+                .isOk()
+                .expectBody(Customer.class)
+                .returnResult()
+                .getResponseBody();
+    }
+
+    private List<Customer> search(String domain, ResponseCookie cookie) {
+        return webClient.get()
+                .uri(CUSTOMER_URI + "/search?emailDomain={domain}", domain)
+                .cookies(cookies -> {
+                    if (cookie != null) {
+                        cookies.add(cookie.getName(), cookie.getValue());
+                    }
+                })
+                .accept(MediaType.APPLICATION_JSON)
+                .exchange()
+                .expectStatus()
+                .isOk()
+                .expectBodyList(new ParameterizedTypeReference<Customer>() {
+                })
+                .returnResult()
+                .getResponseBody();
+    }
+
+    private static JdbcTemplate primary() {
+        return new JdbcTemplate(new DriverManagerDataSource(PRIMARY_URL, "amigoscode", "password"));
+    }
+
+    private static JdbcTemplate replica() {
+        return new JdbcTemplate(new DriverManagerDataSource(REPLICA_URL, "amigoscode", "password"));
+    }
+}
@@ -0,0 +1,46 @@
+package com.amigoscode.startup;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class StartupBudgetPropertiesTest {
+
+    private final StartupBudgetProperties underTest = new StartupBudgetProperties(
+            Duration.ofSeconds(10),
+            Map.of(StartupPhases.FLYWAY, Duration.ofSeconds(1), StartupPhases.RUNNERS, Duration.ofSeconds(1))
+    );
+
+    @Test
+    void aStartWithinItsBudgetsExceedsNothing() {
+        // Given
+        StartupReport report = new StartupReport(
+                9_000, Map.of(StartupPhases.FLYWAY, 1_000L, StartupPhases.RUNNERS, 0L), Map.of()
+        );
+
+        // When
+        var actual = underTest.exceededBy(report);
+
+        // Then
+        assertThat(actual).isEmpty();
+    }
+
+    @Test
+    void eachLimitGonePastAndEachMissingPhaseIsReported() {
+        // Given
+        StartupReport report = new StartupReport(12_000, Map.of(StartupPhases.FLYWAY, 1_500L), Map.of());
+
+        // When
+        var actual = underTest.exceededBy(report);
+
+        // Then
+        assertThat(actual).containsExactlyInAnyOrder(
+                "start took 12000 ms, over its budget of 10000 ms",
+                "flyway took 1500 ms, over its budget of 1000 ms",
+                "runners was not reported"
+        );
+    }
+}
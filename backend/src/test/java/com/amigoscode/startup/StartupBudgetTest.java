@@ -0,0 +1,45 @@
+package com.amigoscode.startup;
+
+import com.amigoscode.AbstractTestcontainers;
+import com.amigoscode.Main;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.context.metrics.buffering.BufferingApplicationStartup;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Fails when a start of the application goes past the budgets under
+ * {@code customer.startup.budget}.
+ */
+class StartupBudgetTest extends AbstractTestcontainers {
+
+    @Test
+    void everyStartupPhaseStaysWithinItsBudget() {
+        try (ConfigurableApplicationContext context = new SpringApplicationBuilder(Main.class)
+                .applicationStartup(new BufferingApplicationStartup(8192))
+                .run(
+                        "--server.port=0",
+                        "--spring.jpa.show-sql=false",
+                        "--spring.datasource.url=" + postgreSQLContainer.getJdbcUrl(),
+                        "--spring.datasource.username=" + postgreSQLContainer.getUsername(),
+                        "--spring.datasource.password=" + postgreSQLContainer.getPassword()
+                )) {
+
+            StartupReport report = context.getBean(StartupReportEndpoint.class).report();
+            StartupBudgetProperties budget = context.getBean(StartupBudgetProperties.class);
+
+            assertThat(report).isNotNull();
+            assertThat(report.phaseMillis()).containsOnlyKeys(
+                    StartupPhases.BEANS,
+                    StartupPhases.DATASOURCE_POOL,
+                    StartupPhases.FLYWAY,
+                    StartupPhases.ENTITY_MANAGER_FACTORY,
+                    StartupPhases.RUNNERS
+            );
+            assertThat(budget.phases()).containsOnlyKeys(report.phaseMillis().keySet());
+            assertThat(budget.exceededBy(report)).isEmpty();
+        }
+    }
+}
@@ -0,0 +1,74 @@
+package com.amigoscode.startup;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.context.metrics.buffering.BufferingApplicationStartup;
+import org.springframework.core.metrics.StartupStep;
+
+import java.time.Instant;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class StartupPhasesTest {
+
+    private static final long STEP_MILLIS = 20;
+
+    private final BufferingApplicationStartup startup = new BufferingApplicationStartup(64);
+
+    @Test
+    void nestedBeansAreCountedOnceForTheirPhase() throws Exception {
+        // Given
+        StartupStep entityManagerFactory = bean("&entityManagerFactory");
+        StartupStep flywayInitializer = bean("flywayInitializer");
+        StartupStep flyway = bean("flyway");
+        Thread.sleep(STEP_MILLIS);
+        flyway.end();
+        flywayInitializer.end();
+        Thread.sleep(STEP_MILLIS);
+        entityManagerFactory.end();
+
+        // When
+        StartupReport actual = StartupPhases.of(startup.getBufferedTimeline(), Instant.now());
+
+        // Then
+        assertThat(actual.phaseMillis().get(StartupPhases.FLYWAY)).isBetween(STEP_MILLIS, 2 * STEP_MILLIS - 1);
+        assertThat(actual.phaseMillis().get(StartupPhases.ENTITY_MANAGER_FACTORY)).isGreaterThanOrEqualTo(2 * STEP_MILLIS);
+        assertThat(actual.phaseMillis().get(StartupPhases.BEANS))
+                .isEqualTo(actual.phaseMillis().get(StartupPhases.ENTITY_MANAGER_FACTORY));
+        assertThat(actual.slowestBeanMillis()).containsKeys("entityManagerFactory", "flywayInitializer", "flyway");
+    }
+
+    @Test
+    void poolStartsAddUp() throws Exception {
+        // Given
+        for (String dataSource : new String[]{"primaryDataSource", "replicaDataSource"}) {
+            StartupStep poolStart = startup.start(StartupPhases.POOL_START_STEP).tag("beanName", dataSource);
+            Thread.sleep(STEP_MILLIS);
+            poolStart.end();
+        }
+
+        // When
+        StartupReport actual = StartupPhases.of(startup.getBufferedTimeline(), Instant.now());
+
+        // Then
+        assertThat(actual.phaseMillis().get(StartupPhases.DATASOURCE_POOL)).isGreaterThanOrEqualTo(2 * STEP_MILLIS);
+        assertThat(actual.phaseMillis().get(StartupPhases.BEANS)).isZero();
+    }
+
+    @Test
+    void runnersFillTheTimeBetweenStartedAndReady() throws Exception {
+        // Given
+        startup.start("spring.boot.application.started").end();
+        Thread.sleep(STEP_MILLIS);
+
+        // When
+        StartupReport actual = StartupPhases.of(startup.getBufferedTimeline(), Instant.now());
+
+        // Then
+        assertThat(actual.phaseMillis().get(StartupPhases.RUNNERS)).isGreaterThanOrEqualTo(STEP_MILLIS);
+        assertThat(actual.totalMillis()).isGreaterThanOrEqualTo(actual.phaseMillis().get(StartupPhases.RUNNERS));
+    }
+
+    private StartupStep bean(String beanName) {
+        return startup.start("spring.beans.instantiate").tag("beanName", beanName);
+    }
+}
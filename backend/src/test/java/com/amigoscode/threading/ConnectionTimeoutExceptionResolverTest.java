@@ -0,0 +1,46 @@
+package com.amigoscode.threading;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.transaction.CannotCreateTransactionException;
+import org.springframework.web.servlet.ModelAndView;
+
+import java.sql.SQLTransientConnectionException;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ConnectionTimeoutExceptionResolverTest {
+
+    private final ConnectionTimeoutExceptionResolver underTest = new ConnectionTimeoutExceptionResolver();
+    private final MockHttpServletResponse response = new MockHttpServletResponse();
+
+    @Test
+    void aConnectionTimeoutWrappedByTheTransactionManagerIsServiceUnavailable() {
+        // Given
+        Exception timeout = new CannotCreateTransactionException("could not open jpa entity manager",
+                new SQLTransientConnectionException("HikariPool-1 - Connection is not available"));
+
+        // When
+        ModelAndView actual = underTest.resolveException(new MockHttpServletRequest(), response, null, timeout);
+
+        // Then
+        assertThat(actual).isNotNull();
+        assertThat(response.getStatus()).isEqualTo(503);
+        assertThat(response.getErrorMessage()).isEqualTo(ConnectionTimeoutExceptionResolver.REASON);
+    }
+
+    @Test
+    void otherDataAccessFailuresAreLeftToTheOtherResolvers() {
+        // Given
+        Exception failure = new DataAccessResourceFailureException("connection reset");
+
+        // When
+        ModelAndView actual = underTest.resolveException(new MockHttpServletRequest(), response, null, failure);
+
+        // Then
+        assertThat(actual).isNull();
+        assertThat(response.isCommitted()).isFalse();
+    }
+}
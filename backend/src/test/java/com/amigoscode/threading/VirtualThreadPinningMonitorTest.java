@@ -0,0 +1,55 @@
+package com.amigoscode.threading;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class VirtualThreadPinningMonitorTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final VirtualThreadPinningMonitor underTest =
+            new VirtualThreadPinningMonitor(meterRegistry, Duration.ofMillis(10));
+
+    @AfterEach
+    void tearDown() {
+        underTest.stop();
+    }
+
+    @Test
+    void countsVirtualThreadsBlockingInsideSynchronized() throws Exception {
+        // Given
+        underTest.start();
+        Object monitor = new Object();
+
+        // When
+        Thread.ofVirtual().start(() -> {
+            synchronized (monitor) {
+                try {
+                    Thread.sleep(50);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }).join();
+
+        // Then
+        long deadline = System.nanoTime() + Duration.ofSeconds(10).toNanos();
+        while (pinned() == 0 && System.nanoTime() < deadline) {
+            Thread.sleep(50);
+        }
+        assertThat(pinned()).isEqualTo(1);
+        assertThat(meterRegistry.get("jvm.threads.virtual.pinned").counter().getId().getTag("site"))
+                .startsWith(VirtualThreadPinningMonitorTest.class.getName());
+    }
+
+    private double pinned() {
+        return meterRegistry.find("jvm.threads.virtual.pinned").counters().stream()
+                .mapToDouble(Counter::count)
+                .sum();
+    }
+}